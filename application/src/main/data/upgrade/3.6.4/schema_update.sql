@@ -159,4 +159,11 @@ CREATE TABLE IF NOT EXISTS mobile_app_settings (
     CONSTRAINT mobile_app_settings_tenant_id_unq_key UNIQUE (tenant_id)
 );
 
--- MOBILE APP SETTINGS TABLE CREATE END
\ No newline at end of file
+-- MOBILE APP SETTINGS TABLE CREATE END
+
+-- DEVICE PARTITION KEY START
+
+ALTER TABLE device ADD COLUMN IF NOT EXISTS partition_key bigint;
+CREATE INDEX IF NOT EXISTS idx_device_partition_key ON device(partition_key, id);
+
+-- DEVICE PARTITION KEY END
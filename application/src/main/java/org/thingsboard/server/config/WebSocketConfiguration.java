@@ -36,6 +36,14 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
 
     public static final String WS_API_ENDPOINT = "/api/ws";
     public static final String WS_PLUGINS_ENDPOINT = "/api/ws/plugins/";
+    /**
+     * Sub-protocol that a client may request to receive subscription updates as binary CBOR frames instead of JSON text frames.
+     */
+    public static final String WS_CBOR_SUBPROTOCOL = "tb-cbor";
+    /**
+     * Default sub-protocol with JSON text frames. Lets the clients request "tb-cbor" with a fallback when the binary protocol is disabled.
+     */
+    public static final String WS_JSON_SUBPROTOCOL = "tb-json";
     private static final String WS_API_MAPPING = "/api/ws/**";
 
     private final WebSocketHandler wsHandler;
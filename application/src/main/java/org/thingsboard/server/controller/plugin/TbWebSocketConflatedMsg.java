@@ -0,0 +1,69 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller.plugin;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Message that is skipped when a newer message with the same conflation key is queued before it is sent.
+ * The message is either polled to be sent or superseded, whichever happens first.
+ */
+public class TbWebSocketConflatedMsg<T> implements TbWebSocketMsg<T> {
+
+    private final TbWebSocketMsgType type;
+    @Getter
+    private final String conflationKey;
+    private final T value;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    @Getter
+    private volatile boolean superseded;
+
+    public TbWebSocketConflatedMsg(TbWebSocketMsgType type, String conflationKey, T value) {
+        this.type = type;
+        this.conflationKey = conflationKey;
+        this.value = value;
+    }
+
+    /**
+     * @return false if the message is already polled to be sent
+     */
+    boolean supersede() {
+        if (claimed.compareAndSet(false, true)) {
+            superseded = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the message is superseded and must be skipped
+     */
+    boolean poll() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    @Override
+    public TbWebSocketMsgType getType() {
+        return type;
+    }
+
+    @Override
+    public T getMsg() {
+        return value;
+    }
+}
@@ -34,11 +34,13 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.TenantProfile;
 import org.thingsboard.server.common.data.exception.ThingsboardErrorCode;
 import org.thingsboard.server.common.data.id.CustomerId;
@@ -46,6 +48,8 @@ import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.id.UserId;
 import org.thingsboard.server.common.data.limit.LimitedApi;
 import org.thingsboard.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.config.WebSocketConfiguration;
 import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
 import org.thingsboard.server.cache.limits.RateLimitService;
@@ -66,8 +70,11 @@ import org.thingsboard.server.service.ws.notification.cmd.NotificationCmdsWrappe
 import org.thingsboard.server.service.ws.telemetry.cmd.TelemetryCmdsWrapper;
 
 import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
+import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -75,9 +82,12 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -87,7 +97,10 @@ import static org.thingsboard.server.service.ws.DefaultWebSocketService.NUMBER_O
 @TbCoreComponent
 @Slf4j
 @RequiredArgsConstructor
-public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocketMsgEndpoint {
+public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocketMsgEndpoint, SubProtocolCapable {
+
+    private static final int CBOR_INDEFINITE_ARRAY_START = 0x9f;
+    private static final int CBOR_BREAK = 0xff;
 
     private final ConcurrentMap<String, SessionMetaData> internalSessionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, String> externalSessionMap = new ConcurrentHashMap<>();
@@ -109,6 +122,18 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
     private int wsMaxQueueMessagesPerSession;
     @Value("${server.ws.auth_timeout_ms:10000}")
     private int authTimeoutMs;
+    @Value("${server.ws.conflation.enabled:true}")
+    private boolean conflationEnabled;
+    @Value("${server.ws.batching.flush_interval_ms:0}")
+    private long batchFlushIntervalMs;
+    @Value("${server.ws.binary_protocol.enabled:false}")
+    private boolean binaryProtocolEnabled;
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+    private DefaultCounter conflatableUpdatesCounter;
+    private DefaultCounter conflatedUpdatesCounter;
+    private ScheduledExecutorService batchFlushExecutor;
 
     private final ConcurrentMap<String, WebSocketSessionRef> blacklistedSessions = new ConcurrentHashMap<>();
 
@@ -133,13 +158,41 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                     }
                 })
                 .build();
+        if (statsFactory != null) {
+            conflatableUpdatesCounter = statsFactory.createDefaultCounter("wsConflatableUpdates");
+            conflatedUpdatesCounter = statsFactory.createDefaultCounter("wsConflatedUpdates");
+        }
+        if (batchFlushIntervalMs > 0) {
+            batchFlushExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("ws-batch-flush"));
+            batchFlushExecutor.scheduleWithFixedDelay(this::flushSessions, batchFlushIntervalMs, batchFlushIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
     private void stop() {
+        if (batchFlushExecutor != null) {
+            batchFlushExecutor.shutdownNow();
+        }
         internalSessionMap.clear();
     }
 
+    private void flushSessions() {
+        internalSessionMap.values().forEach(sessionMd -> {
+            try {
+                sessionMd.processNextMsg();
+            } catch (Exception e) {
+                log.warn("{} Failed to flush pending updates", sessionMd.sessionRef, e);
+            }
+        });
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return binaryProtocolEnabled ?
+                List.of(WebSocketConfiguration.WS_CBOR_SUBPROTOCOL, WebSocketConfiguration.WS_JSON_SUBPROTOCOL) :
+                List.of(WebSocketConfiguration.WS_JSON_SUBPROTOCOL);
+    }
+
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
@@ -338,6 +391,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 .localAddress(session.getLocalAddress())
                 .remoteAddress(session.getRemoteAddress())
                 .sessionType(sessionType)
+                .binaryEncoding(WebSocketConfiguration.WS_CBOR_SUBPROTOCOL.equals(session.getAcceptedProtocol()))
                 .build();
     }
 
@@ -357,6 +411,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         final AtomicBoolean isSending = new AtomicBoolean(false);
         private final Queue<TbWebSocketMsg<?>> outboundMsgQueue = new ConcurrentLinkedQueue<>();
         private final AtomicInteger outboundMsgQueueSize = new AtomicInteger();
+        private final ConcurrentMap<String, TbWebSocketConflatedMsg<?>> pendingConflatedMsgs = new ConcurrentHashMap<>();
         @Setter
         private int maxMsgQueueSize = wsMaxQueueMessagesPerSession;
 
@@ -396,6 +451,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 log.trace("{} Session transport error", sessionRef, ioe);
             } finally {
                 outboundMsgQueue.clear();
+                pendingConflatedMsgs.clear();
             }
         }
 
@@ -407,11 +463,51 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
             sendMsg(new TbWebSocketTextMsg(msg));
         }
 
+        /*
+         * Messages with the same conflation key carry the latest values of the same keys,
+         * so while a message is still queued, the newer one replaces its content instead of being queued.
+         * */
+        void sendMsg(String msg, String conflationKey) {
+            if (conflationKey == null || !conflationEnabled) {
+                sendMsg(msg);
+            } else {
+                sendConflatedMsg(TbWebSocketMsgType.TEXT, msg, conflationKey);
+            }
+        }
+
+        void sendMsg(byte[] msg, String conflationKey) {
+            if (conflationKey == null || !conflationEnabled) {
+                sendMsg(new TbWebSocketBinaryMsg(msg));
+            } else {
+                sendConflatedMsg(TbWebSocketMsgType.BINARY, msg, conflationKey);
+            }
+        }
+
+        private <T> void sendConflatedMsg(TbWebSocketMsgType type, T msg, String conflationKey) {
+            if (conflatableUpdatesCounter != null) {
+                conflatableUpdatesCounter.increment();
+            }
+            TbWebSocketConflatedMsg<T> newMsg = new TbWebSocketConflatedMsg<>(type, conflationKey, msg);
+            TbWebSocketConflatedMsg<?> pendingMsg = pendingConflatedMsgs.put(conflationKey, newMsg);
+            // the replaced message is skipped instead of being updated in place, and the newer one is queued to the tail,
+            // so that it is not sent before the messages that were queued after the replaced one and may carry older values of the same keys.
+            // The superseded entry stays in the queue until polled, but is no longer counted in its size
+            if (pendingMsg != null && pendingMsg.supersede()) {
+                outboundMsgQueueSize.decrementAndGet();
+                if (conflatedUpdatesCounter != null) {
+                    conflatedUpdatesCounter.increment();
+                }
+            }
+            sendMsg(newMsg);
+        }
+
         void sendMsg(TbWebSocketMsg<?> msg) {
             if (outboundMsgQueueSize.get() < maxMsgQueueSize) {
                 outboundMsgQueue.add(msg);
                 outboundMsgQueueSize.incrementAndGet();
-                processNextMsg();
+                if (batchFlushIntervalMs <= 0) {
+                    processNextMsg();
+                }
             } else {
                 log.info("{} Session closed due to updates queue size exceeded", sessionRef);
                 closeSession(CloseStatus.POLICY_VIOLATION.withReason("Max pending updates limit reached!"));
@@ -421,14 +517,19 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         private void sendMsgInternal(TbWebSocketMsg<?> msg) {
             try {
                 if (TbWebSocketMsgType.TEXT.equals(msg.getType())) {
-                    TbWebSocketTextMsg textMsg = (TbWebSocketTextMsg) msg;
-                    this.asyncRemote.sendText(textMsg.getMsg(), this);
+                    String text = batchFlushIntervalMs > 0 ? pollBatch((String) msg.getMsg()) : (String) msg.getMsg();
+                    this.asyncRemote.sendText(text, this);
                     // isSending status will be reset in the onResult method by call back
+                } else if (TbWebSocketMsgType.BINARY.equals(msg.getType())) {
+                    byte[] data = batchFlushIntervalMs > 0 ? pollBinaryBatch((byte[]) msg.getMsg()) : (byte[]) msg.getMsg();
+                    this.asyncRemote.sendBinary(ByteBuffer.wrap(data), this);
                 } else {
                     TbWebSocketPingMsg pingMsg = (TbWebSocketPingMsg) msg;
                     this.asyncRemote.sendPing(pingMsg.getMsg()); // blocking call
                     isSending.set(false);
-                    processNextMsg();
+                    if (batchFlushIntervalMs <= 0) {
+                        processNextMsg();
+                    }
                 }
             } catch (Exception e) {
                 log.trace("{} Failed to send msg", sessionRef, e);
@@ -445,19 +546,103 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
             }
 
             isSending.set(false);
-            processNextMsg();
+            if (batchFlushIntervalMs <= 0) {
+                processNextMsg();
+            }
+        }
+
+        /*
+         * Polls the next message, skipping the ones superseded by a newer message with the same conflation key.
+         * Only the sending thread polls the queue.
+         * */
+        private TbWebSocketMsg<?> pollNextMsg() {
+            TbWebSocketMsg<?> msg;
+            while ((msg = outboundMsgQueue.poll()) != null) {
+                if (onPolled(msg)) {
+                    return msg;
+                }
+            }
+            return null;
+        }
+
+        private TbWebSocketMsg<?> peekNextMsg() {
+            TbWebSocketMsg<?> next = outboundMsgQueue.peek();
+            while (next instanceof TbWebSocketConflatedMsg<?> conflatedMsg && conflatedMsg.isSuperseded()) {
+                outboundMsgQueue.poll();
+                next = outboundMsgQueue.peek();
+            }
+            return next;
+        }
+
+        /**
+         * @return false if the polled message is superseded and must be skipped
+         */
+        private boolean onPolled(TbWebSocketMsg<?> msg) {
+            if (msg instanceof TbWebSocketConflatedMsg<?> conflatedMsg) {
+                if (!conflatedMsg.poll()) {
+                    return false;
+                }
+                // the message is polled from the queue, so the newer updates with the same key are queued as new messages
+                pendingConflatedMsgs.remove(conflatedMsg.getConflationKey(), conflatedMsg);
+            }
+            outboundMsgQueueSize.decrementAndGet();
+            return true;
+        }
+
+        /*
+         * Joins the text messages that are queued after the first one into a single JSON array frame.
+         * */
+        private String pollBatch(String first) {
+            TbWebSocketMsg<?> next = peekNextMsg();
+            if (next == null || !TbWebSocketMsgType.TEXT.equals(next.getType())) {
+                return first;
+            }
+            StringBuilder batch = new StringBuilder("[").append(first);
+            while (next != null && TbWebSocketMsgType.TEXT.equals(next.getType())) {
+                outboundMsgQueue.poll();
+                if (onPolled(next)) {
+                    batch.append(',').append((String) next.getMsg());
+                }
+                next = peekNextMsg();
+            }
+            return batch.append(']').toString();
+        }
+
+        /*
+         * Same as pollBatch, but for CBOR encoded messages, that are joined into an indefinite-length CBOR array.
+         * */
+        private byte[] pollBinaryBatch(byte[] first) {
+            TbWebSocketMsg<?> next = peekNextMsg();
+            if (next == null || !TbWebSocketMsgType.BINARY.equals(next.getType())) {
+                return first;
+            }
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            batch.write(CBOR_INDEFINITE_ARRAY_START);
+            batch.writeBytes(first);
+            while (next != null && TbWebSocketMsgType.BINARY.equals(next.getType())) {
+                outboundMsgQueue.poll();
+                if (onPolled(next)) {
+                    batch.writeBytes((byte[]) next.getMsg());
+                }
+                next = peekNextMsg();
+            }
+            batch.write(CBOR_BREAK);
+            return batch.toByteArray();
         }
 
-        private void processNextMsg() {
+        void processNextMsg() {
             if (outboundMsgQueue.isEmpty() || !isSending.compareAndSet(false, true)) {
                 return;
             }
-            TbWebSocketMsg<?> msg = outboundMsgQueue.poll();
+            TbWebSocketMsg<?> msg = pollNextMsg();
             if (msg != null) {
-                outboundMsgQueueSize.decrementAndGet();
                 sendMsgInternal(msg);
             } else {
                 isSending.set(false);
+                // only superseded messages were polled, while a message queued meanwhile could not start sending
+                if (!outboundMsgQueue.isEmpty()) {
+                    processNextMsg();
+                }
             }
         }
 
@@ -485,8 +670,18 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
     }
 
     @Override
-    public void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException {
+    public void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg, String conflationKey) throws IOException {
         log.debug("{} Sending {}", sessionRef, msg);
+        send(sessionRef, subscriptionId, sessionMd -> sessionMd.sendMsg(msg, conflationKey));
+    }
+
+    @Override
+    public void send(WebSocketSessionRef sessionRef, int subscriptionId, byte[] msg, String conflationKey) throws IOException {
+        log.debug("{} Sending {} bytes", sessionRef, msg.length);
+        send(sessionRef, subscriptionId, sessionMd -> sessionMd.sendMsg(msg, conflationKey));
+    }
+
+    private void send(WebSocketSessionRef sessionRef, int subscriptionId, Consumer<SessionMetaData> sender) {
         String externalId = sessionRef.getSessionId();
         String internalId = externalSessionMap.get(externalId);
         if (internalId != null) {
@@ -503,7 +698,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                     log.debug("{} Session is no longer blacklisted.", sessionRef);
                     blacklistedSessions.remove(externalId);
                 }
-                sessionMd.sendMsg(msg);
+                sender.accept(sessionMd);
             } else {
                 log.warn("[{}][{}] Failed to find session by internal id", externalId, internalId);
             }
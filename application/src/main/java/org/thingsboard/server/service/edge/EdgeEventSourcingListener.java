@@ -44,6 +44,7 @@ import org.thingsboard.server.dao.edge.EdgeSynchronizationManager;
 import org.thingsboard.server.dao.eventsourcing.ActionEntityEvent;
 import org.thingsboard.server.dao.eventsourcing.DeleteEntityEvent;
 import org.thingsboard.server.dao.eventsourcing.RelationActionEvent;
+import org.thingsboard.server.dao.eventsourcing.RelationsActionEvent;
 import org.thingsboard.server.dao.eventsourcing.SaveEntityEvent;
 import org.thingsboard.server.dao.tenant.TenantService;
 import org.thingsboard.server.dao.user.UserServiceImpl;
@@ -152,19 +153,35 @@ public class EdgeEventSourcingListener {
                 log.trace("[{}] skipping RelationActionEvent event in case relation is null: {}", event.getTenantId(), event);
                 return;
             }
-            if (!RelationTypeGroup.COMMON.equals(relation.getTypeGroup())) {
-                log.trace("[{}] skipping RelationActionEvent event in case NOT COMMON relation type group: {}", event.getTenantId(), event);
-                return;
-            }
             log.trace("[{}] RelationActionEvent called: {}", event.getTenantId(), event);
-            tbClusterService.sendNotificationMsgToEdge(event.getTenantId(), null, null,
-                    JacksonUtil.toString(relation), EdgeEventType.RELATION, EdgeUtils.getEdgeEventActionTypeByActionType(event.getActionType()),
-                    edgeSynchronizationManager.getEdgeId().get());
+            sendRelationNotificationMsgToEdge(event.getTenantId(), relation, event.getActionType());
         } catch (Exception e) {
             log.error("[{}] failed to process RelationActionEvent: {}", event.getTenantId(), event, e);
         }
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(RelationsActionEvent event) {
+        log.trace("[{}] RelationsActionEvent called for {} relations", event.getTenantId(), event.getRelations().size());
+        for (EntityRelation relation : event.getRelations()) {
+            try {
+                sendRelationNotificationMsgToEdge(event.getTenantId(), relation, event.getActionType());
+            } catch (Exception e) {
+                log.error("[{}] failed to process RelationsActionEvent for relation: {}", event.getTenantId(), relation, e);
+            }
+        }
+    }
+
+    private void sendRelationNotificationMsgToEdge(TenantId tenantId, EntityRelation relation, ActionType actionType) {
+        if (!RelationTypeGroup.COMMON.equals(relation.getTypeGroup())) {
+            log.trace("[{}] skipping relation event in case NOT COMMON relation type group: {}", tenantId, relation);
+            return;
+        }
+        tbClusterService.sendNotificationMsgToEdge(tenantId, null, null,
+                JacksonUtil.toString(relation), EdgeEventType.RELATION, EdgeUtils.getEdgeEventActionTypeByActionType(actionType),
+                edgeSynchronizationManager.getEdgeId().get());
+    }
+
     private boolean isValidSaveEntityEventForEdgeProcessing(SaveEntityEvent<?> event) {
         Object entity = event.getEntity();
         Object oldEntity = event.getOldEntity();
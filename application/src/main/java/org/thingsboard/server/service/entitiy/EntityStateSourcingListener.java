@@ -18,6 +18,7 @@ package org.thingsboard.server.service.entitiy;
 import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionalEventListener;
 import org.thingsboard.common.util.JacksonUtil;
@@ -50,8 +51,12 @@ import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.common.msg.rule.engine.DeviceCredentialsUpdateNotificationMsg;
 import org.thingsboard.server.dao.eventsourcing.ActionEntityEvent;
 import org.thingsboard.server.dao.eventsourcing.DeleteEntityEvent;
+import org.thingsboard.server.dao.eventsourcing.RelationActionEvent;
+import org.thingsboard.server.dao.eventsourcing.RelationsActionEvent;
 import org.thingsboard.server.dao.eventsourcing.SaveEntityEvent;
+import org.thingsboard.server.dao.sql.query.DefaultEntityQueryRepository;
 import org.thingsboard.server.dao.tenant.TenantService;
+import org.thingsboard.server.gen.transport.TransportProtos;
 
 import javax.annotation.PostConstruct;
 import java.util.Set;
@@ -64,6 +69,9 @@ public class EntityStateSourcingListener {
     private final TbClusterService tbClusterService;
     private final TenantService tenantService;
 
+    @Value("${server.ws.dynamic_page_link.event_refresh.enabled:true}")
+    private boolean dynamicQueryEventRefreshEnabled;
+
     @PostConstruct
     public void init() {
         log.info("EntityStateSourcingListener initiated");
@@ -78,6 +86,10 @@ public class EntityStateSourcingListener {
         }
         EntityType entityType = entityId.getEntityType();
         log.debug("[{}][{}][{}] Handling entity save event: {}", tenantId, entityType, entityId, event);
+        // edge events are saved with the id of the edge, but do not change the edge itself
+        if (!(event.getEntity() instanceof EdgeEvent)) {
+            broadcastEntityChange(tenantId, entityType);
+        }
         boolean isCreated = event.getCreated() != null && event.getCreated();
         ComponentLifecycleEvent lifecycleEvent = isCreated ? ComponentLifecycleEvent.CREATED : ComponentLifecycleEvent.UPDATED;
 
@@ -134,6 +146,7 @@ public class EntityStateSourcingListener {
             return;
         }
         log.debug("[{}][{}][{}] Handling entity deletion event: {}", tenantId, entityType, entityId, event);
+        broadcastEntityChange(tenantId, entityType);
 
         switch (entityType) {
             case ASSET, ASSET_PROFILE, ENTITY_VIEW, CUSTOMER, EDGE, NOTIFICATION_RULE -> {
@@ -197,6 +210,45 @@ public class EntityStateSourcingListener {
         }
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(RelationActionEvent event) {
+        broadcastRelationChange(event.getTenantId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(RelationsActionEvent event) {
+        broadcastRelationChange(event.getTenantId());
+    }
+
+    /*
+     * Notifies all the core services, so that the dynamic entity data queries of the WS sessions connected to any of them
+     * are refreshed, and not only the ones connected to the service that made the change
+     * */
+    private void broadcastEntityChange(TenantId tenantId, EntityType entityType) {
+        // alarms, events and the other entities that the entity data query never returns do not change its result
+        if (!dynamicQueryEventRefreshEnabled || tenantId == null || !DefaultEntityQueryRepository.isSupportedEntityType(entityType)) {
+            return;
+        }
+        tbClusterService.broadcastToCore(TransportProtos.ToCoreNotificationMsg.newBuilder()
+                .setEntityChangeMsg(toEntityChangeMsg(tenantId).setEntityType(entityType.name()))
+                .build());
+    }
+
+    private void broadcastRelationChange(TenantId tenantId) {
+        if (!dynamicQueryEventRefreshEnabled || tenantId == null) {
+            return;
+        }
+        tbClusterService.broadcastToCore(TransportProtos.ToCoreNotificationMsg.newBuilder()
+                .setEntityChangeMsg(toEntityChangeMsg(tenantId))
+                .build());
+    }
+
+    private TransportProtos.EntityChangeMsgProto.Builder toEntityChangeMsg(TenantId tenantId) {
+        return TransportProtos.EntityChangeMsgProto.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
+    }
+
     private void onTenantUpdate(Tenant tenant, ComponentLifecycleEvent lifecycleEvent) {
         tbClusterService.onTenantChange(tenant, null);
         tbClusterService.broadcastEntityStateChangeEvent(tenant.getId(), tenant.getId(), lifecycleEvent);
@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.partition;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.device.DevicePartitionKeyResolver;
+import org.thingsboard.server.queue.discovery.PartitionService;
+
+import java.util.UUID;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DefaultDevicePartitionKeyResolver implements DevicePartitionKeyResolver {
+
+    private static final long PARTITION_MASK = 0xFFFFFFFFL;
+
+    private final PartitionService partitionService;
+
+    @Value("${queue.core.partitions:100}")
+    private int corePartitions;
+    @Value("${queue.partitions.hash_function_name:murmur3_128}")
+    private String hashFunctionName;
+
+    private long settingsKey;
+
+    @PostConstruct
+    public void init() {
+        int settingsId = (hashFunctionName + ":" + corePartitions).hashCode();
+        settingsKey = (long) settingsId << 32;
+        log.debug("Using device partition keys from {} to {}", getMinPartitionKey(), getMaxPartitionKey());
+    }
+
+    @Override
+    public long resolvePartitionKey(UUID deviceId) {
+        return getPartitionKey(partitionService.resolvePartitionIndex(deviceId, corePartitions));
+    }
+
+    @Override
+    public long getPartitionKey(int partition) {
+        return settingsKey | (partition & PARTITION_MASK);
+    }
+
+    @Override
+    public long getMinPartitionKey() {
+        return settingsKey;
+    }
+
+    @Override
+    public long getMaxPartitionKey() {
+        return settingsKey | PARTITION_MASK;
+    }
+
+}
@@ -33,6 +33,7 @@ import org.thingsboard.common.util.DonAsynchron;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.JavaSerDesUtil;
 import org.thingsboard.server.common.data.alarm.AlarmInfo;
 import org.thingsboard.server.common.data.event.ErrorEvent;
@@ -80,6 +81,7 @@ import org.thingsboard.server.gen.transport.TransportProtos.TransportToDeviceAct
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.common.consumer.QueueConsumerManager;
+import org.thingsboard.server.queue.common.consumer.QueueConsumerTunerFactory;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.queue.discovery.QueueKey;
 import org.thingsboard.server.queue.discovery.event.PartitionChangeEvent;
@@ -99,6 +101,7 @@ import org.thingsboard.server.service.rpc.TbCoreDeviceRpcService;
 import org.thingsboard.server.service.security.auth.jwt.settings.JwtSettingsService;
 import org.thingsboard.server.service.state.DeviceStateService;
 import org.thingsboard.server.service.subscription.SubscriptionManagerService;
+import org.thingsboard.server.service.subscription.TbEntityDataSubscriptionService;
 import org.thingsboard.server.service.subscription.TbLocalSubscriptionService;
 import org.thingsboard.server.service.subscription.TbSubscriptionUtils;
 import org.thingsboard.server.service.sync.vc.GitVersionControlQueueService;
@@ -149,7 +152,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     private final NotificationRuleProcessor notificationRuleProcessor;
     private final TbCoreQueueFactory queueFactory;
     private final TbImageService imageService;
+    private final TbEntityDataSubscriptionService entityDataSubscriptionService;
     private final TbCoreConsumerStats stats;
+    private final QueueConsumerTunerFactory consumerTunerFactory;
 
     private MainQueueConsumerManager<TbProtoQueueMsg<ToCoreMsg>, CoreQueueConfig> mainConsumer;
     private QueueConsumerManager<TbProtoQueueMsg<ToUsageStatsServiceMsg>> usageStatsConsumer;
@@ -177,7 +182,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                                         JwtSettingsService jwtSettingsService,
                                         NotificationSchedulerService notificationSchedulerService,
                                         NotificationRuleProcessor notificationRuleProcessor,
-                                        TbImageService imageService) {
+                                        TbImageService imageService,
+                                        TbEntityDataSubscriptionService entityDataSubscriptionService,
+                                        QueueConsumerTunerFactory consumerTunerFactory) {
         super(actorContext, tenantProfileCache, deviceProfileCache, assetProfileCache, apiUsageStateService, partitionService,
                 eventPublisher, jwtSettingsService);
         this.stateService = stateService;
@@ -192,7 +199,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         this.notificationSchedulerService = notificationSchedulerService;
         this.notificationRuleProcessor = notificationRuleProcessor;
         this.imageService = imageService;
+        this.entityDataSubscriptionService = entityDataSubscriptionService;
         this.queueFactory = tbCoreQueueFactory;
+        this.consumerTunerFactory = consumerTunerFactory;
     }
 
     @PostConstruct
@@ -208,6 +217,7 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                 .consumerExecutor(consumersExecutor)
                 .scheduler(scheduler)
                 .taskExecutor(mgmtExecutor)
+                .tunerFactory(consumerTunerFactory)
                 .build();
         this.usageStatsConsumer = QueueConsumerManager.<TbProtoQueueMsg<ToUsageStatsServiceMsg>>builder()
                 .name("TB Usage Stats")
@@ -216,6 +226,7 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                 .consumerCreator(queueFactory::createToUsageStatsServiceMsgConsumer)
                 .consumerExecutor(consumersExecutor)
                 .threadPrefix("usage-stats")
+                .tunerFactory(consumerTunerFactory)
                 .build();
         this.firmwareStatesConsumer = QueueConsumerManager.<TbProtoQueueMsg<ToOtaPackageStateServiceMsg>>builder()
                 .name("TB Ota Package States")
@@ -261,6 +272,7 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         TbPackProcessingContext<TbProtoQueueMsg<ToCoreMsg>> ctx = new TbPackProcessingContext<>(
                 processingTimeoutLatch, pendingMap, new ConcurrentHashMap<>());
         PendingMsgHolder pendingMsgHolder = new PendingMsgHolder();
+        long startNanos = System.nanoTime();
         Future<?> packSubmitFuture = consumersExecutor.submit(() -> {
             orderedMsgList.forEach((element) -> {
                 UUID id = element.getUuid();
@@ -320,7 +332,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                 }
             });
         });
-        if (!processingTimeoutLatch.await(packProcessingTimeout, TimeUnit.MILLISECONDS)) {
+        if (processingTimeoutLatch.await(mainConsumer.getPackProcessingTimeout(consumer, msgs.size(), packProcessingTimeout), TimeUnit.MILLISECONDS)) {
+            mainConsumer.onPackProcessed(consumer, msgs.size(), System.nanoTime() - startNanos);
+        } else {
             if (!packSubmitFuture.isDone()) {
                 packSubmitFuture.cancel(true);
                 ToCoreMsg lastSubmitMsg = pendingMsgHolder.getToCoreMsg();
@@ -407,6 +421,8 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
             callback.onSuccess();
         } else if (toCoreNotification.hasResourceCacheInvalidateMsg()) {
             forwardToResourceService(toCoreNotification.getResourceCacheInvalidateMsg(), callback);
+        } else if (toCoreNotification.hasEntityChangeMsg()) {
+            forwardToEntityDataSubscriptionService(toCoreNotification.getEntityChangeMsg(), callback);
         }
         if (statsEnabled) {
             stats.log(toCoreNotification);
@@ -525,6 +541,16 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         callback.onSuccess();
     }
 
+    private void forwardToEntityDataSubscriptionService(TransportProtos.EntityChangeMsgProto msg, TbCallback callback) {
+        var tenantId = TenantId.fromUUID(new UUID(msg.getTenantIdMSB(), msg.getTenantIdLSB()));
+        if (msg.hasEntityType()) {
+            entityDataSubscriptionService.onEntityChange(tenantId, EntityType.valueOf(msg.getEntityType()));
+        } else {
+            entityDataSubscriptionService.onRelationChange(tenantId);
+        }
+        callback.onSuccess();
+    }
+
     private void forwardToSubMgrService(SubscriptionMgrMsgProto msg, TbCallback callback) {
         if (msg.hasSubEvent()) {
             TbEntitySubEventProto subEvent = msg.getSubEvent();
@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import io.micrometer.core.instrument.Timer;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.service.queue.ruleengine.TbMsgIdempotencyCache;
+
+import java.util.UUID;
+
+/*
+ * Marks the message as processed in the idempotency cache once it is successfully processed,
+ * including the case when it is processed after the pack timeout
+ * */
+public class TbIdempotentMsgPackCallback extends TbMsgPackCallback {
+
+    private final String queueName;
+    private final UUID msgId;
+    private final TbMsgIdempotencyCache idempotencyCache;
+
+    public TbIdempotentMsgPackCallback(UUID id, TenantId tenantId, TbMsgPackProcessingContext ctx, Timer successfulMsgTimer, Timer failedMsgTimer,
+                                       String queueName, UUID msgId, TbMsgIdempotencyCache idempotencyCache) {
+        super(id, tenantId, ctx, successfulMsgTimer, failedMsgTimer);
+        this.queueName = queueName;
+        this.msgId = msgId;
+        this.idempotencyCache = idempotencyCache;
+    }
+
+    @Override
+    public void onSuccess() {
+        idempotencyCache.markProcessed(queueName, msgId);
+        super.onSuccess();
+    }
+
+}
@@ -43,6 +43,10 @@ public class TbMsgPackProcessingContext {
     @Getter
     private final boolean profilerEnabled;
     private final AtomicInteger pendingCount;
+    @Getter
+    private final int packSize;
+    private final long startNanos = System.nanoTime();
+    private volatile long processingTimeNanos;
     private final CountDownLatch processingTimeoutLatch = new CountDownLatch(1);
     @Getter
     private final ConcurrentMap<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> pendingMap;
@@ -63,17 +67,43 @@ public class TbMsgPackProcessingContext {
         this.skipTimeoutMsgsPossible = skipTimeoutMsgsPossible;
         this.profilerEnabled = log.isDebugEnabled();
         this.pendingMap = submitStrategy.getPendingMap();
-        this.pendingCount = new AtomicInteger(pendingMap.size());
+        this.packSize = pendingMap.size();
+        this.pendingCount = new AtomicInteger(packSize);
     }
 
     public boolean await(long packProcessingTimeout, TimeUnit milliseconds) throws InterruptedException {
         boolean success = processingTimeoutLatch.await(packProcessingTimeout, milliseconds);
-        if (!success && profilerEnabled) {
-            msgProfilerMap.values().forEach(this::onTimeout);
+        if (!success) {
+            onPackTimeout();
         }
         return success;
     }
 
+    /*
+     * Unlike await, does not treat the pack as timed out if it is not processed within the given time
+     * */
+    public boolean awaitProcessed(long timeout, TimeUnit unit) throws InterruptedException {
+        return processingTimeoutLatch.await(timeout, unit);
+    }
+
+    public boolean isProcessed() {
+        return processingTimeoutLatch.getCount() == 0;
+    }
+
+    /*
+     * Time from the creation of the context till the last message of the pack is acknowledged,
+     * or 0 if the pack is not processed yet
+     * */
+    public long getProcessingTimeNanos() {
+        return processingTimeNanos;
+    }
+
+    public void onPackTimeout() {
+        if (profilerEnabled) {
+            msgProfilerMap.values().forEach(this::onTimeout);
+        }
+    }
+
     public void onSuccess(UUID id) {
         TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg;
         boolean empty = false;
@@ -84,6 +114,7 @@ public class TbMsgPackProcessingContext {
             submitStrategy.onSuccess(id);
         }
         if (empty) {
+            processingTimeNanos = System.nanoTime() - startNanos;
             processingTimeoutLatch.countDown();
         }
     }
@@ -98,6 +129,7 @@ public class TbMsgPackProcessingContext {
             exceptionsMap.putIfAbsent(tenantId, e);
         }
         if (empty) {
+            processingTimeNanos = System.nanoTime() - startNanos;
             processingTimeoutLatch.countDown();
         }
     }
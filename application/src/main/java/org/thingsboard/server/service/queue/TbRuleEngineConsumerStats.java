@@ -32,6 +32,8 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 public class TbRuleEngineConsumerStats {
@@ -45,6 +47,7 @@ public class TbRuleEngineConsumerStats {
     public static final String SUCCESSFUL_ITERATIONS = "successfulIterations";
     public static final String FAILED_ITERATIONS = "failedIterations";
     public static final String TENANT_ID_TAG = "tenantId";
+    public static final String CONSUMER_TAG = "consumer";
 
     private final StatsFactory statsFactory;
 
@@ -63,17 +66,21 @@ public class TbRuleEngineConsumerStats {
     private final ConcurrentMap<UUID, TbTenantRuleEngineStats> tenantStats = new ConcurrentHashMap<>();
     private final ConcurrentMap<TenantId, Timer> tenantMsgProcessTimers = new ConcurrentHashMap<>();
     private final ConcurrentMap<TenantId, RuleEngineException> tenantExceptions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> consumerPackTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> consumerLags = new ConcurrentHashMap<>();
 
     private final String queueName;
     private final TenantId tenantId;
+    private final String statsKey;
+    private final String tenant;
 
     public TbRuleEngineConsumerStats(QueueKey queueKey, StatsFactory statsFactory) {
         this.queueName = queueKey.getQueueName();
         this.tenantId = queueKey.getTenantId();
         this.statsFactory = statsFactory;
 
-        String statsKey = StatsType.RULE_ENGINE.getName() + "." + queueName;
-        String tenant = tenantId == null || tenantId.isSysTenantId() ? "system" : tenantId.toString();
+        this.statsKey = StatsType.RULE_ENGINE.getName() + "." + queueName;
+        this.tenant = tenantId == null || tenantId.isSysTenantId() ? "system" : tenantId.toString();
         this.totalMsgCounter = statsFactory.createStatsCounter(statsKey, TOTAL_MSGS, TENANT_ID_TAG, tenant);
         this.successMsgCounter = statsFactory.createStatsCounter(statsKey, SUCCESSFUL_MSGS, TENANT_ID_TAG, tenant);
         this.timeoutMsgCounter = statsFactory.createStatsCounter(statsKey, TIMEOUT_MSGS, TENANT_ID_TAG, tenant);
@@ -102,6 +109,13 @@ public class TbRuleEngineConsumerStats {
                 ));
     }
 
+    public void logConsumerPack(String consumerKey, long durationNanos, long lag) {
+        consumerPackTimers.computeIfAbsent(consumerKey, key -> statsFactory.createTimer(statsKey + ".packDuration",
+                TENANT_ID_TAG, tenant, CONSUMER_TAG, key)).record(durationNanos, TimeUnit.NANOSECONDS);
+        consumerLags.computeIfAbsent(consumerKey, key -> statsFactory.createGauge(statsKey + ".consumerLag", new AtomicLong(),
+                TENANT_ID_TAG, tenant, CONSUMER_TAG, key)).set(lag);
+    }
+
     public void log(TbRuleEngineProcessingResult msg, boolean finalIterationForPack) {
         int success = msg.getSuccessMap().size();
         int pending = msg.getPendingMap().size();
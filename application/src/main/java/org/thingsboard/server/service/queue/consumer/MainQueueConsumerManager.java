@@ -23,6 +23,8 @@ import org.thingsboard.server.common.data.queue.QueueConfig;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.common.consumer.QueueConsumerTuner;
+import org.thingsboard.server.queue.common.consumer.QueueConsumerTunerFactory;
 import org.thingsboard.server.queue.discovery.QueueKey;
 import org.thingsboard.server.service.queue.ruleengine.QueueEvent;
 import org.thingsboard.server.service.queue.ruleengine.TbQueueConsumerManagerTask;
@@ -30,12 +32,15 @@ import org.thingsboard.server.service.queue.ruleengine.TbQueueConsumerTask;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -55,8 +60,11 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
     protected final ExecutorService consumerExecutor;
     protected final ScheduledExecutorService scheduler;
     protected final ExecutorService taskExecutor;
+    protected final int consumersCount;
+    protected final QueueConsumerTunerFactory tunerFactory;
 
     private final java.util.Queue<TbQueueConsumerManagerTask> tasks = new ConcurrentLinkedQueue<>();
+    private final ConcurrentMap<TbQueueConsumer<M>, QueueConsumerTuner> tuners = new ConcurrentHashMap<>();
     private final ReentrantLock lock = new ReentrantLock();
 
     @Getter
@@ -70,7 +78,9 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
                                     BiFunction<C, Integer, TbQueueConsumer<M>> consumerCreator,
                                     ExecutorService consumerExecutor,
                                     ScheduledExecutorService scheduler,
-                                    ExecutorService taskExecutor) {
+                                    ExecutorService taskExecutor,
+                                    int consumersCount,
+                                    QueueConsumerTunerFactory tunerFactory) {
         this.queueKey = queueKey;
         this.config = config;
         this.msgPackProcessor = msgPackProcessor;
@@ -78,6 +88,8 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
         this.consumerExecutor = consumerExecutor;
         this.scheduler = scheduler;
         this.taskExecutor = taskExecutor;
+        this.consumersCount = consumersCount;
+        this.tunerFactory = tunerFactory;
         if (config != null) {
             init(config);
         }
@@ -87,6 +99,8 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
         this.config = config;
         if (config.isConsumerPerPartition()) {
             this.consumerWrapper = new ConsumerPerPartitionWrapper();
+        } else if (consumersCount > 1) {
+            this.consumerWrapper = new ConsumerGroupWrapper();
         } else {
             this.consumerWrapper = new SingleConsumerWrapper();
         }
@@ -192,7 +206,7 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
         Future<?> consumerLoop = consumerExecutor.submit(() -> {
             ThingsBoardThreadFactory.updateCurrentThreadName(consumerTask.getKey().toString());
             try {
-                consumerLoop(consumerTask.getConsumer());
+                consumerLoop(consumerTask);
             } catch (Throwable e) {
                 log.error("Failure in consumer loop", e);
             }
@@ -201,14 +215,23 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
         consumerTask.setTask(consumerLoop);
     }
 
-    private void consumerLoop(TbQueueConsumer<M> consumer) {
+    private void consumerLoop(TbQueueConsumerTask<M> consumerTask) {
+        TbQueueConsumer<M> consumer = consumerTask.getConsumer();
+        QueueConsumerTuner tuner = tunerFactory != null ? tunerFactory.getTuner(consumerTask.getKey().toString()) : QueueConsumerTuner.DISABLED;
+        tuners.put(consumer, tuner);
         while (!stopped && !consumer.isStopped()) {
             try {
-                List<M> msgs = consumer.poll(config.getPollInterval());
+                List<M> msgs = consumer.poll(tuner.getPollInterval(config.getPollInterval()));
                 if (msgs.isEmpty()) {
+                    tuner.onEmptyPoll(config.getPollInterval(), consumer.getLag());
+                    onEmptyPoll(consumer, config);
                     continue;
                 }
+                tuner.onMsgsPolled(config.getPollInterval());
+                long startNanos = System.nanoTime();
                 processMsgs(msgs, consumer, config);
+                long durationNanos = System.nanoTime() - startNanos;
+                onMsgsProcessed(consumerTask, durationNanos);
             } catch (Exception e) {
                 if (!consumer.isStopped()) {
                     log.warn("Failed to process messages from queue", e);
@@ -220,15 +243,42 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
                 }
             }
         }
+        tuners.remove(consumer);
+        onConsumerStopped(consumer);
         if (consumer.isStopped()) {
             consumer.unsubscribe();
         }
     }
 
+    /*
+     * Returns the timeout for processing of the pack polled by the consumer.
+     * Equals to the configured timeout unless the consumer tuning is enabled
+     * */
+    public long getPackProcessingTimeout(TbQueueConsumer<M> consumer, int packSize, long configuredTimeout) {
+        return tuners.getOrDefault(consumer, QueueConsumerTuner.DISABLED).getPackProcessingTimeout(packSize, configuredTimeout);
+    }
+
+    /*
+     * Samples the processing time of the pack for the consumer tuning.
+     * Is called by the pack processor only for the packs processed in full within the first attempt
+     * */
+    public void onPackProcessed(TbQueueConsumer<M> consumer, int packSize, long durationNanos) {
+        tuners.getOrDefault(consumer, QueueConsumerTuner.DISABLED).onPackProcessed(packSize, durationNanos);
+    }
+
     protected void processMsgs(List<M> msgs, TbQueueConsumer<M> consumer, C config) throws Exception {
         msgPackProcessor.process(msgs, consumer, config);
     }
 
+    protected void onEmptyPoll(TbQueueConsumer<M> consumer, C config) throws Exception {
+    }
+
+    protected void onConsumerStopped(TbQueueConsumer<M> consumer) {
+    }
+
+    protected void onMsgsProcessed(TbQueueConsumerTask<M> consumerTask, long durationNanos) {
+    }
+
     public void stop() {
         log.debug("[{}] Stopping consumers", queueKey);
         consumerWrapper.getConsumers().forEach(TbQueueConsumerTask::initiateStop);
@@ -288,6 +338,59 @@ public class MainQueueConsumerManager<M extends TbQueueMsg, C extends QueueConfi
         }
     }
 
+    /*
+     * Runs a fixed number of consumers, each consuming a disjoint subset of the partitions.
+     * The owned partitions are sorted and dealt out round-robin, so that the consumers get an even share of them
+     * even when the partitions owned by this node are not contiguous (e.g. 0, 3, 6, 9 with 3 nodes).
+     * Only the consumers whose subset has changed are resubscribed on rebalance
+     * */
+    class ConsumerGroupWrapper implements ConsumerWrapper<M> {
+        private final Map<Integer, TbQueueConsumerTask<M>> consumers = new HashMap<>();
+        private Map<Integer, Set<TopicPartitionInfo>> assignments = Collections.emptyMap();
+
+        @Override
+        public void updatePartitions(Set<TopicPartitionInfo> partitions) {
+            List<TopicPartitionInfo> sortedPartitions = partitions.stream()
+                    .sorted(Comparator.comparing(TopicPartitionInfo::getTopic)
+                            .thenComparing(tpi -> tpi.getPartition().orElse(0)))
+                    .toList();
+            Map<Integer, Set<TopicPartitionInfo>> newAssignments = new HashMap<>();
+            for (int i = 0; i < sortedPartitions.size(); i++) {
+                int consumerIdx = i % consumersCount;
+                newAssignments.computeIfAbsent(consumerIdx, idx -> new HashSet<>()).add(sortedPartitions.get(i));
+            }
+            log.info("[{}] New partitions: {}, active consumers: {}", queueKey, partitionsToString(partitions), newAssignments.size());
+
+            Set<Integer> removedConsumers = new HashSet<>(consumers.keySet());
+            removedConsumers.removeAll(newAssignments.keySet());
+            removedConsumers.forEach(idx -> consumers.get(idx).initiateStop());
+            removedConsumers.forEach(idx -> consumers.remove(idx).awaitCompletion());
+
+            Map<Integer, Set<TopicPartitionInfo>> oldAssignments = assignments;
+            newAssignments.forEach((idx, consumerPartitions) -> {
+                TbQueueConsumerTask<M> consumer = consumers.get(idx);
+                if (consumer != null && consumerPartitions.equals(oldAssignments.get(idx))) {
+                    return;
+                }
+                if (consumer == null) {
+                    consumer = new TbQueueConsumerTask<>(queueKey + "-consumer-" + idx, () -> consumerCreator.apply(config, null)); // no partitionId passed, same as for the single consumer
+                    consumers.put(idx, consumer);
+                }
+                log.debug("[{}] Consumer {} partitions: {}", queueKey, idx, partitionsToString(consumerPartitions));
+                consumer.subscribe(consumerPartitions);
+                if (!consumer.isRunning()) {
+                    launchConsumer(consumer);
+                }
+            });
+            assignments = newAssignments;
+        }
+
+        @Override
+        public Collection<TbQueueConsumerTask<M>> getConsumers() {
+            return consumers.values();
+        }
+    }
+
     class SingleConsumerWrapper implements ConsumerWrapper<M> {
         private TbQueueConsumerTask<M> consumer;
 
@@ -19,10 +19,13 @@ import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 public abstract class AbstractTbRuleEngineSubmitStrategy implements TbRuleEngineSubmitStrategy {
@@ -30,6 +33,7 @@ public abstract class AbstractTbRuleEngineSubmitStrategy implements TbRuleEngine
     protected final String queueName;
     protected List<IdMsgPair<TransportProtos.ToRuleEngineMsg>> orderedMsgList;
     private volatile boolean stopped;
+    private final ThreadLocal<Deque<IdMsgPair<TransportProtos.ToRuleEngineMsg>>> nestedSubmits = new ThreadLocal<>();
 
     public AbstractTbRuleEngineSubmitStrategy(String queueName) {
         this.queueName = queueName;
@@ -74,6 +78,28 @@ public abstract class AbstractTbRuleEngineSubmitStrategy implements TbRuleEngine
         }
     }
 
+    /*
+     * A message may be acknowledged on the submitting thread (e.g. the one skipped by the idempotency cache),
+     * and the acknowledgement submits the next message. Such nested submits are queued and run in a loop by the outermost one,
+     * so a long chain of the synchronously acknowledged messages does not grow the stack
+     * */
+    protected void submit(BiConsumer<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgConsumer, IdMsgPair<TransportProtos.ToRuleEngineMsg> pair) {
+        Deque<IdMsgPair<TransportProtos.ToRuleEngineMsg>> pending = nestedSubmits.get();
+        if (pending != null) {
+            pending.add(pair);
+            return;
+        }
+        pending = new ArrayDeque<>();
+        nestedSubmits.set(pending);
+        try {
+            do {
+                msgConsumer.accept(pair.uuid, pair.msg);
+            } while ((pair = pending.poll()) != null);
+        } finally {
+            nestedSubmits.remove();
+        }
+    }
+
     @Override
     public void stop() {
         stopped = true;
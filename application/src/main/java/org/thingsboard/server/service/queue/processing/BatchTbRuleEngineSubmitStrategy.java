@@ -19,7 +19,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
@@ -68,20 +70,20 @@ public class BatchTbRuleEngineSubmitStrategy extends AbstractTbRuleEngineSubmitS
         int listSize = orderedMsgList.size();
         int startIdx = Math.min(packIdx.get() * batchSize, listSize);
         int endIdx = Math.min(startIdx + batchSize, listSize);
-        Map<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> tmpPack;
+        List<IdMsgPair<TransportProtos.ToRuleEngineMsg>> tmpPack;
         synchronized (pendingPack) {
             pendingPack.clear();
             for (int i = startIdx; i < endIdx; i++) {
                 IdMsgPair<TransportProtos.ToRuleEngineMsg> pair = orderedMsgList.get(i);
                 pendingPack.put(pair.uuid, pair.msg);
             }
-            tmpPack = new LinkedHashMap<>(pendingPack);
+            tmpPack = new ArrayList<>(orderedMsgList.subList(startIdx, endIdx));
         }
         int submitSize = pendingPack.size();
         if (log.isDebugEnabled() && submitSize > 0) {
             log.debug("[{}] submitting [{}] messages to rule engine", queueName, submitSize);
         }
-        tmpPack.forEach(msgConsumer);
+        tmpPack.forEach(pair -> submit(msgConsumer, pair));
     }
 
 }
@@ -20,9 +20,12 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -34,6 +37,7 @@ public abstract class SequentialByEntityIdTbRuleEngineSubmitStrategy extends Abs
     private volatile BiConsumer<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgConsumer;
     private volatile ConcurrentMap<UUID, EntityId> msgToEntityIdMap = new ConcurrentHashMap<>();
     private volatile ConcurrentMap<EntityId, Queue<IdMsgPair<TransportProtos.ToRuleEngineMsg>>> entityIdToListMap = new ConcurrentHashMap<>();
+    private volatile Set<EntityId> orderedEntityIds = Collections.emptySet();
 
     public SequentialByEntityIdTbRuleEngineSubmitStrategy(String queueName) {
         super(queueName);
@@ -43,6 +47,12 @@ public abstract class SequentialByEntityIdTbRuleEngineSubmitStrategy extends Abs
     public void init(List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgs) {
         super.init(msgs);
         initMaps();
+        orderedEntityIds = new HashSet<>(entityIdToListMap.keySet());
+    }
+
+    @Override
+    public Set<EntityId> getOrderedEntityIds() {
+        return orderedEntityIds;
     }
 
     @Override
@@ -51,7 +61,7 @@ public abstract class SequentialByEntityIdTbRuleEngineSubmitStrategy extends Abs
         entityIdToListMap.forEach((entityId, queue) -> {
             IdMsgPair<TransportProtos.ToRuleEngineMsg> msg = queue.peek();
             if (msg != null) {
-                msgConsumer.accept(msg.uuid, msg.msg);
+                submit(msgConsumer, msg);
             }
         });
     }
@@ -77,7 +87,7 @@ public abstract class SequentialByEntityIdTbRuleEngineSubmitStrategy extends Abs
                     }
                 }
                 if (next != null) {
-                    msgConsumer.accept(next.uuid, next.msg);
+                    submit(msgConsumer, next);
                 }
             }
         }
@@ -87,7 +97,7 @@ public abstract class SequentialByEntityIdTbRuleEngineSubmitStrategy extends Abs
         msgToEntityIdMap.clear();
         entityIdToListMap.clear();
         for (IdMsgPair<TransportProtos.ToRuleEngineMsg> pair : orderedMsgList) {
-            EntityId entityId = getEntityId(pair.msg.getValue());
+            EntityId entityId = getEntityId(pair.msg);
             if (entityId != null) {
                 msgToEntityIdMap.put(pair.uuid, entityId);
                 entityIdToListMap.computeIfAbsent(entityId, id -> new LinkedList<>()).add(pair);
@@ -95,6 +105,6 @@ public abstract class SequentialByEntityIdTbRuleEngineSubmitStrategy extends Abs
         }
     }
 
-    protected abstract EntityId getEntityId(TransportProtos.ToRuleEngineMsg msg);
+    protected abstract EntityId getEntityId(TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg);
 
 }
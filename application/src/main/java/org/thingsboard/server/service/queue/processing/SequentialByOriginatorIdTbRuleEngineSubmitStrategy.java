@@ -18,11 +18,9 @@ package org.thingsboard.server.service.queue.processing;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.id.EntityId;
-import org.thingsboard.server.common.data.id.EntityIdFactory;
-import org.thingsboard.server.common.msg.gen.MsgProtos;
 import org.thingsboard.server.gen.transport.TransportProtos;
-
-import java.util.UUID;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.common.TbRuleEngineMsgRouting;
 
 @Slf4j
 public class SequentialByOriginatorIdTbRuleEngineSubmitStrategy extends SequentialByEntityIdTbRuleEngineSubmitStrategy {
@@ -32,12 +30,11 @@ public class SequentialByOriginatorIdTbRuleEngineSubmitStrategy extends Sequenti
     }
 
     @Override
-    protected EntityId getEntityId(TransportProtos.ToRuleEngineMsg msg) {
+    protected EntityId getEntityId(TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg) {
         try {
-            MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(msg.getTbMsg());
-            return EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
+            return TbRuleEngineMsgRouting.of(msg).originator();
         } catch (InvalidProtocolBufferException e) {
-            log.warn("[{}] Failed to parse TbMsg: {}", queueName, msg);
+            log.warn("[{}] Failed to parse TbMsg: {}", queueName, msg.getKey());
             return null;
         }
     }
@@ -18,6 +18,8 @@ package org.thingsboard.server.service.queue.processing;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.common.TbRuleEngineQueueMsg;
 
 import java.util.UUID;
 
@@ -28,7 +30,11 @@ public class SequentialByTenantIdTbRuleEngineSubmitStrategy extends SequentialBy
     }
 
     @Override
-    protected EntityId getEntityId(TransportProtos.ToRuleEngineMsg msg) {
-        return TenantId.fromUUID(new UUID(msg.getTenantIdMSB(), msg.getTenantIdLSB()));
+    protected EntityId getEntityId(TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg) {
+        if (msg instanceof TbRuleEngineQueueMsg reMsg) {
+            return reMsg.getRouting().tenantId();
+        }
+        TransportProtos.ToRuleEngineMsg value = msg.getValue();
+        return TenantId.fromUUID(new UUID(value.getTenantIdMSB(), value.getTenantIdLSB()));
     }
 }
@@ -15,10 +15,13 @@
  */
 package org.thingsboard.server.service.queue.processing;
 
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiConsumer;
@@ -36,4 +39,13 @@ public interface TbRuleEngineSubmitStrategy {
     void onSuccess(UUID id);
 
     void stop();
+
+    /**
+     * Returns the entities (originators or tenants) the processing order of messages is preserved for,
+     * or {@code null} if the processing order of all messages is preserved.
+     */
+    default Set<EntityId> getOrderedEntityIds() {
+        return Collections.emptySet();
+    }
+
 }
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.ruleengine;
+
+import com.google.common.hash.Hashing;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.queue.util.TbRuleEngineComponent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded set of the ids of the messages successfully processed by this Rule Engine service.
+ * Consulted before a message is submitted to the rule chain, so that the messages that are retried
+ * or consumed again after a partition returns to this service are not processed twice.
+ * The ids are scoped by the queue, because a message that is re-enqueued to another queue keeps its id.
+ *
+ * The ids, with the 64-bit hash of the queue name mixed into the most significant bits, are stored as pairs of longs in a set-associative table: an id may only occupy one of the WAYS slots of its set,
+ * and a new id replaces the oldest one of the set. So the memory is fixed and nothing is allocated per id.
+ * */
+@Slf4j
+@Component
+@TbRuleEngineComponent
+public class TbMsgIdempotencyCache {
+
+    private static final int WAYS = 8;
+    private static final int LOCKS = 256;
+
+    @Getter
+    @Value("${queue.rule-engine.idempotency-cache.enabled:false}")
+    private boolean enabled;
+    @Value("${queue.rule-engine.idempotency-cache.max-size:1000000}")
+    private int maxSize;
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+
+    private long[] ids;
+    private byte[] nextWay;
+    private int setMask;
+    private final Object[] locks = new Object[LOCKS];
+    private final ConcurrentMap<String, Long> queueHashes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+    private DefaultCounter hits;
+    private DefaultCounter misses;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int sets = Integer.highestOneBit(Math.max(maxSize / WAYS, 1));
+        setMask = sets - 1;
+        ids = new long[sets * WAYS * 2];
+        nextWay = new byte[sets];
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+        if (statsFactory != null) {
+            hits = statsFactory.createDefaultCounter("ruleEngineIdempotencyCacheHits");
+            misses = statsFactory.createDefaultCounter("ruleEngineIdempotencyCacheMisses");
+            statsFactory.createGauge("ruleEngineIdempotencyCacheSize", size);
+            statsFactory.createGauge("ruleEngineIdempotencyCacheMemory", new AtomicLong(getMemoryUsage()));
+        }
+        log.info("Initialized idempotency cache for {} message ids, {} bytes", sets * WAYS, getMemoryUsage());
+    }
+
+    public boolean isProcessed(String queueName, UUID id) {
+        long msb = id.getMostSignificantBits() ^ getQueueHash(queueName);
+        long lsb = id.getLeastSignificantBits();
+        int set = getSet(msb, lsb);
+        boolean found = false;
+        synchronized (locks[set & (LOCKS - 1)]) {
+            int offset = set * WAYS * 2;
+            for (int i = 0; i < WAYS * 2; i += 2) {
+                if (ids[offset + i] == msb && ids[offset + i + 1] == lsb) {
+                    found = true;
+                    break;
+                }
+            }
+        }
+        if (hits != null) {
+            (found ? hits : misses).increment();
+        }
+        return found;
+    }
+
+    public void markProcessed(String queueName, UUID id) {
+        long msb = id.getMostSignificantBits() ^ getQueueHash(queueName);
+        long lsb = id.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            return; // reserved for the empty slot
+        }
+        int set = getSet(msb, lsb);
+        synchronized (locks[set & (LOCKS - 1)]) {
+            int offset = set * WAYS * 2;
+            for (int i = 0; i < WAYS * 2; i += 2) {
+                if (ids[offset + i] == msb && ids[offset + i + 1] == lsb) {
+                    return;
+                }
+            }
+            int way = nextWay[set];
+            nextWay[set] = (byte) ((way + 1) % WAYS);
+            int slot = offset + way * 2;
+            if (ids[slot] == 0 && ids[slot + 1] == 0) {
+                size.incrementAndGet();
+            }
+            ids[slot] = msb;
+            ids[slot + 1] = lsb;
+        }
+    }
+
+    public long getMemoryUsage() {
+        return ids != null ? (long) ids.length * Long.BYTES + nextWay.length : 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private long getQueueHash(String queueName) {
+        return queueHashes.computeIfAbsent(queueName, name -> Hashing.murmur3_128().hashString(name, StandardCharsets.UTF_8).asLong());
+    }
+
+    private int getSet(long msb, long lsb) {
+        long hash = msb ^ lsb;
+        hash ^= (hash >>> 32);
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & setMask;
+    }
+
+}
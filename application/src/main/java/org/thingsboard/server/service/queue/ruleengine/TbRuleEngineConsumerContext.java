@@ -22,10 +22,12 @@ import org.springframework.stereotype.Component;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.common.consumer.QueueConsumerTunerFactory;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
 import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
 import org.thingsboard.server.queue.provider.TbRuleEngineQueueFactory;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 import org.thingsboard.server.queue.util.TbRuleEngineComponent;
 import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategyFactory;
 import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategyFactory;
@@ -49,6 +51,10 @@ public class TbRuleEngineConsumerContext {
     private int topicDeletionDelayInSec;
     @Value("${queue.rule-engine.management-thread-pool-size:12}")
     private int mgmtThreadPoolSize;
+    @Value("${queue.rule-engine.max-packs-in-flight:1}")
+    private int maxPacksInFlight;
+    @Value("${queue.rule-engine.consumers-count:1}")
+    private int consumersCount;
 
     private final ActorSystemContext actorContext;
     private final StatsFactory statsFactory;
@@ -60,5 +66,8 @@ public class TbRuleEngineConsumerContext {
     private final PartitionService partitionService;
     private final TbQueueProducerProvider producerProvider;
     private final TbQueueAdmin queueAdmin;
+    private final QueueConsumerTunerFactory consumerTunerFactory;
+    private final TbQueueRuleEngineSettings ruleEngineSettings;
+    private final TbMsgIdempotencyCache idempotencyCache;
 
 }
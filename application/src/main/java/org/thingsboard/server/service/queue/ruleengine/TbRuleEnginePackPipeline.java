@@ -0,0 +1,168 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.ruleengine;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.queue.TbQueueOffsets;
+import org.thingsboard.server.service.queue.TbMsgPackProcessingContext;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategy;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategy;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs of a single consumer that are submitted to the rule engine but not committed yet, in the poll order.
+ * A pack is not submitted while an earlier pack contains messages of the same originator (or tenant) and the submit
+ * strategy preserves their order. Offsets are committed up to the last pack of the processed prefix.
+ * Not thread-safe, is accessed by the consumer thread only.
+ */
+class TbRuleEnginePackPipeline {
+
+    private final int maxPacks;
+    private final Deque<Pack> packs = new ArrayDeque<>();
+    private final Map<EntityId, Integer> inProgressEntityIds = new HashMap<>();
+    private int inProgressSequentialPacks;
+
+    TbRuleEnginePackPipeline(int maxPacks) {
+        this.maxPacks = maxPacks;
+    }
+
+    boolean canSubmit(Pack pack) {
+        if (packs.size() >= maxPacks) {
+            return false;
+        }
+        if (inProgressSequentialPacks > 0) {
+            return false;
+        }
+        Set<EntityId> entityIds = pack.getOrderedEntityIds();
+        if (entityIds == null) {
+            return packs.stream().allMatch(Pack::isProcessed);
+        }
+        for (EntityId entityId : entityIds) {
+            if (inProgressEntityIds.containsKey(entityId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(Pack pack) {
+        packs.add(pack);
+        Set<EntityId> entityIds = pack.getOrderedEntityIds();
+        if (entityIds == null) {
+            inProgressSequentialPacks++;
+        } else {
+            entityIds.forEach(entityId -> inProgressEntityIds.merge(entityId, 1, Integer::sum));
+        }
+    }
+
+    void onProcessed(Pack pack) {
+        pack.processed = true;
+        Set<EntityId> entityIds = pack.getOrderedEntityIds();
+        if (entityIds == null) {
+            inProgressSequentialPacks--;
+        } else {
+            entityIds.forEach(entityId -> inProgressEntityIds.computeIfPresent(entityId, (id, count) -> count > 1 ? count - 1 : null));
+        }
+    }
+
+    /**
+     * Removes the processed packs from the head of the pipeline.
+     * Offsets of the topics the consumer is no longer subscribed to are dropped: the packs polled from
+     * the revoked partitions are consumed again by their new owner, which commits them instead.
+     *
+     * @param topics full names of the topics the consumer is currently subscribed to
+     * @return offsets to commit, or null if the oldest pack is not processed yet or there is nothing to commit
+     */
+    TbQueueOffsets pollProcessed(Collection<String> topics) {
+        TbQueueOffsets offsets = null;
+        while (!packs.isEmpty() && packs.peekFirst().isProcessed()) {
+            Pack pack = packs.pollFirst();
+            if (offsets == null) {
+                offsets = new TbQueueOffsets();
+            }
+            offsets.update(pack.getOffsets());
+        }
+        if (offsets != null) {
+            offsets.retainTopics(topics);
+            if (offsets.isEmpty()) {
+                return null;
+            }
+        }
+        return offsets;
+    }
+
+    Pack getOldest() {
+        return packs.peekFirst();
+    }
+
+    Collection<Pack> getPacks() {
+        return packs;
+    }
+
+    boolean isEmpty() {
+        return packs.isEmpty();
+    }
+
+    void clear() {
+        packs.forEach(pack -> {
+            pack.getSubmitStrategy().stop();
+            if (pack.getCtx() != null) {
+                pack.getCtx().cleanup();
+            }
+        });
+        packs.clear();
+        inProgressEntityIds.clear();
+        inProgressSequentialPacks = 0;
+    }
+
+    @Getter
+    static class Pack {
+
+        private final TbRuleEngineSubmitStrategy submitStrategy;
+        private final TbRuleEngineProcessingStrategy ackStrategy;
+        private final TbQueueOffsets offsets;
+        private final Set<EntityId> orderedEntityIds;
+        @Setter
+        private TbMsgPackProcessingContext ctx;
+        @Setter
+        private long processingTimeout;
+        @Setter
+        private long deadline;
+        private int attempts;
+        private boolean processed;
+
+        Pack(TbRuleEngineSubmitStrategy submitStrategy, TbRuleEngineProcessingStrategy ackStrategy, TbQueueOffsets offsets) {
+            this.submitStrategy = submitStrategy;
+            this.ackStrategy = ackStrategy;
+            this.offsets = offsets;
+            this.orderedEntityIds = submitStrategy.getOrderedEntityIds();
+        }
+
+        void onAttempt() {
+            attempts++;
+        }
+
+    }
+
+}
@@ -16,14 +16,14 @@
 package org.thingsboard.server.service.queue.ruleengine;
 
 import com.google.protobuf.ProtocolStringList;
+import io.micrometer.core.instrument.Timer;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.id.EntityId;
-import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.queue.Queue;
 import org.thingsboard.server.common.msg.TbMsg;
-import org.thingsboard.server.common.msg.gen.MsgProtos;
 import org.thingsboard.server.common.msg.queue.QueueToRuleEngineMsg;
 import org.thingsboard.server.common.msg.queue.RuleEngineException;
 import org.thingsboard.server.common.msg.queue.RuleNodeInfo;
@@ -32,8 +32,15 @@ import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
 import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueueOffsets;
+import org.thingsboard.server.queue.common.TbPriorityLaneQueueConsumer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.common.TbRuleEngineBatchingProducer;
+import org.thingsboard.server.queue.common.TbRuleEngineMsgRouting;
+import org.thingsboard.server.queue.common.TbRuleEngineQueueMsg;
 import org.thingsboard.server.queue.discovery.QueueKey;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
+import org.thingsboard.server.service.queue.TbIdempotentMsgPackCallback;
 import org.thingsboard.server.service.queue.TbMsgPackCallback;
 import org.thingsboard.server.service.queue.TbMsgPackProcessingContext;
 import org.thingsboard.server.service.queue.TbRuleEngineConsumerStats;
@@ -49,11 +56,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings.PRIORITY_LANE_TOPIC_SUFFIX;
+
 @Slf4j
 public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<TbProtoQueueMsg<ToRuleEngineMsg>, Queue> {
 
@@ -62,6 +73,7 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
 
     private final TbRuleEngineConsumerContext ctx;
     private final TbRuleEngineConsumerStats stats;
+    private final ConcurrentMap<TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>>, TbRuleEnginePackPipeline> pipelines = new ConcurrentHashMap<>();
 
     @Builder(builderMethodName = "create") // not to conflict with super.builder()
     public TbRuleEngineQueueConsumerManager(TbRuleEngineConsumerContext ctx,
@@ -69,11 +81,25 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
                                             ExecutorService consumerExecutor,
                                             ScheduledExecutorService scheduler,
                                             ExecutorService taskExecutor) {
-        super(queueKey, null, null, ctx.getQueueFactory()::createToRuleEngineMsgConsumer, consumerExecutor, scheduler, taskExecutor);
+        super(queueKey, null, null, (queue, partitionId) -> createConsumer(ctx, queue, partitionId), consumerExecutor, scheduler, taskExecutor,
+                ctx.getConsumersCount(), ctx.getConsumerTunerFactory());
         this.ctx = ctx;
         this.stats = new TbRuleEngineConsumerStats(queueKey, ctx.getStatsFactory());
     }
 
+    private static TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> createConsumer(TbRuleEngineConsumerContext ctx, Queue queue, Integer partitionId) {
+        TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer = ctx.getQueueFactory().createToRuleEngineMsgConsumer(queue, partitionId);
+        TbQueueRuleEngineSettings settings = ctx.getRuleEngineSettings();
+        if (!settings.isPriorityLaneEnabled(queue.getName())) {
+            return consumer;
+        }
+        Queue priorityLaneQueue = JacksonUtil.clone(queue);
+        priorityLaneQueue.setName(queue.getName() + PRIORITY_LANE_TOPIC_SUFFIX);
+        priorityLaneQueue.setTopic(queue.getTopic() + PRIORITY_LANE_TOPIC_SUFFIX);
+        TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> priorityLaneConsumer = ctx.getQueueFactory().createToRuleEngineMsgConsumer(priorityLaneQueue, partitionId);
+        return new TbPriorityLaneQueueConsumer<>(consumer, priorityLaneConsumer, PRIORITY_LANE_TOPIC_SUFFIX, settings.getPriorityLaneWeight());
+    }
+
     public void delete(boolean drainQueue) {
         addTask(TbQueueConsumerManagerTask.delete(drainQueue));
     }
@@ -119,39 +145,151 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
     protected void processMsgs(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs,
                                TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer,
                                Queue queue) throws Exception {
+        msgs = TbRuleEngineBatchingProducer.unpack(msgs);
+        if (isPipelined(consumer)) {
+            processMsgsPipelined(msgs, consumer, queue);
+            return;
+        }
         TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(queue);
         TbRuleEngineProcessingStrategy ackStrategy = getProcessingStrategy(queue);
         submitStrategy.init(msgs);
+        long packProcessingTimeout = getPackProcessingTimeout(consumer, msgs.size(), queue.getPackProcessingTimeout());
+        boolean retried = false;
         while (!stopped && !consumer.isStopped()) {
             TbMsgPackProcessingContext packCtx = new TbMsgPackProcessingContext(queue.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
             submitStrategy.submitAttempt((id, msg) -> submitMessage(packCtx, id, msg));
 
-            final boolean timeout = !packCtx.await(queue.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
+            final boolean timeout = !packCtx.await(packProcessingTimeout, TimeUnit.MILLISECONDS);
 
-            TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(queue.getName(), timeout, packCtx);
-            if (timeout) {
-                printFirstOrAll(packCtx, packCtx.getPendingMap(), "Timeout");
-            }
-            if (!packCtx.getFailedMap().isEmpty()) {
-                printFirstOrAll(packCtx, packCtx.getFailedMap(), "Failed");
+            TbRuleEngineProcessingDecision decision = analyze(packCtx, timeout, ackStrategy, queue);
+            if (decision.isCommit()) {
+                submitStrategy.stop();
+                consumer.commit();
+                if (!timeout && !retried) {
+                    onPackProcessed(consumer, packCtx.getPackSize(), packCtx.getProcessingTimeNanos());
+                }
+                break;
+            } else {
+                submitStrategy.update(decision.getReprocessMap());
+                retried = true;
             }
-            packCtx.printProfilerStats();
+        }
+    }
 
-            TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-            if (ctx.isStatsEnabled()) {
-                stats.log(result, decision.isCommit());
+    private void processMsgsPipelined(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs,
+                                      TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer,
+                                      Queue queue) throws InterruptedException {
+        TbRuleEnginePackPipeline pipeline = pipelines.computeIfAbsent(consumer, c -> new TbRuleEnginePackPipeline(ctx.getMaxPacksInFlight()));
+        TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(queue);
+        submitStrategy.init(msgs);
+        TbRuleEnginePackPipeline.Pack pack = new TbRuleEnginePackPipeline.Pack(submitStrategy, getProcessingStrategy(queue), consumer.getLastPolledOffsets());
+        pack.setProcessingTimeout(getPackProcessingTimeout(consumer, msgs.size(), queue.getPackProcessingTimeout()));
+        while (!pipeline.canSubmit(pack)) {
+            if (stopped || consumer.isStopped()) {
+                submitStrategy.stop();
+                return;
             }
+            TbRuleEnginePackPipeline.Pack oldest = pipeline.getOldest();
+            long waitTime = Math.min(queue.getPollInterval(), oldest.getDeadline() - System.currentTimeMillis());
+            if (waitTime > 0) {
+                oldest.getCtx().awaitProcessed(waitTime, TimeUnit.MILLISECONDS);
+            }
+            processPipeline(pipeline, consumer, queue);
+        }
+        pipeline.add(pack);
+        submitAttempt(pack, queue);
+        processPipeline(pipeline, consumer, queue);
+    }
 
-            packCtx.cleanup();
+    @Override
+    protected void onEmptyPoll(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue queue) {
+        TbRuleEnginePackPipeline pipeline = pipelines.get(consumer);
+        if (pipeline != null && !pipeline.isEmpty()) {
+            processPipeline(pipeline, consumer, queue);
+        }
+    }
+
+    @Override
+    protected void onMsgsProcessed(TbQueueConsumerTask<TbProtoQueueMsg<ToRuleEngineMsg>> consumerTask, long durationNanos) {
+        if (ctx.isStatsEnabled()) {
+            stats.logConsumerPack(consumerTask.getKey().toString(), durationNanos, consumerTask.getConsumer().getLag());
+        }
+    }
 
+    @Override
+    protected void onConsumerStopped(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer) {
+        TbRuleEnginePackPipeline pipeline = pipelines.remove(consumer);
+        if (pipeline != null) {
+            // uncommitted packs will be consumed again by the next owner of the partitions
+            pipeline.clear();
+        }
+    }
+
+    private void processPipeline(TbRuleEnginePackPipeline pipeline,
+                                 TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer,
+                                 Queue queue) {
+        for (TbRuleEnginePackPipeline.Pack pack : pipeline.getPacks()) {
+            if (pack.isProcessed()) {
+                continue;
+            }
+            TbMsgPackProcessingContext packCtx = pack.getCtx();
+            boolean timeout = false;
+            if (!packCtx.isProcessed()) {
+                if (System.currentTimeMillis() < pack.getDeadline()) {
+                    continue;
+                }
+                timeout = true;
+                packCtx.onPackTimeout();
+            }
+            TbRuleEngineProcessingDecision decision = analyze(packCtx, timeout, pack.getAckStrategy(), queue);
             if (decision.isCommit()) {
-                submitStrategy.stop();
-                consumer.commit();
-                break;
+                pack.getSubmitStrategy().stop();
+                pipeline.onProcessed(pack);
+                // the time the pack is processed for, rather than the time it was submitted for by the consumer loop
+                if (!timeout && pack.getAttempts() == 1) {
+                    onPackProcessed(consumer, packCtx.getPackSize(), packCtx.getProcessingTimeNanos());
+                }
             } else {
-                submitStrategy.update(decision.getReprocessMap());
+                pack.getSubmitStrategy().update(decision.getReprocessMap());
+                submitAttempt(pack, queue);
             }
         }
+        TbQueueOffsets offsets = pipeline.pollProcessed(consumer.getFullTopicNames());
+        if (offsets != null) {
+            consumer.commit(offsets);
+        }
+    }
+
+    private void submitAttempt(TbRuleEnginePackPipeline.Pack pack, Queue queue) {
+        TbMsgPackProcessingContext packCtx = new TbMsgPackProcessingContext(queue.getName(), pack.getSubmitStrategy(), pack.getAckStrategy().isSkipTimeoutMsgs());
+        pack.setCtx(packCtx);
+        pack.onAttempt();
+        pack.setDeadline(System.currentTimeMillis() + pack.getProcessingTimeout());
+        pack.getSubmitStrategy().submitAttempt((id, msg) -> submitMessage(packCtx, id, msg));
+    }
+
+    private TbRuleEngineProcessingDecision analyze(TbMsgPackProcessingContext packCtx, boolean timeout,
+                                                   TbRuleEngineProcessingStrategy ackStrategy, Queue queue) {
+        TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(queue.getName(), timeout, packCtx);
+        if (timeout) {
+            printFirstOrAll(packCtx, packCtx.getPendingMap(), "Timeout");
+        }
+        if (!packCtx.getFailedMap().isEmpty()) {
+            printFirstOrAll(packCtx, packCtx.getFailedMap(), "Failed");
+        }
+        packCtx.printProfilerStats();
+
+        TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+        if (ctx.isStatsEnabled()) {
+            stats.log(result, decision.isCommit());
+        }
+
+        packCtx.cleanup();
+        return decision;
+    }
+
+    private boolean isPipelined(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer) {
+        return ctx.getMaxPacksInFlight() > 1 && consumer.isOffsetsCommitSupported();
     }
 
     private TbRuleEngineSubmitStrategy getSubmitStrategy(Queue queue) {
@@ -163,13 +301,27 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
     }
 
     private void submitMessage(TbMsgPackProcessingContext packCtx, UUID id, TbProtoQueueMsg<ToRuleEngineMsg> msg) {
-        log.trace("[{}] Creating callback for topic {} message: {}", id, config.getName(), msg.getValue());
-        ToRuleEngineMsg toRuleEngineMsg = msg.getValue();
-        TenantId tenantId = TenantId.fromUUID(new UUID(toRuleEngineMsg.getTenantIdMSB(), toRuleEngineMsg.getTenantIdLSB()));
-        TbMsgCallback callback = ctx.isPrometheusStatsEnabled() ?
-                new TbMsgPackCallback(id, tenantId, packCtx, stats.getTimer(tenantId, SUCCESSFUL_STATUS), stats.getTimer(tenantId, FAILED_STATUS)) :
-                new TbMsgPackCallback(id, tenantId, packCtx);
+        log.trace("[{}] Creating callback for topic {} message: {}", id, config.getName(), msg.getKey());
+        TenantId tenantId;
+        if (msg instanceof TbRuleEngineQueueMsg reMsg) {
+            tenantId = reMsg.getRouting().tenantId();
+        } else {
+            ToRuleEngineMsg toRuleEngineMsg = msg.getValue();
+            tenantId = TenantId.fromUUID(new UUID(toRuleEngineMsg.getTenantIdMSB(), toRuleEngineMsg.getTenantIdLSB()));
+        }
+        TbMsgIdempotencyCache idempotencyCache = ctx.getIdempotencyCache();
+        if (idempotencyCache.isEnabled() && idempotencyCache.isProcessed(config.getName(), msg.getKey())) {
+            log.debug("[{}] Skipping already processed message {}", config.getName(), msg.getKey());
+            packCtx.onSuccess(id);
+            return;
+        }
+        Timer successfulMsgTimer = ctx.isPrometheusStatsEnabled() ? stats.getTimer(tenantId, SUCCESSFUL_STATUS) : null;
+        Timer failedMsgTimer = ctx.isPrometheusStatsEnabled() ? stats.getTimer(tenantId, FAILED_STATUS) : null;
+        TbMsgCallback callback = idempotencyCache.isEnabled() ?
+                new TbIdempotentMsgPackCallback(id, tenantId, packCtx, successfulMsgTimer, failedMsgTimer, config.getName(), msg.getKey(), idempotencyCache) :
+                new TbMsgPackCallback(id, tenantId, packCtx, successfulMsgTimer, failedMsgTimer);
         try {
+            ToRuleEngineMsg toRuleEngineMsg = msg.getValue();
             if (!toRuleEngineMsg.getTbMsg().isEmpty()) {
                 forwardToRuleEngineActor(config.getName(), tenantId, toRuleEngineMsg, callback);
             } else {
@@ -226,10 +378,9 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
                     if (msgs.isEmpty()) {
                         continue;
                     }
-                    for (TbProtoQueueMsg<ToRuleEngineMsg> msg : msgs) {
+                    for (TbProtoQueueMsg<ToRuleEngineMsg> msg : TbRuleEngineBatchingProducer.unpack(msgs)) {
                         try {
-                            MsgProtos.TbMsgProto tbMsgProto = MsgProtos.TbMsgProto.parseFrom(msg.getValue().getTbMsg().toByteArray());
-                            EntityId originator = EntityIdFactory.getByTypeAndUuid(tbMsgProto.getEntityType(), new UUID(tbMsgProto.getEntityIdMSB(), tbMsgProto.getEntityIdLSB()));
+                            EntityId originator = TbRuleEngineMsgRouting.of(msg).originator();
 
                             TopicPartitionInfo tpi = ctx.getPartitionService().resolve(ServiceType.TB_RULE_ENGINE, config.getName(), TenantId.SYS_TENANT_ID, originator);
                             ctx.getProducerProvider().getRuleEngineMsgProducer().send(tpi, msg, null);
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.DistributionSummary;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -69,8 +70,10 @@ import org.thingsboard.server.common.msg.notification.NotificationRuleProcessor;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.common.stats.TbApiUsageReportClient;
 import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.device.DevicePartitionKeyResolver;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.sql.query.EntityQueryRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
@@ -89,7 +92,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -191,10 +193,23 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     @Getter
     private int telemetryTtl;
 
+    @Value("${state.activityPersistIntervalMs:0}")
+    @Getter
+    private long activityPersistIntervalMs;
+
     private ListeningExecutorService deviceStateExecutor;
     private ListeningExecutorService deviceStateCallbackExecutor;
 
     final ConcurrentMap<DeviceId, DeviceStateData> deviceStates = new ConcurrentHashMap<>();
+    final DeviceInactivityDeadlines inactivityDeadlines = new DeviceInactivityDeadlines(TimeUnit.SECONDS.toMillis(1));
+    final ConcurrentMap<DeviceId, Long> pendingActivityTimes = new ConcurrentHashMap<>();
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+    @Autowired(required = false)
+    private DevicePartitionKeyResolver partitionKeyResolver;
+    private final AtomicInteger inactivityDeadlinesCount = new AtomicInteger();
+    private DistributionSummary inactivityExpirations;
 
     @PostConstruct
     public void init() {
@@ -205,10 +220,22 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 Math.max(4, Runtime.getRuntime().availableProcessors()), "device-state-callback"));
         scheduledExecutor.scheduleWithFixedDelay(this::checkStates, new Random().nextInt(defaultStateCheckIntervalInSec), defaultStateCheckIntervalInSec, TimeUnit.SECONDS);
         scheduledExecutor.scheduleWithFixedDelay(this::reportActivityStats, defaultActivityStatsIntervalInSec, defaultActivityStatsIntervalInSec, TimeUnit.SECONDS);
+        if (activityPersistIntervalMs > 0) {
+            scheduledExecutor.scheduleWithFixedDelay(this::persistActivityTimes, activityPersistIntervalMs, activityPersistIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        if (statsFactory != null) {
+            statsFactory.createGauge("deviceStateInactivityDeadlines", inactivityDeadlinesCount);
+            inactivityExpirations = statsFactory.createDistributionSummary("deviceStateInactivityExpirations");
+        }
     }
 
     @PreDestroy
     public void stop() {
+        try {
+            persistActivityTimes();
+        } catch (Exception e) {
+            log.warn("Failed to persist pending device activity times", e);
+        }
         super.stop();
         if (deviceStateExecutor != null) {
             deviceStateExecutor.shutdownNow();
@@ -267,7 +294,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     void updateActivityState(DeviceId deviceId, DeviceStateData stateData, long lastReportedActivity) {
         log.trace("updateActivityState - fetched state {} for device {}, lastReportedActivity {}", stateData, deviceId, lastReportedActivity);
         if (stateData != null) {
-            save(deviceId, LAST_ACTIVITY_TIME, lastReportedActivity);
+            saveActivityTime(deviceId, lastReportedActivity);
             DeviceState state = stateData.getState();
             state.setLastActivityTime(lastReportedActivity);
             if (!state.isActive()) {
@@ -278,6 +305,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 }
                 onDeviceActivityStatusChange(deviceId, true, stateData);
             }
+            scheduleInactivityCheck(deviceId, stateData);
         } else {
             log.debug("updateActivityState - fetched state IS NULL for device {}, lastReportedActivity {}", deviceId, lastReportedActivity);
             cleanupEntity(deviceId);
@@ -382,11 +410,9 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                         }, deviceStateCallbackExecutor);
                     } else if (proto.getUpdated()) {
                         DeviceStateData stateData = getOrFetchDeviceStateData(device.getId());
-                        TbMsgMetaData md = new TbMsgMetaData();
-                        md.putValue("deviceName", device.getName());
-                        md.putValue("deviceLabel", device.getLabel());
-                        md.putValue("deviceType", device.getType());
-                        stateData.setMetaData(md);
+                        stateData.setDeviceName(device.getName());
+                        stateData.setDeviceLabel(device.getLabel());
+                        stateData.setDeviceType(device.getType());
                         callback.onSuccess();
                     }
                 } else {
@@ -403,10 +429,9 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     @Override
     protected Map<TopicPartitionInfo, List<ListenableFuture<?>>> onAddedPartitions(Set<TopicPartitionInfo> addedPartitions) {
         var result = new HashMap<TopicPartitionInfo, List<ListenableFuture<?>>>();
-        PageDataIterable<DeviceIdInfo> deviceIdInfos = new PageDataIterable<>(deviceService::findDeviceIdInfos, initFetchPackSize);
         Map<TopicPartitionInfo, List<DeviceIdInfo>> tpiDeviceMap = new HashMap<>();
 
-        for (DeviceIdInfo idInfo : deviceIdInfos) {
+        for (DeviceIdInfo idInfo : findDeviceIdInfos(addedPartitions)) {
             TopicPartitionInfo tpi;
             try {
                 tpi = partitionService.resolve(ServiceType.TB_CORE, idInfo.getTenantId(), idInfo.getDeviceId());
@@ -455,6 +480,68 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
         return result;
     }
 
+    private Iterable<DeviceIdInfo> findDeviceIdInfos(Set<TopicPartitionInfo> addedPartitions) {
+        if (partitionKeyResolver == null) {
+            return new PageDataIterable<>(deviceService::findDeviceIdInfos, initFetchPackSize);
+        }
+        Set<Integer> partitions = addedPartitions.stream()
+                .map(tpi -> tpi.getPartition().orElse(0))
+                .collect(Collectors.toSet());
+        updateDevicePartitionKeys(partitions);
+
+        List<DeviceIdInfo> result = new ArrayList<>();
+        for (int partition : partitions) {
+            long partitionKey = partitionKeyResolver.getPartitionKey(partition);
+            List<DeviceIdInfo> deviceIdInfos;
+            DeviceId idOffset = null;
+            do {
+                deviceIdInfos = deviceService.findDeviceIdInfosByPartitionKey(partitionKey, idOffset, initFetchPackSize);
+                if (!deviceIdInfos.isEmpty()) {
+                    result.addAll(deviceIdInfos);
+                    idOffset = deviceIdInfos.get(deviceIdInfos.size() - 1).getDeviceId();
+                }
+            } while (deviceIdInfos.size() >= initFetchPackSize);
+        }
+        log.info("Found {} devices for partitions {}", result.size(), partitions);
+        return result;
+    }
+
+    /*
+     * The partition key is persisted when the device is created. The keys resolved with other partitioning settings are reset,
+     * and the keys of the devices created without the resolver (e.g. during the installation) are resolved here.
+     * Every core service only updates the devices of its own added partitions, so the services do not write the same rows concurrently
+     * */
+    private void updateDevicePartitionKeys(Set<Integer> partitions) {
+        int resetCount = deviceService.resetPartitionKeysNotInRange(partitionKeyResolver.getMinPartitionKey(), partitionKeyResolver.getMaxPartitionKey());
+        if (resetCount > 0) {
+            log.info("Reset partition key for {} devices after the partitioning settings were changed", resetCount);
+        }
+        Set<Long> addedPartitionKeys = partitions.stream()
+                .map(partitionKeyResolver::getPartitionKey)
+                .collect(Collectors.toSet());
+        int count = 0;
+        List<DeviceIdInfo> deviceIdInfos;
+        DeviceId idOffset = null;
+        do {
+            deviceIdInfos = deviceService.findDeviceIdInfosWithoutPartitionKey(idOffset, initFetchPackSize);
+            Map<DeviceId, Long> partitionKeys = new HashMap<>();
+            for (DeviceIdInfo idInfo : deviceIdInfos) {
+                long partitionKey = partitionKeyResolver.resolvePartitionKey(idInfo.getDeviceId().getId());
+                if (addedPartitionKeys.contains(partitionKey)) {
+                    partitionKeys.put(idInfo.getDeviceId(), partitionKey);
+                }
+            }
+            deviceService.updatePartitionKeys(partitionKeys);
+            count += partitionKeys.size();
+            if (!deviceIdInfos.isEmpty()) {
+                idOffset = deviceIdInfos.get(deviceIdInfos.size() - 1).getDeviceId();
+            }
+        } while (deviceIdInfos.size() >= initFetchPackSize);
+        if (count > 0) {
+            log.info("Updated partition key for {} devices", count);
+        }
+    }
+
     private static class DevicePackFutureHolder {
         private volatile ListenableFuture<?> future;
     }
@@ -473,6 +560,21 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 }
             }
         }
+        if (deviceStates.containsKey(deviceId)) {
+            scheduleInactivityCheck(deviceId, state);
+        }
+    }
+
+    /*
+     * Schedules the check of the devices which inactivity is not reported yet, for the time the device becomes inactive.
+     * The check is scheduled again if the device is still active by then
+     * */
+    void scheduleInactivityCheck(DeviceId deviceId, DeviceStateData stateData) {
+        DeviceState state = stateData.getState();
+        if (state.getLastInactivityAlarmTime() == 0L || state.getLastInactivityAlarmTime() <= state.getLastActivityTime()) {
+            long inactivityTime = Math.max(state.getLastActivityTime(), stateData.getDeviceCreationTime()) + state.getInactivityTimeout();
+            inactivityDeadlines.schedule(deviceId, inactivityTime);
+        }
     }
 
     private boolean addDeviceUsingState(TopicPartitionInfo tpi, DeviceStateData state) {
@@ -480,6 +582,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
         if (deviceIds != null) {
             deviceIds.add(state.getDeviceId());
             deviceStates.putIfAbsent(state.getDeviceId(), state);
+            scheduleInactivityCheck(state.getDeviceId(), deviceStates.getOrDefault(state.getDeviceId(), state));
             return true;
         } else {
             log.debug("[{}] Device belongs to external partition {}", state.getDeviceId(), tpi.getFullTopicName());
@@ -490,29 +593,39 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     void checkStates() {
         try {
             final long ts = getCurrentTimeMillis();
-            partitionedEntities.forEach((tpi, deviceIds) -> {
-                log.debug("Calculating state updates. tpi {} for {} devices", tpi.getFullTopicName(), deviceIds.size());
-                Set<DeviceId> idsFromRemovedTenant = new HashSet<>();
-                for (DeviceId deviceId : deviceIds) {
-                    DeviceStateData stateData;
-                    try {
-                        stateData = getOrFetchDeviceStateData(deviceId);
-                    } catch (Exception e) {
-                        log.error("[{}] Failed to get or fetch device state data", deviceId, e);
+            List<DeviceId> deviceIds = inactivityDeadlines.poll(ts);
+            log.debug("Calculating state updates for {} devices", deviceIds.size());
+            int expired = 0;
+            for (DeviceId deviceId : deviceIds) {
+                DeviceStateData stateData = deviceStates.get(deviceId);
+                if (stateData == null) {
+                    continue;
+                }
+                DeviceState state = stateData.getState();
+                long lastInactivityAlarmTime = state.getLastInactivityAlarmTime();
+                try {
+                    updateInactivityStateIfExpired(ts, deviceId, stateData);
+                } catch (Exception e) {
+                    if (e instanceof TenantNotFoundException) {
+                        cleanupEntity(deviceId);
+                        partitionedEntities.values().forEach(ids -> ids.remove(deviceId));
                         continue;
-                    }
-                    try {
-                        updateInactivityStateIfExpired(ts, deviceId, stateData);
-                    } catch (Exception e) {
-                        if (e instanceof TenantNotFoundException) {
-                            idsFromRemovedTenant.add(deviceId);
-                        } else {
-                            log.warn("[{}] Failed to update inactivity state [{}]", deviceId, e.getMessage());
-                        }
+                    } else {
+                        log.warn("[{}] Failed to update inactivity state [{}]", deviceId, e.getMessage());
                     }
                 }
-                deviceIds.removeAll(idsFromRemovedTenant);
-            });
+                if (state.getLastInactivityAlarmTime() != lastInactivityAlarmTime) {
+                    expired++;
+                }
+                if (deviceStates.containsKey(deviceId)) {
+                    scheduleInactivityCheck(deviceId, stateData);
+                }
+            }
+            inactivityDeadlinesCount.set(inactivityDeadlines.size());
+            if (inactivityExpirations != null) {
+                inactivityExpirations.record(expired);
+            }
+            log.debug("Checked {} devices, {} became inactive", deviceIds.size(), expired);
         } catch (Throwable t) {
             log.warn("Failed to check devices states", t);
         }
@@ -598,13 +711,12 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     private void onDeviceActivityStatusChange(DeviceId deviceId, boolean active, DeviceStateData stateData) {
         save(deviceId, ACTIVITY_STATE, active);
         pushRuleEngineMessage(stateData, active ? TbMsgType.ACTIVITY_EVENT : TbMsgType.INACTIVITY_EVENT);
-        TbMsgMetaData metaData = stateData.getMetaData();
         notificationRuleProcessor.process(DeviceActivityTrigger.builder()
                 .tenantId(stateData.getTenantId()).customerId(stateData.getCustomerId())
                 .deviceId(deviceId).active(active)
-                .deviceName(metaData.getValue("deviceName"))
-                .deviceType(metaData.getValue("deviceType"))
-                .deviceLabel(metaData.getValue("deviceLabel"))
+                .deviceName(stateData.getDeviceName())
+                .deviceType(stateData.getDeviceType())
+                .deviceLabel(stateData.getDeviceLabel())
                 .build());
     }
 
@@ -630,11 +742,14 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
 
     @Override
     protected void cleanupEntityOnPartitionRemoval(DeviceId deviceId) {
+        persistActivityTime(deviceId);
         cleanupEntity(deviceId);
     }
 
     private void cleanupEntity(DeviceId deviceId) {
         deviceStates.remove(deviceId);
+        inactivityDeadlines.remove(deviceId);
+        pendingActivityTimes.remove(deviceId);
     }
 
 
@@ -686,16 +801,14 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                             .lastInactivityAlarmTime(inactivityAlarmTime)
                             .inactivityTimeout(inactivityTimeout)
                             .build();
-                    TbMsgMetaData md = new TbMsgMetaData();
-                    md.putValue("deviceName", device.getName());
-                    md.putValue("deviceLabel", device.getLabel());
-                    md.putValue("deviceType", device.getType());
                     DeviceStateData deviceStateData = DeviceStateData.builder()
                             .customerId(device.getCustomerId())
                             .tenantId(device.getTenantId())
                             .deviceId(device.getId())
                             .deviceCreationTime(device.getCreatedTime())
-                            .metaData(md)
+                            .deviceName(device.getName())
+                            .deviceLabel(device.getLabel())
+                            .deviceType(device.getType())
                             .state(deviceState).build();
                     log.debug("[{}] Fetched device state from the DB {}", device.getId(), deviceStateData);
                     return deviceStateData;
@@ -771,16 +884,14 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 .lastInactivityAlarmTime(inactivityAlarmTime)
                 .inactivityTimeout(inactivityTimeout)
                 .build();
-        TbMsgMetaData md = new TbMsgMetaData();
-        md.putValue("deviceName", getEntryValue(ed, EntityKeyType.ENTITY_FIELD, "name", ""));
-        md.putValue("deviceLabel", getEntryValue(ed, EntityKeyType.ENTITY_FIELD, "label", ""));
-        md.putValue("deviceType", getEntryValue(ed, EntityKeyType.ENTITY_FIELD, "type", ""));
         return DeviceStateData.builder()
                 .customerId(deviceIdInfo.getCustomerId())
                 .tenantId(deviceIdInfo.getTenantId())
                 .deviceId(deviceIdInfo.getDeviceId())
                 .deviceCreationTime(getEntryValue(ed, EntityKeyType.ENTITY_FIELD, "createdTime", 0L))
-                .metaData(md)
+                .deviceName(getEntryValue(ed, EntityKeyType.ENTITY_FIELD, "name", ""))
+                .deviceLabel(getEntryValue(ed, EntityKeyType.ENTITY_FIELD, "label", ""))
+                .deviceType(getEntryValue(ed, EntityKeyType.ENTITY_FIELD, "type", ""))
                 .state(deviceState).build();
     }
 
@@ -850,7 +961,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
             } else {
                 data = JacksonUtil.toString(state);
             }
-            TbMsgMetaData md = stateData.getMetaData().copy();
+            TbMsgMetaData md = stateData.getMetaData();
             if (!persistToTelemetry) {
                 md.putValue(SCOPE, SERVER_SCOPE);
             }
@@ -861,6 +972,41 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
         }
     }
 
+    /*
+     * Activity is reported for every uplink of the device, so when the persist interval is configured
+     * only the latest activity time of the device is kept and written once per interval.
+     * The in-memory state is updated by the caller immediately.
+     * */
+    private void saveActivityTime(DeviceId deviceId, long lastActivityTime) {
+        if (activityPersistIntervalMs > 0) {
+            pendingActivityTimes.merge(deviceId, lastActivityTime, Math::max);
+        } else {
+            save(deviceId, LAST_ACTIVITY_TIME, lastActivityTime);
+        }
+    }
+
+    void persistActivityTimes() {
+        if (pendingActivityTimes.isEmpty()) {
+            return;
+        }
+        int count = 0;
+        for (DeviceId deviceId : pendingActivityTimes.keySet()) {
+            if (persistActivityTime(deviceId)) {
+                count++;
+            }
+        }
+        log.debug("Persisted activity time of {} devices", count);
+    }
+
+    private boolean persistActivityTime(DeviceId deviceId) {
+        Long lastActivityTime = pendingActivityTimes.remove(deviceId);
+        if (lastActivityTime != null) {
+            save(deviceId, LAST_ACTIVITY_TIME, lastActivityTime);
+            return true;
+        }
+        return false;
+    }
+
     private void save(DeviceId deviceId, String key, long value) {
         if (persistToTelemetry) {
             tsSubService.saveAndNotifyInternal(
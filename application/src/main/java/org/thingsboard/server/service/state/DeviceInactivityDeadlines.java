@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * Inactivity deadlines of the devices, grouped into fixed-size time buckets (the device state service uses 1 second buckets).
+ * A device is kept in the bucket of its earliest known deadline: when the deadline is postponed by the device activity,
+ * the device stays where it is and is put into the bucket of the new deadline once its old bucket is polled.
+ * So the activity of an already scheduled device costs a single map lookup.
+ * */
+class DeviceInactivityDeadlines {
+
+    private final long bucketMs;
+    private final NavigableMap<Long, Set<DeviceId>> buckets = new TreeMap<>();
+    private final ConcurrentMap<DeviceId, Long> deviceBuckets = new ConcurrentHashMap<>();
+
+    DeviceInactivityDeadlines(long bucketMs) {
+        this.bucketMs = Math.max(1, bucketMs);
+    }
+
+    void schedule(DeviceId deviceId, long deadline) {
+        long bucket = deadline / bucketMs;
+        Long current = deviceBuckets.get(deviceId);
+        if (current != null && current <= bucket) {
+            return;
+        }
+        synchronized (buckets) {
+            current = deviceBuckets.get(deviceId);
+            if (current != null && current <= bucket) {
+                return;
+            }
+            buckets.computeIfAbsent(bucket, b -> new HashSet<>()).add(deviceId);
+            deviceBuckets.put(deviceId, bucket);
+        }
+    }
+
+    /*
+     * Removes and returns the devices which deadline may have passed by the given time.
+     * The devices which deadline is later within the same bucket should be scheduled again
+     * */
+    List<DeviceId> poll(long ts) {
+        long lastBucket = ts / bucketMs;
+        List<DeviceId> result = new ArrayList<>();
+        synchronized (buckets) {
+            Map.Entry<Long, Set<DeviceId>> entry;
+            while ((entry = buckets.firstEntry()) != null && entry.getKey() <= lastBucket) {
+                buckets.pollFirstEntry();
+                for (DeviceId deviceId : entry.getValue()) {
+                    // skipping the devices that were moved to an earlier bucket
+                    if (deviceBuckets.remove(deviceId, entry.getKey())) {
+                        result.add(deviceId);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    void remove(DeviceId deviceId) {
+        // the device is skipped when its bucket is polled
+        deviceBuckets.remove(deviceId);
+    }
+
+    int size() {
+        return deviceBuckets.size();
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.service.state;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import lombok.Builder;
 import lombok.Data;
 import org.thingsboard.server.common.data.id.CustomerId;
@@ -24,16 +26,67 @@ import org.thingsboard.server.common.msg.TbMsgMetaData;
 
 /**
  * Created by ashvayka on 01.05.18.
+ * <p>
+ * One instance is kept in memory for every device of the local partitions, so the instance is kept compact:
+ * tenant and customer ids and device types are shared between devices, and the rule engine metadata
+ * is materialized only when a message is pushed instead of being held as a map per device.
  */
 @Data
 @Builder
 class DeviceStateData {
 
+    static final String DEVICE_NAME = "deviceName";
+    static final String DEVICE_LABEL = "deviceLabel";
+    static final String DEVICE_TYPE = "deviceType";
+
+    private static final Interner<CustomerId> customerIds = Interners.newWeakInterner();
+    private static final Interner<String> deviceTypes = Interners.newWeakInterner();
+
     private final TenantId tenantId;
     private final CustomerId customerId;
     private final DeviceId deviceId;
     private final long deviceCreationTime;
-    private TbMsgMetaData metaData;
+    private String deviceName;
+    private String deviceLabel;
+    private String deviceType;
     private final DeviceState state;
-    
+
+    public void setDeviceType(String deviceType) {
+        this.deviceType = intern(deviceType);
+    }
+
+    /**
+     * @return a new metadata instance for the rule engine messages of this device.
+     */
+    public TbMsgMetaData getMetaData() {
+        TbMsgMetaData md = new TbMsgMetaData();
+        md.putValue(DEVICE_NAME, deviceName);
+        md.putValue(DEVICE_LABEL, deviceLabel);
+        md.putValue(DEVICE_TYPE, deviceType);
+        return md;
+    }
+
+    private static String intern(String deviceType) {
+        return deviceType != null ? deviceTypes.intern(deviceType) : null;
+    }
+
+    static class DeviceStateDataBuilder {
+
+        DeviceStateDataBuilder tenantId(TenantId tenantId) {
+            this.tenantId = tenantId != null ? TenantId.fromUUID(tenantId.getId()) : null;
+            return this;
+        }
+
+        DeviceStateDataBuilder customerId(CustomerId customerId) {
+            this.customerId = customerId != null ? customerIds.intern(customerId) : null;
+            return this;
+        }
+
+        DeviceStateDataBuilder deviceType(String deviceType) {
+            this.deviceType = intern(deviceType);
+            return this;
+        }
+
+    }
+
 }
@@ -29,7 +29,10 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
@@ -94,6 +97,8 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
 
     private static final int DEFAULT_LIMIT = 100;
     private final Map<String, Map<Integer, TbAbstractSubCtx>> subscriptionsBySessionId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TbSharedDynamicQuery.Key, TbSharedDynamicQuery> sharedDynamicQueries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TenantId, ConcurrentMap<String, TbEntityDataSubCtx>> eventRefreshSubs = new ConcurrentHashMap<>();
 
     @Autowired
     @Lazy
@@ -130,6 +135,16 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private long dynamicPageLinkRefreshInterval;
     @Value("${server.ws.dynamic_page_link.refresh_pool_size:1}")
     private int dynamicPageLinkRefreshPoolSize;
+    @Value("${server.ws.dynamic_page_link.share_identical_queries:true}")
+    private boolean shareIdenticalDynamicQueries;
+    @Value("${server.ws.dynamic_page_link.event_refresh.enabled:true}")
+    private boolean eventRefreshEnabled;
+    @Value("${server.ws.dynamic_page_link.event_refresh.delay_ms:1000}")
+    private long eventRefreshDelayMs;
+    @Value("${server.ws.dynamic_page_link.event_refresh.min_interval_ms:5000}")
+    private long eventRefreshMinIntervalMs;
+    @Value("${server.ws.dynamic_page_link.event_refresh.full_refresh_interval:600}")
+    private long eventRefreshFullRefreshInterval;
     @Value("${server.ws.max_entities_per_data_subscription:1000}")
     private int maxEntitiesPerDataSubscription;
     @Value("${server.ws.max_entities_per_alarm_subscription:1000}")
@@ -204,13 +219,25 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             stats.getRegularQueryInvocationCnt().incrementAndGet();
             stats.getRegularQueryTimeSpent().addAndGet(end - start);
             ctx.cancelTasks();
+            leaveSharedDynamicQuery(ctx);
+            unregisterEventRefresh(ctx);
             if (ctx.getQuery().getPageLink().isDynamic()) {
                 //TODO: validate number of dynamic page links against rate limits. Ignore dynamic flag if limit is reached.
                 TbEntityDataSubCtx finalCtx = ctx;
-                ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                        () -> refreshDynamicQuery(finalCtx),
-                        dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
-                finalCtx.setRefreshTask(task);
+                TbDynamicQueryTrigger refreshTrigger = eventRefreshEnabled ? TbDynamicQueryTrigger.of(ctx.getQuery()) : null;
+                // queries refreshed by the entity events are periodically refreshed only in case some event is missed
+                long refreshInterval = refreshTrigger != null ? eventRefreshFullRefreshInterval : dynamicPageLinkRefreshInterval;
+                if (shareIdenticalDynamicQueries && ctx.getDynamicValues().isEmpty()) {
+                    joinSharedDynamicQuery(finalCtx, refreshInterval);
+                } else {
+                    ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
+                            () -> refreshDynamicQuery(finalCtx),
+                            refreshInterval, refreshInterval, TimeUnit.SECONDS);
+                    finalCtx.setRefreshTask(task);
+                }
+                if (refreshTrigger != null) {
+                    registerEventRefresh(finalCtx, refreshTrigger);
+                }
             }
         }
 
@@ -457,12 +484,153 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
                 stats.getDynamicQueryTimeSpent().addAndGet(end - start);
             } else {
                 finalCtx.stop();
+                unregisterEventRefresh(finalCtx);
             }
         } catch (Exception e) {
             log.warn("[{}][{}] Failed to refresh query", finalCtx.getSessionId(), finalCtx.getCmdId(), e);
         }
     }
 
+    @Override
+    public void onEntityChange(TenantId tenantId, EntityType entityType) {
+        Map<String, TbEntityDataSubCtx> subs = eventRefreshSubs.get(tenantId);
+        if (subs != null) {
+            subs.values().forEach(ctx -> {
+                TbDynamicQueryTrigger refreshTrigger = ctx.getRefreshTrigger();
+                if (refreshTrigger != null && refreshTrigger.matchesEntity(entityType)) {
+                    scheduleEventRefresh(ctx);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onRelationChange(TenantId tenantId) {
+        Map<String, TbEntityDataSubCtx> subs = eventRefreshSubs.get(tenantId);
+        if (subs != null) {
+            subs.values().forEach(ctx -> {
+                TbDynamicQueryTrigger refreshTrigger = ctx.getRefreshTrigger();
+                if (refreshTrigger != null && refreshTrigger.relations()) {
+                    scheduleEventRefresh(ctx);
+                }
+            });
+        }
+    }
+
+    private void registerEventRefresh(TbEntityDataSubCtx ctx, TbDynamicQueryTrigger refreshTrigger) {
+        ctx.setRefreshTrigger(refreshTrigger);
+        eventRefreshSubs.computeIfAbsent(ctx.getTenantId(), tenantId -> new ConcurrentHashMap<>())
+                .put(ctx.getSessionId() + "|" + ctx.getCmdId(), ctx);
+    }
+
+    private void unregisterEventRefresh(TbAbstractSubCtx<?> ctx) {
+        if (!(ctx instanceof TbEntityDataSubCtx entityDataCtx) || entityDataCtx.getRefreshTrigger() == null) {
+            return;
+        }
+        entityDataCtx.setRefreshTrigger(null);
+        eventRefreshSubs.computeIfPresent(ctx.getTenantId(), (tenantId, subs) -> {
+            subs.computeIfPresent(ctx.getSessionId() + "|" + ctx.getCmdId(), (key, existing) -> existing == ctx ? null : existing);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    /*
+     * The refresh is delayed, so that a burst of the entity changes results in a single query execution,
+     * and is postponed until the minimum interval since the previous event refresh of the query has passed.
+     * */
+    private void scheduleEventRefresh(TbEntityDataSubCtx ctx) {
+        TbSharedDynamicQuery.Key sharedQueryKey = ctx.getSharedQueryKey();
+        if (sharedQueryKey != null) {
+            TbSharedDynamicQuery sharedQuery = sharedDynamicQueries.get(sharedQueryKey);
+            if (sharedQuery != null) {
+                scheduleEventRefresh(sharedQuery.getEventRefresh(), () -> refreshSharedDynamicQuery(sharedQueryKey));
+            }
+        } else {
+            scheduleEventRefresh(ctx.getEventRefresh(), () -> refreshDynamicQuery(ctx));
+        }
+    }
+
+    private void scheduleEventRefresh(TbEventRefreshState eventRefresh, Runnable refresh) {
+        long delayMs = eventRefresh.schedule(System.currentTimeMillis(), eventRefreshDelayMs, eventRefreshMinIntervalMs);
+        if (delayMs >= 0) {
+            scheduler.schedule(() -> {
+                eventRefresh.onRefresh(System.currentTimeMillis());
+                refresh.run();
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+     * Queries without dynamic values return the same data for the same tenant and customer,
+     * so the subscriptions of such queries from all the sessions are refreshed by a single query execution.
+     * */
+    private void joinSharedDynamicQuery(TbEntityDataSubCtx ctx, long refreshInterval) {
+        TbSharedDynamicQuery.Key key = new TbSharedDynamicQuery.Key(ctx.getTenantId(), ctx.getCustomerId(), JacksonUtil.toString(ctx.getQuery()));
+        ctx.setSharedQueryKey(key);
+        sharedDynamicQueries.compute(key, (k, sharedQuery) -> {
+            if (sharedQuery == null) {
+                sharedQuery = new TbSharedDynamicQuery(k);
+                sharedQuery.setRefreshTask(scheduler.scheduleWithFixedDelay(() -> refreshSharedDynamicQuery(k),
+                        refreshInterval, refreshInterval, TimeUnit.SECONDS));
+            }
+            sharedQuery.addSubscription(ctx);
+            return sharedQuery;
+        });
+    }
+
+    private void leaveSharedDynamicQuery(TbAbstractSubCtx<?> ctx) {
+        if (!(ctx instanceof TbEntityDataSubCtx entityDataCtx) || entityDataCtx.getSharedQueryKey() == null) {
+            return;
+        }
+        TbSharedDynamicQuery.Key key = entityDataCtx.getSharedQueryKey();
+        entityDataCtx.setSharedQueryKey(null);
+        sharedDynamicQueries.computeIfPresent(key, (k, sharedQuery) -> {
+            sharedQuery.removeSubscription(entityDataCtx);
+            if (!sharedQuery.hasSubscriptions()) {
+                sharedQuery.cancelRefreshTask();
+                return null;
+            }
+            return sharedQuery;
+        });
+    }
+
+    void refreshSharedDynamicQuery(TbSharedDynamicQuery.Key key) {
+        TbSharedDynamicQuery sharedQuery = sharedDynamicQueries.get(key);
+        if (sharedQuery == null) {
+            return;
+        }
+        List<TbEntityDataSubCtx> subCtxs = new ArrayList<>();
+        for (TbEntityDataSubCtx ctx : sharedQuery.getSubscriptions()) {
+            if (validate(ctx)) {
+                subCtxs.add(ctx);
+            } else {
+                ctx.stop();
+                leaveSharedDynamicQuery(ctx);
+                unregisterEventRefresh(ctx);
+            }
+        }
+        if (subCtxs.isEmpty()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            PageData<EntityData> newData = subCtxs.get(0).findEntityData();
+            long end = System.currentTimeMillis();
+            log.trace("[{}][{}] Executed shared query for {} subscriptions: {}", key.tenantId(), key.customerId(), subCtxs.size(), key.query());
+            stats.getDynamicQueryInvocationCnt().incrementAndGet();
+            stats.getDynamicQueryTimeSpent().addAndGet(end - start);
+            for (TbEntityDataSubCtx ctx : subCtxs) {
+                try {
+                    ctx.update(newData, subCtxs.size() > 1);
+                } catch (Exception e) {
+                    log.warn("[{}][{}] Failed to refresh query", ctx.getSessionId(), ctx.getCmdId(), e);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to refresh shared query: {}", key.tenantId(), key.customerId(), key.query(), e);
+        }
+    }
+
     private void refreshAlarmQuery(TbAlarmDataSubCtx finalCtx) {
         if (validate(finalCtx)) {
             finalCtx.checkAndResetInvocationCounter();
@@ -716,6 +884,8 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private void cleanupAndCancel(TbAbstractSubCtx ctx) {
         if (ctx != null) {
             ctx.stop();
+            leaveSharedDynamicQuery(ctx);
+            unregisterEventRefresh(ctx);
             if (ctx.getSessionId() != null) {
                 Map<Integer, TbAbstractSubCtx> sessionSubs = subscriptionsBySessionId.get(ctx.getSessionId());
                 if (sessionSubs != null) {
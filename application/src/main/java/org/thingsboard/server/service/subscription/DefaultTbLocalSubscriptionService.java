@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.service.subscription;
 
+import com.google.common.util.concurrent.Striped;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.EventListener;
@@ -54,6 +55,8 @@ import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpda
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -65,9 +68,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -77,9 +80,12 @@ import java.util.stream.Collectors;
 @Service
 public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionService {
 
+    private static final int ENTITY_LOCK_STRIPES = 256;
+
     private final ConcurrentMap<String, Map<Integer, TbSubscription<?>>> subscriptionsBySessionId = new ConcurrentHashMap<>();
     private final ConcurrentMap<UUID, TbEntityLocalSubsInfo> subscriptionsByEntityId = new ConcurrentHashMap<>();
     private final ConcurrentMap<UUID, TbEntityUpdatesInfo> entityUpdates = new ConcurrentHashMap<>();
+    private final AtomicInteger subEventSeqNumbers = new AtomicInteger();
 
     private final AttributesService attrService;
     private final TimeseriesService tsService;
@@ -107,7 +113,11 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
     private String serviceId;
     private ExecutorService subscriptionUpdateExecutor;
 
-    private final Lock subsLock = new ReentrantLock();
+    /*
+     * Subscription changes are serialized per entity, so that session churn on one entity does not block
+     * the subscription changes of the other entities. Updates are dispatched without taking the lock.
+     * */
+    private final Striped<Lock> entityLocks = Striped.lock(ENTITY_LOCK_STRIPES);
 
     @PostConstruct
     public void initExecutor() {
@@ -169,13 +179,19 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
         EntityId entityId = subscription.getEntityId();
         log.debug("[{}][{}] Register subscription: {}", tenantId, entityId, subscription);
         SubscriptionModificationResult result;
-        subsLock.lock();
+        Lock entityLock = entityLocks.get(entityId.getId());
+        entityLock.lock();
         try {
-            Map<Integer, TbSubscription<?>> sessionSubscriptions = subscriptionsBySessionId.computeIfAbsent(subscription.getSessionId(), k -> new ConcurrentHashMap<>());
-            sessionSubscriptions.put(subscription.getSubscriptionId(), subscription);
+            subscriptionsBySessionId.compute(subscription.getSessionId(), (sessionId, sessionSubscriptions) -> {
+                if (sessionSubscriptions == null) {
+                    sessionSubscriptions = new ConcurrentHashMap<>();
+                }
+                sessionSubscriptions.put(subscription.getSubscriptionId(), subscription);
+                return sessionSubscriptions;
+            });
             result = modifySubscription(tenantId, entityId, subscription, true);
         } finally {
-            subsLock.unlock();
+            entityLock.unlock();
         }
         if (result.hasEvent()) {
             pushSubscriptionEvent(result);
@@ -197,14 +213,15 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
         log.debug("[{}][{}] Processing sub event callback: {}.", entityId, seqNumber, entityUpdatesInfo);
         entityUpdates.put(entityId, entityUpdatesInfo);
         Set<TbSubscription<?>> pendingSubs = null;
-        subsLock.lock();
+        Lock entityLock = entityLocks.get(entityId);
+        entityLock.lock();
         try {
             TbEntityLocalSubsInfo entitySubs = subscriptionsByEntityId.get(entityId);
             if (entitySubs != null) {
                 pendingSubs = entitySubs.clearPendingSubscriptions(seqNumber);
             }
         } finally {
-            subsLock.unlock();
+            entityLock.unlock();
         }
         if (pendingSubs != null) {
             pendingSubs.forEach(this::checkMissedUpdates);
@@ -216,24 +233,24 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
     public void cancelSubscription(String sessionId, int subscriptionId) {
         log.debug("[{}][{}] Going to remove subscription.", sessionId, subscriptionId);
         SubscriptionModificationResult result = null;
-        subsLock.lock();
-        try {
-            Map<Integer, TbSubscription<?>> sessionSubscriptions = subscriptionsBySessionId.get(sessionId);
-            if (sessionSubscriptions != null) {
-                TbSubscription<?> subscription = sessionSubscriptions.remove(subscriptionId);
-                if (subscription != null) {
-                    if (sessionSubscriptions.isEmpty()) {
-                        subscriptionsBySessionId.remove(sessionId);
+        Map<Integer, TbSubscription<?>> sessionSubscriptions = subscriptionsBySessionId.get(sessionId);
+        if (sessionSubscriptions != null) {
+            TbSubscription<?> subscription = sessionSubscriptions.get(subscriptionId);
+            if (subscription != null) {
+                Lock entityLock = entityLocks.get(subscription.getEntityId().getId());
+                entityLock.lock();
+                try {
+                    if (removeSessionSubscription(sessionId, subscription)) {
+                        result = modifySubscription(subscription.getTenantId(), subscription.getEntityId(), subscription, false);
                     }
-                    result = modifySubscription(subscription.getTenantId(), subscription.getEntityId(), subscription, false);
-                } else {
-                    log.debug("[{}][{}] Subscription not found!", sessionId, subscriptionId);
+                } finally {
+                    entityLock.unlock();
                 }
             } else {
-                log.debug("[{}] No session subscriptions found!", sessionId);
+                log.debug("[{}][{}] Subscription not found!", sessionId, subscriptionId);
             }
-        } finally {
-            subsLock.unlock();
+        } else {
+            log.debug("[{}] No session subscriptions found!", sessionId);
         }
         if (result != null && result.hasEvent()) {
             pushSubscriptionEvent(result);
@@ -244,18 +261,19 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
     public void cancelAllSessionSubscriptions(String sessionId) {
         log.debug("[{}] Going to remove session subscriptions.", sessionId);
         List<SubscriptionModificationResult> results = new ArrayList<>();
-        subsLock.lock();
-        try {
-            Map<Integer, TbSubscription<?>> sessionSubscriptions = subscriptionsBySessionId.remove(sessionId);
-            if (sessionSubscriptions != null) {
-                for (TbSubscription<?> subscription : sessionSubscriptions.values()) {
+        Map<Integer, TbSubscription<?>> sessionSubscriptions = subscriptionsBySessionId.remove(sessionId);
+        if (sessionSubscriptions != null) {
+            for (TbSubscription<?> subscription : sessionSubscriptions.values()) {
+                Lock entityLock = entityLocks.get(subscription.getEntityId().getId());
+                entityLock.lock();
+                try {
                     results.add(modifySubscription(subscription.getTenantId(), subscription.getEntityId(), subscription, false));
+                } finally {
+                    entityLock.unlock();
                 }
-            } else {
-                log.debug("[{}] No session subscriptions found!", sessionId);
             }
-        } finally {
-            subsLock.unlock();
+        } else {
+            log.debug("[{}] No session subscriptions found!", sessionId);
         }
         results.stream().filter(SubscriptionModificationResult::hasEvent).forEach(this::pushSubscriptionEvent);
     }
@@ -273,25 +291,13 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
 
     private void onTimeSeriesUpdate(UUID entityId, List<TsKvEntry> data, TbCallback callback) {
         entityUpdates.get(entityId).timeSeriesUpdateTs = System.currentTimeMillis();
+        SharedTelemetryUpdates updates = new SharedTelemetryUpdates(data);
         processSubscriptionData(entityId,
                 sub -> TbSubscriptionType.TIMESERIES.equals(sub.getType()),
                 s -> {
                     TbTimeSeriesSubscription sub = (TbTimeSeriesSubscription) s;
-                    List<TsKvEntry> updateData = null;
-                    if (sub.isAllKeys()) {
-                        updateData = data;
-                    } else {
-                        for (TsKvEntry kv : data) {
-                            if (sub.getKeyStates().containsKey((kv.getKey()))) {
-                                if (updateData == null) {
-                                    updateData = new ArrayList<>();
-                                }
-                                updateData.add(kv);
-                            }
-                        }
-                    }
-                    if (updateData != null) {
-                        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(sub.getSubscriptionId(), updateData);
+                    TelemetrySubscriptionUpdate update = updates.get(sub.getSubscriptionId(), sub.isAllKeys(), sub.getKeyStates());
+                    if (update != null) {
                         update.getLatestValues().forEach((key, value) -> sub.getKeyStates().put(key, value));
                         subscriptionUpdateExecutor.submit(() -> sub.getUpdateProcessor().accept(sub, update));
                     }
@@ -310,26 +316,14 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
 
     private void onAttributesUpdate(UUID entityId, String scope, List<TsKvEntry> data, TbCallback callback) {
         entityUpdates.get(entityId).attributesUpdateTs = System.currentTimeMillis();
+        SharedTelemetryUpdates updates = new SharedTelemetryUpdates(data);
         processSubscriptionData(entityId,
                 sub -> TbSubscriptionType.ATTRIBUTES.equals(sub.getType()),
                 s -> {
                     TbAttributeSubscription sub = (TbAttributeSubscription) s;
                     if (sub.getScope() == null || TbAttributeSubscriptionScope.ANY_SCOPE.equals(sub.getScope()) || sub.getScope().name().equals(scope)) {
-                        List<TsKvEntry> updateData = null;
-                        if (sub.isAllKeys()) {
-                            updateData = data;
-                        } else {
-                            for (TsKvEntry kv : data) {
-                                if (sub.getKeyStates().containsKey((kv.getKey()))) {
-                                    if (updateData == null) {
-                                        updateData = new ArrayList<>();
-                                    }
-                                    updateData.add(kv);
-                                }
-                            }
-                        }
-                        if (updateData != null) {
-                            TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(sub.getSubscriptionId(), updateData);
+                        TelemetrySubscriptionUpdate update = updates.get(sub.getSubscriptionId(), sub.isAllKeys(), sub.getKeyStates());
+                        if (update != null) {
                             update.getLatestValues().forEach((key, value) -> sub.getKeyStates().put(key, value));
                             subscriptionUpdateExecutor.submit(() -> sub.getUpdateProcessor().accept(sub, update));
                         }
@@ -420,11 +414,20 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
         callback.onSuccess();
     }
 
+    private boolean removeSessionSubscription(String sessionId, TbSubscription<?> subscription) {
+        AtomicBoolean removed = new AtomicBoolean();
+        subscriptionsBySessionId.computeIfPresent(sessionId, (id, sessionSubscriptions) -> {
+            removed.set(sessionSubscriptions.remove(subscription.getSubscriptionId(), subscription));
+            return sessionSubscriptions.isEmpty() ? null : sessionSubscriptions;
+        });
+        return removed.get();
+    }
+
     private SubscriptionModificationResult modifySubscription(TenantId tenantId, EntityId entityId, TbSubscription<?> subscription, boolean add) {
         TbSubscription<?> missedUpdatesCandidate = null;
         TbEntitySubEvent event = null;
         try {
-            TbEntityLocalSubsInfo entitySubs = subscriptionsByEntityId.computeIfAbsent(entityId.getId(), id -> new TbEntityLocalSubsInfo(tenantId, entityId));
+            TbEntityLocalSubsInfo entitySubs = subscriptionsByEntityId.computeIfAbsent(entityId.getId(), id -> new TbEntityLocalSubsInfo(tenantId, entityId, subEventSeqNumbers));
             event = add ? entitySubs.add(subscription) : entitySubs.remove(subscription);
             if (entitySubs.isEmpty()) {
                 subscriptionsByEntityId.remove(entityId.getId());
@@ -563,4 +566,34 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
         subscriptionsBySessionId.keySet().forEach(webSocketService::cleanupIfStale);
     }
 
+    /*
+     * Updates of one entity data change for the subscriptions of the entity. Subscriptions that match the same keys
+     * share one update, so the data is wrapped and serialized once instead of once per subscription.
+     * */
+    static class SharedTelemetryUpdates {
+
+        private final List<TsKvEntry> data;
+        private final Map<BitSet, TelemetrySubscriptionUpdate> updates = new HashMap<>();
+
+        SharedTelemetryUpdates(List<TsKvEntry> data) {
+            this.data = data;
+        }
+
+        TelemetrySubscriptionUpdate get(int subscriptionId, boolean allKeys, Map<String, Long> keyStates) {
+            BitSet matched = new BitSet(data.size());
+            for (int i = 0; i < data.size(); i++) {
+                if (allKeys || keyStates.containsKey(data.get(i).getKey())) {
+                    matched.set(i);
+                }
+            }
+            if (matched.isEmpty() && !allKeys) {
+                return null;
+            }
+            TelemetrySubscriptionUpdate update = updates.computeIfAbsent(matched, m -> new TelemetrySubscriptionUpdate(subscriptionId,
+                    m.cardinality() == data.size() ? data : m.stream().mapToObj(data::get).collect(Collectors.toList())));
+            return update.getSubscriptionId() == subscriptionId ? update : update.copyWithNewSubscriptionId(subscriptionId);
+        }
+
+    }
+
 }
@@ -79,8 +79,15 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
     }
 
     @Override
-    protected synchronized void update() {
-        PageData<EntityData> newData = findEntityData();
+    protected void update() {
+        update(findEntityData(), false);
+    }
+
+    /**
+     * @param sharedData whether the data is also used by the other subscriptions,
+     *                   so that the subscription keeps its own copy, because the latest values of the copy are updated in place.
+     */
+    protected synchronized void update(PageData<EntityData> newData, boolean sharedData) {
         Map<EntityId, EntityData> oldDataMap;
         if (data != null && !data.getData().isEmpty()) {
             oldDataMap = data.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
@@ -91,6 +98,10 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
         if (oldDataMap.size() == newDataMap.size() && oldDataMap.keySet().equals(newDataMap.keySet())) {
             log.trace("[{}][{}] No updates to entity data found", sessionRef.getSessionId(), cmdId);
         } else {
+            if (sharedData) {
+                newData = newData.mapData(EntityData::copy);
+                newDataMap = newData.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
+            }
             this.data = newData;
             doUpdate(newDataMap);
         }
@@ -335,9 +335,13 @@ public abstract class TbAbstractSubCtx<T extends EntityCountQuery> {
     }
 
     public void sendWsMsg(CmdUpdate update) {
+        sendWsMsg(update, null);
+    }
+
+    public void sendWsMsg(CmdUpdate update, String conflationKey) {
         wsLock.lock();
         try {
-            wsService.sendUpdate(sessionRef.getSessionId(), update);
+            wsService.sendUpdate(sessionRef.getSessionId(), update, conflationKey);
         } finally {
             wsLock.unlock();
         }
@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityDataSortOrder;
+import org.thingsboard.server.common.data.query.EntityFilter;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.EntityListFilter;
+import org.thingsboard.server.common.data.query.EntityNameFilter;
+import org.thingsboard.server.common.data.query.EntityTypeFilter;
+import org.thingsboard.server.common.data.query.SingleEntityFilter;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Entity and relation changes that may change the result of the dynamic entity data query.
+ *
+ * @param entityTypes types of the entities, which save or delete may change the result, or null if any entity may change it
+ * @param relations   whether the relation changes may change the result
+ */
+record TbDynamicQueryTrigger(Set<EntityType> entityTypes, boolean relations) {
+
+    boolean matchesEntity(EntityType entityType) {
+        return entityTypes == null || entityTypes.contains(entityType);
+    }
+
+    /**
+     * @return the trigger, or null if the result of the query also depends on the attributes or time series,
+     * so that the query has to be refreshed periodically
+     */
+    static TbDynamicQueryTrigger of(EntityDataQuery query) {
+        if (query.getKeyFilters() != null && !query.getKeyFilters().isEmpty()) {
+            return null;
+        }
+        EntityDataSortOrder sortOrder = query.getPageLink().getSortOrder();
+        if (sortOrder != null && sortOrder.getKey() != null && sortOrder.getKey().getType() != EntityKeyType.ENTITY_FIELD) {
+            return null;
+        }
+        EntityFilter filter = query.getEntityFilter();
+        if (filter == null) {
+            return null;
+        }
+        return switch (filter.getType()) {
+            case SINGLE_ENTITY -> {
+                SingleEntityFilter singleEntityFilter = (SingleEntityFilter) filter;
+                yield singleEntityFilter.getSingleEntity() != null ?
+                        new TbDynamicQueryTrigger(EnumSet.of(singleEntityFilter.getSingleEntity().getEntityType()), false) : null;
+            }
+            case ENTITY_LIST -> ofEntityType(((EntityListFilter) filter).getEntityType(), false);
+            case ENTITY_NAME -> ofEntityType(((EntityNameFilter) filter).getEntityType(), false);
+            case ENTITY_TYPE -> ofEntityType(((EntityTypeFilter) filter).getEntityType(), false);
+            case ASSET_TYPE -> ofEntityType(EntityType.ASSET, false);
+            case DEVICE_TYPE -> ofEntityType(EntityType.DEVICE, false);
+            case ENTITY_VIEW_TYPE -> ofEntityType(EntityType.ENTITY_VIEW, false);
+            case EDGE_TYPE -> ofEntityType(EntityType.EDGE, false);
+            case ASSET_SEARCH_QUERY -> ofEntityType(EntityType.ASSET, true);
+            case DEVICE_SEARCH_QUERY -> ofEntityType(EntityType.DEVICE, true);
+            case ENTITY_VIEW_SEARCH_QUERY -> ofEntityType(EntityType.ENTITY_VIEW, true);
+            case EDGE_SEARCH_QUERY -> ofEntityType(EntityType.EDGE, true);
+            case RELATIONS_QUERY -> new TbDynamicQueryTrigger(null, true);
+            // usage states are updated without the entity save events
+            case API_USAGE_STATE -> null;
+        };
+    }
+
+    private static TbDynamicQueryTrigger ofEntityType(EntityType entityType, boolean relations) {
+        return entityType != null ? new TbDynamicQueryTrigger(EnumSet.of(entityType), relations) : null;
+    }
+
+}
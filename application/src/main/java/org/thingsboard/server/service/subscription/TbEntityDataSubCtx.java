@@ -45,6 +45,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -58,6 +59,14 @@ public class TbEntityDataSubCtx extends TbAbstractDataSubCtx<EntityDataQuery> {
     @Getter
     private final int maxEntitiesPerDataSubscription;
     private Map<EntityId, Map<String, TsValue>> latestTsEntityData;
+    @Getter
+    @Setter
+    private volatile TbSharedDynamicQuery.Key sharedQueryKey;
+    @Getter
+    @Setter
+    private volatile TbDynamicQueryTrigger refreshTrigger;
+    @Getter
+    private final TbEventRefreshState eventRefresh = new TbEventRefreshState();
 
     public TbEntityDataSubCtx(String serviceId, WebSocketService wsService, EntityService entityService,
                               TbLocalSubscriptionService localSubscriptionService, AttributesService attributesService,
@@ -127,7 +136,8 @@ public class TbEntityDataSubCtx extends TbAbstractDataSubCtx<EntityDataQuery> {
         if (!latestUpdate.isEmpty()) {
             Map<EntityKeyType, Map<String, TsValue>> latestMap = Collections.singletonMap(keyType, latestUpdate);
             entityData = new EntityData(entityId, latestMap, null);
-            sendWsMsg(new EntityDataUpdate(cmdId, null, Collections.singletonList(entityData), maxEntitiesPerDataSubscription));
+            String conflationKey = cmdId + "|" + entityId.getId() + "|" + keyType + "|" + String.join(",", new TreeSet<>(latestUpdate.keySet()));
+            sendWsMsg(new EntityDataUpdate(cmdId, null, Collections.singletonList(entityData), maxEntitiesPerDataSubscription), conflationKey);
         }
     }
 
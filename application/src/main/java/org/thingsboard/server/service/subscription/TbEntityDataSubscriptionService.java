@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.service.subscription;
 
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.service.ws.WebSocketSessionRef;
 import org.thingsboard.server.service.ws.telemetry.cmd.v2.AlarmCountCmd;
 import org.thingsboard.server.service.ws.telemetry.cmd.v2.AlarmDataCmd;
@@ -36,4 +38,8 @@ public interface TbEntityDataSubscriptionService {
 
     void cancelAllSessionSubscriptions(String sessionId);
 
+    void onEntityChange(TenantId tenantId, EntityType entityType);
+
+    void onRelationChange(TenantId tenantId);
+
 }
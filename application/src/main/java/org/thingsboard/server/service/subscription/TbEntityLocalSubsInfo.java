@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -41,6 +42,11 @@ public class TbEntityLocalSubsInfo {
     private final TenantId tenantId;
     @Getter
     private final EntityId entityId;
+    /*
+     * Shared by all the entities of the service, so that an info re-created after the last subscription is removed
+     * does not reuse the sequence numbers of its previous instance, whose callbacks may still be in flight.
+     * */
+    private final AtomicInteger seqNumbers;
     @Getter
     private final Lock lock = new ReentrantLock();
     @Getter
@@ -61,8 +67,6 @@ public class TbEntityLocalSubsInfo {
     @Setter
     private long pendingAttributesEventTs;
 
-    private int seqNumber = 0;
-
     public TbEntitySubEvent add(TbSubscription<?> subscription) {
         log.trace("[{}][{}][{}] Adding: {}", tenantId, entityId, subscription.getSubscriptionId(), subscription);
         boolean created = subs.isEmpty();
@@ -134,6 +138,7 @@ public class TbEntityLocalSubsInfo {
             return null;
         }
         if (subs.isEmpty()) {
+            state = new TbSubscriptionsInfo();
             return toEvent(ComponentLifecycleEvent.DELETED);
         }
         TbSubscriptionsInfo oldState = state.copy();
@@ -186,7 +191,8 @@ public class TbEntityLocalSubsInfo {
     }
 
     public TbEntitySubEvent toEvent(ComponentLifecycleEvent type) {
-        seqNumber++;
+        // 0 stands for no pending event
+        int seqNumber = seqNumbers.updateAndGet(seq -> seq == -1 ? 1 : seq + 1);
         var result = TbEntitySubEvent.builder().tenantId(tenantId).entityId(entityId).type(type).seqNumber(seqNumber);
         if (!ComponentLifecycleEvent.DELETED.equals(type)) {
             result.info(state.copy(seqNumber));
@@ -210,7 +216,7 @@ public class TbEntityLocalSubsInfo {
                 pendingAttributesEvent = event.getSeqNumber();
                 pendingAttributesEventTs = System.currentTimeMillis();
                 pendingSubs.computeIfAbsent(pendingAttributesEvent, e -> new HashSet<>()).add(subscription);
-            } else if (pendingAttributesEvent > 0) {
+            } else if (pendingAttributesEvent != 0) {
                 log.trace("[{}][{}] Registering pending attributes subscription {} for event: {} ", tenantId, entityId, subscription.getSubscriptionId(), pendingAttributesEvent);
                 pendingSubs.computeIfAbsent(pendingAttributesEvent, e -> new HashSet<>()).add(subscription);
             } else {
@@ -222,7 +228,7 @@ public class TbEntityLocalSubsInfo {
                 pendingTimeSeriesEvent = event.getSeqNumber();
                 pendingTimeSeriesEventTs = System.currentTimeMillis();
                 pendingSubs.computeIfAbsent(pendingTimeSeriesEvent, e -> new HashSet<>()).add(subscription);
-            } else if (pendingTimeSeriesEvent > 0) {
+            } else if (pendingTimeSeriesEvent != 0) {
                 log.trace("[{}][{}] Registering pending time-series subscription {} for event: {} ", tenantId, entityId, subscription.getSubscriptionId(), pendingTimeSeriesEvent);
                 pendingSubs.computeIfAbsent(pendingTimeSeriesEvent, e -> new HashSet<>()).add(subscription);
             } else {
@@ -40,7 +40,8 @@ public class TbEntityRemoteSubsInfo {
 
     public boolean updateAndCheckIsEmpty(String serviceId, TbEntitySubEvent event) {
         var current = subs.get(serviceId);
-        if (current != null && current.seqNumber > event.getSeqNumber()) {
+        // the difference keeps the order when the sequence numbers wrap around
+        if (current != null && current.seqNumber - event.getSeqNumber() > 0) {
             log.warn("[{}][{}] Duplicate subscription event received. Current: {}, Event: {}",
                     tenantId, entityId, current, event.getInfo());
             return false;
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Refresh of the dynamic query that is triggered by the entity events. At most one refresh is pending at a time,
+ * and the refreshes are at least the minimum interval apart, no matter how often the events arrive.
+ */
+class TbEventRefreshState {
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile long lastRefreshTs;
+
+    /**
+     * @return delay of the refresh in milliseconds, or -1 if the refresh is already pending
+     */
+    long schedule(long ts, long delayMs, long minIntervalMs) {
+        if (!pending.compareAndSet(false, true)) {
+            return -1;
+        }
+        return Math.max(delayMs, lastRefreshTs + minIntervalMs - ts);
+    }
+
+    void onRefresh(long ts) {
+        lastRefreshTs = ts;
+        pending.set(false);
+    }
+
+}
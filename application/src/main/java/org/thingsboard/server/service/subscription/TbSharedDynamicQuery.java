@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Dynamic entity data query that is refreshed once for all the subscriptions with the same query and permission scope.
+ * The telemetry subscriptions stay per session: a shared one would miss the updates received between the own query of
+ * a joining session and its join, while each session de-duplicates the latest values against its own data.
+ */
+@RequiredArgsConstructor
+class TbSharedDynamicQuery {
+
+    @Getter
+    private final Key key;
+    // keyed by session and command, because the hash code of the subscription context changes with its data
+    private final ConcurrentMap<String, TbEntityDataSubCtx> subscriptions = new ConcurrentHashMap<>();
+    private volatile ScheduledFuture<?> refreshTask;
+    @Getter
+    private final TbEventRefreshState eventRefresh = new TbEventRefreshState();
+
+    void addSubscription(TbEntityDataSubCtx ctx) {
+        subscriptions.put(toSubscriptionKey(ctx), ctx);
+    }
+
+    void removeSubscription(TbEntityDataSubCtx ctx) {
+        subscriptions.computeIfPresent(toSubscriptionKey(ctx), (key, existing) -> existing == ctx ? null : existing);
+    }
+
+    Collection<TbEntityDataSubCtx> getSubscriptions() {
+        return subscriptions.values();
+    }
+
+    boolean hasSubscriptions() {
+        return !subscriptions.isEmpty();
+    }
+
+    private static String toSubscriptionKey(TbEntityDataSubCtx ctx) {
+        return ctx.getSessionId() + "|" + ctx.getCmdId();
+    }
+
+    void setRefreshTask(ScheduledFuture<?> refreshTask) {
+        this.refreshTask = refreshTask;
+    }
+
+    void cancelRefreshTask() {
+        if (refreshTask != null) {
+            refreshTask.cancel(true);
+        }
+    }
+
+    /**
+     * @param query JSON of the query, so that equal queries from different sessions have equal keys
+     */
+    record Key(TenantId tenantId, CustomerId customerId, String query) {
+    }
+
+}
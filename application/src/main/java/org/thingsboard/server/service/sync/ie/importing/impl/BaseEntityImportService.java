@@ -207,19 +207,25 @@ public abstract class BaseEntityImportService<I extends EntityId, E extends Expo
                 existingRelations.addAll(relationDao.findAllByFrom(tenantId, entity.getId(), RelationTypeGroup.COMMON));
                 // dao is used here instead of service to avoid getting cached values, because relationService.deleteRelation will evict value from cache only after transaction is committed
 
+                List<EntityRelation> relationsToDelete = new ArrayList<>();
                 for (EntityRelation existingRelation : existingRelations) {
                     EntityRelation relation = relationsMap.get(existingRelation);
                     if (relation == null) {
-                        importResult.setUpdatedRelatedEntities(true);
-                        relationService.deleteRelation(ctx.getTenantId(), existingRelation.getFrom(), existingRelation.getTo(), existingRelation.getType(), existingRelation.getTypeGroup());
-                        importResult.addSendEventsCallback(() -> {
-                            logEntityActionService.logEntityRelationAction(tenantId, null,
-                                    existingRelation, ctx.getUser(), ActionType.RELATION_DELETED, null, existingRelation);
-                        });
+                        relationsToDelete.add(existingRelation);
                     } else if (Objects.equal(relation.getAdditionalInfo(), existingRelation.getAdditionalInfo())) {
                         relationsMap.remove(relation);
                     }
                 }
+                if (!relationsToDelete.isEmpty()) {
+                    importResult.setUpdatedRelatedEntities(true);
+                    relationService.deleteRelations(tenantId, relationsToDelete);
+                    importResult.addSendEventsCallback(() -> {
+                        for (EntityRelation deletedRelation : relationsToDelete) {
+                            logEntityActionService.logEntityRelationAction(tenantId, null,
+                                    deletedRelation, ctx.getUser(), ActionType.RELATION_DELETED, null, deletedRelation);
+                        }
+                    });
+                }
             }
             if (!relationsMap.isEmpty()) {
                 importResult.setUpdatedRelatedEntities(true);
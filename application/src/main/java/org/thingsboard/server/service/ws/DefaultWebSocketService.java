@@ -28,6 +28,7 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
+import org.thingsboard.common.util.CborUtil;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
@@ -262,12 +263,23 @@ public class DefaultWebSocketService implements WebSocketService {
     @Override
     public void sendUpdate(String sessionId, int cmdId, TelemetrySubscriptionUpdate update) {
         // We substitute the subscriptionId with cmdId for old-style subscriptions.
-        doSendUpdate(sessionId, cmdId, update.copyWithNewSubscriptionId(cmdId));
+        doSendUpdate(sessionId, cmdId, update.copyWithNewSubscriptionId(cmdId), null);
     }
 
     @Override
     public void sendUpdate(String sessionId, CmdUpdate update) {
-        doSendUpdate(sessionId, update.getCmdId(), update);
+        sendUpdate(sessionId, update, null);
+    }
+
+    @Override
+    public void sendUpdate(String sessionId, CmdUpdate update, String conflationKey) {
+        doSendUpdate(sessionId, update.getCmdId(), update, conflationKey);
+    }
+
+    private void sendLatestUpdate(String sessionId, int cmdId, TelemetrySubscriptionUpdate update) {
+        String conflationKey = update.getErrorCode() == 0 && update.getData() != null ?
+                cmdId + "|" + String.join(",", update.getData().keySet()) : null;
+        doSendUpdate(sessionId, cmdId, update.copyWithNewSubscriptionId(cmdId), conflationKey);
     }
 
     @Override
@@ -276,10 +288,10 @@ public class DefaultWebSocketService implements WebSocketService {
         sendUpdate(sessionRef, update);
     }
 
-    private <T> void doSendUpdate(String sessionId, int cmdId, T update) {
+    private <T> void doSendUpdate(String sessionId, int cmdId, T update, String conflationKey) {
         WsSessionMetaData md = wsSessionsMap.get(sessionId);
         if (md != null) {
-            sendUpdate(md.getSessionRef(), cmdId, update);
+            sendUpdate(md.getSessionRef(), cmdId, update, conflationKey);
         }
     }
 
@@ -459,7 +471,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                sendLatestUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
                             } finally {
                                 subLock.unlock();
                             }
@@ -571,7 +583,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                sendLatestUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
                             } finally {
                                 subLock.unlock();
                             }
@@ -666,7 +678,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                sendLatestUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
                             } finally {
                                 subLock.unlock();
                             }
@@ -721,7 +733,11 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                if (cmd.getTimeWindow() > 0) {
+                                    sendUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                } else {
+                                    sendLatestUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                }
                             } finally {
                                 subLock.unlock();
                             }
@@ -845,11 +861,26 @@ public class DefaultWebSocketService implements WebSocketService {
     }
 
     private void sendUpdate(WebSocketSessionRef sessionRef, int cmdId, Object update) {
+        sendUpdate(sessionRef, cmdId, update, null);
+    }
+
+    private void sendUpdate(WebSocketSessionRef sessionRef, int cmdId, Object update, String conflationKey) {
         try {
-            String msg = JacksonUtil.OBJECT_MAPPER.writeValueAsString(update);
+            if (sessionRef.isBinaryEncoding()) {
+                byte[] msg = update instanceof TelemetrySubscriptionUpdate tsUpdate ? tsUpdate.toCbor() : CborUtil.CBOR_MAPPER.writeValueAsBytes(update);
+                executor.submit(() -> {
+                    try {
+                        msgEndpoint.send(sessionRef, cmdId, msg, conflationKey);
+                    } catch (IOException e) {
+                        log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
+                    }
+                });
+                return;
+            }
+            String msg = update instanceof TelemetrySubscriptionUpdate tsUpdate ? tsUpdate.toJson() : JacksonUtil.OBJECT_MAPPER.writeValueAsString(update);
             executor.submit(() -> {
                 try {
-                    msgEndpoint.send(sessionRef, cmdId, msg);
+                    msgEndpoint.send(sessionRef, cmdId, msg, conflationKey);
                 } catch (IOException e) {
                     log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
                 }
@@ -24,7 +24,17 @@ import java.io.IOException;
  */
 public interface WebSocketMsgEndpoint {
 
-    void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException;
+    default void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException {
+        send(sessionRef, subscriptionId, msg, null);
+    }
+
+    /**
+     * @param conflationKey key of the latest values carried by the message, or null if the message must not be conflated.
+     *                      A queued message is replaced by the newer message with the same key.
+     */
+    void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg, String conflationKey) throws IOException;
+
+    void send(WebSocketSessionRef sessionRef, int subscriptionId, byte[] msg, String conflationKey) throws IOException;
 
     void sendPing(WebSocketSessionRef sessionRef, long currentTime) throws IOException;
 
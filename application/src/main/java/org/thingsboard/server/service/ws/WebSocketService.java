@@ -33,6 +33,8 @@ public interface WebSocketService {
 
     void sendUpdate(String sessionId, CmdUpdate update);
 
+    void sendUpdate(String sessionId, CmdUpdate update, String conflationKey);
+
     void sendError(WebSocketSessionRef sessionRef, int subId, SubscriptionErrorCode errorCode, String errorMsg);
 
     void close(String sessionId, CloseStatus status);
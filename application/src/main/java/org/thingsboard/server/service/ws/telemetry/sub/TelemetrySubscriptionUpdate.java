@@ -15,10 +15,17 @@
  */
 package org.thingsboard.server.service.ws.telemetry.sub;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.thingsboard.common.util.CborUtil;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.service.subscription.SubscriptionErrorCode;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -27,16 +34,31 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
 
-@AllArgsConstructor
 public class TelemetrySubscriptionUpdate {
+
+    private static final int CBOR_INDEFINITE_MAP_START = 0xbf;
+    private static final int CBOR_BREAK = 0xff;
+    private static final byte[] CBOR_SUBSCRIPTION_ID_KEY = toCborTextString("subscriptionId");
+
     private final int subscriptionId;
     private int errorCode;
     private String errorMsg;
     private Map<String, List<Object>> data;
+    // Values derived from the data. Shared with the copies of the update, so they are computed once for all subscriptions.
+    private final DerivedData derived;
+
+    private TelemetrySubscriptionUpdate(int subscriptionId, int errorCode, String errorMsg, Map<String, List<Object>> data, DerivedData derived) {
+        this.subscriptionId = subscriptionId;
+        this.errorCode = errorCode;
+        this.errorMsg = errorMsg;
+        this.data = data;
+        this.derived = derived;
+    }
 
     public TelemetrySubscriptionUpdate(int subscriptionId, List<TsKvEntry> data) {
         super();
         this.subscriptionId = subscriptionId;
+        this.derived = new DerivedData();
         this.data = new TreeMap<>();
         if (data != null) {
             for (TsKvEntry tsEntry : data) {
@@ -53,6 +75,7 @@ public class TelemetrySubscriptionUpdate {
         super();
         this.subscriptionId = subscriptionId;
         this.data = data;
+        this.derived = new DerivedData();
     }
 
     public TelemetrySubscriptionUpdate(int subscriptionId, SubscriptionErrorCode errorCode) {
@@ -64,6 +87,7 @@ public class TelemetrySubscriptionUpdate {
         this.subscriptionId = subscriptionId;
         this.errorCode = errorCode.getCode();
         this.errorMsg = errorMsg != null ? errorMsg : errorCode.getDefaultMsg();
+        this.derived = new DerivedData();
     }
 
     public int getSubscriptionId() {
@@ -77,13 +101,17 @@ public class TelemetrySubscriptionUpdate {
     public Map<String, Long> getLatestValues() {
         if (data == null) {
             return Collections.emptyMap();
-        } else {
-            return data.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> {
+        }
+        Map<String, Long> latestValues = derived.latestValues;
+        if (latestValues == null) {
+            latestValues = Collections.unmodifiableMap(data.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> {
                 List<Object> data = e.getValue();
                 Object[] latest = (Object[]) data.get(data.size() - 1);
                 return (long) latest[0];
-            }));
+            })));
+            derived.latestValues = latestValues;
         }
+        return latestValues;
     }
 
     public int getErrorCode() {
@@ -95,7 +123,111 @@ public class TelemetrySubscriptionUpdate {
     }
 
     public TelemetrySubscriptionUpdate copyWithNewSubscriptionId(int subscriptionId){
-        return new TelemetrySubscriptionUpdate(subscriptionId, errorCode, errorMsg, data);
+        return new TelemetrySubscriptionUpdate(subscriptionId, errorCode, errorMsg, data, derived);
+    }
+
+    /**
+     * Serializes the update to the same JSON as the object mapper does.
+     * The data part is serialized once and reused by all the copies of the update.
+     */
+    public String toJson() throws JsonProcessingException {
+        if (data == null) {
+            return JacksonUtil.OBJECT_MAPPER.writeValueAsString(this);
+        }
+        String encodedData = derived.encodedData;
+        if (encodedData == null) {
+            encodedData = "\"data\":" + JacksonUtil.OBJECT_MAPPER.writeValueAsString(data) +
+                    ",\"latestValues\":" + JacksonUtil.OBJECT_MAPPER.writeValueAsString(getLatestValues());
+            derived.encodedData = encodedData;
+        }
+        return "{\"subscriptionId\":" + subscriptionId +
+                ",\"errorCode\":" + errorCode +
+                ",\"errorMsg\":" + JacksonUtil.OBJECT_MAPPER.writeValueAsString(errorMsg) +
+                "," + encodedData + "}";
+    }
+
+    /**
+     * Serializes the update to the same CBOR map as the CBOR mapper does.
+     * All the fields but the subscription id are serialized once and reused by all the copies of the update.
+     */
+    public byte[] toCbor() throws JsonProcessingException {
+        if (data == null) {
+            return CborUtil.CBOR_MAPPER.writeValueAsBytes(this);
+        }
+        byte[] encodedFields = derived.cborEncodedFields;
+        if (encodedFields == null) {
+            encodedFields = encodeCborFields();
+            derived.cborEncodedFields = encodedFields;
+        }
+        int subscriptionIdLength = getCborIntLength(subscriptionId);
+        byte[] result = new byte[1 + CBOR_SUBSCRIPTION_ID_KEY.length + subscriptionIdLength + encodedFields.length + 1];
+        int offset = 0;
+        result[offset++] = (byte) CBOR_INDEFINITE_MAP_START;
+        System.arraycopy(CBOR_SUBSCRIPTION_ID_KEY, 0, result, offset, CBOR_SUBSCRIPTION_ID_KEY.length);
+        offset += CBOR_SUBSCRIPTION_ID_KEY.length;
+        writeCborInt(result, offset, subscriptionIdLength, subscriptionId);
+        offset += subscriptionIdLength;
+        System.arraycopy(encodedFields, 0, result, offset, encodedFields.length);
+        result[result.length - 1] = (byte) CBOR_BREAK;
+        return result;
+    }
+
+    private byte[] encodeCborFields() throws JsonProcessingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = CborUtil.CBOR_MAPPER.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.flush();
+            int start = out.size();
+            generator.writeNumberField("errorCode", errorCode);
+            generator.writeStringField("errorMsg", errorMsg);
+            generator.writeObjectField("data", data);
+            generator.writeObjectField("latestValues", getLatestValues());
+            generator.flush();
+            int end = out.size();
+            generator.writeEndObject();
+            return Arrays.copyOfRange(out.toByteArray(), start, end);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] toCborTextString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // the length of a string shorter than 24 bytes is stored in the header byte
+        byte[] result = new byte[bytes.length + 1];
+        result[0] = (byte) (0x60 | bytes.length);
+        System.arraycopy(bytes, 0, result, 1, bytes.length);
+        return result;
+    }
+
+    private static int getCborIntLength(int value) {
+        long argument = value < 0 ? -1L - value : value;
+        if (argument < 24) {
+            return 1;
+        } else if (argument < 0x100) {
+            return 2;
+        } else if (argument < 0x10000) {
+            return 3;
+        } else {
+            return 5;
+        }
+    }
+
+    // the header byte holds the major type (0 - unsigned, 1 - negative integer) and the size of the argument that follows it
+    private static void writeCborInt(byte[] out, int offset, int length, int value) {
+        int majorType = value < 0 ? 0x20 : 0;
+        long argument = value < 0 ? -1L - value : value;
+        switch (length) {
+            case 1 -> out[offset] = (byte) (majorType | argument);
+            case 2 -> out[offset] = (byte) (majorType | 24);
+            case 3 -> out[offset] = (byte) (majorType | 25);
+            default -> out[offset] = (byte) (majorType | 26);
+        }
+        for (int i = 1; i < length; i++) {
+            out[offset + i] = (byte) (argument >> (8 * (length - 1 - i)));
+        }
     }
 
     @Override
@@ -110,4 +242,10 @@ public class TelemetrySubscriptionUpdate {
         });
         return result.toString();
     }
+
+    private static class DerivedData {
+        private volatile Map<String, Long> latestValues;
+        private volatile String encodedData;
+        private volatile byte[] cborEncodedFields;
+    }
 }
@@ -21,8 +21,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.thingsboard.common.util.CborUtil;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.service.ws.WebSocketSessionRef;
 
@@ -31,9 +34,12 @@ import jakarta.websocket.SendHandler;
 import jakarta.websocket.SendResult;
 import jakarta.websocket.Session;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -163,6 +169,102 @@ class TbWebSocketHandlerTest {
         verify(asyncRemote, times(1)).sendText(anyString(), any());
     }
 
+    @Test
+    void sendHandler_sendMsg_conflation() {
+        ReflectionTestUtils.setField(wsHandler, "conflationEnabled", true);
+        List<String> outputs = new ArrayList<>();
+        willAnswer(invocation -> outputs.add(invocation.getArgument(0))).given(asyncRemote).sendText(anyString(), any());
+
+        sendHandler.sendMsg("in-flight", "1|a");
+        sendHandler.sendMsg("a1", "1|a");
+        sendHandler.sendMsg("b1", "1|b");
+        sendHandler.sendMsg("a2", "1|a");
+        sendHandler.sendMsg("not conflated");
+        sendHandler.sendMsg("a3", "1|a");
+        for (int i = 0; i < 3; i++) {
+            sendHandler.onResult(new SendResult());
+        }
+
+        assertThat(outputs).containsExactly("in-flight", "b1", "not conflated", "a3");
+        sendHandler.sendMsg("a4", "1|a");
+        sendHandler.onResult(new SendResult());
+        assertThat(outputs).last().isEqualTo("a4");
+        verify(sendHandler, never()).closeSession(any());
+    }
+
+    @Test
+    void sendHandler_sendMsg_conflation_overlappingKeys() {
+        ReflectionTestUtils.setField(wsHandler, "conflationEnabled", true);
+        List<String> outputs = new ArrayList<>();
+        willAnswer(invocation -> outputs.add(invocation.getArgument(0))).given(asyncRemote).sendText(anyString(), any());
+
+        sendHandler.sendMsg("in-flight", "1|hum,temp");
+        sendHandler.sendMsg("temp=1,hum=1", "1|hum,temp");
+        sendHandler.sendMsg("temp=2", "1|temp");
+        sendHandler.sendMsg("temp=3,hum=3", "1|hum,temp");
+        for (int i = 0; i < 2; i++) {
+            sendHandler.onResult(new SendResult());
+        }
+
+        assertThat(outputs).containsExactly("in-flight", "temp=2", "temp=3,hum=3");
+        verify(sendHandler, never()).closeSession(any());
+    }
+
+    @Test
+    void sendHandler_sendMsg_conflation_supersededMsgsNotCountedInQueueSize() {
+        ReflectionTestUtils.setField(wsHandler, "conflationEnabled", true);
+        List<String> outputs = new ArrayList<>();
+        willAnswer(invocation -> outputs.add(invocation.getArgument(0))).given(asyncRemote).sendText(anyString(), any());
+
+        sendHandler.sendMsg("in-flight", "1|temp");
+        for (int i = 0; i < maxMsgQueuePerSession * 2; i++) {
+            sendHandler.sendMsg("temp=" + i, "1|temp");
+        }
+        sendHandler.onResult(new SendResult());
+        sendHandler.onResult(new SendResult());
+
+        assertThat(outputs).containsExactly("in-flight", "temp=" + (maxMsgQueuePerSession * 2 - 1));
+        verify(sendHandler, never()).closeSession(any());
+    }
+
+    @Test
+    void sendHandler_sendMsg_batching() {
+        ReflectionTestUtils.setField(wsHandler, "batchFlushIntervalMs", 100L);
+        List<String> outputs = new ArrayList<>();
+        willAnswer(invocation -> outputs.add(invocation.getArgument(0))).given(asyncRemote).sendText(anyString(), any());
+
+        sendHandler.sendMsg("{\"cmdId\":1}");
+        sendHandler.sendMsg("{\"cmdId\":2}");
+        sendHandler.sendMsg(TbWebSocketPingMsg.INSTANCE);
+        sendHandler.sendMsg("{\"cmdId\":3}");
+        assertThat(outputs).isEmpty();
+
+        sendHandler.processNextMsg();
+        assertThat(outputs).containsExactly("[{\"cmdId\":1},{\"cmdId\":2}]");
+        sendHandler.onResult(new SendResult());
+        sendHandler.processNextMsg();
+        sendHandler.processNextMsg();
+        assertThat(outputs).containsExactly("[{\"cmdId\":1},{\"cmdId\":2}]", "{\"cmdId\":3}");
+    }
+
+    @Test
+    void sendHandler_sendBinaryMsg_conflation_and_batching() throws IOException {
+        ReflectionTestUtils.setField(wsHandler, "conflationEnabled", true);
+        ReflectionTestUtils.setField(wsHandler, "batchFlushIntervalMs", 100L);
+        List<byte[]> outputs = new ArrayList<>();
+        willAnswer(invocation -> outputs.add(((ByteBuffer) invocation.getArgument(0)).array())).given(asyncRemote).sendBinary(any(), any());
+
+        sendHandler.sendMsg(CborUtil.CBOR_MAPPER.writeValueAsBytes(Map.of("cmdId", 1, "value", 1)), "1|a");
+        sendHandler.sendMsg(CborUtil.CBOR_MAPPER.writeValueAsBytes(Map.of("cmdId", 2)), null);
+        sendHandler.sendMsg(CborUtil.CBOR_MAPPER.writeValueAsBytes(Map.of("cmdId", 1, "value", 2)), "1|a");
+        sendHandler.processNextMsg();
+
+        assertThat(outputs).hasSize(1);
+        assertThat(CborUtil.CBOR_MAPPER.readTree(outputs.get(0)))
+                .isEqualTo(JacksonUtil.toJsonNode("[{\"cmdId\":2},{\"cmdId\":1,\"value\":2}]"));
+        verify(asyncRemote, never()).sendText(anyString(), any());
+    }
+
     @Test
     void sendHandler_onMsg_allProcessed() throws Exception {
         Deque<String> msgs = new ConcurrentLinkedDeque<>();
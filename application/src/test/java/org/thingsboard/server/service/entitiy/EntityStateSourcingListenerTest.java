@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.entitiy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.audit.ActionType;
+import org.thingsboard.server.common.data.edge.EdgeEvent;
+import org.thingsboard.server.common.data.id.AlarmId;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.EdgeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.eventsourcing.RelationActionEvent;
+import org.thingsboard.server.dao.eventsourcing.SaveEntityEvent;
+import org.thingsboard.server.dao.tenant.TenantService;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityChangeMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+public class EntityStateSourcingListenerTest {
+
+    @Mock
+    private TbClusterService tbClusterService;
+    @Mock
+    private TenantService tenantService;
+
+    private EntityStateSourcingListener listener;
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+
+    @BeforeEach
+    void setUp() {
+        listener = new EntityStateSourcingListener(tbClusterService, tenantService);
+        ReflectionTestUtils.setField(listener, "dynamicQueryEventRefreshEnabled", true);
+    }
+
+    @Test
+    void testEntityAndRelationChangesAreBroadcastToCore() {
+        EdgeId edgeId = new EdgeId(UUID.randomUUID());
+        // do not change the result of the entity data queries
+        listener.handleEvent(SaveEntityEvent.builder().tenantId(tenantId).entityId(edgeId).entity(new EdgeEvent()).build());
+        listener.handleEvent(SaveEntityEvent.builder().tenantId(tenantId).entityId(new AlarmId(UUID.randomUUID())).build());
+
+        listener.handleEvent(SaveEntityEvent.builder().tenantId(tenantId).entityId(new AssetId(UUID.randomUUID())).build());
+        listener.handleEvent(new RelationActionEvent(tenantId, null, ActionType.RELATION_DELETED));
+
+        ArgumentCaptor<ToCoreNotificationMsg> msgCaptor = ArgumentCaptor.forClass(ToCoreNotificationMsg.class);
+        then(tbClusterService).should(times(2)).broadcastToCore(msgCaptor.capture());
+        EntityChangeMsgProto entityChangeMsg = msgCaptor.getAllValues().get(0).getEntityChangeMsg();
+        assertThat(new UUID(entityChangeMsg.getTenantIdMSB(), entityChangeMsg.getTenantIdLSB())).isEqualTo(tenantId.getId());
+        assertThat(entityChangeMsg.getEntityType()).isEqualTo(EntityType.ASSET.name());
+        EntityChangeMsgProto relationChangeMsg = msgCaptor.getAllValues().get(1).getEntityChangeMsg();
+        assertThat(new UUID(relationChangeMsg.getTenantIdMSB(), relationChangeMsg.getTenantIdLSB())).isEqualTo(tenantId.getId());
+        assertThat(relationChangeMsg.hasEntityType()).isFalse();
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.ruleengine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbMsgIdempotencyCacheTest {
+
+    private static final String MAIN = "Main";
+
+    private TbMsgIdempotencyCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new TbMsgIdempotencyCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 1024);
+        cache.init();
+    }
+
+    @Test
+    public void testMarkProcessed() {
+        UUID id = UUID.randomUUID();
+        assertThat(cache.isProcessed(MAIN, id)).isFalse();
+
+        cache.markProcessed(MAIN, id);
+        cache.markProcessed(MAIN, id);
+
+        assertThat(cache.isProcessed(MAIN, id)).isTrue();
+        assertThat(cache.isProcessed(MAIN, UUID.randomUUID())).isFalse();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testReEnqueuedMsgIsNotSkippedInOtherQueue() {
+        UUID id = UUID.randomUUID();
+        cache.markProcessed(MAIN, id);
+
+        assertThat(cache.isProcessed(MAIN, id)).isTrue();
+        assertThat(cache.isProcessed("HighPriority", id)).isFalse();
+
+        cache.markProcessed("HighPriority", id);
+        assertThat(cache.isProcessed("HighPriority", id)).isTrue();
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            cache.markProcessed(MAIN, id);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(1024);
+        assertThat(cache.getMemoryUsage()).isEqualTo(1024 * 2 * Long.BYTES + 1024 / 8);
+        assertThat(cache.isProcessed(MAIN, ids.get(ids.size() - 1))).isTrue();
+        assertThat(ids.stream().filter(id -> cache.isProcessed(MAIN, id)).count()).isEqualTo(cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        TbMsgIdempotencyCache disabled = new TbMsgIdempotencyCache();
+        disabled.init();
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.getMemoryUsage()).isZero();
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.ruleengine;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.queue.TbQueueOffsets;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategy;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TbRuleEnginePackPipelineTest {
+
+    private static final String TOPIC = "tb_rule_engine.main.0";
+    private static final String OTHER_TOPIC = "tb_rule_engine.main.1";
+
+    private final EntityId deviceA = new DeviceId(UUID.randomUUID());
+    private final EntityId deviceB = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testMaxPacksInFlight() {
+        TbRuleEnginePackPipeline pipeline = new TbRuleEnginePackPipeline(2);
+        pipeline.add(createPack(Collections.emptySet(), 10));
+        pipeline.add(createPack(Collections.emptySet(), 20));
+
+        assertThat(pipeline.canSubmit(createPack(Collections.emptySet(), 30))).isFalse();
+    }
+
+    @Test
+    public void testOffsetsCommittedUpToProcessedPrefix() {
+        TbRuleEnginePackPipeline pipeline = new TbRuleEnginePackPipeline(3);
+        TbRuleEnginePackPipeline.Pack first = createPack(Collections.emptySet(), 10);
+        TbRuleEnginePackPipeline.Pack second = createPack(Collections.emptySet(), 20);
+        TbRuleEnginePackPipeline.Pack third = createPack(Collections.emptySet(), 30);
+        pipeline.add(first);
+        pipeline.add(second);
+        pipeline.add(third);
+
+        pipeline.onProcessed(second);
+        assertThat(pipeline.pollProcessed(List.of(TOPIC))).isNull();
+
+        pipeline.onProcessed(first);
+        TbQueueOffsets offsets = pipeline.pollProcessed(List.of(TOPIC));
+        assertThat(offsets.getOffsets()).containsEntry(new TbQueueOffsets.Partition(TOPIC, 0), 20L);
+        assertThat(pipeline.getOldest()).isSameAs(third);
+        assertThat(pipeline.canSubmit(createPack(Collections.emptySet(), 40))).isTrue();
+    }
+
+    @Test
+    public void testOffsetsOfRevokedPartitionsNotCommitted() {
+        TbRuleEnginePackPipeline pipeline = new TbRuleEnginePackPipeline(3);
+        TbRuleEnginePackPipeline.Pack first = createPack(Collections.emptySet(), 10);
+        TbQueueOffsets secondOffsets = new TbQueueOffsets();
+        secondOffsets.update(TOPIC, 0, 20);
+        secondOffsets.update(OTHER_TOPIC, 0, 5);
+        TbRuleEnginePackPipeline.Pack second = createPack(Collections.emptySet(), secondOffsets);
+        pipeline.add(first);
+        pipeline.add(second);
+
+        pipeline.onProcessed(first);
+        assertThat(pipeline.pollProcessed(List.of(OTHER_TOPIC))).isNull();
+        assertThat(pipeline.getOldest()).isSameAs(second);
+
+        pipeline.onProcessed(second);
+        TbQueueOffsets offsets = pipeline.pollProcessed(List.of(OTHER_TOPIC));
+        assertThat(offsets.getOffsets()).containsOnly(entry(new TbQueueOffsets.Partition(OTHER_TOPIC, 0), 5L));
+        assertThat(pipeline.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testPackWithSameOriginatorWaitsForPreviousPack() {
+        TbRuleEnginePackPipeline pipeline = new TbRuleEnginePackPipeline(3);
+        TbRuleEnginePackPipeline.Pack first = createPack(Set.of(deviceA), 10);
+        pipeline.add(first);
+
+        assertThat(pipeline.canSubmit(createPack(Set.of(deviceB), 20))).isTrue();
+        assertThat(pipeline.canSubmit(createPack(Set.of(deviceA, deviceB), 20))).isFalse();
+
+        pipeline.onProcessed(first);
+        assertThat(pipeline.canSubmit(createPack(Set.of(deviceA, deviceB), 20))).isTrue();
+    }
+
+    @Test
+    public void testSequentialPackWaitsForAllPreviousPacks() {
+        TbRuleEnginePackPipeline pipeline = new TbRuleEnginePackPipeline(3);
+        TbRuleEnginePackPipeline.Pack first = createPack(Collections.emptySet(), 10);
+        pipeline.add(first);
+        assertThat(pipeline.canSubmit(createPack(null, 20))).isFalse();
+
+        pipeline.onProcessed(first);
+        TbRuleEnginePackPipeline.Pack sequential = createPack(null, 20);
+        assertThat(pipeline.canSubmit(sequential)).isTrue();
+        pipeline.add(sequential);
+        assertThat(pipeline.canSubmit(createPack(Collections.emptySet(), 30))).isFalse();
+    }
+
+    private TbRuleEnginePackPipeline.Pack createPack(Set<EntityId> orderedEntityIds, long nextOffset) {
+        TbQueueOffsets offsets = new TbQueueOffsets();
+        offsets.update(TOPIC, 0, nextOffset);
+        return createPack(orderedEntityIds, offsets);
+    }
+
+    private TbRuleEnginePackPipeline.Pack createPack(Set<EntityId> orderedEntityIds, TbQueueOffsets offsets) {
+        TbRuleEngineSubmitStrategy submitStrategy = mock(TbRuleEngineSubmitStrategy.class);
+        when(submitStrategy.getOrderedEntityIds()).thenReturn(orderedEntityIds);
+        return new TbRuleEnginePackPipeline.Pack(submitStrategy, mock(TbRuleEngineProcessingStrategy.class), offsets);
+    }
+
+}
@@ -27,6 +27,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.testcontainers.shaded.org.apache.commons.lang3.RandomUtils;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardExecutors;
@@ -49,9 +50,12 @@ import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
 import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.TbQueueOffsets;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.common.AbstractTbQueueConsumerTemplate;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.common.consumer.QueueConsumerTuner;
+import org.thingsboard.server.queue.common.consumer.QueueConsumerTunerFactory;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.queue.discovery.QueueKey;
 import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
@@ -59,6 +63,7 @@ import org.thingsboard.server.queue.provider.KafkaMonolithQueueFactory;
 import org.thingsboard.server.queue.provider.KafkaTbRuleEngineQueueFactory;
 import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
 import org.thingsboard.server.queue.provider.TbRuleEngineQueueFactory;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategyFactory;
 import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategyFactory;
 import org.thingsboard.server.service.stats.RuleEngineStatisticsService;
@@ -75,6 +80,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -85,6 +91,8 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.willCallRealMethod;
 import static org.mockito.Mockito.after;
@@ -132,6 +140,7 @@ public class TbRuleEngineQueueConsumerManagerTest {
 
     private Set<TestConsumer> consumers;
     private boolean generateQueueMsgs;
+    private boolean offsetsCommitSupported;
     private AtomicInteger totalConsumedMsgs;
     private AtomicInteger totalProcessedMsgs;
 
@@ -140,10 +149,11 @@ public class TbRuleEngineQueueConsumerManagerTest {
         ruleEngineConsumerContext = new TbRuleEngineConsumerContext(
                 actorContext, statsFactory, spy(new TbRuleEngineSubmitStrategyFactory()),
                 spy(new TbRuleEngineProcessingStrategyFactory()), queueFactory, statisticsService,
-                serviceInfoProvider, partitionService, producerProvider, queueAdmin
+                serviceInfoProvider, partitionService, producerProvider, queueAdmin, new QueueConsumerTunerFactory(), new TbQueueRuleEngineSettings(), new TbMsgIdempotencyCache()
         );
         consumers = ConcurrentHashMap.newKeySet();
         generateQueueMsgs = true;
+        offsetsCommitSupported = false;
         totalConsumedMsgs = new AtomicInteger();
         totalProcessedMsgs = new AtomicInteger();
         doAnswer(inv -> {
@@ -292,6 +302,43 @@ public class TbRuleEngineQueueConsumerManagerTest {
         verifySubscribedAndLaunched(consumer, partitions);
     }
 
+    @Test
+    public void testPartitionsUpdate_consumerGroup() {
+        ruleEngineConsumerContext.setConsumersCount(3);
+        consumerManager = TbRuleEngineQueueConsumerManager.create()
+                .ctx(ruleEngineConsumerContext)
+                .queueKey(new QueueKey(ServiceType.TB_RULE_ENGINE, queue))
+                .consumerExecutor(consumersExecutor)
+                .scheduler(scheduler)
+                .taskExecutor(mgmtExecutor)
+                .build();
+        queue.setConsumerPerPartition(false);
+        consumerManager.init(queue);
+
+        // partitions owned by one of 3 nodes
+        consumerManager.update(createTpis(0, 3, 6, 9, 12, 15));
+        await().atMost(2, TimeUnit.SECONDS)
+                .until(() -> consumers.size() == 3);
+        TestConsumer consumer0 = getGroupConsumer(0);
+        TestConsumer consumer1 = getGroupConsumer(3);
+        TestConsumer consumer2 = getGroupConsumer(6);
+        verifySubscribedAndLaunched(consumer0, 0, 9);
+        verifySubscribedAndLaunched(consumer1, 3, 12);
+        verifySubscribedAndLaunched(consumer2, 6, 15);
+
+        consumerManager.update(createTpis(0, 3, 6, 9));
+        verifySubscribedAndLaunched(consumer1, 3);
+        verifySubscribedAndLaunched(consumer2, 6);
+        verifyNotTouched(consumer0);
+        assertThat(consumers).hasSize(3);
+
+        consumerManager.update(createTpis(0, 3));
+        verifyUnsubscribedAndStopped(consumer2);
+        verifySubscribedAndLaunched(consumer0, 0);
+        verifyNotTouched(consumer1);
+        assertThat(consumers).hasSize(2);
+    }
+
     @Test
     public void testPartitionsUpdate_consumerPerPartition() {
         queue.setConsumerPerPartition(true);
@@ -533,6 +580,87 @@ public class TbRuleEngineQueueConsumerManagerTest {
         generateQueueMsgs = false;
     }
 
+    @Test
+    public void testPipelinedProcessing() {
+        ruleEngineConsumerContext.setMaxPacksInFlight(3);
+        offsetsCommitSupported = true;
+        queue.setConsumerPerPartition(false);
+        queue.getSubmitStrategy().setType(SubmitStrategyType.SEQUENTIAL_BY_ORIGINATOR);
+        consumerManager.init(queue);
+
+        consumerManager.update(createTpis(1, 2));
+        TestConsumer consumer = getConsumer();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> totalProcessedMsgs.get() >= 5);
+        verify(consumer, atLeastOnce()).commit(any(TbQueueOffsets.class));
+        verify(consumer, never()).commit();
+    }
+
+    @Test
+    public void testTimedOutPacksAreNotSampledByTuner() {
+        QueueConsumerTuner tuner = mock(QueueConsumerTuner.class);
+        when(tuner.getPollInterval(anyLong())).thenAnswer(inv -> inv.getArgument(0));
+        when(tuner.getPackProcessingTimeout(anyInt(), anyLong())).thenAnswer(inv -> inv.getArgument(1));
+        QueueConsumerTunerFactory tunerFactory = mock(QueueConsumerTunerFactory.class);
+        when(tunerFactory.getTuner(any())).thenReturn(tuner);
+        ReflectionTestUtils.setField(ruleEngineConsumerContext, "consumerTunerFactory", tunerFactory);
+        AtomicBoolean ack = new AtomicBoolean();
+        doAnswer(inv -> {
+            if (ack.get()) {
+                QueueToRuleEngineMsg msg = inv.getArgument(0);
+                msg.getMsg().getCallback().onSuccess();
+            }
+            totalProcessedMsgs.incrementAndGet();
+            return null;
+        }).when(actorContext).tell(any());
+        consumerManager = TbRuleEngineQueueConsumerManager.create()
+                .ctx(ruleEngineConsumerContext)
+                .queueKey(new QueueKey(ServiceType.TB_RULE_ENGINE, queue))
+                .consumerExecutor(consumersExecutor)
+                .scheduler(scheduler)
+                .taskExecutor(mgmtExecutor)
+                .build();
+        queue.setConsumerPerPartition(false);
+        queue.setPackProcessingTimeout(100);
+        consumerManager.init(queue);
+        consumerManager.update(createTpis(1));
+        TestConsumer consumer = getConsumer();
+
+        await().atMost(10, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(consumer, atLeast(3)).commit());
+        verify(tuner, never()).onPackProcessed(anyInt(), anyLong());
+
+        ack.set(true);
+        await().atMost(10, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(tuner, atLeastOnce()).onPackProcessed(eq(1), anyLong()));
+    }
+
+    @Test
+    public void testIdempotencyCacheHits_sequentialByOriginator() {
+        TbMsgIdempotencyCache idempotencyCache = ruleEngineConsumerContext.getIdempotencyCache();
+        ReflectionTestUtils.setField(idempotencyCache, "enabled", true);
+        ReflectionTestUtils.setField(idempotencyCache, "maxSize", 100000);
+        idempotencyCache.init();
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        List<TbMsg> msgs = IntStream.range(0, 10000)
+                .mapToObj(i -> TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, new TbMsgMetaData(), "{}"))
+                .toList();
+        msgs.forEach(msg -> idempotencyCache.markProcessed(queue.getName(), msg.getId()));
+
+        generateQueueMsgs = false;
+        queue.setConsumerPerPartition(false);
+        queue.getSubmitStrategy().setType(SubmitStrategyType.SEQUENTIAL_BY_ORIGINATOR);
+        consumerManager.init(queue);
+        consumerManager.update(createTpis(1));
+        TestConsumer consumer = getConsumer();
+        consumer.testMsgs = msgs;
+
+        await().atMost(10, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(consumer, atLeastOnce()).commit());
+        assertThat(consumer.testMsgs).isNull();
+        verify(actorContext, never()).tell(any());
+    }
+
     @Test
     public void testManyDifferentUpdates() throws Exception {
         queue.setConsumerPerPartition(RandomUtils.nextBoolean());
@@ -683,6 +811,16 @@ public class TbRuleEngineQueueConsumerManagerTest {
                         .findFirst().orElse(null), Objects::nonNull);
     }
 
+    // for consumer group
+    private TestConsumer getGroupConsumer(int partition) {
+        return await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> consumers.stream()
+                        .filter(consumer -> consumer.getPartitions() != null &&
+                                consumer.getPartitions().stream()
+                                        .anyMatch(tpi -> tpi.getPartition().get().equals(partition)))
+                        .findFirst().orElse(null), Objects::nonNull);
+    }
+
     // for single consumer
     private TestConsumer getConsumer() {
         return await().atMost(5, TimeUnit.SECONDS)
@@ -710,6 +848,9 @@ public class TbRuleEngineQueueConsumerManagerTest {
         private boolean pollingStarted;
 
         private TbMsg testMsg;
+        private volatile List<TbMsg> testMsgs;
+        private long polledCount;
+        private long committedCount;
 
         public TestConsumer(String topic) {
             super(topic);
@@ -723,8 +864,14 @@ public class TbRuleEngineQueueConsumerManagerTest {
                 throw new IllegalStateException("Cannot poll because not subscribed");
             }
             pollingStarted = true;
+            List<TbMsg> msgs = testMsgs;
+            if (msgs != null) {
+                testMsgs = null;
+                return msgs;
+            }
             if (testMsg != null && RandomUtils.nextBoolean()) {
                 Thread.sleep(100);
+                polledCount++;
                 return List.of(testMsg);
             }
             return Collections.emptyList();
@@ -734,7 +881,7 @@ public class TbRuleEngineQueueConsumerManagerTest {
         protected TbProtoQueueMsg<ToRuleEngineMsg> decode(TbMsg tbMsg) throws IOException {
             log.debug("decode()");
             UUID tenantId = UUID.randomUUID();
-            return new TbProtoQueueMsg<>(UUID.randomUUID(), ToRuleEngineMsg.newBuilder()
+            return new TbProtoQueueMsg<>(tbMsg.getId(), ToRuleEngineMsg.newBuilder()
                     .setTenantIdMSB(tenantId.getMostSignificantBits())
                     .setTenantIdLSB(tenantId.getLeastSignificantBits())
                     .addRelationTypes("Success")
@@ -757,6 +904,28 @@ public class TbRuleEngineQueueConsumerManagerTest {
             log.debug("doCommit() totalConsumedMsgs = {}", totalConsumedMsgs.incrementAndGet());
         }
 
+        @Override
+        public boolean isOffsetsCommitSupported() {
+            return offsetsCommitSupported;
+        }
+
+        @Override
+        public TbQueueOffsets getLastPolledOffsets() {
+            TbQueueOffsets offsets = new TbQueueOffsets();
+            getFullTopicNames().forEach(topic -> offsets.update(topic, 0, polledCount));
+            return offsets;
+        }
+
+        @Override
+        protected void doCommit(TbQueueOffsets offsets) {
+            if (!subscribed) {
+                throw new IllegalStateException("Cannot commit because not subscribed");
+            }
+            long offset = Collections.max(offsets.getOffsets().values());
+            log.debug("doCommit({}) totalConsumedMsgs = {}", offset, totalConsumedMsgs.addAndGet((int) (offset - committedCount)));
+            committedCount = offset;
+        }
+
         @Override
         public void unsubscribe() {
             super.unsubscribe();
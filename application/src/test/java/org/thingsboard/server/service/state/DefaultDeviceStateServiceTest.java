@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.service.state;
 
+import com.google.common.util.concurrent.Futures;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -39,11 +40,11 @@ import org.thingsboard.server.common.data.query.EntityData;
 import org.thingsboard.server.common.data.query.EntityKeyType;
 import org.thingsboard.server.common.data.query.TsValue;
 import org.thingsboard.server.common.msg.TbMsg;
-import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.common.msg.notification.NotificationRuleProcessor;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.device.DevicePartitionKeyResolver;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.sql.query.EntityQueryRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
@@ -56,6 +57,7 @@ import org.thingsboard.server.service.telemetry.TelemetrySubscriptionService;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -110,6 +112,8 @@ public class DefaultDeviceStateServiceTest {
     NotificationRuleProcessor notificationRuleProcessor;
     @Mock
     DefaultTbApiUsageReportClient defaultTbApiUsageReportClient;
+    @Mock
+    DevicePartitionKeyResolver partitionKeyResolver;
 
     TenantId tenantId = new TenantId(UUID.fromString("00797a3b-7aeb-4b5b-b57a-c2a810d0f112"));
     DeviceId deviceId = DeviceId.fromString("00797a3b-7aeb-4b5b-b57a-c2a810d0f112");
@@ -192,7 +196,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(DeviceState.builder().build())
-                .metaData(new TbMsgMetaData())
                 .build();
 
         doReturn(false).when(service).cleanDeviceStateIfBelongsToExternalPartition(tenantId, deviceId);
@@ -276,7 +279,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(DeviceState.builder().build())
-                .metaData(new TbMsgMetaData())
                 .build();
 
         doReturn(false).when(service).cleanDeviceStateIfBelongsToExternalPartition(tenantId, deviceId);
@@ -397,7 +399,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(DeviceState.builder().build())
-                .metaData(new TbMsgMetaData())
                 .build();
 
         doReturn(false).when(service).cleanDeviceStateIfBelongsToExternalPartition(tenantId, deviceId);
@@ -440,7 +441,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(DeviceState.builder().build())
-                .metaData(new TbMsgMetaData())
                 .build();
 
         given(partitionService.resolve(ServiceType.TB_CORE, tenantId, deviceId)).willReturn(tpi);
@@ -526,6 +526,38 @@ public class DefaultDeviceStateServiceTest {
         assertThat(deviceStateData.getState().getInactivityTimeout()).isEqualTo(5000L);
     }
 
+    @Test
+    public void givenPartitionKeyResolver_whenPartitionsAdded_thenFetchesOnlyDevicesOfAddedPartitions() throws Exception {
+        ReflectionTestUtils.setField(service, "partitionKeyResolver", partitionKeyResolver);
+        service.init();
+        tpi = TopicPartitionInfo.builder().partition(3).myPartition(true).build();
+        var deviceIdInfo = new DeviceIdInfo(tenantId.getId(), null, deviceId.getId());
+        var otherPartitionDeviceId = new DeviceId(UUID.randomUUID());
+        var otherPartitionDeviceIdInfo = new DeviceIdInfo(tenantId.getId(), null, otherPartitionDeviceId.getId());
+        given(partitionKeyResolver.getMinPartitionKey()).willReturn(100L);
+        given(partitionKeyResolver.getMaxPartitionKey()).willReturn(199L);
+        given(partitionKeyResolver.getPartitionKey(3)).willReturn(103L);
+        given(partitionKeyResolver.resolvePartitionKey(deviceId.getId())).willReturn(103L);
+        given(partitionKeyResolver.resolvePartitionKey(otherPartitionDeviceId.getId())).willReturn(104L);
+        given(partitionService.resolve(ServiceType.TB_CORE, tenantId, deviceId)).willReturn(tpi);
+        given(deviceService.findDeviceIdInfosWithoutPartitionKey(null, 10)).willReturn(List.of(deviceIdInfo, otherPartitionDeviceIdInfo));
+        given(deviceService.findDeviceIdInfosByPartitionKey(103L, null, 10)).willReturn(List.of(deviceIdInfo));
+        given(entityQueryRepository.findEntityDataByQueryInternal(any())).willReturn(new PageData<>());
+
+        try {
+            var fetchTasks = service.onAddedPartitions(Set.of(tpi));
+
+            assertThat(fetchTasks).containsOnlyKeys(tpi);
+            Futures.allAsList(fetchTasks.get(tpi)).get(30, TimeUnit.SECONDS);
+            then(deviceService).should().resetPartitionKeysNotInRange(100L, 199L);
+            // the other core services update the keys of the devices of their partitions
+            then(deviceService).should().updatePartitionKeys(Map.of(deviceId, 103L));
+            then(deviceService).should(never()).findDeviceIdInfos(any());
+        } finally {
+            service.stop();
+        }
+    }
+
     private void initStateService(long timeout) throws InterruptedException {
         service.stop();
         reset(service, telemetrySubscriptionService);
@@ -552,7 +584,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(deviceState)
-                .metaData(new TbMsgMetaData())
                 .build();
 
         service.deviceStates.put(deviceId, deviceStateData);
@@ -593,7 +624,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(deviceState)
-                .metaData(new TbMsgMetaData())
                 .build();
 
         service.deviceStates.put(deviceId, deviceStateData);
@@ -631,7 +661,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(deviceState)
-                .metaData(new TbMsgMetaData())
                 .build();
 
         service.deviceStates.put(deviceId, deviceStateData);
@@ -659,7 +688,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(deviceState)
-                .metaData(new TbMsgMetaData())
                 .build();
 
         service.deviceStates.put(deviceId, deviceStateData);
@@ -693,7 +721,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(deviceState)
-                .metaData(new TbMsgMetaData())
                 .build();
 
         service.deviceStates.put(deviceId, deviceStateData);
@@ -750,7 +777,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(deviceState)
-                .metaData(new TbMsgMetaData())
                 .build();
 
         // WHEN
@@ -790,6 +816,52 @@ public class DefaultDeviceStateServiceTest {
         }
     }
 
+    @Test
+    public void givenActivityPersistInterval_whenUpdateActivityState_thenPersistsOnlyLatestActivityTimeOnFlush() {
+        // GIVEN
+        ReflectionTestUtils.setField(service, "activityPersistIntervalMs", 1000L);
+        DeviceState deviceState = DeviceState.builder()
+                .active(true)
+                .lastActivityTime(100)
+                .inactivityTimeout(10000)
+                .build();
+        DeviceStateData deviceStateData = DeviceStateData.builder()
+                .tenantId(tenantId)
+                .deviceId(deviceId)
+                .state(deviceState)
+                .build();
+
+        // WHEN
+        service.updateActivityState(deviceId, deviceStateData, 200);
+        service.updateActivityState(deviceId, deviceStateData, 300);
+
+        // THEN
+        assertThat(deviceState.getLastActivityTime()).isEqualTo(300);
+        then(telemetrySubscriptionService).shouldHaveNoInteractions();
+
+        service.persistActivityTimes();
+        then(telemetrySubscriptionService).should().saveAttrAndNotify(
+                any(), eq(deviceId), any(AttributeScope.class), eq(LAST_ACTIVITY_TIME), eq(300L), any()
+        );
+        then(telemetrySubscriptionService).shouldHaveNoMoreInteractions();
+        assertThat(service.pendingActivityTimes).isEmpty();
+    }
+
+    @Test
+    public void givenPendingActivityTime_whenPartitionRemoved_thenPersistsActivityTime() {
+        // GIVEN
+        service.pendingActivityTimes.put(deviceId, 300L);
+
+        // WHEN
+        service.cleanupEntityOnPartitionRemoval(deviceId);
+
+        // THEN
+        then(telemetrySubscriptionService).should().saveAttrAndNotify(
+                any(), eq(deviceId), any(AttributeScope.class), eq(LAST_ACTIVITY_TIME), eq(300L), any()
+        );
+        assertThat(service.pendingActivityTimes).isEmpty();
+    }
+
     private static Stream<Arguments> provideParametersForUpdateActivityState() {
         return Stream.of(
                 Arguments.of(true,  100, 120, 80,  80,  false, false),
@@ -838,7 +910,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .state(deviceState)
-                .metaData(new TbMsgMetaData())
                 .build();
 
         service.deviceStates.put(deviceId, deviceStateData);
@@ -934,7 +1005,6 @@ public class DefaultDeviceStateServiceTest {
                 .tenantId(tenantId)
                 .deviceId(deviceId)
                 .deviceCreationTime(deviceCreationTime)
-                .metaData(new TbMsgMetaData())
                 .state(state)
                 .build();
 
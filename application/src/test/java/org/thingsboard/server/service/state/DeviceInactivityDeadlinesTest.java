@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeviceInactivityDeadlinesTest {
+
+    private final DeviceInactivityDeadlines deadlines = new DeviceInactivityDeadlines(1000);
+
+    @Test
+    public void testPollReturnsOnlyDevicesOfPassedBuckets() {
+        DeviceId first = new DeviceId(UUID.randomUUID());
+        DeviceId second = new DeviceId(UUID.randomUUID());
+        deadlines.schedule(first, 1500);
+        deadlines.schedule(second, 5000);
+
+        assertThat(deadlines.poll(999)).isEmpty();
+        assertThat(deadlines.poll(1200)).containsExactly(first);
+        assertThat(deadlines.poll(4999)).isEmpty();
+        assertThat(deadlines.poll(6000)).containsExactly(second);
+        assertThat(deadlines.size()).isZero();
+    }
+
+    @Test
+    public void testLaterDeadlineKeepsEarlierBucket() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        deadlines.schedule(deviceId, 1500);
+        deadlines.schedule(deviceId, 10000);
+
+        assertThat(deadlines.poll(1500)).containsExactly(deviceId);
+        assertThat(deadlines.poll(10000)).isEmpty();
+    }
+
+    @Test
+    public void testEarlierDeadlineMovesDevice() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        deadlines.schedule(deviceId, 10000);
+        deadlines.schedule(deviceId, 1500);
+
+        assertThat(deadlines.poll(1500)).containsExactly(deviceId);
+        assertThat(deadlines.poll(10000)).isEmpty();
+    }
+
+    @Test
+    public void testRemovedDeviceIsSkipped() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        deadlines.schedule(deviceId, 1500);
+        deadlines.remove(deviceId);
+
+        assertThat(deadlines.size()).isZero();
+        assertThat(deadlines.poll(2000)).isEmpty();
+    }
+
+}
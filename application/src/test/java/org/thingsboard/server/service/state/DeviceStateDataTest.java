@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeviceStateDataTest {
+
+    @Test
+    public void testIdsAndDeviceTypeAreSharedBetweenDevices() {
+        UUID tenantUuid = UUID.randomUUID();
+        UUID customerUuid = UUID.randomUUID();
+
+        DeviceStateData first = newStateData(tenantUuid, customerUuid, new String("thermostat"));
+        DeviceStateData second = newStateData(tenantUuid, customerUuid, new String("thermostat"));
+
+        assertThat(first.getTenantId()).isSameAs(second.getTenantId());
+        assertThat(first.getCustomerId()).isSameAs(second.getCustomerId());
+        assertThat(first.getDeviceType()).isSameAs(second.getDeviceType());
+    }
+
+    @Test
+    public void testMetaDataIsMaterializedOnEachCall() {
+        DeviceStateData stateData = newStateData(UUID.randomUUID(), UUID.randomUUID(), "thermostat");
+        stateData.setDeviceName("Device A");
+
+        TbMsgMetaData md = stateData.getMetaData();
+        assertThat(md.getData()).isEqualTo(Map.of("deviceName", "Device A", "deviceType", "thermostat"));
+
+        md.putValue("scope", "SERVER_SCOPE");
+        assertThat(stateData.getMetaData().getValue("scope")).isNull();
+
+        stateData.setDeviceName("Device B");
+        stateData.setDeviceLabel("Label B");
+        stateData.setDeviceType("meter");
+        assertThat(stateData.getMetaData().getData()).isEqualTo(Map.of("deviceName", "Device B", "deviceLabel", "Label B", "deviceType", "meter"));
+    }
+
+    @Test
+    public void testDeviceTypeIsSharedAfterUpdate() {
+        DeviceStateData first = newStateData(UUID.randomUUID(), UUID.randomUUID(), "thermostat");
+        DeviceStateData second = newStateData(UUID.randomUUID(), UUID.randomUUID(), "thermostat");
+
+        first.setDeviceType(new String("meter"));
+        second.setDeviceType(new String("meter"));
+
+        assertThat(first.getDeviceType()).isSameAs(second.getDeviceType());
+    }
+
+    @Test
+    public void testSystemTenantIdIsNotCopied() {
+        DeviceStateData stateData = DeviceStateData.builder()
+                .tenantId(TenantId.SYS_TENANT_ID)
+                .deviceId(new DeviceId(UUID.randomUUID()))
+                .state(DeviceState.builder().build())
+                .build();
+
+        assertThat(stateData.getTenantId()).isSameAs(TenantId.SYS_TENANT_ID);
+        assertThat(stateData.getCustomerId()).isNull();
+    }
+
+    private static DeviceStateData newStateData(UUID tenantUuid, UUID customerUuid, String deviceType) {
+        return DeviceStateData.builder()
+                .tenantId(new TenantId(tenantUuid))
+                .customerId(new CustomerId(customerUuid))
+                .deviceId(new DeviceId(UUID.randomUUID()))
+                .deviceType(deviceType)
+                .state(DeviceState.builder().build())
+                .build();
+    }
+
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.id.UserId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataPageLink;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityDataSortOrder;
+import org.thingsboard.server.common.data.query.EntityFilter;
+import org.thingsboard.server.common.data.query.EntityKey;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.EntityTypeFilter;
+import org.thingsboard.server.common.data.query.KeyFilter;
+import org.thingsboard.server.common.data.query.RelationsQueryFilter;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
+import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.entity.EntityService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.service.security.model.SecurityUser;
+import org.thingsboard.server.service.ws.WebSocketService;
+import org.thingsboard.server.service.ws.WebSocketSessionRef;
+import org.thingsboard.server.service.ws.telemetry.cmd.v2.CmdUpdate;
+import org.thingsboard.server.service.ws.telemetry.cmd.v2.EntityDataCmd;
+import org.thingsboard.server.service.ws.telemetry.cmd.v2.EntityDataUpdate;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class DefaultTbEntityDataSubscriptionServiceTest {
+
+    @Mock
+    WebSocketService wsService;
+    @Mock
+    EntityService entityService;
+    @Mock
+    AttributesService attributesService;
+    @Mock
+    TbLocalSubscriptionService localSubscriptionService;
+    @Mock
+    TbServiceInfoProvider serviceInfoProvider;
+
+    TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    CustomerId customerId = new CustomerId(UUID.randomUUID());
+
+    DefaultTbEntityDataSubscriptionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DefaultTbEntityDataSubscriptionService();
+        ReflectionTestUtils.setField(service, "wsService", wsService);
+        ReflectionTestUtils.setField(service, "entityService", entityService);
+        ReflectionTestUtils.setField(service, "attributesService", attributesService);
+        ReflectionTestUtils.setField(service, "localSubscriptionService", localSubscriptionService);
+        ReflectionTestUtils.setField(service, "serviceInfoProvider", serviceInfoProvider);
+        ReflectionTestUtils.setField(service, "databaseTsType", "sql");
+        ReflectionTestUtils.setField(service, "dynamicPageLinkRefreshInterval", 60L);
+        ReflectionTestUtils.setField(service, "dynamicPageLinkRefreshPoolSize", 1);
+        ReflectionTestUtils.setField(service, "shareIdenticalDynamicQueries", true);
+        ReflectionTestUtils.setField(service, "maxEntitiesPerDataSubscription", 100);
+        given(serviceInfoProvider.getServiceId()).willReturn("test");
+        service.initExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdownExecutor();
+    }
+
+    @Test
+    void testIdenticalDynamicQueriesShareRefresh() {
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+        given(entityService.findEntityDataByQuery(eq(tenantId), eq(customerId), any()))
+                .willReturn(pageData(device1))
+                .willReturn(pageData(device1))
+                .willReturn(pageData(device1, device2));
+        WebSocketSessionRef session1 = sessionRef();
+        WebSocketSessionRef session2 = sessionRef();
+
+        service.handleCmd(session1, new EntityDataCmd(1, dynamicQuery(), null, null, null));
+        service.handleCmd(session2, new EntityDataCmd(5, dynamicQuery(), null, null, null));
+
+        ConcurrentMap<TbSharedDynamicQuery.Key, TbSharedDynamicQuery> sharedQueries = getSharedQueries();
+        assertThat(sharedQueries).hasSize(1);
+        TbSharedDynamicQuery sharedQuery = sharedQueries.values().iterator().next();
+        assertThat(sharedQuery.getSubscriptions()).hasSize(2);
+
+        service.refreshSharedDynamicQuery(sharedQuery.getKey());
+
+        verify(entityService, times(3)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+        ArgumentCaptor<CmdUpdate> updateCaptor = ArgumentCaptor.forClass(CmdUpdate.class);
+        verify(wsService, times(2)).sendUpdate(eq(session1.getSessionId()), updateCaptor.capture(), isNull());
+        verify(wsService, times(2)).sendUpdate(eq(session2.getSessionId()), updateCaptor.capture(), isNull());
+        assertThat(((EntityDataUpdate) updateCaptor.getAllValues().get(1)).getData().getData()).hasSize(2);
+        assertThat(((EntityDataUpdate) updateCaptor.getAllValues().get(3)).getData().getData()).hasSize(2);
+        List<EntityData> ctxData = new ArrayList<>();
+        sharedQuery.getSubscriptions().forEach(ctx -> ctxData.add(ctx.getData().getData().get(0)));
+        assertThat(ctxData.get(0)).isNotSameAs(ctxData.get(1));
+        assertThat(ctxData.get(0).getLatest().get(EntityKeyType.TIME_SERIES))
+                .isNotSameAs(ctxData.get(1).getLatest().get(EntityKeyType.TIME_SERIES));
+
+        service.cancelAllSessionSubscriptions(session1.getSessionId());
+        assertThat(sharedQuery.getSubscriptions()).hasSize(1);
+        service.cancelAllSessionSubscriptions(session2.getSessionId());
+        assertThat(sharedQueries).isEmpty();
+    }
+
+    @Test
+    void testDifferentCustomersDoNotShareQuery() {
+        given(entityService.findEntityDataByQuery(eq(tenantId), any(), any())).willReturn(pageData(new DeviceId(UUID.randomUUID())));
+
+        service.handleCmd(sessionRef(), new EntityDataCmd(1, dynamicQuery(), null, null, null));
+        WebSocketSessionRef otherCustomerSession = sessionRef();
+        otherCustomerSession.getSecurityCtx().setCustomerId(new CustomerId(UUID.randomUUID()));
+        service.handleCmd(otherCustomerSession, new EntityDataCmd(1, dynamicQuery(), null, null, null));
+
+        assertThat(getSharedQueries()).hasSize(2);
+    }
+
+    @Test
+    void testEntityAndRelationEventsRefreshMatchingQueries() {
+        ReflectionTestUtils.setField(service, "eventRefreshEnabled", true);
+        ReflectionTestUtils.setField(service, "eventRefreshDelayMs", 0L);
+        ReflectionTestUtils.setField(service, "eventRefreshFullRefreshInterval", 600L);
+        given(entityService.findEntityDataByQuery(eq(tenantId), eq(customerId), any())).willReturn(pageData(new DeviceId(UUID.randomUUID())));
+        EntityDataQuery deviceQuery = dynamicQuery();
+        RelationsQueryFilter relationsFilter = new RelationsQueryFilter();
+        relationsFilter.setRootEntity(new DeviceId(UUID.randomUUID()));
+        relationsFilter.setDirection(EntitySearchDirection.FROM);
+        EntityDataQuery relationsQuery = dynamicQuery(relationsFilter);
+
+        service.handleCmd(sessionRef(), new EntityDataCmd(1, deviceQuery, null, null, null));
+        service.handleCmd(sessionRef(), new EntityDataCmd(1, relationsQuery, null, null, null));
+        verify(entityService, times(2)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+
+        service.onEntityChange(tenantId, EntityType.ASSET);
+        verify(entityService, timeout(5000).times(3)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+        verify(entityService, after(500).times(3)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+
+        service.onEntityChange(tenantId, EntityType.DEVICE);
+        verify(entityService, timeout(5000).times(5)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+
+        service.onRelationChange(tenantId);
+        verify(entityService, timeout(5000).times(6)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+        verify(entityService, after(500).times(6)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+    }
+
+    @Test
+    void testEventRefreshIsRateLimited() {
+        ReflectionTestUtils.setField(service, "eventRefreshEnabled", true);
+        ReflectionTestUtils.setField(service, "eventRefreshDelayMs", 0L);
+        ReflectionTestUtils.setField(service, "eventRefreshMinIntervalMs", 1000L);
+        ReflectionTestUtils.setField(service, "eventRefreshFullRefreshInterval", 600L);
+        given(entityService.findEntityDataByQuery(eq(tenantId), eq(customerId), any())).willReturn(pageData(new DeviceId(UUID.randomUUID())));
+        RelationsQueryFilter relationsFilter = new RelationsQueryFilter();
+        relationsFilter.setRootEntity(new DeviceId(UUID.randomUUID()));
+        relationsFilter.setDirection(EntitySearchDirection.FROM);
+
+        service.handleCmd(sessionRef(), new EntityDataCmd(1, dynamicQuery(relationsFilter), null, null, null));
+        verify(entityService, times(1)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+
+        service.onEntityChange(tenantId, EntityType.EDGE);
+        verify(entityService, timeout(5000).times(2)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+
+        service.onEntityChange(tenantId, EntityType.ASSET);
+        verify(entityService, after(500).times(2)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+        verify(entityService, timeout(5000).times(3)).findEntityDataByQuery(eq(tenantId), eq(customerId), any());
+    }
+
+    @Test
+    void testQueriesWithKeyFiltersAreRefreshedPeriodically() {
+        EntityDataQuery query = dynamicQuery();
+        assertThat(TbDynamicQueryTrigger.of(query)).isEqualTo(new TbDynamicQueryTrigger(EnumSet.of(EntityType.DEVICE), false));
+
+        KeyFilter keyFilter = new KeyFilter();
+        keyFilter.setKey(new EntityKey(EntityKeyType.TIME_SERIES, "temperature"));
+        query.getKeyFilters().add(keyFilter);
+        assertThat(TbDynamicQueryTrigger.of(query)).isNull();
+
+        EntityDataQuery sortedByTelemetry = dynamicQuery();
+        sortedByTelemetry.getPageLink().setSortOrder(new EntityDataSortOrder(new EntityKey(EntityKeyType.TIME_SERIES, "temperature")));
+        assertThat(TbDynamicQueryTrigger.of(sortedByTelemetry)).isNull();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMap<TbSharedDynamicQuery.Key, TbSharedDynamicQuery> getSharedQueries() {
+        return (ConcurrentMap<TbSharedDynamicQuery.Key, TbSharedDynamicQuery>) ReflectionTestUtils.getField(service, "sharedDynamicQueries");
+    }
+
+    private WebSocketSessionRef sessionRef() {
+        SecurityUser user = new SecurityUser(new UserId(UUID.randomUUID()));
+        user.setTenantId(tenantId);
+        user.setCustomerId(customerId);
+        return WebSocketSessionRef.builder()
+                .sessionId(UUID.randomUUID().toString())
+                .securityCtx(user)
+                .build();
+    }
+
+    private EntityDataQuery dynamicQuery() {
+        EntityTypeFilter filter = new EntityTypeFilter();
+        filter.setEntityType(EntityType.DEVICE);
+        return dynamicQuery(filter);
+    }
+
+    private EntityDataQuery dynamicQuery(EntityFilter filter) {
+        EntityDataPageLink pageLink = new EntityDataPageLink(10, 0, null, null);
+        pageLink.setDynamic(true);
+        return new EntityDataQuery(filter, pageLink, new ArrayList<>(), new ArrayList<>(List.of(new EntityKey(EntityKeyType.TIME_SERIES, "temperature"))), new ArrayList<>());
+    }
+
+    private PageData<EntityData> pageData(DeviceId... deviceIds) {
+        List<EntityData> data = new ArrayList<>();
+        for (DeviceId deviceId : deviceIds) {
+            Map<String, TsValue> latestTs = new HashMap<>(Map.of("temperature", new TsValue(1L, "25")));
+            data.add(new EntityData(deviceId, new HashMap<>(Map.of(EntityKeyType.TIME_SERIES, latestTs)), null));
+        }
+        return new PageData<>(data, 1, data.size(), false);
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import com.google.common.util.concurrent.Futures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TbCallback;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.service.ws.WebSocketService;
+import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+public class DefaultTbLocalSubscriptionServiceTest {
+
+    @Mock
+    AttributesService attributesService;
+    @Mock
+    TimeseriesService tsService;
+    @Mock
+    TbServiceInfoProvider serviceInfoProvider;
+    @Mock
+    PartitionService partitionService;
+    @Mock
+    TbClusterService clusterService;
+    @Mock
+    SubscriptionManagerService subscriptionManagerService;
+    @Mock
+    WebSocketService webSocketService;
+
+    TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+
+    DefaultTbLocalSubscriptionService service;
+
+    @BeforeEach
+    public void setUp() {
+        given(serviceInfoProvider.getServiceId()).willReturn("tb-core-0");
+        lenient().when(tsService.findLatest(any(), any(), anyCollection())).thenReturn(Futures.immediateFuture(Collections.emptyList()));
+        service = new DefaultTbLocalSubscriptionService(attributesService, tsService, serviceInfoProvider, partitionService, clusterService,
+                subscriptionManagerService, webSocketService);
+        service.initExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdownExecutor();
+    }
+
+    @Test
+    public void givenConcurrentSessionChurn_whenAllSubscriptionsCancelled_thenNoSubscriptionsLeft() throws Exception {
+        given(partitionService.resolve(eq(ServiceType.TB_CORE), eq(tenantId), any())).willReturn(TopicPartitionInfo.builder().myPartition(true).build());
+        List<DeviceId> entities = List.of(new DeviceId(UUID.randomUUID()), new DeviceId(UUID.randomUUID()),
+                new DeviceId(UUID.randomUUID()), new DeviceId(UUID.randomUUID()));
+        int threads = 8;
+        int iterations = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String sessionId = "session-" + t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        DeviceId entityId = entities.get(ThreadLocalRandom.current().nextInt(entities.size()));
+                        service.addSubscription(newSubscription(sessionId, i, entityId));
+                        if (i % 10 == 9) {
+                            service.cancelAllSessionSubscriptions(sessionId);
+                        } else if (i % 2 == 1) {
+                            service.cancelSubscription(sessionId, i);
+                            service.cancelSubscription(sessionId, i - 1);
+                        }
+                    }
+                    service.cancelAllSessionSubscriptions(sessionId);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(service, "subscriptionsBySessionId")).isEmpty();
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(service, "subscriptionsByEntityId")).isEmpty();
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(service, "entityUpdates")).isEmpty();
+    }
+
+    @Test
+    public void givenEntitySubscriptionsRecreated_whenLateCallbackOfPreviousEventReceived_thenPendingSubscriptionsKept() {
+        given(partitionService.resolve(eq(ServiceType.TB_CORE), eq(tenantId), any())).willReturn(TopicPartitionInfo.builder().myPartition(true).build());
+        DeviceId entityId = new DeviceId(UUID.randomUUID());
+
+        service.addSubscription(newSubscription("session", 1, entityId));
+        service.cancelSubscription("session", 1);
+        service.addSubscription(newSubscription("session", 2, entityId));
+
+        ArgumentCaptor<TbEntitySubEvent> eventCaptor = ArgumentCaptor.forClass(TbEntitySubEvent.class);
+        then(subscriptionManagerService).should(times(3)).onSubEvent(eq("tb-core-0"), eventCaptor.capture(), any());
+        TbEntitySubEvent previousEvent = eventCaptor.getAllValues().get(0);
+        TbEntitySubEvent currentEvent = eventCaptor.getAllValues().get(2);
+        assertThat(currentEvent.getSeqNumber()).isNotEqualTo(previousEvent.getSeqNumber());
+
+        service.onSubEventCallback(entityId, previousEvent.getSeqNumber(), new TbEntityUpdatesInfo(0L), TbCallback.EMPTY);
+
+        assertThat(getEntitySubsInfo(entityId).getPendingTimeSeriesEvent()).isEqualTo(currentEvent.getSeqNumber());
+    }
+
+    @Test
+    public void givenSubscriptionsWithSameKeys_whenGetUpdates_thenDataIsShared() {
+        List<TsKvEntry> data = List.of(
+                new BasicTsKvEntry(1000L, new LongDataEntry("temperature", 25L)),
+                new BasicTsKvEntry(1000L, new LongDataEntry("humidity", 60L)));
+        var updates = new DefaultTbLocalSubscriptionService.SharedTelemetryUpdates(data);
+
+        TelemetrySubscriptionUpdate first = updates.get(1, true, Collections.emptyMap());
+        TelemetrySubscriptionUpdate second = updates.get(2, true, Collections.emptyMap());
+        TelemetrySubscriptionUpdate filtered = updates.get(3, false, Map.of("humidity", 0L));
+        TelemetrySubscriptionUpdate sameFiltered = updates.get(4, false, Map.of("humidity", 0L));
+
+        assertThat(first.getSubscriptionId()).isEqualTo(1);
+        assertThat(second.getSubscriptionId()).isEqualTo(2);
+        assertThat(second.getData()).isSameAs(first.getData()).containsOnlyKeys("temperature", "humidity");
+        assertThat(filtered.getData()).containsOnlyKeys("humidity");
+        assertThat(sameFiltered.getData()).isSameAs(filtered.getData());
+        assertThat(updates.get(5, false, Map.of("pressure", 0L))).isNull();
+    }
+
+    private TbEntityLocalSubsInfo getEntitySubsInfo(EntityId entityId) {
+        Map<?, ?> subscriptionsByEntityId = (Map<?, ?>) ReflectionTestUtils.getField(service, "subscriptionsByEntityId");
+        return (TbEntityLocalSubsInfo) subscriptionsByEntityId.get(entityId.getId());
+    }
+
+    private TbTimeSeriesSubscription newSubscription(String sessionId, int subscriptionId, DeviceId entityId) {
+        return TbTimeSeriesSubscription.builder()
+                .serviceId("tb-core-0")
+                .sessionId(sessionId)
+                .subscriptionId(subscriptionId)
+                .tenantId(tenantId)
+                .entityId(entityId)
+                .updateProcessor((sub, update) -> {})
+                .allKeys(true)
+                .keyStates(Collections.emptyMap())
+                .latestValues(true)
+                .build();
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ws.telemetry.sub;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.common.util.CborUtil;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.service.subscription.SubscriptionErrorCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TelemetrySubscriptionUpdateTest {
+
+    @Test
+    public void testToJsonMatchesObjectMapper() throws Exception {
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(5, List.of(
+                new BasicTsKvEntry(1000L, new LongDataEntry("temperature", 25L)),
+                new BasicTsKvEntry(2000L, new LongDataEntry("temperature", 26L)),
+                new BasicTsKvEntry(1500L, new StringDataEntry("status", "\"ok\""))));
+
+        assertThat(update.toJson()).isEqualTo(JacksonUtil.OBJECT_MAPPER.writeValueAsString(update));
+
+        TelemetrySubscriptionUpdate copy = update.copyWithNewSubscriptionId(7);
+        assertThat(copy.toJson()).isEqualTo(JacksonUtil.OBJECT_MAPPER.writeValueAsString(copy));
+        assertThat(copy.getLatestValues()).isSameAs(update.getLatestValues());
+    }
+
+    @Test
+    public void testErrorToJsonMatchesObjectMapper() throws Exception {
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(5, SubscriptionErrorCode.BAD_REQUEST, "Invalid keys");
+
+        assertThat(update.toJson()).isEqualTo(JacksonUtil.OBJECT_MAPPER.writeValueAsString(update));
+    }
+
+    @Test
+    public void testCborEncodingMatchesJsonAndIsSmaller() throws Exception {
+        List<TsKvEntry> data = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            data.add(new BasicTsKvEntry(1700000000000L + i * 1000L, new LongDataEntry("temperature", 20L + i % 10)));
+            data.add(new BasicTsKvEntry(1700000000000L + i * 1000L, new StringDataEntry("status", "ok")));
+        }
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(5, data);
+
+        byte[] json = update.toJson().getBytes();
+        byte[] cbor = CborUtil.CBOR_MAPPER.writeValueAsBytes(update);
+
+        assertThat(CborUtil.CBOR_MAPPER.readTree(cbor)).isEqualTo(JacksonUtil.OBJECT_MAPPER.readTree(json));
+        assertThat(cbor.length).isLessThan(json.length);
+    }
+
+    @Test
+    public void testToCborMatchesCborMapper() throws Exception {
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(5, List.of(
+                new BasicTsKvEntry(1000L, new LongDataEntry("temperature", 25L)),
+                new BasicTsKvEntry(2000L, new LongDataEntry("temperature", 26L)),
+                new BasicTsKvEntry(1500L, new StringDataEntry("status", "ok"))));
+        TelemetrySubscriptionUpdate copy = update.copyWithNewSubscriptionId(300);
+        TelemetrySubscriptionUpdate error = new TelemetrySubscriptionUpdate(5, SubscriptionErrorCode.BAD_REQUEST, "Invalid keys");
+
+        for (TelemetrySubscriptionUpdate u : List.of(update, copy, error)) {
+            assertThat(CborUtil.CBOR_MAPPER.readTree(u.toCbor()))
+                    .isEqualTo(CborUtil.CBOR_MAPPER.readTree(CborUtil.CBOR_MAPPER.writeValueAsBytes(u)));
+        }
+    }
+
+}
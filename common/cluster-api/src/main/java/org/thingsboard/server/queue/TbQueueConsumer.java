@@ -36,8 +36,36 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commit();
 
+    /**
+     * Whether the consumer is able to commit the offsets returned by {@link #getLastPolledOffsets()},
+     * leaving the messages polled afterwards uncommitted. Callers check it up front and fall back to
+     * {@link #commit()} of every polled batch otherwise.
+     */
+    default boolean isOffsetsCommitSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the offsets following the messages returned by the last {@link #poll(long)} call,
+     * or empty offsets if the offsets commit is not supported.
+     */
+    TbQueueOffsets getLastPolledOffsets();
+
+    /**
+     * Commits the given offsets. Consumers that do not support the offsets commit acknowledge
+     * all the polled messages, same as {@link #commit()}.
+     */
+    void commit(TbQueueOffsets offsets);
+
     boolean isStopped();
 
+    /**
+     * Returns the number of messages in the subscribed partitions that are not polled yet, or -1 if unknown.
+     */
+    default long getLag() {
+        return -1;
+    }
+
     List<String> getFullTopicNames();
 
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Offsets of the next messages to consume, per topic partition of the underlying queue.
+ */
+@ToString
+public class TbQueueOffsets {
+
+    @Getter
+    private final Map<Partition, Long> offsets = new HashMap<>();
+
+    public void update(String topic, int partition, long nextOffset) {
+        offsets.merge(new Partition(topic, partition), nextOffset, Math::max);
+    }
+
+    public void update(TbQueueOffsets other) {
+        other.offsets.forEach((partition, nextOffset) -> offsets.merge(partition, nextOffset, Math::max));
+    }
+
+    public void retainTopics(Collection<String> topics) {
+        offsets.keySet().removeIf(partition -> !topics.contains(partition.getTopic()));
+    }
+
+    public boolean isEmpty() {
+        return offsets.isEmpty();
+    }
+
+    @Data
+    public static class Partition {
+        private final String topic;
+        private final int partition;
+    }
+
+}
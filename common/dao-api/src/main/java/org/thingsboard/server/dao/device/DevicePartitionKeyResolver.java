@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.device;
+
+import java.util.UUID;
+
+/**
+ * Resolves the partition key that is persisted with the device, so that the devices of a core partition are found by an index.
+ * The high 32 bits of the key identify the partitioning settings (the hash function and the number of the core partitions)
+ * and the low 32 bits are the core partition of the device, so the keys persisted before the settings were changed do not match any partition.
+ */
+public interface DevicePartitionKeyResolver {
+
+    long resolvePartitionKey(UUID deviceId);
+
+    long getPartitionKey(int partition);
+
+    long getMinPartitionKey();
+
+    long getMaxPartitionKey();
+
+}
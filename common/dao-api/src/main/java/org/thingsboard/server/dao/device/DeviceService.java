@@ -37,6 +37,7 @@ import org.thingsboard.server.dao.device.provision.ProvisionRequest;
 import org.thingsboard.server.dao.entity.EntityDaoService;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface DeviceService extends EntityDaoService {
@@ -73,6 +74,14 @@ public interface DeviceService extends EntityDaoService {
 
     PageData<DeviceIdInfo> findDeviceIdInfos(PageLink pageLink);
 
+    List<DeviceIdInfo> findDeviceIdInfosWithoutPartitionKey(DeviceId idOffset, int limit);
+
+    List<DeviceIdInfo> findDeviceIdInfosByPartitionKey(long partitionKey, DeviceId idOffset, int limit);
+
+    void updatePartitionKeys(Map<DeviceId, Long> partitionKeys);
+
+    int resetPartitionKeysNotInRange(long minPartitionKey, long maxPartitionKey);
+
     PageData<Device> findDevicesByTenantIdAndType(TenantId tenantId, String type, PageLink pageLink);
 
     PageData<Device> findDevicesByTenantIdAndTypeAndEmptyOtaPackage(TenantId tenantId, DeviceProfileId deviceProfileId, OtaPackageType type, PageLink pageLink);
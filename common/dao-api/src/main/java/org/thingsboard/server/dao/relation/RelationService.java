@@ -45,6 +45,8 @@ public interface RelationService {
 
     boolean deleteRelation(TenantId tenantId, EntityRelation relation);
 
+    void deleteRelations(TenantId tenantId, List<EntityRelation> relations);
+
     ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation);
 
     boolean deleteRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
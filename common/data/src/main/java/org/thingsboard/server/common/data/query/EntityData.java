@@ -20,6 +20,7 @@ import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.thingsboard.server.common.data.id.EntityId;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @Data
@@ -35,6 +36,22 @@ public class EntityData {
         this(entityId, latest, timeseries, null);
     }
 
+    /**
+     * Returns a copy with its own latest, timeseries and aggregation maps, so that the copy can be updated in place.
+     */
+    public EntityData copy() {
+        Map<EntityKeyType, Map<String, TsValue>> latestCopy = null;
+        if (latest != null) {
+            latestCopy = new HashMap<>();
+            for (Map.Entry<EntityKeyType, Map<String, TsValue>> entry : latest.entrySet()) {
+                latestCopy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+            }
+        }
+        return new EntityData(entityId, latestCopy,
+                timeseries != null ? new HashMap<>(timeseries) : null,
+                aggLatest != null ? new HashMap<>(aggLatest) : null);
+    }
+
     @JsonIgnore
     public void clearTsAndAggData() {
         if (timeseries != null) {
@@ -86,6 +86,7 @@ public class DefaultTenantProfileConfiguration implements TenantProfileConfigura
     private String wsUpdatesPerSessionRateLimit;
 
     private String cassandraQueryTenantRateLimitsConfiguration;
+    private int cassandraQueryWeight;
 
     private String edgeEventRateLimits;
     private String edgeEventRateLimitsPerEdge;
@@ -25,6 +25,8 @@ import org.thingsboard.server.queue.azure.servicebus.TbServiceBusSettings;
 import org.thingsboard.server.queue.kafka.TbKafkaAdmin;
 import org.thingsboard.server.queue.kafka.TbKafkaSettings;
 import org.thingsboard.server.queue.kafka.TbKafkaTopicConfigs;
+import org.thingsboard.server.queue.locallog.TbLocalLogAdmin;
+import org.thingsboard.server.queue.locallog.TbLocalLogStorage;
 import org.thingsboard.server.queue.pubsub.TbPubSubAdmin;
 import org.thingsboard.server.queue.pubsub.TbPubSubSettings;
 import org.thingsboard.server.queue.pubsub.TbPubSubSubscriptionSettings;
@@ -63,6 +65,9 @@ public class RuleEngineTbQueueAdminFactory {
     @Autowired(required = false)
     private TbServiceBusSettings serviceBusSettings;
 
+    @Autowired(required = false)
+    private TbLocalLogStorage localLogStorage;
+
     @ConditionalOnExpression("'${queue.type:null}'=='kafka'")
     @Bean
     public TbQueueAdmin createKafkaAdmin() {
@@ -111,4 +116,10 @@ public class RuleEngineTbQueueAdminFactory {
             }
         };
     }
-}
\ No newline at end of file
+
+    @ConditionalOnExpression("'${queue.type:null}'=='local-log'")
+    @Bean
+    public TbQueueAdmin createLocalLogAdmin() {
+        return new TbLocalLogAdmin(localLogStorage);
+    }
+}
@@ -20,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueOffsets;
 
 import jakarta.annotation.Nonnull;
 import java.io.IOException;
@@ -159,6 +160,24 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void commit(TbQueueOffsets offsets) {
+        if (consumerLock.isLocked()) {
+            log.error("commit. consumerLock is locked. will wait with no timeout. it looks like a race conditions or deadlock topic " + topic, new RuntimeException("stacktrace"));
+        }
+        consumerLock.lock();
+        try {
+            doCommit(offsets);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public TbQueueOffsets getLastPolledOffsets() {
+        return new TbQueueOffsets();
+    }
+
     @Override
     public void stop() {
         stopped = true;
@@ -191,6 +210,14 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doCommit();
 
+    /*
+     * The queues without the offsets (e.g. the ones that acknowledge every message) do not support the commit up to
+     * the given offsets, so all the polled messages are acknowledged
+     * */
+    protected void doCommit(TbQueueOffsets offsets) {
+        doCommit();
+    }
+
     abstract protected void doUnsubscribe();
 
     @Override
@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+
+import java.util.UUID;
+
+/**
+ * Keeps the record bytes as is and parses the value on the first {@link #getValue()} call,
+ * so that the messages that are skipped or only re-sent are never parsed.
+ * {@link #getData()} returns the original bytes without serializing the value again.
+ */
+public class TbLazyProtoQueueMsg<T extends com.google.protobuf.GeneratedMessageV3> extends TbProtoQueueMsg<T> {
+
+    private final byte[] data;
+    private final Parser<T> parser;
+    private volatile T parsedValue;
+
+    public TbLazyProtoQueueMsg(UUID key, byte[] data, Parser<T> parser, TbQueueMsgHeaders headers) {
+        super(key, null, headers);
+        this.data = data;
+        this.parser = parser;
+    }
+
+    @Override
+    public T getValue() {
+        T result = parsedValue;
+        if (result == null) {
+            try {
+                result = parser.parseFrom(data);
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException("Failed to decode message " + getKey(), e);
+            }
+            parsedValue = result;
+        }
+        return result;
+    }
+
+    public boolean isDecoded() {
+        return parsedValue != null;
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueOffsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Consumes the default lane and the priority lane of a queue, where the priority lane uses the same partitions of a separate topic.
+ * A pack of the priority lane is returned whenever available. After the given number of priority packs in a row,
+ * the default lane is polled, so it is not starved by a flood of priority messages.
+ * Each pack is committed by the lane it was polled from.
+ */
+public class TbPriorityLaneQueueConsumer<T extends TbQueueMsg> implements TbQueueConsumer<T> {
+
+    private final TbQueueConsumer<T> defaultLane;
+    private final TbQueueConsumer<T> priorityLane;
+    private final String priorityTopicSuffix;
+    private final int priorityWeight;
+
+    private int priorityPacksInRow;
+    private volatile TbQueueConsumer<T> lastPolledLane;
+
+    public TbPriorityLaneQueueConsumer(TbQueueConsumer<T> defaultLane, TbQueueConsumer<T> priorityLane,
+                                       String priorityTopicSuffix, int priorityWeight) {
+        this.defaultLane = defaultLane;
+        this.priorityLane = priorityLane;
+        this.priorityTopicSuffix = priorityTopicSuffix;
+        this.priorityWeight = priorityWeight;
+        this.lastPolledLane = defaultLane;
+    }
+
+    @Override
+    public String getTopic() {
+        return defaultLane.getTopic();
+    }
+
+    @Override
+    public void subscribe() {
+        defaultLane.subscribe();
+        priorityLane.subscribe();
+    }
+
+    @Override
+    public void subscribe(Set<TopicPartitionInfo> partitions) {
+        defaultLane.subscribe(partitions);
+        priorityLane.subscribe(partitions.stream()
+                .map(tpi -> tpi.newByTopic(tpi.getTopic() + priorityTopicSuffix))
+                .collect(Collectors.toSet()));
+    }
+
+    @Override
+    public void stop() {
+        defaultLane.stop();
+        priorityLane.stop();
+    }
+
+    @Override
+    public void unsubscribe() {
+        defaultLane.unsubscribe();
+        priorityLane.unsubscribe();
+    }
+
+    @Override
+    public List<T> poll(long durationInMillis) {
+        if (priorityPacksInRow < priorityWeight) {
+            List<T> msgs = priorityLane.poll(0);
+            if (!msgs.isEmpty()) {
+                priorityPacksInRow++;
+                lastPolledLane = priorityLane;
+                return msgs;
+            }
+        }
+        priorityPacksInRow = 0;
+        lastPolledLane = defaultLane;
+        return defaultLane.poll(durationInMillis);
+    }
+
+    @Override
+    public void commit() {
+        lastPolledLane.commit();
+    }
+
+    @Override
+    public boolean isOffsetsCommitSupported() {
+        return defaultLane.isOffsetsCommitSupported() && priorityLane.isOffsetsCommitSupported();
+    }
+
+    @Override
+    public TbQueueOffsets getLastPolledOffsets() {
+        return lastPolledLane.getLastPolledOffsets();
+    }
+
+    @Override
+    public void commit(TbQueueOffsets offsets) {
+        List<String> priorityTopics = priorityLane.getFullTopicNames();
+        TbQueueOffsets defaultOffsets = new TbQueueOffsets();
+        TbQueueOffsets priorityOffsets = new TbQueueOffsets();
+        offsets.getOffsets().forEach((partition, nextOffset) -> {
+            TbQueueOffsets laneOffsets = priorityTopics.contains(partition.getTopic()) ? priorityOffsets : defaultOffsets;
+            laneOffsets.update(partition.getTopic(), partition.getPartition(), nextOffset);
+        });
+        if (!defaultOffsets.isEmpty()) {
+            defaultLane.commit(defaultOffsets);
+        }
+        if (!priorityOffsets.isEmpty()) {
+            priorityLane.commit(priorityOffsets);
+        }
+    }
+
+    @Override
+    public boolean isStopped() {
+        return defaultLane.isStopped();
+    }
+
+    @Override
+    public long getLag() {
+        long defaultLag = defaultLane.getLag();
+        long priorityLag = priorityLane.getLag();
+        return defaultLag >= 0 && priorityLag >= 0 ? defaultLag + priorityLag : -1;
+    }
+
+    @Override
+    public List<String> getFullTopicNames() {
+        List<String> topics = new ArrayList<>(defaultLane.getFullTopicNames());
+        topics.addAll(priorityLane.getFullTopicNames());
+        return topics;
+    }
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineBatchEntryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsgMetadata;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups the messages sent to the same topic-partition during the linger window into a single envelope record.
+ * The envelope is a {@link ToRuleEngineMsg} with only the {@code batch} field set; see {@link #unpack(List)}.
+ * A batch that holds a single message is sent as is.
+ */
+@Slf4j
+public class TbRuleEngineBatchingProducer implements TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> {
+
+    private final TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> producer;
+    private final long lingerMs;
+    private final int maxBatchSize;
+    private final int maxBatchBytes;
+    private final ConcurrentMap<TopicPartitionInfo, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean stopped;
+
+    public TbRuleEngineBatchingProducer(TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> producer,
+                                        long lingerMs, int maxBatchSize, int maxBatchBytes) {
+        this.producer = producer;
+        this.lingerMs = lingerMs;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("tb-rule-engine-batching-producer"));
+    }
+
+    public static TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> wrap(TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> producer,
+                                                                      TbQueueRuleEngineSettings settings) {
+        if (!settings.isBatchingEnabled()) {
+            return producer;
+        }
+        return new TbRuleEngineBatchingProducer(producer, settings.getBatchingLingerMs(), settings.getBatchingMaxSize(), settings.getBatchingMaxBytes());
+    }
+
+    @Override
+    public void init() {
+        producer.init();
+    }
+
+    @Override
+    public String getDefaultTopic() {
+        return producer.getDefaultTopic();
+    }
+
+    @Override
+    public void send(TopicPartitionInfo tpi, TbProtoQueueMsg<ToRuleEngineMsg> msg, TbQueueCallback callback) {
+        int msgSize = msg.getValue().getSerializedSize();
+        Batch batch = batches.computeIfAbsent(tpi, Batch::new);
+        synchronized (batch) {
+            if (stopped || msgSize >= maxBatchBytes) {
+                // the pending messages of the partition are sent first, so that the message does not overtake them
+                flush(batch);
+                producer.send(tpi, msg, callback);
+                return;
+            }
+            if (batch.bytes + msgSize > maxBatchBytes) {
+                flush(batch);
+            }
+            batch.add(msg, msgSize, callback);
+            if (batch.msgs.size() >= maxBatchSize) {
+                flush(batch);
+            } else if (batch.msgs.size() == 1) {
+                long generation = batch.generation;
+                scheduler.schedule(() -> onLingerExpired(batch, generation), lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        batches.values().forEach(batch -> {
+            synchronized (batch) {
+                flush(batch);
+            }
+        });
+        scheduler.shutdownNow();
+        producer.stop();
+    }
+
+    /**
+     * Replaces the envelopes in the polled messages with the messages they contain, so that each of them is
+     * submitted, acknowledged and retried on its own. The offsets are still committed for the whole envelope.
+     */
+    public static List<TbProtoQueueMsg<ToRuleEngineMsg>> unpack(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) {
+        int size = 0;
+        for (TbProtoQueueMsg<ToRuleEngineMsg> msg : msgs) {
+            size += isBatch(msg) ? msg.getValue().getBatchCount() : 1;
+        }
+        if (size == msgs.size()) {
+            return msgs;
+        }
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> result = new ArrayList<>(size);
+        for (TbProtoQueueMsg<ToRuleEngineMsg> msg : msgs) {
+            if (!isBatch(msg)) {
+                result.add(msg);
+                continue;
+            }
+            for (ToRuleEngineBatchEntryMsg entry : msg.getValue().getBatchList()) {
+                result.add(new TbProtoQueueMsg<>(new UUID(entry.getIdMSB(), entry.getIdLSB()), entry.getMsg(), msg.getHeaders()));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isBatch(TbProtoQueueMsg<ToRuleEngineMsg> msg) {
+        if (msg instanceof TbRuleEngineQueueMsg reMsg) {
+            return reMsg.getRouting().batch(); // not to parse the messages that are not batches
+        }
+        return msg.getValue().getBatchCount() > 0;
+    }
+
+    private void onLingerExpired(Batch batch, long generation) {
+        synchronized (batch) {
+            if (batch.generation == generation) {
+                flush(batch);
+            }
+        }
+    }
+
+    /*
+     * Must be called while holding the lock of the batch: the batch of a partition is flushed and refilled under the same lock,
+     * so the envelopes and the messages sent as is leave in the order in which they were sent to the partition
+     * */
+    private void flush(Batch batch) {
+        if (batch.msgs.isEmpty()) {
+            return;
+        }
+        if (batch.msgs.size() == 1) {
+            producer.send(batch.tpi, batch.msgs.get(0), batch.callbacks.get(0));
+        } else {
+            ToRuleEngineMsg.Builder envelope = ToRuleEngineMsg.newBuilder();
+            for (TbProtoQueueMsg<ToRuleEngineMsg> msg : batch.msgs) {
+                envelope.addBatch(ToRuleEngineBatchEntryMsg.newBuilder()
+                        .setIdMSB(msg.getKey().getMostSignificantBits())
+                        .setIdLSB(msg.getKey().getLeastSignificantBits())
+                        .setMsg(msg.getValue()));
+            }
+            log.trace("[{}] Sending batch of {} messages", batch.tpi.getFullTopicName(), batch.msgs.size());
+            producer.send(batch.tpi, new TbProtoQueueMsg<>(batch.msgs.get(0).getKey(), envelope.build()), new BatchCallback(batch.callbacks));
+        }
+        batch.clear();
+    }
+
+    /*
+     * The pending messages of a topic-partition. The same instance is reused for all the batches of the partition,
+     * and the generation tells the linger task whether the batch it was scheduled for has already been sent
+     * */
+    private static class Batch {
+
+        private final TopicPartitionInfo tpi;
+        private List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = new ArrayList<>();
+        private List<TbQueueCallback> callbacks = new ArrayList<>();
+        private int bytes;
+        private long generation;
+
+        private Batch(TopicPartitionInfo tpi) {
+            this.tpi = tpi;
+        }
+
+        private void add(TbProtoQueueMsg<ToRuleEngineMsg> msg, int msgSize, TbQueueCallback callback) {
+            msgs.add(msg);
+            callbacks.add(callback);
+            bytes += msgSize;
+        }
+
+        private void clear() {
+            msgs = new ArrayList<>();
+            callbacks = new ArrayList<>(); // the sent list is kept by the batch callback
+            bytes = 0;
+            generation++;
+        }
+
+    }
+
+    private record BatchCallback(List<TbQueueCallback> callbacks) implements TbQueueCallback {
+
+        @Override
+        public void onSuccess(TbQueueMsgMetadata metadata) {
+            for (TbQueueCallback callback : callbacks) {
+                if (callback != null) {
+                    callback.onSuccess(metadata);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            for (TbQueueCallback callback : callbacks) {
+                if (callback != null) {
+                    callback.onFailure(t);
+                }
+            }
+        }
+
+    }
+
+}
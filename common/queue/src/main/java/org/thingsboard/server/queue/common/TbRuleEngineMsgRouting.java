@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * The fields of a {@link ToRuleEngineMsg} needed to route it: read straight from the record bytes,
+ * skipping the metadata and the data of the nested TbMsg.
+ */
+public record TbRuleEngineMsgRouting(TenantId tenantId, EntityId originator, String msgType, boolean batch) {
+
+    private static final int TENANT_ID_MSB_TAG = tag(1, WireFormat.WIRETYPE_VARINT);
+    private static final int TENANT_ID_LSB_TAG = tag(2, WireFormat.WIRETYPE_VARINT);
+    private static final int TB_MSG_TAG = tag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int BATCH_TAG = tag(6, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+
+    private static final int MSG_TYPE_TAG = tag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int ENTITY_TYPE_TAG = tag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int ENTITY_ID_MSB_TAG = tag(4, WireFormat.WIRETYPE_VARINT);
+    private static final int ENTITY_ID_LSB_TAG = tag(5, WireFormat.WIRETYPE_VARINT);
+    private static final int LAST_ROUTING_FIELD = 5;
+
+    public static TbRuleEngineMsgRouting of(TbProtoQueueMsg<ToRuleEngineMsg> msg) throws InvalidProtocolBufferException {
+        if (msg instanceof TbRuleEngineQueueMsg reMsg) {
+            return reMsg.getRouting();
+        }
+        ToRuleEngineMsg value = msg.getValue();
+        TbRuleEngineMsgRouting tbMsgRouting;
+        try {
+            tbMsgRouting = parseTbMsg(value.getTbMsg().newCodedInput());
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+        return new TbRuleEngineMsgRouting(TenantId.fromUUID(new UUID(value.getTenantIdMSB(), value.getTenantIdLSB())),
+                tbMsgRouting.originator(), tbMsgRouting.msgType(), value.getBatchCount() > 0);
+    }
+
+    public static TbRuleEngineMsgRouting parse(byte[] data) throws InvalidProtocolBufferException {
+        try {
+            return doParse(data);
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+    }
+
+    private static TbRuleEngineMsgRouting doParse(byte[] data) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(data);
+        long tenantIdMSB = 0;
+        long tenantIdLSB = 0;
+        TbRuleEngineMsgRouting tbMsgRouting = null;
+        boolean batch = false;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == TENANT_ID_MSB_TAG) {
+                tenantIdMSB = input.readInt64();
+            } else if (tag == TENANT_ID_LSB_TAG) {
+                tenantIdLSB = input.readInt64();
+            } else if (tag == TB_MSG_TAG) {
+                int oldLimit = input.pushLimit(input.readRawVarint32());
+                tbMsgRouting = parseTbMsg(input);
+                input.skipRawBytes(input.getBytesUntilLimit());
+                input.popLimit(oldLimit);
+            } else {
+                batch |= tag == BATCH_TAG;
+                input.skipField(tag);
+            }
+        }
+        TenantId tenantId = TenantId.fromUUID(new UUID(tenantIdMSB, tenantIdLSB));
+        return tbMsgRouting != null ?
+                new TbRuleEngineMsgRouting(tenantId, tbMsgRouting.originator(), tbMsgRouting.msgType(), batch) :
+                new TbRuleEngineMsgRouting(tenantId, null, null, batch);
+    }
+
+    private static TbRuleEngineMsgRouting parseTbMsg(CodedInputStream input) throws IOException {
+        String msgType = null;
+        String entityType = null;
+        long entityIdMSB = 0;
+        long entityIdLSB = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == MSG_TYPE_TAG) {
+                msgType = input.readStringRequireUtf8();
+            } else if (tag == ENTITY_TYPE_TAG) {
+                entityType = input.readStringRequireUtf8();
+            } else if (tag == ENTITY_ID_MSB_TAG) {
+                entityIdMSB = input.readInt64();
+            } else if (tag == ENTITY_ID_LSB_TAG) {
+                entityIdLSB = input.readInt64();
+            } else if (WireFormat.getTagFieldNumber(tag) > LAST_ROUTING_FIELD) {
+                // the fields are written in the order of their numbers, so the rest of the message is not needed
+                break;
+            } else {
+                input.skipField(tag);
+            }
+        }
+        EntityId originator = entityType != null ? EntityIdFactory.getByTypeAndUuid(entityType, new UUID(entityIdMSB, entityIdLSB)) : null;
+        return new TbRuleEngineMsgRouting(null, originator, msgType, false);
+    }
+
+    private static int tag(int fieldNumber, int wireType) {
+        return (fieldNumber << 3) | wireType;
+    }
+
+}
@@ -26,6 +26,7 @@ import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
 import org.thingsboard.server.queue.TbQueueCallback;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 
 import java.util.List;
 import java.util.UUID;
@@ -36,10 +37,13 @@ import java.util.UUID;
 public class TbRuleEngineProducerService {
 
     private final PartitionService partitionService;
+    private final TbQueueRuleEngineSettings ruleEngineSettings;
 
     public void sendToRuleEngine(TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> producer,
                                  TenantId tenantId, TbMsg tbMsg, TbQueueCallback callback) {
         List<TopicPartitionInfo> tpis = partitionService.resolveAll(ServiceType.TB_RULE_ENGINE, tbMsg.getQueueName(), tenantId, tbMsg.getOriginator());
+        boolean priorityLaneEnabled = ruleEngineSettings.isPriorityLaneEnabled(
+                partitionService.resolveQueueName(ServiceType.TB_RULE_ENGINE, tbMsg.getQueueName(), tenantId));
         if (tpis.size() > 1) {
             UUID correlationId = UUID.randomUUID();
             for (int i = 0; i < tpis.size(); i++) {
@@ -52,15 +56,18 @@ public class TbRuleEngineProducerService {
                         .correlationId(correlationId)
                         .partition(partition)
                         .build();
-                sendToRuleEngine(producer, tpi, tenantId, tbMsg, i == tpis.size() - 1 ? callback : null);
+                sendToRuleEngine(producer, tpi, priorityLaneEnabled, tenantId, tbMsg, i == tpis.size() - 1 ? callback : null);
             }
         } else {
-            sendToRuleEngine(producer, tpis.get(0), tenantId, tbMsg, callback);
+            sendToRuleEngine(producer, tpis.get(0), priorityLaneEnabled, tenantId, tbMsg, callback);
         }
     }
 
-    private void sendToRuleEngine(TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> producer, TopicPartitionInfo tpi,
+    private void sendToRuleEngine(TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> producer, TopicPartitionInfo tpi, boolean priorityLaneEnabled,
                                   TenantId tenantId, TbMsg tbMsg, TbQueueCallback callback) {
+        if (priorityLaneEnabled && ruleEngineSettings.isPriorityMsg(tbMsg)) {
+            tpi = tpi.newByTopic(tpi.getTopic() + TbQueueRuleEngineSettings.PRIORITY_LANE_TOPIC_SUFFIX);
+        }
         if (log.isTraceEnabled()) {
             log.trace("[{}][{}] Pushing to topic {} message {}", tenantId, tbMsg.getOriginator(), tpi.getFullTopicName(), tbMsg);
         }
@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.Getter;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+/**
+ * Rule Engine message decoded from a queue record: only the routing fields are parsed up front,
+ * the message itself is parsed when it is submitted to the rule engine actor.
+ */
+public class TbRuleEngineQueueMsg extends TbLazyProtoQueueMsg<ToRuleEngineMsg> {
+
+    @Getter
+    private final TbRuleEngineMsgRouting routing;
+
+    public TbRuleEngineQueueMsg(TbQueueMsg msg) throws InvalidProtocolBufferException {
+        super(msg.getKey(), msg.getData(), ToRuleEngineMsg.parser(), msg.getHeaders());
+        this.routing = TbRuleEngineMsgRouting.parse(msg.getData());
+    }
+
+}
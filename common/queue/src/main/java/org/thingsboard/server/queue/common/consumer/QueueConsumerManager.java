@@ -36,6 +36,7 @@ public class QueueConsumerManager<M extends TbQueueMsg> {
     private final long pollInterval;
     private final ExecutorService consumerExecutor;
     private final String threadPrefix;
+    private final QueueConsumerTuner tuner;
 
     @Getter
     private final TbQueueConsumer<M> consumer;
@@ -44,13 +45,15 @@ public class QueueConsumerManager<M extends TbQueueMsg> {
     @Builder
     public QueueConsumerManager(String name, MsgPackProcessor<M> msgPackProcessor,
                                 long pollInterval, Supplier<TbQueueConsumer<M>> consumerCreator,
-                                ExecutorService consumerExecutor, String threadPrefix) {
+                                ExecutorService consumerExecutor, String threadPrefix,
+                                QueueConsumerTunerFactory tunerFactory) {
         this.name = name;
         this.pollInterval = pollInterval;
         this.msgPackProcessor = msgPackProcessor;
         this.consumerExecutor = consumerExecutor;
         this.threadPrefix = threadPrefix;
         this.consumer = consumerCreator.get();
+        this.tuner = tunerFactory != null ? tunerFactory.getTuner(name) : QueueConsumerTuner.DISABLED;
     }
 
     public void subscribe() {
@@ -79,11 +82,15 @@ public class QueueConsumerManager<M extends TbQueueMsg> {
     private void consumerLoop(TbQueueConsumer<M> consumer) {
         while (!stopped && !consumer.isStopped()) {
             try {
-                List<M> msgs = consumer.poll(pollInterval);
+                List<M> msgs = consumer.poll(tuner.getPollInterval(pollInterval));
                 if (msgs.isEmpty()) {
+                    tuner.onEmptyPoll(pollInterval, consumer.getLag());
                     continue;
                 }
+                tuner.onMsgsPolled(pollInterval);
+                long startNanos = System.nanoTime();
                 msgPackProcessor.process(msgs, consumer);
+                tuner.onPackProcessed(msgs.size(), System.nanoTime() - startNanos);
             } catch (Exception e) {
                 if (!consumer.isStopped()) {
                     log.warn("Failed to process messages from queue", e);
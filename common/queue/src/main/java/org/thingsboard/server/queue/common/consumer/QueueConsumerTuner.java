@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common.consumer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Tunes the poll interval and the pack processing timeout of a single consumer.
+ * The poll interval is doubled on each empty poll while the consumer has no lag, up to the max poll interval,
+ * and is reset to the configured one as soon as messages or lag appear.
+ * The pack processing timeout follows the average processing time of a message multiplied by the pack size,
+ * but is never less than the configured timeout and never more than the configured timeout times the max multiplier.
+ * Only the packs processed in full within the first attempt are sampled, so the timeouts and the retries do not inflate the average.
+ * */
+public class QueueConsumerTuner {
+
+    public static final QueueConsumerTuner DISABLED = new QueueConsumerTuner(false, 0, 0, 0, null, null);
+
+    private static final double ALPHA = 0.2;
+
+    private final boolean enabled;
+    private final long maxPollInterval;
+    private final double packProcessingTimeoutFactor;
+    private final int maxPackProcessingTimeoutMultiplier;
+    private final AtomicLong pollIntervalGauge;
+    private final AtomicLong packProcessingTimeoutGauge;
+
+    private volatile long pollInterval;
+    private volatile double avgMsgProcessingTimeMs = -1;
+
+    QueueConsumerTuner(boolean enabled, long maxPollInterval, double packProcessingTimeoutFactor, int maxPackProcessingTimeoutMultiplier,
+                       AtomicLong pollIntervalGauge, AtomicLong packProcessingTimeoutGauge) {
+        this.enabled = enabled;
+        this.maxPollInterval = maxPollInterval;
+        this.packProcessingTimeoutFactor = packProcessingTimeoutFactor;
+        this.maxPackProcessingTimeoutMultiplier = maxPackProcessingTimeoutMultiplier;
+        this.pollIntervalGauge = pollIntervalGauge;
+        this.packProcessingTimeoutGauge = packProcessingTimeoutGauge;
+    }
+
+    public long getPollInterval(long configuredPollInterval) {
+        if (!enabled) {
+            return configuredPollInterval;
+        }
+        long value = Math.max(pollInterval, configuredPollInterval);
+        pollIntervalGauge.set(value);
+        return value;
+    }
+
+    public long getPackProcessingTimeout(int packSize, long configuredTimeout) {
+        if (!enabled) {
+            return configuredTimeout;
+        }
+        long value = configuredTimeout;
+        if (avgMsgProcessingTimeMs >= 0) {
+            long expected = (long) (avgMsgProcessingTimeMs * packSize * packProcessingTimeoutFactor);
+            value = Math.max(configuredTimeout, Math.min(expected, configuredTimeout * maxPackProcessingTimeoutMultiplier));
+        }
+        packProcessingTimeoutGauge.set(value);
+        return value;
+    }
+
+    public void onEmptyPoll(long configuredPollInterval, long lag) {
+        if (!enabled) {
+            return;
+        }
+        if (lag > 0) {
+            pollInterval = configuredPollInterval;
+        } else {
+            long current = Math.max(pollInterval, Math.max(configuredPollInterval, 1));
+            pollInterval = Math.min(current * 2, Math.max(maxPollInterval, configuredPollInterval));
+        }
+    }
+
+    public void onMsgsPolled(long configuredPollInterval) {
+        if (!enabled) {
+            return;
+        }
+        pollInterval = configuredPollInterval;
+    }
+
+    public void onPackProcessed(int packSize, long durationNanos) {
+        if (!enabled || packSize == 0) {
+            return;
+        }
+        double msgProcessingTimeMs = (double) durationNanos / 1_000_000 / packSize;
+        double avg = avgMsgProcessingTimeMs;
+        avgMsgProcessingTimeMs = avg < 0 ? msgProcessingTimeMs : avg + ALPHA * (msgProcessingTimeMs - avg);
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common.consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class QueueConsumerTunerFactory {
+
+    private static final String POLL_INTERVAL_GAUGE = "queueConsumerPollInterval";
+    private static final String PACK_PROCESSING_TIMEOUT_GAUGE = "queueConsumerPackProcessingTimeout";
+
+    @Value("${queue.consumer-tuning.enabled:false}")
+    private boolean enabled;
+    @Value("${queue.consumer-tuning.max-poll-interval-ms:1000}")
+    private long maxPollInterval;
+    @Value("${queue.consumer-tuning.pack-processing-timeout-factor:3}")
+    private double packProcessingTimeoutFactor;
+    @Value("${queue.consumer-tuning.max-pack-processing-timeout-multiplier:5}")
+    private int maxPackProcessingTimeoutMultiplier;
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+
+    // tuners are kept by consumer key, so that the gauges stay bound after the consumer is recreated
+    private final ConcurrentMap<String, QueueConsumerTuner> tuners = new ConcurrentHashMap<>();
+
+    public QueueConsumerTuner getTuner(String consumerKey) {
+        if (!enabled) {
+            return QueueConsumerTuner.DISABLED;
+        }
+        return tuners.computeIfAbsent(consumerKey, key -> new QueueConsumerTuner(true, maxPollInterval,
+                packProcessingTimeoutFactor, maxPackProcessingTimeoutMultiplier,
+                createGauge(POLL_INTERVAL_GAUGE, key), createGauge(PACK_PROCESSING_TIMEOUT_GAUGE, key)));
+    }
+
+    private AtomicLong createGauge(String name, String consumerKey) {
+        if (statsFactory == null) {
+            return new AtomicLong();
+        }
+        return statsFactory.createGauge(name, new AtomicLong(), "consumer", consumerKey);
+    }
+
+}
@@ -317,6 +317,11 @@ public class HashPartitionService implements PartitionService {
         return buildTopicPartitionInfo(queueKey, partition);
     }
 
+    @Override
+    public String resolveQueueName(ServiceType serviceType, String queueName, TenantId tenantId) {
+        return getQueueKey(serviceType, queueName, tenantId).getQueueName();
+    }
+
     private QueueKey getQueueKey(ServiceType serviceType, String queueName, TenantId tenantId) {
         TenantId isolatedOrSystemTenantId = getIsolatedOrSystemTenantId(serviceType, tenantId);
         if (queueName == null) {
@@ -39,6 +39,11 @@ public interface PartitionService {
 
     List<TopicPartitionInfo> resolveAll(ServiceType serviceType, String queueName, TenantId tenantId, EntityId entityId);
 
+    /**
+     * Name of the queue that the messages with the given queue name are actually pushed to: Main for the null or unknown queue names
+     */
+    String resolveQueueName(ServiceType serviceType, String queueName, TenantId tenantId);
+
     boolean isMyPartition(ServiceType serviceType, TenantId tenantId, EntityId entityId);
 
     List<Integer> getMyPartitions(QueueKey queueKey);
@@ -20,6 +20,7 @@ import org.thingsboard.server.queue.TbQueueMsg;
 import org.thingsboard.server.queue.TbQueueMsgHeaders;
 import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
 
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 public class KafkaTbQueueMsg implements TbQueueMsg {
@@ -27,8 +28,8 @@ public class KafkaTbQueueMsg implements TbQueueMsg {
     private final TbQueueMsgHeaders headers;
     private final byte[] data;
 
-    public KafkaTbQueueMsg(ConsumerRecord<String, byte[]> record) {
-        this.key = UUID.fromString(record.key());
+    public KafkaTbQueueMsg(ConsumerRecord<byte[], byte[]> record) {
+        this.key = toUUID(record.key());
         TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
         record.headers().forEach(header -> {
             headers.put(header.key(), header.value());
@@ -37,6 +38,22 @@ public class KafkaTbQueueMsg implements TbQueueMsg {
         this.data = record.value();
     }
 
+    /*
+     * Keys are either 16 raw bytes (queue.kafka.binary-keys) or a UTF-8 string, e.g. from older nodes or the JS executor.
+     * */
+    static UUID toUUID(byte[] key) {
+        if (key.length == 16) {
+            long msb = 0;
+            long lsb = 0;
+            for (int i = 0; i < 8; i++) {
+                msb = (msb << 8) | (key[i] & 0xff);
+                lsb = (lsb << 8) | (key[8 + i] & 0xff);
+            }
+            return new UUID(msb, lsb);
+        }
+        return UUID.fromString(new String(key, StandardCharsets.UTF_8));
+    }
+
     @Override
     public UUID getKey() {
         return key;
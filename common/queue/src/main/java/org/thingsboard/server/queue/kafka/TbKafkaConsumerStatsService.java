@@ -61,7 +61,7 @@ public class TbKafkaConsumerStatsService {
     @Autowired
     private PartitionService partitionService;
 
-    private Consumer<String, byte[]> consumer;
+    private Consumer<byte[], byte[]> consumer;
     private ScheduledExecutorService statsPrintScheduler;
 
     @PostConstruct
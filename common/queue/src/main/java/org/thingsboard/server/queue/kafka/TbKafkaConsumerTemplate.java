@@ -21,31 +21,40 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.util.StopWatch;
 import org.thingsboard.server.queue.TbQueueAdmin;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueOffsets;
 import org.thingsboard.server.queue.common.AbstractTbQueueConsumerTemplate;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.Properties;
 
 /**
  * Created by ashvayka on 24.09.18.
  */
 @Slf4j
-public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<ConsumerRecord<String, byte[]>, T> {
+public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<ConsumerRecord<byte[], byte[]>, T> {
 
     private final TbQueueAdmin admin;
-    private final KafkaConsumer<String, byte[]> consumer;
+    private final KafkaConsumer<byte[], byte[]> consumer;
     private final TbKafkaDecoder<T> decoder;
 
     private final TbKafkaConsumerStatsService statsService;
     private final String groupId;
 
+    private volatile TbQueueOffsets lastPolledOffsets = new TbQueueOffsets();
+    private volatile long lag = -1;
+
     @Builder
     private TbKafkaConsumerTemplate(TbKafkaSettings settings, TbKafkaDecoder<T> decoder,
                                     String clientId, String groupId, String topic,
@@ -81,28 +90,52 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
     }
 
     @Override
-    protected List<ConsumerRecord<String, byte[]>> doPoll(long durationInMillis) {
+    protected List<ConsumerRecord<byte[], byte[]>> doPoll(long durationInMillis) {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
         log.trace("poll topic {} maxDuration {}", getTopic(), durationInMillis);
 
-        ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(durationInMillis));
+        ConsumerRecords<byte[], byte[]> records = consumer.poll(Duration.ofMillis(durationInMillis));
 
         stopWatch.stop();
         log.trace("poll topic {} took {}ms", getTopic(), stopWatch.getTotalTimeMillis());
+        lag = calculateLag();
 
+        TbQueueOffsets offsets = new TbQueueOffsets();
         if (records.isEmpty()) {
+            lastPolledOffsets = offsets;
             return Collections.emptyList();
         } else {
-            List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(256);
-            records.forEach(recordList::add);
+            List<ConsumerRecord<byte[], byte[]>> recordList = new ArrayList<>(256);
+            records.forEach(record -> {
+                recordList.add(record);
+                offsets.update(record.topic(), record.partition(), record.offset() + 1);
+            });
+            lastPolledOffsets = offsets;
             return recordList;
         }
     }
 
+    private long calculateLag() {
+        long total = 0;
+        for (TopicPartition partition : consumer.assignment()) {
+            OptionalLong partitionLag = consumer.currentLag(partition);
+            if (partitionLag.isEmpty()) {
+                return -1;
+            }
+            total += partitionLag.getAsLong();
+        }
+        return total;
+    }
+
     @Override
-    public T decode(ConsumerRecord<String, byte[]> record) throws IOException {
+    public long getLag() {
+        return lag;
+    }
+
+    @Override
+    public T decode(ConsumerRecord<byte[], byte[]> record) throws IOException {
         return decoder.decode(new KafkaTbQueueMsg(record));
     }
 
@@ -111,6 +144,24 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         consumer.commitSync();
     }
 
+    @Override
+    public boolean isOffsetsCommitSupported() {
+        return true;
+    }
+
+    @Override
+    public TbQueueOffsets getLastPolledOffsets() {
+        return lastPolledOffsets;
+    }
+
+    @Override
+    protected void doCommit(TbQueueOffsets offsets) {
+        Map<TopicPartition, OffsetAndMetadata> kafkaOffsets = new HashMap<>();
+        offsets.getOffsets().forEach((partition, nextOffset) ->
+                kafkaOffsets.put(new TopicPartition(partition.getTopic(), partition.getPartition()), new OffsetAndMetadata(nextOffset)));
+        consumer.commitSync(kafkaOffsets);
+    }
+
     @Override
     protected void doUnsubscribe() {
         if (consumer != null) {
@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-topic producer metrics: time from {@code send} to broker acknowledgement and serialized record size.
+ * The size summary paired with Kafka's own {@code record-send-rate} shows how well records are batched per topic.
+ */
+class TbKafkaProducerStats {
+
+    static final String SEND_LATENCY = "kafkaProducerSendLatency";
+    static final String RECORD_SIZE = "kafkaProducerRecordSize";
+    static final String TOPIC_TAG = "topic";
+
+    private final StatsFactory statsFactory;
+    private final ConcurrentMap<String, TopicStats> topicStats = new ConcurrentHashMap<>();
+
+    TbKafkaProducerStats(StatsFactory statsFactory) {
+        this.statsFactory = statsFactory;
+    }
+
+    void onSent(String topic, long startNanos, int serializedSize) {
+        TopicStats stats = topicStats.computeIfAbsent(topic, this::createTopicStats);
+        stats.sendLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (serializedSize > 0) {
+            stats.recordSize.record(serializedSize);
+        }
+    }
+
+    private TopicStats createTopicStats(String topic) {
+        return new TopicStats(statsFactory.createTimer(SEND_LATENCY, TOPIC_TAG, topic),
+                statsFactory.createDistributionSummary(RECORD_SIZE, TOPIC_TAG, topic));
+    }
+
+    private record TopicStats(Timer sendLatency, DistributionSummary recordSize) {}
+
+}
@@ -31,12 +31,15 @@ import org.thingsboard.server.queue.TbQueueMsg;
 import org.thingsboard.server.queue.TbQueueProducer;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by ashvayka on 24.09.18.
@@ -44,7 +47,9 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueueProducer<T> {
 
-    private final KafkaProducer<String, byte[]> producer;
+    private final KafkaProducer<byte[], byte[]> producer;
+
+    private final ConcurrentMap<String, KafkaProducer<byte[], byte[]>> topicProducers = new ConcurrentHashMap<>();
 
     @Getter
     private final String defaultTopic;
@@ -59,28 +64,44 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
     @Getter
     private final String clientId;
 
-    @Builder
-    private TbKafkaProducerTemplate(TbKafkaSettings settings, String defaultTopic, String clientId, TbQueueAdmin admin) {
-        Properties props = settings.toProducerProps();
+    private final boolean binaryKeys;
+
+    private final TbKafkaProducerStats stats;
 
+    private final Header producerIdHeader;
+
+    /**
+     * @param stringKeys forces UUID keys to be written as strings even if {@code queue.kafka.binary-keys} is enabled.
+     *                   Used for topics consumed outside of Java services, e.g. JS executor requests.
+     */
+    @Builder
+    private TbKafkaProducerTemplate(TbKafkaSettings settings, String defaultTopic, String clientId, TbQueueAdmin admin, boolean stringKeys) {
         this.clientId = Objects.requireNonNull(clientId, "Kafka producer client.id is null");
-        if (!StringUtils.isEmpty(clientId)) {
-            props.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
-        }
         this.settings = settings;
+        this.binaryKeys = settings.isBinaryKeys() && !stringKeys;
+        this.stats = settings.isProducerStatsEnabled() && settings.getStatsFactory() != null ? new TbKafkaProducerStats(settings.getStatsFactory()) : null;
+        this.producerIdHeader = new RecordHeader("_producerId", clientId.getBytes(StandardCharsets.UTF_8));
 
-        this.producer = new KafkaProducer<>(props);
+        this.producer = new KafkaProducer<>(createProducerProps(null));
         this.defaultTopic = defaultTopic;
         this.admin = admin;
         topics = ConcurrentHashMap.newKeySet();
     }
 
+    private Properties createProducerProps(String topic) {
+        Properties props = topic != null ? settings.toProducerProps(topic) : settings.toProducerProps();
+        if (!StringUtils.isEmpty(clientId)) {
+            props.put(ProducerConfig.CLIENT_ID_CONFIG, topic != null ? clientId + "-" + topic : clientId);
+        }
+        return props;
+    }
+
     @Override
     public void init() {
     }
 
     void addAnalyticHeaders(List<Header> headers) {
-        headers.add(new RecordHeader("_producerId", getClientId().getBytes(StandardCharsets.UTF_8)));
+        headers.add(producerIdHeader != null ? producerIdHeader : new RecordHeader("_producerId", getClientId().getBytes(StandardCharsets.UTF_8)));
         headers.add(new RecordHeader("_threadName", Thread.currentThread().getName().getBytes(StandardCharsets.UTF_8)));
         if (log.isTraceEnabled()) {
             try {
@@ -99,16 +120,14 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
     public void send(TopicPartitionInfo tpi, T msg, TbQueueCallback callback) {
         try {
             createTopicIfNotExist(tpi);
-            String key = msg.getKey().toString();
-            byte[] data = msg.getData();
-            ProducerRecord<String, byte[]> record;
-            List<Header> headers = msg.getHeaders().getData().entrySet().stream().map(e -> new RecordHeader(e.getKey(), e.getValue())).collect(Collectors.toList());
-            if (log.isDebugEnabled()) {
-                addAnalyticHeaders(headers);
-            }
-            record = new ProducerRecord<>(tpi.getFullTopicName(), null, key, data, headers);
-            producer.send(record, (metadata, exception) -> {
+            byte[] key = binaryKeys ? toBytes(msg.getKey()) : msg.getKey().toString().getBytes(StandardCharsets.UTF_8);
+            ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(tpi.getFullTopicName(), null, key, msg.getData(), toHeaders(msg.getHeaders().getData()));
+            long startNanos = stats != null ? System.nanoTime() : 0L;
+            getProducer(tpi.getTopic()).send(record, (metadata, exception) -> {
                 if (exception == null) {
+                    if (stats != null) {
+                        stats.onSent(tpi.getTopic(), startNanos, Math.max(metadata.serializedKeySize(), 0) + Math.max(metadata.serializedValueSize(), 0));
+                    }
                     if (callback != null) {
                         callback.onSuccess(new KafkaTbQueueMsgMetadata(metadata));
                     }
@@ -130,6 +149,42 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
         }
     }
 
+    /*
+     * Returns null for records without headers, so Kafka does not copy an empty list into RecordHeaders.
+     * */
+    private List<Header> toHeaders(Map<String, byte[]> data) {
+        boolean analytic = log.isDebugEnabled();
+        if (data.isEmpty() && !analytic) {
+            return null;
+        }
+        List<Header> headers = new ArrayList<>(data.size() + (analytic ? 2 : 0));
+        for (Map.Entry<String, byte[]> e : data.entrySet()) {
+            headers.add(new RecordHeader(e.getKey(), e.getValue()));
+        }
+        if (analytic) {
+            addAnalyticHeaders(headers);
+        }
+        return headers;
+    }
+
+    private KafkaProducer<byte[], byte[]> getProducer(String topic) {
+        if (!settings.hasProducerProperties(topic)) {
+            return producer;
+        }
+        return topicProducers.computeIfAbsent(topic, t -> new KafkaProducer<>(createProducerProps(t)));
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (msb >>> (56 - 8 * i));
+            bytes[8 + i] = (byte) (lsb >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
     private void createTopicIfNotExist(TopicPartitionInfo tpi) {
         if (topics.contains(tpi)) {
             return;
@@ -143,5 +198,7 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
         if (producer != null) {
             producer.close();
         }
+        topicProducers.values().forEach(KafkaProducer::close);
+        topicProducers.clear();
     }
 }
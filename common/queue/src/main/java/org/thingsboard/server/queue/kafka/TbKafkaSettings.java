@@ -26,13 +26,13 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.config.SslConfigs;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
-import org.apache.kafka.common.serialization.StringDeserializer;
-import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.TbProperty;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.util.PropertyUtils;
 
 import javax.annotation.PreDestroy;
@@ -80,6 +80,14 @@ public class TbKafkaSettings {
     @Value("${queue.kafka.compression.type:none}")
     private String compressionType;
 
+    @Value("${queue.kafka.binary-keys:false}")
+    @Getter
+    private boolean binaryKeys;
+
+    @Value("${queue.kafka.producer-stats.enabled:false}")
+    @Getter
+    private boolean producerStatsEnabled;
+
     @Value("${queue.kafka.batch.size:16384}")
     private int batchSize;
 
@@ -145,6 +153,13 @@ public class TbKafkaSettings {
     @Setter
     private Map<String, List<TbProperty>> consumerPropertiesPerTopic = Collections.emptyMap();
 
+    @Setter
+    private Map<String, List<TbProperty>> producerPropertiesPerTopic = Collections.emptyMap();
+
+    @Autowired(required = false)
+    @Getter
+    private StatsFactory statsFactory;
+
     private volatile AdminClient adminClient;
 
     public Properties toConsumerProps(String topic) {
@@ -157,7 +172,7 @@ public class TbKafkaSettings {
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
 
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
 
         consumerPropertiesPerTopic
@@ -174,7 +189,7 @@ public class TbKafkaSettings {
         props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
         props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
         props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
         props.put(ProducerConfig.MAX_REQUEST_SIZE_CONFIG, maxRequestSize);
@@ -182,6 +197,18 @@ public class TbKafkaSettings {
         return props;
     }
 
+    public Properties toProducerProps(String topic) {
+        Properties props = toProducerProps();
+        producerPropertiesPerTopic
+                .getOrDefault(topic, Collections.emptyList())
+                .forEach(kv -> props.put(kv.getKey(), kv.getValue()));
+        return props;
+    }
+
+    public boolean hasProducerProperties(String topic) {
+        return topic != null && producerPropertiesPerTopic.containsKey(topic);
+    }
+
     Properties toProps() {
         Properties props = new Properties();
 
@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
+import org.thingsboard.server.queue.TbQueueOffsets;
+import org.thingsboard.server.queue.common.AbstractTbQueueConsumerTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads topic partitions of the local log from the offsets committed for {@code groupId}.
+ * Uncommitted records are delivered again after a restart or re-subscribe.
+ */
+@Slf4j
+public class TbLocalLogConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<TbQueueMsg, T> {
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final TbLocalLogStorage storage;
+    private final String groupId;
+    private final TbQueueMsgDecoder<T> decoder;
+    private final int maxPollRecords;
+
+    private volatile Map<String, TbLocalLogCursor> cursors = Collections.emptyMap();
+    private volatile TbQueueOffsets lastPolledOffsets = new TbQueueOffsets();
+
+    public TbLocalLogConsumerTemplate(TbLocalLogStorage storage, String topic, String groupId, TbQueueMsgDecoder<T> decoder) {
+        super(topic);
+        this.storage = storage;
+        this.groupId = groupId;
+        this.decoder = decoder;
+        this.maxPollRecords = storage.getSettings().getMaxPollRecords();
+    }
+
+    @Override
+    protected void doSubscribe(List<String> topicNames) {
+        Map<String, TbLocalLogCursor> cursors = new LinkedHashMap<>();
+        for (String topicName : topicNames) {
+            TbLocalLogTopic topic = storage.getTopic(topicName);
+            cursors.put(topicName, topic.seek(topic.getCommittedOffset(groupId)));
+        }
+        this.cursors = cursors;
+    }
+
+    @Override
+    protected List<TbQueueMsg> doPoll(long durationInMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationInMillis);
+        List<TbQueueMsg> records = new ArrayList<>();
+        while (true) {
+            for (TbLocalLogCursor cursor : cursors.values()) {
+                cursor.topic.read(cursor, maxPollRecords - records.size(), records);
+                if (records.size() >= maxPollRecords) {
+                    break;
+                }
+            }
+            long nanosLeft = deadline - System.nanoTime();
+            if (!records.isEmpty() || stopped || nanosLeft <= 0) {
+                break;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(nanosLeft, MAX_WAIT_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        TbQueueOffsets offsets = new TbQueueOffsets();
+        if (!records.isEmpty()) {
+            cursors.forEach((topicName, cursor) -> offsets.update(topicName, 0, cursor.offset));
+        }
+        lastPolledOffsets = offsets;
+        return records;
+    }
+
+    @Override
+    protected T decode(TbQueueMsg record) throws IOException {
+        return decoder.decode(record);
+    }
+
+    @Override
+    protected void doCommit() {
+        cursors.forEach((topicName, cursor) -> cursor.topic.commit(groupId, cursor.offset));
+    }
+
+    @Override
+    public boolean isOffsetsCommitSupported() {
+        return true;
+    }
+
+    @Override
+    public TbQueueOffsets getLastPolledOffsets() {
+        return lastPolledOffsets;
+    }
+
+    @Override
+    protected void doCommit(TbQueueOffsets offsets) {
+        offsets.getOffsets().forEach((partition, nextOffset) -> storage.getTopic(partition.getTopic()).commit(groupId, nextOffset));
+    }
+
+    @Override
+    public long getLag() {
+        long lag = 0;
+        for (TbLocalLogCursor cursor : cursors.values()) {
+            lag += cursor.topic.getEndOffset() - cursor.offset;
+        }
+        return lag;
+    }
+
+    @Override
+    protected void doUnsubscribe() {
+        cursors = Collections.emptyMap();
+    }
+
+    @Override
+    protected boolean isLongPollingSupported() {
+        return true;
+    }
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+/**
+ * Read position of a consumer within a topic: the segment, byte position in it and offset of the next record.
+ */
+class TbLocalLogCursor {
+
+    final TbLocalLogTopic topic;
+    TbLocalLogSegment segment;
+    int position;
+    long offset;
+
+    TbLocalLogCursor(TbLocalLogTopic topic, TbLocalLogSegment segment, int position, long offset) {
+        this.topic = topic;
+        this.segment = segment;
+        this.position = position;
+        this.offset = offset;
+    }
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import lombok.Getter;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+
+import java.util.UUID;
+
+@Getter
+public class TbLocalLogMsg implements TbQueueMsg {
+
+    private final long offset;
+    private final UUID key;
+    private final TbQueueMsgHeaders headers;
+    private final byte[] data;
+
+    public TbLocalLogMsg(long offset, UUID key, TbQueueMsgHeaders headers, byte[] data) {
+        this.offset = offset;
+        this.key = key;
+        this.headers = headers;
+        this.data = data;
+    }
+
+}
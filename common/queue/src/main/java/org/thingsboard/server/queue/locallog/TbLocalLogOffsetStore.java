@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Committed offset of a single consumer group, kept in a memory-mapped 8-byte file next to the topic segments.
+ */
+class TbLocalLogOffsetStore {
+
+    static final String SUFFIX = ".offset";
+
+    private final MappedByteBuffer buffer;
+    private volatile long offset;
+    private boolean closed;
+
+    private TbLocalLogOffsetStore(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.getLong(0);
+    }
+
+    static TbLocalLogOffsetStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new TbLocalLogOffsetStore(channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES));
+        }
+    }
+
+    long get() {
+        return offset;
+    }
+
+    synchronized void commit(long offset) {
+        if (closed) {
+            return;
+        }
+        this.offset = offset;
+        buffer.putLong(0, offset);
+    }
+
+    synchronized void flush() {
+        if (!closed) {
+            buffer.force();
+        }
+    }
+
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            TbLocalLogSegment.unmap(buffer);
+        }
+    }
+
+}
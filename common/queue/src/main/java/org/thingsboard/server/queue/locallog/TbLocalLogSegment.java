@@ -0,0 +1,315 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only memory-mapped file holding messages starting from {@link #getBaseOffset()}.
+ * <p>
+ * Record layout: body size (int), CRC32C of the body (int), body. The body is the message key (two longs),
+ * headers count (int), headers as key length, key, value length, value, and data length (int) with data.
+ * A zero size marks the end of written records; a CRC mismatch marks a torn write on recovery.
+ * <p>
+ * Appends are serialized by the owning topic; readers only access bytes below the volatile {@link #size}.
+ * The mapping is released by {@link #delete()}, so the buffer is accessed under the read lock and only while not closed.
+ */
+@Slf4j
+class TbLocalLogSegment {
+
+    static final String SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_BODY_SIZE = 16 + 4 + 4;
+    private static final MethodHandle INVOKE_CLEANER = getInvokeCleaner();
+
+    @Getter
+    private final long baseOffset;
+    @Getter
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private volatile boolean closed;
+    private volatile int size;
+    private volatile long nextOffset;
+    @Getter
+    private volatile long lastModifiedTime;
+
+    private TbLocalLogSegment(long baseOffset, Path file, MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.file = file;
+        this.buffer = buffer;
+        this.nextOffset = baseOffset;
+        this.lastModifiedTime = System.currentTimeMillis();
+    }
+
+    static TbLocalLogSegment create(Path dir, long baseOffset, int capacity) throws IOException {
+        Path file = dir.resolve(String.format("%020d", baseOffset) + SUFFIX);
+        return new TbLocalLogSegment(baseOffset, file, map(file, capacity));
+    }
+
+    static TbLocalLogSegment open(Path file, int capacity) throws IOException {
+        String fileName = file.getFileName().toString();
+        long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+        long length = Files.size(file);
+        TbLocalLogSegment segment = new TbLocalLogSegment(baseOffset, file, map(file, length > 0 ? length : capacity));
+        segment.recover();
+        segment.lastModifiedTime = Files.getLastModifiedTime(file).toMillis();
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path file, long capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private void recover() {
+        int capacity = buffer.capacity();
+        int position = 0;
+        long count = 0;
+        while (position + RECORD_HEADER_SIZE <= capacity) {
+            int bodySize = buffer.getInt(position);
+            if (bodySize == 0) {
+                break;
+            }
+            if (bodySize < MIN_BODY_SIZE || position + RECORD_HEADER_SIZE + bodySize > capacity
+                    || buffer.getInt(position + 4) != crc(position + RECORD_HEADER_SIZE, bodySize)) {
+                log.warn("[{}] Truncating segment at position {} after {} valid records", file, position, count);
+                for (int i = position; i < capacity; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                break;
+            }
+            position += RECORD_HEADER_SIZE + bodySize;
+            count++;
+        }
+        this.size = position;
+        this.nextOffset = baseOffset + count;
+    }
+
+    /**
+     * @return false if the segment has no space left for the message.
+     */
+    boolean append(TbQueueMsg msg) {
+        Map<String, byte[]> headers = msg.getHeaders().getData();
+        byte[] data = msg.getData();
+        int bodySize = MIN_BODY_SIZE + data.length;
+        byte[][] headerKeys = null;
+        if (!headers.isEmpty()) {
+            headerKeys = new byte[headers.size()][];
+            int i = 0;
+            for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+                byte[] key = header.getKey().getBytes(StandardCharsets.UTF_8);
+                headerKeys[i++] = key;
+                bodySize += 8 + key.length + (header.getValue() != null ? header.getValue().length : 0);
+            }
+        }
+        int start = size;
+        if ((long) start + RECORD_HEADER_SIZE + bodySize > buffer.capacity()) {
+            return false;
+        }
+        int position = start + RECORD_HEADER_SIZE;
+        UUID key = msg.getKey();
+        buffer.putLong(position, key.getMostSignificantBits());
+        buffer.putLong(position + 8, key.getLeastSignificantBits());
+        buffer.putInt(position + 16, headers.size());
+        position += 20;
+        if (headerKeys != null) {
+            int i = 0;
+            for (byte[] value : headers.values()) {
+                byte[] headerKey = headerKeys[i++];
+                buffer.putInt(position, headerKey.length);
+                buffer.put(position + 4, headerKey);
+                position += 4 + headerKey.length;
+                buffer.putInt(position, value != null ? value.length : -1);
+                position += 4;
+                if (value != null) {
+                    buffer.put(position, value);
+                    position += value.length;
+                }
+            }
+        }
+        buffer.putInt(position, data.length);
+        buffer.put(position + 4, data);
+        buffer.putInt(start + 4, crc(start + RECORD_HEADER_SIZE, bodySize));
+        buffer.putInt(start, bodySize);
+        size = start + RECORD_HEADER_SIZE + bodySize;
+        nextOffset = nextOffset + 1;
+        return true;
+    }
+
+    /**
+     * Reads up to {@code max} records starting at {@code position}, which must point to the record with {@code offset}.
+     *
+     * @return position of the first record that was not read.
+     */
+    int read(int position, long offset, int max, List<TbQueueMsg> out) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return position;
+            }
+            int end = size;
+            int count = 0;
+            while (count < max && position < end) {
+                int bodySize = buffer.getInt(position);
+                out.add(decode(position + RECORD_HEADER_SIZE, offset + count));
+                position += RECORD_HEADER_SIZE + bodySize;
+                count++;
+            }
+            return position;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    int skip(int position, long count) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return position;
+            }
+            int end = size;
+            for (long i = 0; i < count && position < end; i++) {
+                position += RECORD_HEADER_SIZE + buffer.getInt(position);
+            }
+            return position;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private TbLocalLogMsg decode(int position, long offset) {
+        UUID key = new UUID(buffer.getLong(position), buffer.getLong(position + 8));
+        int headersCount = buffer.getInt(position + 16);
+        position += 20;
+        TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        for (int i = 0; i < headersCount; i++) {
+            byte[] headerKey = new byte[buffer.getInt(position)];
+            buffer.get(position + 4, headerKey);
+            position += 4 + headerKey.length;
+            int valueLength = buffer.getInt(position);
+            position += 4;
+            byte[] value = null;
+            if (valueLength >= 0) {
+                value = new byte[valueLength];
+                buffer.get(position, value);
+                position += valueLength;
+            }
+            headers.put(new String(headerKey, StandardCharsets.UTF_8), value);
+        }
+        byte[] data = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, data);
+        return new TbLocalLogMsg(offset, key, headers, data);
+    }
+
+    private int crc(int position, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void seal() {
+        flush();
+        lastModifiedTime = System.currentTimeMillis();
+    }
+
+    void flush() {
+        closeLock.readLock().lock();
+        try {
+            if (!closed) {
+                buffer.force();
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unmaps the segment before deleting its file: the mapping would otherwise keep the disk space (and the file
+     * on Windows) until the buffer is garbage collected.
+     */
+    void delete() throws IOException {
+        closeLock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                unmap(buffer);
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        Files.deleteIfExists(file);
+    }
+
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warn("Failed to unmap buffer, it is released on garbage collection", e);
+        }
+    }
+
+    private static MethodHandle getInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+}
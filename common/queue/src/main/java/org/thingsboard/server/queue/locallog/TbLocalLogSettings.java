@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Component
+@ConditionalOnExpression("'${queue.type:null}'=='local-log'")
+public class TbLocalLogSettings {
+
+    @Value("${queue.local_log.dir:${user.home}/.thingsboard/data/queue}")
+    private String dir;
+
+    @Value("${queue.local_log.segment-size:16777216}")
+    private int segmentSize;
+
+    @Value("${queue.local_log.max-poll-records:1000}")
+    private int maxPollRecords;
+
+    @Value("${queue.local_log.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${queue.local_log.retention-ms:604800000}")
+    private long retentionMs;
+
+    @Value("${queue.local_log.cleanup-interval-ms:60000}")
+    private long cleanupIntervalMs;
+
+}
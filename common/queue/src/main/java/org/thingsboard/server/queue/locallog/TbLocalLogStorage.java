@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Embedded durable queue storage for single-node deployments. Every full topic name (topic partition)
+ * is an append-only log of memory-mapped segments in its own directory under {@code queue.local_log.dir}.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${queue.type:null}'=='local-log'")
+public class TbLocalLogStorage {
+
+    @Getter
+    private final TbLocalLogSettings settings;
+    private final ConcurrentMap<String, TbLocalLogTopic> topics = new ConcurrentHashMap<>();
+
+    private Path root;
+    private ScheduledExecutorService scheduler;
+
+    public TbLocalLogStorage(TbLocalLogSettings settings) {
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(settings.getDir());
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(Files::isDirectory).forEach(dir -> getTopic(dir.getFileName().toString()));
+        }
+        log.info("Opened {} topics of local log queue in {}", topics.size(), root.toAbsolutePath());
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("local-log-queue"));
+        scheduler.scheduleWithFixedDelay(this::flush, settings.getFlushIntervalMs(), settings.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::cleanup, settings.getCleanupIntervalMs(), settings.getCleanupIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    TbLocalLogTopic getTopic(String name) {
+        return topics.computeIfAbsent(name, topic -> {
+            try {
+                return new TbLocalLogTopic(topic, root.resolve(topic), settings);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open local log topic [" + topic + "]", e);
+            }
+        });
+    }
+
+    public void deleteTopic(String name) {
+        TbLocalLogTopic topic = topics.remove(name);
+        if (topic != null) {
+            try {
+                topic.delete();
+            } catch (IOException e) {
+                log.warn("[{}] Failed to delete local log topic", name, e);
+            }
+        }
+    }
+
+    public void printStats() {
+        if (log.isDebugEnabled()) {
+            topics.forEach((name, topic) -> {
+                if (topic.getEndOffset() > topic.getStartOffset()) {
+                    log.debug("[{}] Offsets [{} - {}]", name, topic.getStartOffset(), topic.getEndOffset());
+                }
+            });
+        }
+    }
+
+    void flush() {
+        topics.values().forEach(topic -> {
+            try {
+                topic.flush();
+            } catch (Exception e) {
+                log.warn("[{}] Failed to flush local log topic", topic.getName(), e);
+            }
+        });
+    }
+
+    void cleanup() {
+        long now = System.currentTimeMillis();
+        topics.values().forEach(topic -> {
+            try {
+                topic.cleanup(now);
+            } catch (Exception e) {
+                log.warn("[{}] Failed to clean up local log topic", topic.getName(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flush();
+    }
+
+}
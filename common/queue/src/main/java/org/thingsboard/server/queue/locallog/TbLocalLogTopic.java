@@ -0,0 +1,231 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Durable log of a single topic partition: a directory with segment files named by their base offset
+ * and one offset file per consumer group.
+ */
+@Slf4j
+class TbLocalLogTopic {
+
+    @Getter
+    private final String name;
+    private final Path dir;
+    private final TbLocalLogSettings settings;
+
+    private final ConcurrentNavigableMap<Long, TbLocalLogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, TbLocalLogOffsetStore> offsets = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private volatile TbLocalLogSegment active;
+
+    TbLocalLogTopic(String name, Path dir, TbLocalLogSettings settings) throws IOException {
+        this.name = name;
+        this.dir = dir;
+        this.settings = settings;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(TbLocalLogSegment.SUFFIX)) {
+                    TbLocalLogSegment segment = TbLocalLogSegment.open(file, settings.getSegmentSize());
+                    segments.put(segment.getBaseOffset(), segment);
+                } else if (fileName.endsWith(TbLocalLogOffsetStore.SUFFIX)) {
+                    String group = fileName.substring(0, fileName.length() - TbLocalLogOffsetStore.SUFFIX.length());
+                    offsets.put(group, TbLocalLogOffsetStore.open(file));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            TbLocalLogSegment segment = TbLocalLogSegment.create(dir, 0, settings.getSegmentSize());
+            segments.put(segment.getBaseOffset(), segment);
+        }
+        active = segments.lastEntry().getValue();
+    }
+
+    long append(TbQueueMsg msg) throws IOException {
+        appendLock.lock();
+        try {
+            TbLocalLogSegment segment = active;
+            if (segment.isClosed()) {
+                throw new IllegalStateException("Topic [" + name + "] is deleted");
+            }
+            if (!segment.append(msg)) {
+                if (segment.isEmpty()) {
+                    throw new IllegalArgumentException("Message of " + msg.getData().length + " bytes does not fit into segment of topic [" + name + "]");
+                }
+                segment = roll();
+                if (!segment.append(msg)) {
+                    throw new IllegalArgumentException("Message of " + msg.getData().length + " bytes does not fit into segment of topic [" + name + "]");
+                }
+            }
+            return segment.getNextOffset() - 1;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private TbLocalLogSegment roll() throws IOException {
+        TbLocalLogSegment previous = active;
+        previous.seal();
+        TbLocalLogSegment segment = TbLocalLogSegment.create(dir, previous.getNextOffset(), settings.getSegmentSize());
+        segments.put(segment.getBaseOffset(), segment);
+        active = segment;
+        log.debug("[{}] Rolled new segment at offset {}", name, segment.getBaseOffset());
+        return segment;
+    }
+
+    TbLocalLogCursor seek(long offset) {
+        Map.Entry<Long, TbLocalLogSegment> entry = segments.floorEntry(offset);
+        if (entry == null) {
+            entry = segments.firstEntry();
+            log.warn("[{}] Offset {} is already deleted, continue from {}", name, offset, entry.getKey());
+            return new TbLocalLogCursor(this, entry.getValue(), 0, entry.getKey());
+        }
+        TbLocalLogSegment segment = entry.getValue();
+        long toSkip = Math.min(offset, segment.getNextOffset()) - segment.getBaseOffset();
+        return new TbLocalLogCursor(this, segment, segment.skip(0, toSkip), segment.getBaseOffset() + toSkip);
+    }
+
+    /**
+     * Reads up to {@code max} records from the cursor position and advances the cursor.
+     * A cursor left on a deleted segment is moved to the first segment that is still there.
+     */
+    int read(TbLocalLogCursor cursor, int max, List<TbQueueMsg> out) {
+        if (cursor.segment.isClosed()) {
+            if (segments.isEmpty()) {
+                return 0;
+            }
+            TbLocalLogCursor position = seek(cursor.offset);
+            cursor.segment = position.segment;
+            cursor.position = position.position;
+            cursor.offset = position.offset;
+        }
+        int total = 0;
+        while (total < max) {
+            TbLocalLogSegment segment = cursor.segment;
+            int before = out.size();
+            cursor.position = segment.read(cursor.position, cursor.offset, max - total, out);
+            int count = out.size() - before;
+            cursor.offset += count;
+            total += count;
+            if (cursor.offset < segment.getNextOffset()) {
+                if (count == 0) {
+                    break;
+                }
+                continue;
+            }
+            Map.Entry<Long, TbLocalLogSegment> next = segments.higherEntry(segment.getBaseOffset());
+            if (next == null) {
+                break;
+            }
+            cursor.segment = next.getValue();
+            cursor.position = 0;
+            cursor.offset = next.getKey();
+        }
+        return total;
+    }
+
+    long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    long getEndOffset() {
+        return active.getNextOffset();
+    }
+
+    long getCommittedOffset(String group) {
+        TbLocalLogOffsetStore store = offsets.get(group);
+        return store != null ? store.get() : getStartOffset();
+    }
+
+    void commit(String group, long offset) {
+        offsets.computeIfAbsent(group, g -> {
+            try {
+                return TbLocalLogOffsetStore.open(dir.resolve(g + TbLocalLogOffsetStore.SUFFIX));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open offsets of group [" + g + "] for topic [" + name + "]", e);
+            }
+        }).commit(offset);
+    }
+
+    void flush() {
+        active.flush();
+        offsets.values().forEach(TbLocalLogOffsetStore::flush);
+    }
+
+    /*
+     * Deletes sealed segments from the head of the log up to the minimum offset committed by the known groups.
+     * Segments of a topic without any group are deleted once older than the retention, so they are never deleted unconsumed.
+     * */
+    void cleanup(long now) {
+        long minCommitted = offsets.isEmpty() ? -1 : offsets.values().stream().mapToLong(TbLocalLogOffsetStore::get).min().getAsLong();
+        for (TbLocalLogSegment segment : segments.values()) {
+            if (segment == active) {
+                break;
+            }
+            boolean consumed = minCommitted >= segment.getNextOffset();
+            boolean expired = offsets.isEmpty() && segment.getLastModifiedTime() < now - settings.getRetentionMs();
+            if (!consumed && !expired) {
+                break;
+            }
+            segments.remove(segment.getBaseOffset());
+            try {
+                segment.delete();
+                log.debug("[{}] Deleted segment {}, consumed: {}", name, segment.getFile(), consumed);
+            } catch (IOException e) {
+                log.warn("[{}] Failed to delete segment {}", name, segment.getFile(), e);
+            }
+        }
+    }
+
+    void delete() throws IOException {
+        appendLock.lock();
+        try {
+            for (TbLocalLogSegment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            offsets.values().forEach(TbLocalLogOffsetStore::close);
+            offsets.clear();
+        } finally {
+            appendLock.unlock();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+}
@@ -16,29 +16,53 @@
 package org.thingsboard.server.queue.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.TbQueueMsg;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+/*
+ * Every topic partition (full topic name) is backed by its own bounded ring buffer, so messages of one partition
+ * are consumed in order by the single consumer that owns it, same as with Kafka.
+ * */
 @Component
 @Slf4j
 public final class DefaultInMemoryStorage implements InMemoryStorage {
-    private final ConcurrentHashMap<String, BlockingQueue<TbQueueMsg>> storage = new ConcurrentHashMap<>();
+
+    static final int MAX_POLL_SIZE = 1000;
+    private static final long PUT_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final String LAG_STATS_KEY = "inMemoryQueueLag";
+    private static final String REJECTED_STATS_KEY = "inMemoryQueueRejected";
+    private static final String TOPIC_TAG = "topic";
+
+    private final ConcurrentHashMap<String, InMemoryPartition> storage = new ConcurrentHashMap<>();
+
+    @Value("${queue.in_memory.partition-capacity:65536}")
+    private int partitionCapacity = 65536;
+
+    @Value("${queue.in_memory.put-timeout-ms:1000}")
+    private long putTimeoutMs = 1000;
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
 
     @Override
     public void printStats() {
         if (log.isDebugEnabled()) {
-            storage.forEach((topic, queue) -> {
-                if (queue.size() > 0) {
-                    log.debug("[{}] Queue Size [{}]", topic, queue.size());
+            storage.forEach((topic, partition) -> {
+                int size = partition.updateLag();
+                if (size > 0 || partition.getRejected() > 0) {
+                    log.debug("[{}] Queue Size [{}] of [{}], rejected [{}]", topic, size, partition.buffer.capacity(), partition.getRejected());
                 }
             });
         }
@@ -46,37 +70,99 @@ public final class DefaultInMemoryStorage implements InMemoryStorage {
 
     @Override
     public int getLagTotal() {
-        return storage.values().stream().map(BlockingQueue::size).reduce(0, Integer::sum);
+        int total = 0;
+        for (InMemoryPartition partition : storage.values()) {
+            total += partition.buffer.size();
+        }
+        return total;
     }
 
     @Override
     public int getLag(String topic) {
-        return Optional.ofNullable(storage.get(topic)).map(Collection::size).orElse(0);
+        InMemoryPartition partition = storage.get(topic);
+        return partition != null ? partition.buffer.size() : 0;
     }
 
     @Override
     public boolean put(String topic, TbQueueMsg msg) {
-        return storage.computeIfAbsent(topic, (t) -> new LinkedBlockingQueue<>()).add(msg);
+        InMemoryPartition partition = storage.get(topic);
+        if (partition == null) {
+            partition = storage.computeIfAbsent(topic, this::createPartition);
+        }
+        if (partition.buffer.offer(msg)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(putTimeoutMs);
+        while (System.nanoTime() - deadline < 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(PUT_RETRY_NANOS);
+            if (partition.buffer.offer(msg)) {
+                return true;
+            }
+        }
+        partition.onRejected();
+        log.debug("[{}] Queue is full, rejected msg after waiting {} ms", topic, putTimeoutMs);
+        return false;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException {
-        final BlockingQueue<TbQueueMsg> queue = storage.get(topic);
-        if (queue != null) {
-            final TbQueueMsg firstMsg = queue.poll();
+        final InMemoryPartition partition = storage.get(topic);
+        if (partition != null) {
+            final TbQueueMsg firstMsg = partition.buffer.poll();
             if (firstMsg != null) {
-                final int queueSize = queue.size();
+                final int queueSize = partition.buffer.size();
                 if (queueSize > 0) {
-                    final List<TbQueueMsg> entities = new ArrayList<>(Math.min(queueSize, 999) + 1);
+                    final List<TbQueueMsg> entities = new ArrayList<>(Math.min(queueSize, MAX_POLL_SIZE - 1) + 1);
                     entities.add(firstMsg);
-                    queue.drainTo(entities, 999);
+                    partition.buffer.drainTo(entities, MAX_POLL_SIZE - 1);
+                    partition.updateLag();
                     return (List<T>) entities;
                 }
+                partition.updateLag();
                 return Collections.singletonList((T) firstMsg);
             }
         }
         return Collections.emptyList();
     }
 
+    private InMemoryPartition createPartition(String topic) {
+        InMemoryPartition partition = new InMemoryPartition(new InMemoryRingBuffer<>(partitionCapacity));
+        if (statsFactory != null) {
+            partition.lag = statsFactory.createGauge(LAG_STATS_KEY, new AtomicInteger(), TOPIC_TAG, topic);
+            partition.rejected = statsFactory.createDefaultCounter(REJECTED_STATS_KEY, TOPIC_TAG, topic);
+        }
+        return partition;
+    }
+
+    private static class InMemoryPartition {
+        private final InMemoryRingBuffer<TbQueueMsg> buffer;
+        private final AtomicInteger rejectedCount = new AtomicInteger();
+        private AtomicInteger lag;
+        private DefaultCounter rejected;
+
+        InMemoryPartition(InMemoryRingBuffer<TbQueueMsg> buffer) {
+            this.buffer = buffer;
+        }
+
+        int updateLag() {
+            int size = buffer.size();
+            if (lag != null) {
+                lag.set(size);
+            }
+            return size;
+        }
+
+        void onRejected() {
+            rejectedCount.incrementAndGet();
+            if (rejected != null) {
+                rejected.increment();
+            }
+        }
+
+        int getRejected() {
+            return rejectedCount.get();
+        }
+    }
+
 }
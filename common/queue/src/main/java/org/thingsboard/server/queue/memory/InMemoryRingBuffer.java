@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for a single in-memory queue partition.
+ * Each slot carries a sequence number, so producers and consumers only contend on their own position counter
+ * and {@link #offer} fails instead of growing when the buffer is full.
+ */
+final class InMemoryRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    InMemoryRingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(E e) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(idx, e);
+                    sequences.set(idx, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            pos = tail.get();
+        }
+    }
+
+    E poll() {
+        long pos = head.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E e = buffer.get(idx);
+                    buffer.lazySet(idx, null);
+                    sequences.set(idx, pos + mask + 1);
+                    return e;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+            pos = head.get();
+        }
+    }
+
+    int drainTo(List<? super E> to, int maxElements) {
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            to.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+}
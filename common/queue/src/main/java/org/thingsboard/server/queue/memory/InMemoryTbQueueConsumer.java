@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueOffsets;
 
 import java.util.Collections;
 import java.util.List;
@@ -104,6 +105,20 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
     public void commit() {
     }
 
+    @Override
+    public boolean isOffsetsCommitSupported() {
+        return true;
+    }
+
+    @Override
+    public TbQueueOffsets getLastPolledOffsets() {
+        return new TbQueueOffsets();
+    }
+
+    @Override
+    public void commit(TbQueueOffsets offsets) {
+    }
+
     @Override
     public boolean isStopped() {
         return stopped;
@@ -227,6 +227,7 @@ public class KafkaTbCoreQueueFactory implements TbCoreQueueFactory {
         TbKafkaProducerTemplate.TbKafkaProducerTemplateBuilder<TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest>> requestBuilder = TbKafkaProducerTemplate.builder();
         requestBuilder.settings(kafkaSettings);
         requestBuilder.clientId("producer-js-invoke-" + serviceInfoProvider.getServiceId());
+        requestBuilder.stringKeys(true);
         requestBuilder.defaultTopic(jsInvokeSettings.getRequestTopic());
         requestBuilder.admin(jsExecutorRequestAdmin);
 
@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.provider;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToTransportMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToUsageStatsServiceMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TransportApiRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TransportApiResponseMsg;
+import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.TbQueueRequestTemplate;
+import org.thingsboard.server.queue.common.DefaultTbQueueRequestTemplate;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.queue.discovery.TopicService;
+import org.thingsboard.server.queue.locallog.TbLocalLogProducerTemplate;
+import org.thingsboard.server.queue.locallog.TbLocalLogStorage;
+import org.thingsboard.server.queue.memory.InMemoryStorage;
+import org.thingsboard.server.queue.memory.InMemoryTbQueueConsumer;
+import org.thingsboard.server.queue.memory.InMemoryTbQueueProducer;
+import org.thingsboard.server.queue.settings.TbQueueCoreSettings;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
+import org.thingsboard.server.queue.settings.TbQueueTransportApiSettings;
+import org.thingsboard.server.queue.settings.TbQueueTransportNotificationSettings;
+
+/*
+ * Transport API requests and notifications are kept in memory, same as in LocalLogMonolithQueueFactory.
+ * */
+@Component
+@ConditionalOnExpression("'${queue.type:null}'=='local-log' && '${service.type:null}'=='monolith' && '${transport.api_enabled:true}'=='true'")
+@Slf4j
+public class LocalLogTbTransportQueueFactory implements TbTransportQueueFactory {
+
+    private final TbQueueTransportApiSettings transportApiSettings;
+    private final TbQueueTransportNotificationSettings transportNotificationSettings;
+    private final TbServiceInfoProvider serviceInfoProvider;
+    private final TbQueueCoreSettings coreSettings;
+    private final TbQueueRuleEngineSettings ruleEngineSettings;
+    private final TopicService topicService;
+    private final TbLocalLogStorage storage;
+    private final InMemoryStorage inMemoryStorage;
+
+    public LocalLogTbTransportQueueFactory(TbQueueTransportApiSettings transportApiSettings,
+                                           TbQueueTransportNotificationSettings transportNotificationSettings,
+                                           TbServiceInfoProvider serviceInfoProvider,
+                                           TbQueueCoreSettings coreSettings,
+                                           TbQueueRuleEngineSettings ruleEngineSettings,
+                                           TopicService topicService,
+                                           TbLocalLogStorage storage,
+                                           InMemoryStorage inMemoryStorage) {
+        this.transportApiSettings = transportApiSettings;
+        this.transportNotificationSettings = transportNotificationSettings;
+        this.serviceInfoProvider = serviceInfoProvider;
+        this.coreSettings = coreSettings;
+        this.ruleEngineSettings = ruleEngineSettings;
+        this.topicService = topicService;
+        this.storage = storage;
+        this.inMemoryStorage = inMemoryStorage;
+    }
+
+    @Override
+    public TbQueueRequestTemplate<TbProtoQueueMsg<TransportApiRequestMsg>, TbProtoQueueMsg<TransportApiResponseMsg>> createTransportApiRequestTemplate() {
+        TbQueueProducer<TbProtoQueueMsg<TransportApiRequestMsg>> producerTemplate =
+                new InMemoryTbQueueProducer<>(inMemoryStorage, topicService.buildTopicName(transportApiSettings.getRequestsTopic()));
+
+        TbQueueConsumer<TbProtoQueueMsg<TransportApiResponseMsg>> consumerTemplate =
+                new InMemoryTbQueueConsumer<>(inMemoryStorage, topicService.buildTopicName(transportApiSettings.getResponsesTopic() + "." + serviceInfoProvider.getServiceId()));
+
+        DefaultTbQueueRequestTemplate.DefaultTbQueueRequestTemplateBuilder
+                <TbProtoQueueMsg<TransportApiRequestMsg>, TbProtoQueueMsg<TransportApiResponseMsg>> templateBuilder = DefaultTbQueueRequestTemplate.builder();
+        templateBuilder.queueAdmin(new TbQueueAdmin() {
+            @Override
+            public void createTopicIfNotExists(String topic, String properties) {}
+
+            @Override
+            public void destroy() {}
+
+            @Override
+            public void deleteTopic(String topic) {}
+        });
+        templateBuilder.requestTemplate(producerTemplate);
+        templateBuilder.responseTemplate(consumerTemplate);
+        templateBuilder.maxPendingRequests(transportApiSettings.getMaxPendingRequests());
+        templateBuilder.maxRequestTimeout(transportApiSettings.getMaxRequestsTimeout());
+        templateBuilder.pollInterval(transportApiSettings.getResponsePollInterval());
+        return templateBuilder.build();
+    }
+
+    @Override
+    public TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> createRuleEngineMsgProducer() {
+        return new TbLocalLogProducerTemplate<>(storage, topicService.buildTopicName(ruleEngineSettings.getTopic()));
+    }
+
+    @Override
+    public TbQueueProducer<TbProtoQueueMsg<ToCoreMsg>> createTbCoreMsgProducer() {
+        return new TbLocalLogProducerTemplate<>(storage, topicService.buildTopicName(coreSettings.getTopic()));
+    }
+
+    @Override
+    public TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> createTbCoreNotificationsMsgProducer() {
+        return new InMemoryTbQueueProducer<>(inMemoryStorage, topicService.buildTopicName(coreSettings.getTopic()));
+    }
+
+    @Override
+    public TbQueueConsumer<TbProtoQueueMsg<ToTransportMsg>> createTransportNotificationsConsumer() {
+        return new InMemoryTbQueueConsumer<>(inMemoryStorage, topicService.buildTopicName(transportNotificationSettings.getNotificationsTopic() + "." + serviceInfoProvider.getServiceId()));
+    }
+
+    @Override
+    public TbQueueProducer<TbProtoQueueMsg<ToUsageStatsServiceMsg>> createToUsageStatsServiceMsgProducer() {
+        return new TbLocalLogProducerTemplate<>(storage, topicService.buildTopicName(coreSettings.getUsageStatsTopic()));
+    }
+
+    @Override
+    public TbQueueProducer<TbProtoQueueMsg<TransportProtos.ToHousekeeperServiceMsg>> createHousekeeperMsgProducer() {
+        return new TbLocalLogProducerTemplate<>(storage, topicService.buildTopicName(coreSettings.getHousekeeperTopic()));
+    }
+
+}
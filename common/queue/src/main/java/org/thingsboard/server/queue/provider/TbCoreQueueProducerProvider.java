@@ -26,15 +26,19 @@ import org.thingsboard.server.gen.transport.TransportProtos.ToUsageStatsServiceM
 import org.thingsboard.server.gen.transport.TransportProtos.ToVersionControlServiceMsg;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.common.TbRuleEngineBatchingProducer;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 import org.thingsboard.server.queue.util.TbCoreComponent;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 @TbCoreComponent
 public class TbCoreQueueProducerProvider implements TbQueueProducerProvider {
 
     private final TbCoreQueueFactory tbQueueProvider;
+    private final TbQueueRuleEngineSettings ruleEngineSettings;
     private TbQueueProducer<TbProtoQueueMsg<ToTransportMsg>> toTransport;
     private TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> toRuleEngine;
     private TbQueueProducer<TbProtoQueueMsg<ToCoreMsg>> toTbCore;
@@ -44,15 +48,16 @@ public class TbCoreQueueProducerProvider implements TbQueueProducerProvider {
     private TbQueueProducer<TbProtoQueueMsg<ToVersionControlServiceMsg>> toVersionControl;
     private TbQueueProducer<TbProtoQueueMsg<ToHousekeeperServiceMsg>> toHousekeeper;
 
-    public TbCoreQueueProducerProvider(TbCoreQueueFactory tbQueueProvider) {
+    public TbCoreQueueProducerProvider(TbCoreQueueFactory tbQueueProvider, TbQueueRuleEngineSettings ruleEngineSettings) {
         this.tbQueueProvider = tbQueueProvider;
+        this.ruleEngineSettings = ruleEngineSettings;
     }
 
     @PostConstruct
     public void init() {
         this.toTbCore = tbQueueProvider.createTbCoreMsgProducer();
         this.toTransport = tbQueueProvider.createTransportNotificationsMsgProducer();
-        this.toRuleEngine = tbQueueProvider.createRuleEngineMsgProducer();
+        this.toRuleEngine = TbRuleEngineBatchingProducer.wrap(tbQueueProvider.createRuleEngineMsgProducer(), ruleEngineSettings);
         this.toRuleEngineNotifications = tbQueueProvider.createRuleEngineNotificationsMsgProducer();
         this.toTbCoreNotifications = tbQueueProvider.createTbCoreNotificationsMsgProducer();
         this.toUsageStats = tbQueueProvider.createToUsageStatsServiceMsgProducer();
@@ -60,6 +65,13 @@ public class TbCoreQueueProducerProvider implements TbQueueProducerProvider {
         this.toHousekeeper = tbQueueProvider.createHousekeeperMsgProducer();
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (toRuleEngine instanceof TbRuleEngineBatchingProducer) {
+            toRuleEngine.stop();
+        }
+    }
+
     @Override
     public TbQueueProducer<TbProtoQueueMsg<ToTransportMsg>> getTransportNotificationsMsgProducer() {
         return toTransport;
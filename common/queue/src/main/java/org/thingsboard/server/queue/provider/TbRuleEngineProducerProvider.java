@@ -27,14 +27,18 @@ import org.thingsboard.server.gen.transport.TransportProtos.ToTransportMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToUsageStatsServiceMsg;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.common.TbRuleEngineBatchingProducer;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 @ConditionalOnExpression("'${service.type:null}'=='tb-rule-engine'")
 public class TbRuleEngineProducerProvider implements TbQueueProducerProvider {
 
     private final TbRuleEngineQueueFactory tbQueueProvider;
+    private final TbQueueRuleEngineSettings ruleEngineSettings;
     private TbQueueProducer<TbProtoQueueMsg<ToTransportMsg>> toTransport;
     private TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> toRuleEngine;
     private TbQueueProducer<TbProtoQueueMsg<ToCoreMsg>> toTbCore;
@@ -43,21 +47,29 @@ public class TbRuleEngineProducerProvider implements TbQueueProducerProvider {
     private TbQueueProducer<TbProtoQueueMsg<ToUsageStatsServiceMsg>> toUsageStats;
     private TbQueueProducer<TbProtoQueueMsg<ToHousekeeperServiceMsg>> toHousekeeper;
 
-    public TbRuleEngineProducerProvider(TbRuleEngineQueueFactory tbQueueProvider) {
+    public TbRuleEngineProducerProvider(TbRuleEngineQueueFactory tbQueueProvider, TbQueueRuleEngineSettings ruleEngineSettings) {
         this.tbQueueProvider = tbQueueProvider;
+        this.ruleEngineSettings = ruleEngineSettings;
     }
 
     @PostConstruct
     public void init() {
         this.toTbCore = tbQueueProvider.createTbCoreMsgProducer();
         this.toTransport = tbQueueProvider.createTransportNotificationsMsgProducer();
-        this.toRuleEngine = tbQueueProvider.createRuleEngineMsgProducer();
+        this.toRuleEngine = TbRuleEngineBatchingProducer.wrap(tbQueueProvider.createRuleEngineMsgProducer(), ruleEngineSettings);
         this.toRuleEngineNotifications = tbQueueProvider.createRuleEngineNotificationsMsgProducer();
         this.toTbCoreNotifications = tbQueueProvider.createTbCoreNotificationsMsgProducer();
         this.toUsageStats = tbQueueProvider.createToUsageStatsServiceMsgProducer();
         this.toHousekeeper = tbQueueProvider.createHousekeeperMsgProducer();
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (toRuleEngine instanceof TbRuleEngineBatchingProducer) {
+            toRuleEngine.stop();
+        }
+    }
+
     @Override
     public TbQueueProducer<TbProtoQueueMsg<ToTransportMsg>> getTransportNotificationsMsgProducer() {
         return toTransport;
@@ -27,33 +27,45 @@ import org.thingsboard.server.gen.transport.TransportProtos.ToTransportMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToUsageStatsServiceMsg;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.common.TbRuleEngineBatchingProducer;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 @ConditionalOnExpression("'${service.type:null}'=='tb-transport'")
 public class TbTransportQueueProducerProvider implements TbQueueProducerProvider {
 
     private final TbTransportQueueFactory tbQueueProvider;
+    private final TbQueueRuleEngineSettings ruleEngineSettings;
     private TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> toRuleEngine;
     private TbQueueProducer<TbProtoQueueMsg<ToCoreMsg>> toTbCore;
     private TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> toTbCoreNotifications;
     private TbQueueProducer<TbProtoQueueMsg<ToUsageStatsServiceMsg>> toUsageStats;
     private TbQueueProducer<TbProtoQueueMsg<ToHousekeeperServiceMsg>> toHousekeeper;
 
-    public TbTransportQueueProducerProvider(TbTransportQueueFactory tbQueueProvider) {
+    public TbTransportQueueProducerProvider(TbTransportQueueFactory tbQueueProvider, TbQueueRuleEngineSettings ruleEngineSettings) {
         this.tbQueueProvider = tbQueueProvider;
+        this.ruleEngineSettings = ruleEngineSettings;
     }
 
     @PostConstruct
     public void init() {
         this.toTbCore = tbQueueProvider.createTbCoreMsgProducer();
-        this.toRuleEngine = tbQueueProvider.createRuleEngineMsgProducer();
+        this.toRuleEngine = TbRuleEngineBatchingProducer.wrap(tbQueueProvider.createRuleEngineMsgProducer(), ruleEngineSettings);
         this.toUsageStats = tbQueueProvider.createToUsageStatsServiceMsgProducer();
         this.toTbCoreNotifications = tbQueueProvider.createTbCoreNotificationsMsgProducer();
         this.toHousekeeper = tbQueueProvider.createHousekeeperMsgProducer();
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (toRuleEngine instanceof TbRuleEngineBatchingProducer) {
+            toRuleEngine.stop();
+        }
+    }
+
     @Override
     public TbQueueProducer<TbProtoQueueMsg<ToTransportMsg>> getTransportNotificationsMsgProducer() {
         throw new RuntimeException("Not Implemented! Should not be used by Transport!");
@@ -19,13 +19,54 @@ import lombok.Data;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+import org.thingsboard.server.common.msg.TbMsg;
+
+import java.util.Set;
 
 @Lazy
 @Data
 @Component
 public class TbQueueRuleEngineSettings {
 
+    public static final String PRIORITY_LANE_TOPIC_SUFFIX = ".priority";
+
     @Value("${queue.rule-engine.topic}")
     private String topic;
 
+    @Value("${queue.rule-engine.batching.enabled:false}")
+    private boolean batchingEnabled;
+
+    @Value("${queue.rule-engine.batching.linger-ms:5}")
+    private long batchingLingerMs;
+
+    @Value("${queue.rule-engine.batching.max-size:100}")
+    private int batchingMaxSize;
+
+    @Value("${queue.rule-engine.batching.max-bytes:262144}")
+    private int batchingMaxBytes;
+
+    @Value("${queue.rule-engine.priority-lanes.enabled:false}")
+    private boolean priorityLanesEnabled;
+
+    @Value("${queue.rule-engine.priority-lanes.queues:Main}")
+    private Set<String> priorityLanesQueues;
+
+    @Value("${queue.rule-engine.priority-lanes.msg-types:RPC_CALL_FROM_SERVER_TO_DEVICE,TO_SERVER_RPC_REQUEST,ALARM,ALARM_ACK,ALARM_CLEAR}")
+    private Set<TbMsgType> priorityMsgTypes;
+
+    @Value("${queue.rule-engine.priority-lanes.metadata-key:priority}")
+    private String priorityMetadataKey;
+
+    @Value("${queue.rule-engine.priority-lanes.weight:4}")
+    private int priorityLaneWeight;
+
+    public boolean isPriorityLaneEnabled(String queueName) {
+        return priorityLanesEnabled && priorityLanesQueues.contains(queueName);
+    }
+
+    public boolean isPriorityMsg(TbMsg tbMsg) {
+        return priorityMsgTypes.contains(tbMsg.getInternalType()) || "true".equals(tbMsg.getMetaData().getValue(priorityMetadataKey));
+    }
+
 }
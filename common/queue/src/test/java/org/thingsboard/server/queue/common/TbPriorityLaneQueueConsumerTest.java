@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueOffsets;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbPriorityLaneQueueConsumerTest {
+
+    private TbQueueConsumer<TbQueueMsg> defaultLane;
+    private TbQueueConsumer<TbQueueMsg> priorityLane;
+    private TbPriorityLaneQueueConsumer<TbQueueMsg> consumer;
+
+    private final List<TbQueueMsg> defaultMsgs = List.of(mock(TbQueueMsg.class));
+    private final List<TbQueueMsg> priorityMsgs = List.of(mock(TbQueueMsg.class));
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        defaultLane = mock(TbQueueConsumer.class);
+        priorityLane = mock(TbQueueConsumer.class);
+        consumer = new TbPriorityLaneQueueConsumer<>(defaultLane, priorityLane, ".priority", 2);
+    }
+
+    @Test
+    public void testPriorityLaneIsPolledFirstButDoesNotStarveDefaultLane() {
+        when(priorityLane.poll(anyLong())).thenReturn(priorityMsgs);
+        when(defaultLane.poll(anyLong())).thenReturn(defaultMsgs);
+
+        assertThat(consumer.poll(25)).isSameAs(priorityMsgs);
+        assertThat(consumer.poll(25)).isSameAs(priorityMsgs);
+        assertThat(consumer.poll(25)).isSameAs(defaultMsgs);
+        consumer.commit();
+        verify(defaultLane).commit();
+        verify(priorityLane, never()).commit();
+
+        assertThat(consumer.poll(25)).isSameAs(priorityMsgs);
+        consumer.commit();
+        verify(priorityLane).commit();
+    }
+
+    @Test
+    public void testDefaultLaneIsPolledWhenPriorityLaneIsEmpty() {
+        when(priorityLane.poll(anyLong())).thenReturn(Collections.emptyList());
+        when(defaultLane.poll(anyLong())).thenReturn(defaultMsgs);
+
+        assertThat(consumer.poll(25)).isSameAs(defaultMsgs);
+        verify(priorityLane).poll(0);
+        verify(defaultLane).poll(25);
+    }
+
+    @Test
+    public void testSubscribeAndCommitOffsetsPerLane() {
+        TopicPartitionInfo tpi = new TopicPartitionInfo("tb_rule_engine.main", null, 1, true);
+        consumer.subscribe(Set.of(tpi));
+        verify(defaultLane).subscribe(Set.of(tpi));
+        verify(priorityLane).subscribe(Set.of(new TopicPartitionInfo("tb_rule_engine.main.priority", null, 1, true)));
+
+        when(priorityLane.getFullTopicNames()).thenReturn(List.of("tb_rule_engine.main.priority.1"));
+        TbQueueOffsets offsets = new TbQueueOffsets();
+        offsets.update("tb_rule_engine.main.1", 0, 10);
+        offsets.update("tb_rule_engine.main.priority.1", 0, 5);
+        consumer.commit(offsets);
+
+        TbQueueOffsets defaultOffsets = new TbQueueOffsets();
+        defaultOffsets.update("tb_rule_engine.main.1", 0, 10);
+        TbQueueOffsets priorityOffsets = new TbQueueOffsets();
+        priorityOffsets.update("tb_rule_engine.main.priority.1", 0, 5);
+        verify(defaultLane).commit(argThat(o -> o.getOffsets().equals(defaultOffsets.getOffsets())));
+        verify(priorityLane).commit(argThat(o -> o.getOffsets().equals(priorityOffsets.getOffsets())));
+    }
+
+}
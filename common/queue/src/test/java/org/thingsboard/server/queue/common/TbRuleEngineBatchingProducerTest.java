@@ -0,0 +1,171 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsgMetadata;
+import org.thingsboard.server.queue.TbQueueProducer;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class TbRuleEngineBatchingProducerTest {
+
+    private final TopicPartitionInfo tpi = new TopicPartitionInfo("tb_rule_engine.main", null, 0, true);
+    private final List<TbProtoQueueMsg<ToRuleEngineMsg>> sent = new CopyOnWriteArrayList<>();
+    private final List<TbQueueCallback> sentCallbacks = new CopyOnWriteArrayList<>();
+    private TbRuleEngineBatchingProducer producer;
+
+    @AfterEach
+    public void tearDown() {
+        if (producer != null) {
+            producer.stop();
+        }
+    }
+
+    @Test
+    public void testBatchIsSentWhenFullAndUnpackedInOrder() {
+        producer = new TbRuleEngineBatchingProducer(new TestProducer(), 60000, 3, 1024 * 1024);
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = List.of(newMsg("a"), newMsg("b"), newMsg("c"));
+        msgs.forEach(msg -> producer.send(tpi, msg, null));
+
+        assertThat(sent).hasSize(1);
+        assertThat(sent.get(0).getValue().getBatchCount()).isEqualTo(3);
+
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> unpacked = TbRuleEngineBatchingProducer.unpack(sent);
+        assertThat(unpacked).extracting(TbProtoQueueMsg::getKey).containsExactlyElementsOf(msgs.stream().map(TbProtoQueueMsg::getKey).toList());
+        assertThat(unpacked).extracting(TbProtoQueueMsg::getValue).containsExactlyElementsOf(msgs.stream().map(TbProtoQueueMsg::getValue).toList());
+    }
+
+    @Test
+    public void testSingleMsgIsSentAsIsAfterLinger() {
+        producer = new TbRuleEngineBatchingProducer(new TestProducer(), 10, 100, 1024 * 1024);
+        TbProtoQueueMsg<ToRuleEngineMsg> msg = newMsg("a");
+        producer.send(tpi, msg, null);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sent.size() == 1);
+        assertThat(sent.get(0)).isSameAs(msg);
+        assertThat(TbRuleEngineBatchingProducer.unpack(sent)).isSameAs(sent);
+    }
+
+    @Test
+    public void testCallbacksAreNotifiedForEachMsg() {
+        producer = new TbRuleEngineBatchingProducer(new TestProducer(), 10, 100, 1024 * 1024);
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger failure = new AtomicInteger();
+        TbQueueCallback callback = new TbQueueCallback() {
+            @Override
+            public void onSuccess(TbQueueMsgMetadata metadata) {
+                success.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failure.incrementAndGet();
+            }
+        };
+        producer.send(tpi, newMsg("a"), callback);
+        producer.send(tpi, newMsg("b"), null);
+        producer.send(tpi, newMsg("c"), callback);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sent.size() == 1);
+        sentCallbacks.get(0).onSuccess(null);
+        assertThat(success.get()).isEqualTo(2);
+
+        producer.send(tpi, newMsg("d"), callback);
+        producer.send(tpi, newMsg("e"), callback);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sent.size() == 2);
+        sentCallbacks.get(1).onFailure(new RuntimeException());
+        assertThat(failure.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testBatchIsSplitByMaxBytes() {
+        int msgSize = newMsg("a").getValue().getSerializedSize();
+        producer = new TbRuleEngineBatchingProducer(new TestProducer(), 60000, 100, msgSize * 2 + 1);
+        for (int i = 0; i < 5; i++) {
+            producer.send(tpi, newMsg("a"), null);
+        }
+
+        assertThat(sent).hasSize(2);
+        assertThat(sent).allSatisfy(msg -> assertThat(msg.getValue().getBatchCount()).isEqualTo(2));
+        producer.stop();
+        producer = null;
+        assertThat(sent).hasSize(3);
+        assertThat(TbRuleEngineBatchingProducer.unpack(sent)).hasSize(5);
+    }
+
+    @Test
+    public void testOversizedMsgDoesNotOvertakePendingBatch() {
+        int msgSize = newMsg("a").getValue().getSerializedSize();
+        producer = new TbRuleEngineBatchingProducer(new TestProducer(), 60000, 100, msgSize * 3);
+        String oversizedData = "b".repeat(msgSize * 3);
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = List.of(newMsg("a"), newMsg("a"), newMsg(oversizedData),
+                newMsg("a"), newMsg(oversizedData), newMsg(oversizedData), newMsg("a"));
+        msgs.forEach(msg -> producer.send(tpi, msg, null));
+        producer.stop();
+        producer = null;
+
+        assertThat(sent).hasSize(6);
+        assertThat(sent.get(0).getValue().getBatchCount()).isEqualTo(2);
+        assertThat(TbRuleEngineBatchingProducer.unpack(sent)).extracting(TbProtoQueueMsg::getKey)
+                .containsExactlyElementsOf(msgs.stream().map(TbProtoQueueMsg::getKey).toList());
+    }
+
+    private TbProtoQueueMsg<ToRuleEngineMsg> newMsg(String data) {
+        ToRuleEngineMsg msg = ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(1)
+                .setTenantIdLSB(2)
+                .setTbMsg(ByteString.copyFromUtf8(data))
+                .build();
+        return new TbProtoQueueMsg<>(UUID.randomUUID(), msg);
+    }
+
+    private class TestProducer implements TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> {
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public String getDefaultTopic() {
+            return "tb_rule_engine.main";
+        }
+
+        @Override
+        public void send(TopicPartitionInfo tpi, TbProtoQueueMsg<ToRuleEngineMsg> msg, TbQueueCallback callback) {
+            sentCallbacks.add(callback);
+            sent.add(msg);
+        }
+
+        @Override
+        public void stop() {
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class TbRuleEngineProducerServiceTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private final TopicPartitionInfo tpi = new TopicPartitionInfo("tb_rule_engine.main", null, 0, true);
+
+    @Mock
+    private PartitionService partitionService;
+    @Mock
+    private TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> producer;
+
+    private TbRuleEngineProducerService producerService;
+
+    @BeforeEach
+    public void setUp() {
+        TbQueueRuleEngineSettings settings = new TbQueueRuleEngineSettings();
+        ReflectionTestUtils.setField(settings, "priorityLanesEnabled", true);
+        ReflectionTestUtils.setField(settings, "priorityLanesQueues", Set.of(DataConstants.MAIN_QUEUE_NAME));
+        ReflectionTestUtils.setField(settings, "priorityMsgTypes", Set.of(TbMsgType.ALARM));
+        ReflectionTestUtils.setField(settings, "priorityMetadataKey", "priority");
+        producerService = new TbRuleEngineProducerService(partitionService, settings);
+    }
+
+    @Test
+    public void testPriorityMsgWithoutQueueNameIsPushedToMainPriorityLane() {
+        given(partitionService.resolveAll(ServiceType.TB_RULE_ENGINE, null, tenantId, deviceId)).willReturn(List.of(tpi));
+        given(partitionService.resolveQueueName(ServiceType.TB_RULE_ENGINE, null, tenantId)).willReturn(DataConstants.MAIN_QUEUE_NAME);
+
+        producerService.sendToRuleEngine(producer, tenantId, TbMsg.newMsg(TbMsgType.ALARM, deviceId, TbMsgMetaData.EMPTY, "{}"), null);
+
+        assertThat(sentTopic()).isEqualTo("tb_rule_engine.main" + TbQueueRuleEngineSettings.PRIORITY_LANE_TOPIC_SUFFIX);
+    }
+
+    @Test
+    public void testRegularMsgWithoutQueueNameIsPushedToMainTopic() {
+        given(partitionService.resolveAll(ServiceType.TB_RULE_ENGINE, null, tenantId, deviceId)).willReturn(List.of(tpi));
+        given(partitionService.resolveQueueName(ServiceType.TB_RULE_ENGINE, null, tenantId)).willReturn(DataConstants.MAIN_QUEUE_NAME);
+
+        producerService.sendToRuleEngine(producer, tenantId, TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{}"), null);
+
+        assertThat(sentTopic()).isEqualTo("tb_rule_engine.main");
+    }
+
+    private String sentTopic() {
+        ArgumentCaptor<TopicPartitionInfo> tpiCaptor = ArgumentCaptor.forClass(TopicPartitionInfo.class);
+        verify(producer).send(tpiCaptor.capture(), any(), isNull());
+        return tpiCaptor.getValue().getTopic();
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.gen.MsgProtos;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineBatchEntryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbRuleEngineQueueMsgTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testRoutingIsParsedWithoutDecodingMsg() throws Exception {
+        ToRuleEngineMsg value = newMsg();
+        TbProtoQueueMsg<ToRuleEngineMsg> record = new TbProtoQueueMsg<>(UUID.randomUUID(), value);
+
+        TbRuleEngineQueueMsg msg = new TbRuleEngineQueueMsg(record);
+
+        assertThat(msg.getRouting()).isEqualTo(new TbRuleEngineMsgRouting(tenantId, deviceId, "POST_TELEMETRY_REQUEST", false));
+        assertThat(msg.getRouting()).isEqualTo(TbRuleEngineMsgRouting.of(record));
+        assertThat(msg.isDecoded()).isFalse();
+        assertThat(msg.getData()).isEqualTo(value.toByteArray()).isSameAs(msg.getData());
+
+        assertThat(msg.getValue()).isEqualTo(value);
+        assertThat(msg.isDecoded()).isTrue();
+        assertThat(msg.getKey()).isEqualTo(record.getKey());
+    }
+
+    @Test
+    public void testBatchIsUnpacked() throws Exception {
+        UUID entryId = UUID.randomUUID();
+        ToRuleEngineMsg envelope = ToRuleEngineMsg.newBuilder()
+                .addBatch(ToRuleEngineBatchEntryMsg.newBuilder()
+                        .setIdMSB(entryId.getMostSignificantBits())
+                        .setIdLSB(entryId.getLeastSignificantBits())
+                        .setMsg(newMsg()))
+                .addBatch(ToRuleEngineBatchEntryMsg.newBuilder().setMsg(newMsg()))
+                .build();
+        TbRuleEngineQueueMsg batch = new TbRuleEngineQueueMsg(new TbProtoQueueMsg<>(UUID.randomUUID(), envelope));
+        TbRuleEngineQueueMsg single = new TbRuleEngineQueueMsg(new TbProtoQueueMsg<>(UUID.randomUUID(), newMsg()));
+
+        assertThat(batch.getRouting().batch()).isTrue();
+        assertThat(TbRuleEngineBatchingProducer.unpack(List.of(batch, single)))
+                .hasSize(3)
+                .first().extracting(TbProtoQueueMsg::getKey).isEqualTo(entryId);
+        assertThat(single.isDecoded()).isFalse();
+    }
+
+    private ToRuleEngineMsg newMsg() {
+        MsgProtos.TbMsgProto tbMsg = MsgProtos.TbMsgProto.newBuilder()
+                .setId(UUID.randomUUID().toString())
+                .setType("POST_TELEMETRY_REQUEST")
+                .setEntityType(deviceId.getEntityType().name())
+                .setEntityIdMSB(deviceId.getId().getMostSignificantBits())
+                .setEntityIdLSB(deviceId.getId().getLeastSignificantBits())
+                .setMetaData(MsgProtos.TbMsgMetaDataProto.newBuilder().putData("deviceName", "Test"))
+                .setData("{\"temperature\":42}")
+                .setTs(System.currentTimeMillis())
+                .build();
+        return ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                .setTbMsg(tbMsg.toByteString())
+                .addRelationTypes("Success")
+                .build();
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common.consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueueConsumerTunerTest {
+
+    private QueueConsumerTunerFactory tunerFactory;
+
+    @BeforeEach
+    public void setUp() {
+        tunerFactory = new QueueConsumerTunerFactory();
+        ReflectionTestUtils.setField(tunerFactory, "enabled", true);
+        ReflectionTestUtils.setField(tunerFactory, "maxPollInterval", 200L);
+        ReflectionTestUtils.setField(tunerFactory, "packProcessingTimeoutFactor", 2.0);
+        ReflectionTestUtils.setField(tunerFactory, "maxPackProcessingTimeoutMultiplier", 4);
+    }
+
+    @Test
+    public void testPollIntervalBacksOffWhenIdleAndResetsOnMsgs() {
+        QueueConsumerTuner tuner = tunerFactory.getTuner("test");
+        assertThat(tuner.getPollInterval(25)).isEqualTo(25);
+
+        tuner.onEmptyPoll(25, 0);
+        assertThat(tuner.getPollInterval(25)).isEqualTo(50);
+        for (int i = 0; i < 10; i++) {
+            tuner.onEmptyPoll(25, 0);
+        }
+        assertThat(tuner.getPollInterval(25)).isEqualTo(200);
+
+        tuner.onEmptyPoll(25, 10);
+        assertThat(tuner.getPollInterval(25)).isEqualTo(25);
+
+        tuner.onEmptyPoll(25, 0);
+        tuner.onMsgsPolled(25);
+        assertThat(tuner.getPollInterval(25)).isEqualTo(25);
+    }
+
+    @Test
+    public void testPackProcessingTimeoutFollowsProcessingTime() {
+        QueueConsumerTuner tuner = tunerFactory.getTuner("test");
+        assertThat(tuner.getPackProcessingTimeout(100, 1000)).isEqualTo(1000);
+
+        // 10 ms per message, 100 messages, factor 2
+        tuner.onPackProcessed(100, TimeUnit.MILLISECONDS.toNanos(1000));
+        assertThat(tuner.getPackProcessingTimeout(100, 1000)).isEqualTo(2000);
+        assertThat(tuner.getPackProcessingTimeout(10, 1000)).isEqualTo(1000);
+        assertThat(tuner.getPackProcessingTimeout(1000, 1000)).isEqualTo(4000);
+    }
+
+    @Test
+    public void testDisabledTunerKeepsConfiguredValues() {
+        ReflectionTestUtils.setField(tunerFactory, "enabled", false);
+        QueueConsumerTuner tuner = tunerFactory.getTuner("test");
+        tuner.onEmptyPoll(25, 0);
+        tuner.onPackProcessed(100, TimeUnit.SECONDS.toNanos(10));
+        assertThat(tuner.getPollInterval(25)).isEqualTo(25);
+        assertThat(tuner.getPackProcessingTimeout(100, 1000)).isEqualTo(1000);
+    }
+
+}
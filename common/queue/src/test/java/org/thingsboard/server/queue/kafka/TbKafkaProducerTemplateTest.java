@@ -24,6 +24,7 @@ import org.thingsboard.server.queue.TbQueueMsg;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -51,4 +52,18 @@ class TbKafkaProducerTemplateTest {
         headers.forEach(r -> log.info("RecordHeader key [{}] value [{}]", r.key(), new String(r.value(), StandardCharsets.UTF_8)));
     }
 
+    @Test
+    void testBinaryKeyRoundTrip() {
+        UUID key = UUID.randomUUID();
+        byte[] bytes = TbKafkaProducerTemplate.toBytes(key);
+        assertThat(bytes).hasSize(16);
+        assertThat(KafkaTbQueueMsg.toUUID(bytes)).isEqualTo(key);
+    }
+
+    @Test
+    void testStringKeyIsStillDecoded() {
+        UUID key = UUID.randomUUID();
+        assertThat(KafkaTbQueueMsg.toUUID(key.toString().getBytes(StandardCharsets.UTF_8))).isEqualTo(key);
+    }
+
 }
@@ -21,7 +21,10 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
+import org.thingsboard.server.common.data.TbProperty;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -80,4 +83,17 @@ class TbKafkaSettingsTest {
         Mockito.verify(settings).configureSSL(any());
     }
 
-}
\ No newline at end of file
+    @Test
+    void givenProducerPropertiesPerTopic_whenToProducerProps_thenOverrideOnlyThatTopic() {
+        TbProperty compression = new TbProperty();
+        compression.setKey("compression.type");
+        compression.setValue("zstd");
+        settings.setProducerPropertiesPerTopic(Map.of("tb_rule_engine.main", List.of(compression)));
+
+        assertThat(settings.hasProducerProperties("tb_rule_engine.main")).isTrue();
+        assertThat(settings.hasProducerProperties("tb_core")).isFalse();
+        assertThat(settings.toProducerProps("tb_rule_engine.main")).containsEntry("compression.type", "zstd");
+        assertThat(settings.toProducerProps("tb_core")).containsEntry("compression.type", "none");
+    }
+
+}
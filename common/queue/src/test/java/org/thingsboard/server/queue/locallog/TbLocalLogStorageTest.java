@@ -0,0 +1,203 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.locallog;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TbLocalLogStorageTest {
+
+    static final String TOPIC = "tb_rule_engine.main.0";
+    static final String GROUP = "tb-rule-engine-Main";
+
+    @TempDir
+    Path dir;
+
+    TbLocalLogSettings settings;
+    TbLocalLogStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        settings = new TbLocalLogSettings(dir.toString(), 1024, 100, 60000, 60000, 60000);
+        storage = newStorage();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.destroy();
+    }
+
+    private TbLocalLogStorage newStorage() throws IOException {
+        TbLocalLogStorage storage = new TbLocalLogStorage(settings);
+        storage.init();
+        return storage;
+    }
+
+    @Test
+    void givenMessages_whenReadAcrossSegments_thenKeepOrderOffsetsAndHeaders() throws IOException {
+        TbLocalLogTopic topic = storage.getTopic(TOPIC);
+        List<TbQueueMsg> sent = append(topic, 50);
+
+        List<TbQueueMsg> read = new ArrayList<>();
+        TbLocalLogCursor cursor = topic.seek(0);
+        assertThat(topic.read(cursor, 1000, read)).isEqualTo(50);
+
+        assertThat(segmentFiles()).as("segments rolled").hasSizeGreaterThan(1);
+        for (int i = 0; i < sent.size(); i++) {
+            TbLocalLogMsg msg = (TbLocalLogMsg) read.get(i);
+            assertThat(msg.getOffset()).isEqualTo(i);
+            assertThat(msg.getKey()).isEqualTo(sent.get(i).getKey());
+            assertThat(msg.getData()).isEqualTo(sent.get(i).getData());
+            assertThat(msg.getHeaders().get("idx")).isEqualTo(sent.get(i).getHeaders().get("idx"));
+        }
+        assertThat(cursor.offset).isEqualTo(50);
+        assertThat(topic.seek(37).offset).isEqualTo(37);
+    }
+
+    @Test
+    void givenCommittedOffset_whenRestart_thenConsumerResumesAfterCommit() throws IOException {
+        append(storage.getTopic(TOPIC), 30);
+        TbLocalLogConsumerTemplate<TbQueueMsg> consumer = newConsumer(storage);
+        assertThat(consumer.poll(10)).hasSize(30);
+        consumer.commit();
+        append(storage.getTopic(TOPIC), 5);
+        assertThat(consumer.poll(10)).as("polled but not committed").hasSize(5);
+
+        storage.destroy();
+        storage = newStorage();
+        assertThat(storage.getTopic(TOPIC).getEndOffset()).isEqualTo(35);
+        consumer = newConsumer(storage);
+        List<TbQueueMsg> replayed = consumer.poll(10);
+        assertThat(replayed).hasSize(5);
+        assertThat(((TbLocalLogMsg) replayed.get(0)).getOffset()).isEqualTo(30);
+        assertThat(consumer.getLag()).isZero();
+    }
+
+    @Test
+    void givenTornWrite_whenRestart_thenTruncateToLastValidRecord() throws IOException {
+        append(storage.getTopic(TOPIC), 3);
+        storage.destroy();
+
+        Path segment = segmentFiles().get(0);
+        int end = 0;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+            for (int i = 0; i < 3; i++) {
+                sizeBuffer.clear();
+                channel.read(sizeBuffer, end);
+                end += 8 + sizeBuffer.getInt(0);
+            }
+            channel.write(ByteBuffer.allocate(12).putInt(40).putInt(12345).putInt(7).flip(), end);
+        }
+
+        storage = newStorage();
+        TbLocalLogTopic topic = storage.getTopic(TOPIC);
+        assertThat(topic.getEndOffset()).isEqualTo(3);
+        append(topic, 1);
+        List<TbQueueMsg> read = new ArrayList<>();
+        topic.read(topic.seek(0), 100, read);
+        assertThat(read).hasSize(4);
+    }
+
+    @Test
+    void givenConsumedSegments_whenCleanup_thenDeleteOnlyConsumed() throws IOException {
+        TbLocalLogTopic topic = storage.getTopic(TOPIC);
+        append(topic, 50);
+        int segments = segmentFiles().size();
+
+        topic.commit(GROUP, 20);
+        topic.cleanup(System.currentTimeMillis());
+
+        assertThat(segmentFiles()).hasSizeBetween(1, segments - 1);
+        assertThat(topic.getStartOffset()).isPositive().isLessThanOrEqualTo(20);
+        List<TbQueueMsg> read = new ArrayList<>();
+        assertThat(topic.read(topic.seek(topic.getCommittedOffset(GROUP)), 100, read)).isEqualTo(30);
+    }
+
+    @Test
+    void givenExpiredSegments_whenCleanup_thenDeleteOnlyUpToMinCommittedOffset() throws IOException {
+        TbLocalLogTopic topic = storage.getTopic(TOPIC);
+        append(topic, 50);
+        int segments = segmentFiles().size();
+
+        topic.commit(GROUP, 0);
+        topic.cleanup(System.currentTimeMillis() + settings.getRetentionMs() * 2);
+
+        assertThat(segmentFiles()).hasSize(segments);
+        assertThat(topic.getStartOffset()).isZero();
+    }
+
+    @Test
+    void givenCursorOnDeletedSegment_whenRead_thenContinueFromFirstSegment() throws IOException {
+        TbLocalLogTopic topic = storage.getTopic(TOPIC);
+        append(topic, 50);
+        TbLocalLogCursor cursor = topic.seek(0);
+
+        topic.commit(GROUP, 20);
+        topic.cleanup(System.currentTimeMillis());
+        assertThat(cursor.segment.isClosed()).isTrue();
+
+        List<TbQueueMsg> read = new ArrayList<>();
+        topic.read(cursor, 100, read);
+        assertThat(((TbLocalLogMsg) read.get(0)).getOffset()).isEqualTo(topic.getStartOffset());
+        assertThat(cursor.offset).isEqualTo(50);
+    }
+
+    private TbLocalLogConsumerTemplate<TbQueueMsg> newConsumer(TbLocalLogStorage storage) {
+        TbLocalLogConsumerTemplate<TbQueueMsg> consumer = new TbLocalLogConsumerTemplate<>(storage, "tb_rule_engine.main", GROUP, msg -> msg);
+        consumer.subscribe(Set.of(new TopicPartitionInfo("tb_rule_engine.main", null, 0, true)));
+        return consumer;
+    }
+
+    private List<TbQueueMsg> append(TbLocalLogTopic topic, int count) throws IOException {
+        List<TbQueueMsg> msgs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+            headers.put("idx", Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+            TbQueueMsg msg = new TbLocalLogMsg(-1, UUID.randomUUID(), headers, ("msg-" + i + "-payload-with-some-length").getBytes(StandardCharsets.UTF_8));
+            topic.append(msg);
+            msgs.add(msg);
+        }
+        return msgs;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve(TOPIC))) {
+            return files.filter(f -> f.toString().endsWith(TbLocalLogSegment.SUFFIX)).sorted().toList();
+        }
+    }
+
+}
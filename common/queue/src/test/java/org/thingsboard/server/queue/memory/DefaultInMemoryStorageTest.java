@@ -19,6 +19,7 @@ import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.server.queue.common.DefaultTbQueueMsg;
 
 import java.util.ArrayList;
@@ -112,4 +113,20 @@ public class DefaultInMemoryStorageTest {
         testPollOnce(10);
     }
 
+    @Test
+    public void givenFullPartition_whenPut_thenRejectAfterTimeout() throws InterruptedException {
+        DefaultInMemoryStorage storage = new DefaultInMemoryStorage();
+        ReflectionTestUtils.setField(storage, "partitionCapacity", 2);
+        ReflectionTestUtils.setField(storage, "putTimeoutMs", 10L);
+
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isTrue();
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isTrue();
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).as("partition is full").isFalse();
+        assertThat(storage.put(topic + ".1", mock(TbQueueMsg.class))).as("other partition is not affected").isTrue();
+        assertThat(storage.getLag(topic)).isEqualTo(2);
+
+        assertThat(storage.get(topic)).hasSize(2);
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isTrue();
+    }
+
 }
@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryRingBufferTest {
+
+    @Test
+    void givenCapacity_whenOffer_thenRejectWhenFull() {
+        InMemoryRingBuffer<Integer> buffer = new InMemoryRingBuffer<>(3);
+        assertThat(buffer.capacity()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+
+        assertThat(buffer.poll()).isEqualTo(0);
+        assertThat(buffer.offer(4)).isTrue();
+        assertThat(buffer.size()).isEqualTo(4);
+    }
+
+    @Test
+    void givenWrapAround_whenDrain_thenKeepFifoOrder() {
+        InMemoryRingBuffer<Integer> buffer = new InMemoryRingBuffer<>(4);
+        List<Integer> polled = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+            if (i % 2 == 1) {
+                buffer.drainTo(polled, 2);
+            }
+        }
+        buffer.drainTo(polled, 100);
+        assertThat(polled).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(buffer.poll()).isNull();
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void givenConcurrentProducers_whenDrain_thenKeepPerProducerOrder() throws InterruptedException {
+        int producers = 4;
+        int msgsPerProducer = 10000;
+        InMemoryRingBuffer<int[]> buffer = new InMemoryRingBuffer<>(128);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                executor.submit(() -> {
+                    for (int i = 0; i < msgsPerProducer; i++) {
+                        int[] msg = {producer, i};
+                        while (!buffer.offer(msg)) {
+                            Thread.yield();
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            int[] expected = new int[producers];
+            int received = 0;
+            while (received < producers * msgsPerProducer) {
+                int[] msg = buffer.poll();
+                if (msg == null) {
+                    Thread.yield();
+                    continue;
+                }
+                assertThat(msg[1]).isEqualTo(expected[msg[0]]);
+                expected[msg[0]]++;
+                received++;
+            }
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(buffer.size()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
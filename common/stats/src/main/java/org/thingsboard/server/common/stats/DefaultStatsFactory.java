@@ -16,6 +16,7 @@
 package org.thingsboard.server.common.stats;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
@@ -112,6 +113,22 @@ public class DefaultStatsFactory implements StatsFactory {
                 .register(meterRegistry));
     }
 
+    @Override
+    public DistributionSummary createDistributionSummary(String key, String... tags) {
+        DistributionSummary.Builder summaryBuilder = DistributionSummary.builder(key)
+                .tags(tags)
+                .publishPercentiles();
+        if (timerPercentiles != null && timerPercentiles.length > 0) {
+            summaryBuilder.publishPercentiles(timerPercentiles);
+        }
+        return summaryBuilder.register(meterRegistry);
+    }
+
+    @Override
+    public void removeMeters(String key, String... tags) {
+        meterRegistry.find(key).tags(tags).meters().forEach(meterRegistry::remove);
+    }
+
     private static String[] getTags(String statsName, String[] otherTags) {
         String[] tags = new String[]{STATS_NAME_TAG, statsName};
         if (otherTags.length > 0) {
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.common.stats;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Timer;
 
 public interface StatsFactory {
@@ -31,4 +32,8 @@ public interface StatsFactory {
 
     StatsTimer createTimer(StatsType type, String name, String... tags);
 
+    DistributionSummary createDistributionSummary(String key, String... tags);
+
+    void removeMeters(String key, String... tags);
+
 }
@@ -51,6 +51,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.dao.attributes.AttributeUtils.validate;
@@ -70,11 +72,14 @@ public class CachedAttributesService implements AttributesService {
     private final DefaultCounter missCounter;
     private final TbTransactionalCache<AttributeCacheKey, AttributeKvEntry> cache;
     private ListeningExecutorService cacheExecutor;
+    private final ConcurrentMap<AttributeCacheKey, AttributeKvEntry> pendingCacheUpdates = new ConcurrentHashMap<>();
 
     @Value("${cache.type:caffeine}")
     private String cacheType;
     @Value("${sql.attributes.value_no_xss_validation:false}")
     private boolean valueNoXssValidation;
+    @Value("${sql.attributes.coalescing_enabled:false}")
+    private boolean coalescingEnabled;
 
     public CachedAttributesService(AttributesDao attributesDao,
                                    JpaExecutorService jpaExecutorService,
@@ -261,8 +266,7 @@ public class CachedAttributesService implements AttributesService {
     public ListenableFuture<String> save(TenantId tenantId, EntityId entityId, AttributeScope scope, AttributeKvEntry attribute) {
         validate(entityId, scope);
         AttributeUtils.validate(attribute, valueNoXssValidation);
-        ListenableFuture<String> future = attributesDao.save(tenantId, entityId, scope, attribute);
-        return Futures.transform(future, key -> evict(entityId, scope, attribute, key), cacheExecutor);
+        return updateCache(entityId, scope, attribute, attributesDao.save(tenantId, entityId, scope, attribute));
     }
 
     @Override
@@ -277,13 +281,33 @@ public class CachedAttributesService implements AttributesService {
 
         List<ListenableFuture<String>> futures = new ArrayList<>(attributes.size());
         for (var attribute : attributes) {
-            ListenableFuture<String> future = attributesDao.save(tenantId, entityId, scope, attribute);
-            futures.add(Futures.transform(future, key -> evict(entityId, scope, attribute, key), cacheExecutor));
+            futures.add(updateCache(entityId, scope, attribute, attributesDao.save(tenantId, entityId, scope, attribute)));
         }
 
         return Futures.allAsList(futures);
     }
 
+    private ListenableFuture<String> updateCache(EntityId entityId, AttributeScope scope, AttributeKvEntry attribute, ListenableFuture<String> future) {
+        if (!coalescingEnabled) {
+            return Futures.transform(future, key -> evict(entityId, scope, attribute, key), cacheExecutor);
+        }
+        // the DB write may be coalesced with newer values of the same key, and the writes of the same key may complete in any order.
+        // So only the value that wins the coalescing may be put to the cache, the completion of the other writes just evicts the entry
+        AttributeCacheKey cacheKey = new AttributeCacheKey(scope, entityId, attribute.getKey());
+        pendingCacheUpdates.merge(cacheKey, attribute, (pending, newer) -> pending.getLastUpdateTs() <= newer.getLastUpdateTs() ? newer : pending);
+        ListenableFuture<String> result = Futures.catchingAsync(future, Throwable.class, t -> {
+            pendingCacheUpdates.remove(cacheKey, attribute);
+            return Futures.immediateFailedFuture(t);
+        }, MoreExecutors.directExecutor());
+        return Futures.transform(result, key -> {
+            if (pendingCacheUpdates.remove(cacheKey, attribute)) {
+                return evict(entityId, scope, attribute, key);
+            }
+            cache.evict(cacheKey);
+            return key;
+        }, cacheExecutor);
+    }
+
     private String evict(EntityId entityId, AttributeScope scope, AttributeKvEntry attribute, String key) {
         log.trace("[{}][{}][{}] Before cache evict: {}", entityId, scope, key, attribute);
         cache.evictOrPut(new AttributeCacheKey(scope, entityId, key), attribute);
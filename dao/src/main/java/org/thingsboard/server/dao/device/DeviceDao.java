@@ -32,6 +32,7 @@ import org.thingsboard.server.dao.ExportableEntityDao;
 import org.thingsboard.server.dao.TenantEntityDao;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -218,5 +219,35 @@ public interface DeviceDao extends Dao<Device>, TenantEntityDao, ExportableEntit
 
     PageData<DeviceIdInfo> findDeviceIdInfos(PageLink pageLink);
 
+    /**
+     * Finds the devices without the partition key, ordered by id
+     *
+     * @param idOffset the id to find the devices after
+     * @param limit the max number of devices to find
+     * @return the list of device id infos
+     */
+    List<DeviceIdInfo> findDeviceIdInfosWithoutPartitionKey(UUID idOffset, int limit);
+
+    /**
+     * Finds the devices with the given partition key, ordered by id
+     *
+     * @param partitionKey the partition key
+     * @param idOffset the id to find the devices after
+     * @param limit the max number of devices to find
+     * @return the list of device id infos
+     */
+    List<DeviceIdInfo> findDeviceIdInfosByPartitionKey(long partitionKey, UUID idOffset, int limit);
+
+    void updatePartitionKeys(Map<UUID, Long> partitionKeys);
+
+    /**
+     * Resets the partition keys that were resolved with other partitioning settings
+     *
+     * @param minPartitionKey the min partition key of the current settings
+     * @param maxPartitionKey the max partition key of the current settings
+     * @return the number of the devices which partition key was reset
+     */
+    int resetPartitionKeysNotInRange(long minPartitionKey, long maxPartitionKey);
+
     PageData<DeviceInfo> findDeviceInfosByFilter(DeviceInfoFilter filter, PageLink pageLink);
 }
@@ -83,8 +83,10 @@ import org.thingsboard.server.dao.tenant.TenantService;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.thingsboard.server.dao.DaoUtil.toUUIDs;
 import static org.thingsboard.server.dao.service.Validator.validateId;
@@ -394,6 +396,33 @@ public class DeviceServiceImpl extends AbstractCachedEntityService<DeviceCacheKe
         return deviceDao.findDeviceIdInfos(pageLink);
     }
 
+    @Override
+    public List<DeviceIdInfo> findDeviceIdInfosWithoutPartitionKey(DeviceId idOffset, int limit) {
+        log.trace("Executing findDeviceIdInfosWithoutPartitionKey, idOffset [{}], limit [{}]", idOffset, limit);
+        return deviceDao.findDeviceIdInfosWithoutPartitionKey(idOffset != null ? idOffset.getId() : new UUID(0, 0), limit);
+    }
+
+    @Override
+    public List<DeviceIdInfo> findDeviceIdInfosByPartitionKey(long partitionKey, DeviceId idOffset, int limit) {
+        log.trace("Executing findDeviceIdInfosByPartitionKey, partitionKey [{}], idOffset [{}], limit [{}]", partitionKey, idOffset, limit);
+        return deviceDao.findDeviceIdInfosByPartitionKey(partitionKey, idOffset != null ? idOffset.getId() : new UUID(0, 0), limit);
+    }
+
+    @Override
+    public void updatePartitionKeys(Map<DeviceId, Long> partitionKeys) {
+        log.trace("Executing updatePartitionKeys, size [{}]", partitionKeys.size());
+        if (!partitionKeys.isEmpty()) {
+            deviceDao.updatePartitionKeys(partitionKeys.entrySet().stream()
+                    .collect(Collectors.toMap(entry -> entry.getKey().getId(), Map.Entry::getValue)));
+        }
+    }
+
+    @Override
+    public int resetPartitionKeysNotInRange(long minPartitionKey, long maxPartitionKey) {
+        log.trace("Executing resetPartitionKeysNotInRange, minPartitionKey [{}], maxPartitionKey [{}]", minPartitionKey, maxPartitionKey);
+        return deviceDao.resetPartitionKeysNotInRange(minPartitionKey, maxPartitionKey);
+    }
+
     @Override
     public PageData<Device> findDevicesByTenantIdAndType(TenantId tenantId, String type, PageLink pageLink) {
         log.trace("Executing findDevicesByTenantIdAndType, tenantId [{}], type [{}], pageLink [{}]", tenantId, type, pageLink);
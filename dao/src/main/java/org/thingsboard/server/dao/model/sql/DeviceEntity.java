@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.model.sql;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 import lombok.Data;
@@ -28,6 +29,9 @@ import org.thingsboard.server.dao.model.ModelConstants;
 @Table(name = ModelConstants.DEVICE_TABLE_NAME)
 public final class DeviceEntity extends AbstractDeviceEntity<Device> {
 
+    @Column(name = ModelConstants.DEVICE_PARTITION_KEY_PROPERTY, updatable = false)
+    private Long partitionKey;
+
     public DeviceEntity() {
         super();
     }
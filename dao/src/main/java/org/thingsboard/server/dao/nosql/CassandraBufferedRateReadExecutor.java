@@ -28,6 +28,7 @@ import org.thingsboard.server.dao.util.AbstractBufferedRateExecutor;
 import org.thingsboard.server.dao.util.AsyncTaskContext;
 import org.thingsboard.server.dao.util.NoSqlAnyDao;
 import org.thingsboard.server.cache.limits.RateLimitService;
+import org.thingsboard.server.cache.limits.TenantProfileProvider;
 
 import jakarta.annotation.PreDestroy;
 
@@ -50,11 +51,19 @@ public class CassandraBufferedRateReadExecutor extends AbstractBufferedRateExecu
             @Value("${cassandra.query.poll_ms:50}") long pollMs,
             @Value("${cassandra.query.tenant_rate_limits.print_tenant_names}") boolean printTenantNames,
             @Value("${cassandra.query.print_queries_freq:0}") int printQueriesFreq,
+            @Value("${cassandra.query.tenant_fair_scheduling_enabled:true}") boolean fairSchedulingEnabled,
+            @Value("${cassandra.query.adaptive_concurrency_limit.enabled:false}") boolean adaptiveLimitEnabled,
+            @Value("${cassandra.query.adaptive_concurrency_limit.min_limit:10}") int adaptiveMinLimit,
+            @Value("${cassandra.query.adaptive_concurrency_limit.window_ms:250}") long adaptiveWindowMs,
+            @Value("${cassandra.query.adaptive_concurrency_limit.backoff_ratio:0.9}") double adaptiveBackoffRatio,
+            @Value("${cassandra.query.adaptive_concurrency_limit.latency_tolerance:2.0}") double adaptiveLatencyTolerance,
             @Autowired StatsFactory statsFactory,
             @Autowired EntityService entityService,
-            @Autowired RateLimitService rateLimitService) {
+            @Autowired RateLimitService rateLimitService,
+            @Autowired TenantProfileProvider tenantProfileProvider) {
         super(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs, printQueriesFreq, statsFactory,
-                entityService, rateLimitService, printTenantNames);
+                entityService, rateLimitService, tenantProfileProvider, printTenantNames, fairSchedulingEnabled,
+                adaptiveLimitEnabled, adaptiveMinLimit, adaptiveWindowMs, adaptiveBackoffRatio, adaptiveLatencyTolerance);
     }
 
     @Scheduled(fixedDelayString = "${cassandra.query.rate_limit_print_interval_ms}")
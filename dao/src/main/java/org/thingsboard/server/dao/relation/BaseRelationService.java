@@ -47,6 +47,7 @@ import org.thingsboard.server.common.data.relation.RelationsSearchParameters;
 import org.thingsboard.server.common.data.rule.RuleChainType;
 import org.thingsboard.server.dao.entity.EntityService;
 import org.thingsboard.server.dao.eventsourcing.RelationActionEvent;
+import org.thingsboard.server.dao.eventsourcing.RelationsActionEvent;
 import org.thingsboard.server.dao.exception.DataValidationException;
 import org.thingsboard.server.dao.service.ConstraintValidator;
 import org.thingsboard.server.dao.sql.JpaExecutorService;
@@ -55,8 +56,10 @@ import org.thingsboard.server.dao.sql.relation.JpaRelationQueryExecutorService;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -115,15 +118,29 @@ public class BaseRelationService implements RelationService {
     @TransactionalEventListener(classes = EntityRelationEvent.class)
     public void handleEvictEvent(EntityRelationEvent event) {
         List<RelationCacheKey> keys = new ArrayList<>(5);
-        keys.add(new RelationCacheKey(event.getFrom(), event.getTo(), event.getType(), event.getTypeGroup()));
-        keys.add(new RelationCacheKey(event.getFrom(), null, event.getType(), event.getTypeGroup(), EntitySearchDirection.FROM));
-        keys.add(new RelationCacheKey(event.getFrom(), null, null, event.getTypeGroup(), EntitySearchDirection.FROM));
-        keys.add(new RelationCacheKey(null, event.getTo(), event.getType(), event.getTypeGroup(), EntitySearchDirection.TO));
-        keys.add(new RelationCacheKey(null, event.getTo(), null, event.getTypeGroup(), EntitySearchDirection.TO));
+        addEvictKeys(keys, event.getFrom(), event.getTo(), event.getType(), event.getTypeGroup());
         cache.evict(keys);
         log.debug("Processed evict event: {}", event);
     }
 
+    @TransactionalEventListener(classes = EntityRelationsEvent.class)
+    public void handleEvictEvent(EntityRelationsEvent event) {
+        Set<RelationCacheKey> keys = new HashSet<>();
+        for (EntityRelation relation : event.getRelations()) {
+            addEvictKeys(keys, relation.getFrom(), relation.getTo(), relation.getType(), relation.getTypeGroup());
+        }
+        cache.evict(keys);
+        log.debug("Processed evict event for {} relations, {} cache keys", event.getRelations().size(), keys.size());
+    }
+
+    private void addEvictKeys(Collection<RelationCacheKey> keys, EntityId from, EntityId to, String type, RelationTypeGroup typeGroup) {
+        keys.add(new RelationCacheKey(from, to, type, typeGroup));
+        keys.add(new RelationCacheKey(from, null, type, typeGroup, EntitySearchDirection.FROM));
+        keys.add(new RelationCacheKey(from, null, null, typeGroup, EntitySearchDirection.FROM));
+        keys.add(new RelationCacheKey(null, to, type, typeGroup, EntitySearchDirection.TO));
+        keys.add(new RelationCacheKey(null, to, null, typeGroup, EntitySearchDirection.TO));
+    }
+
     @Override
     public ListenableFuture<Boolean> checkRelationAsync(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         log.trace("Executing checkRelationAsync [{}][{}][{}][{}]", from, to, relationType, typeGroup);
@@ -171,10 +188,8 @@ public class BaseRelationService implements RelationService {
         for (List<EntityRelation> partition : Lists.partition(relations, 1024)) {
             relationDao.saveRelations(tenantId, partition);
         }
-        for (EntityRelation relation : relations) {
-            publishEvictEvent(EntityRelationEvent.from(relation));
-            eventPublisher.publishEvent(new RelationActionEvent(tenantId, relation, ActionType.RELATION_ADD_OR_UPDATE));
-        }
+        publishEvictEvent(new EntityRelationsEvent(relations));
+        eventPublisher.publishEvent(new RelationsActionEvent(tenantId, relations, ActionType.RELATION_ADD_OR_UPDATE));
     }
 
     @Override
@@ -200,6 +215,19 @@ public class BaseRelationService implements RelationService {
         return result;
     }
 
+    @Override
+    public void deleteRelations(TenantId tenantId, List<EntityRelation> relations) {
+        log.trace("Executing deleteRelations [{}]", relations);
+        for (EntityRelation relation : relations) {
+            validate(relation);
+        }
+        for (List<EntityRelation> partition : Lists.partition(relations, 1024)) {
+            relationDao.deleteRelations(tenantId, partition);
+        }
+        publishEvictEvent(new EntityRelationsEvent(relations));
+        eventPublisher.publishEvent(new RelationsActionEvent(tenantId, relations, ActionType.RELATION_DELETED));
+    }
+
     @Override
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation) {
         log.trace("Executing deleteRelationAsync [{}]", relation);
@@ -268,9 +296,7 @@ public class BaseRelationService implements RelationService {
                 log.debug("Concurrency exception while deleting relations [{}]", inboundRelations, e);
             }
 
-            for (EntityRelation relation : inboundRelations) {
-                eventPublisher.publishEvent(EntityRelationEvent.from(relation));
-            }
+            eventPublisher.publishEvent(new EntityRelationsEvent(inboundRelations));
         }
 
         if (!outboundRelations.isEmpty()) {
@@ -280,9 +306,7 @@ public class BaseRelationService implements RelationService {
                 relationDao.deleteOutboundRelations(tenantId, entityId, relationTypeGroup);
             }
 
-            for (EntityRelation relation : outboundRelations) {
-                eventPublisher.publishEvent(EntityRelationEvent.from(relation));
-            }
+            eventPublisher.publishEvent(new EntityRelationsEvent(outboundRelations));
         }
     }
 
@@ -671,4 +695,12 @@ public class BaseRelationService implements RelationService {
             handleEvictEvent(event);
         }
     }
+
+    private void publishEvictEvent(EntityRelationsEvent event) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            eventPublisher.publishEvent(event);
+        } else {
+            handleEvictEvent(event);
+        }
+    }
 }
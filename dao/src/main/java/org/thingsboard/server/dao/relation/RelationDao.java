@@ -56,6 +56,8 @@ public interface RelationDao {
 
     boolean deleteRelation(TenantId tenantId, EntityRelation relation);
 
+    int deleteRelations(TenantId tenantId, Collection<EntityRelation> relations);
+
     ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation);
 
     boolean deleteRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
@@ -48,7 +48,9 @@ import org.thingsboard.server.dao.util.SqlDao;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -88,6 +90,9 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Value("${sql.batch_sort:true}")
     private boolean batchSortEnabled;
 
+    @Value("${sql.attributes.coalescing_enabled:false}")
+    private boolean coalescingEnabled;
+
     private TbSqlBlockingQueueWrapper<AttributeKvEntity> queue;
 
     @PostConstruct
@@ -103,13 +108,33 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
 
         Function<AttributeKvEntity, Integer> hashcodeFunction = entity -> entity.getId().getEntityId().hashCode();
         queue = new TbSqlBlockingQueueWrapper<>(params, hashcodeFunction, batchThreads, statsFactory);
-        queue.init(logExecutor, v -> attributeKvInsertRepository.saveOrUpdate(v),
+        queue.init(logExecutor, v -> attributeKvInsertRepository.saveOrUpdate(coalescingEnabled ? coalesce(v) : v),
                 Comparator.comparing((AttributeKvEntity attributeKvEntity) -> attributeKvEntity.getId().getEntityId())
                         .thenComparing(attributeKvEntity -> attributeKvEntity.getId().getAttributeType())
                         .thenComparing(attributeKvEntity -> attributeKvEntity.getId().getAttributeKey())
         );
     }
 
+    /*
+     * Keeps only the newest pending value per (entity, scope, key) of the batch.
+     * On equal lastUpdateTs the value that was queued later wins, same as without coalescing.
+     * */
+    static List<AttributeKvEntity> coalesce(List<AttributeKvEntity> entities) {
+        Map<AttributeKvCompositeKey, AttributeKvEntity> newest = new LinkedHashMap<>(entities.size());
+        for (AttributeKvEntity entity : entities) {
+            newest.merge(entity.getId(), entity, (oldEntity, newEntity) -> getLastUpdateTs(oldEntity) <= getLastUpdateTs(newEntity) ? newEntity : oldEntity);
+        }
+        if (newest.size() == entities.size()) {
+            return entities;
+        }
+        log.trace("Coalesced {} attribute updates into {}", entities.size(), newest.size());
+        return new ArrayList<>(newest.values());
+    }
+
+    private static long getLastUpdateTs(AttributeKvEntity entity) {
+        return entity.getLastUpdateTs() != null ? entity.getLastUpdateTs() : 0L;
+    }
+
     @PreDestroy
     private void destroy() {
         if (queue != null) {
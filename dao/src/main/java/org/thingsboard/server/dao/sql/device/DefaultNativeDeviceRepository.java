@@ -18,7 +18,9 @@ package org.thingsboard.server.dao.sql.device;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.thingsboard.server.common.data.DeviceIdInfo;
@@ -38,6 +40,13 @@ public class DefaultNativeDeviceRepository implements NativeDeviceRepository {
 
     private final String COUNT_QUERY = "SELECT count(id) FROM device;";
     private final String QUERY = "SELECT tenant_id as tenantId, customer_id as customerId, id as id FROM device ORDER BY created_time ASC LIMIT %s OFFSET %s";
+    private final String WITHOUT_PARTITION_KEY_QUERY = "SELECT tenant_id as tenantId, customer_id as customerId, id as id FROM device " +
+            "WHERE partition_key IS NULL AND id > :idOffset ORDER BY id LIMIT :limit";
+    private final String BY_PARTITION_KEY_QUERY = "SELECT tenant_id as tenantId, customer_id as customerId, id as id FROM device " +
+            "WHERE partition_key = :partitionKey AND id > :idOffset ORDER BY id LIMIT :limit";
+    private final String UPDATE_PARTITION_KEY_QUERY = "UPDATE device SET partition_key = :partitionKey WHERE id = :id";
+    private final String RESET_PARTITION_KEYS_QUERY = "UPDATE device SET partition_key = NULL " +
+            "WHERE partition_key < :minPartitionKey OR partition_key > :maxPartitionKey";
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final TransactionTemplate transactionTemplate;
 
@@ -52,13 +61,50 @@ public class DefaultNativeDeviceRepository implements NativeDeviceRepository {
             log.debug("Main query took {} ms", System.currentTimeMillis() - startTs);
             int totalPages = pageable.getPageSize() > 0 ? (int) Math.ceil((float) totalElements / pageable.getPageSize()) : 1;
             boolean hasNext = pageable.getPageSize() > 0 && totalElements > pageable.getOffset() + rows.size();
-            var data = rows.stream().map(row -> {
-                UUID id = (UUID) row.get("id");
-                var tenantIdObj = row.get("tenantId");
-                var customerIdObj = row.get("customerId");
-                return new DeviceIdInfo(tenantIdObj != null ? (UUID) tenantIdObj : TenantId.SYS_TENANT_ID.getId(), customerIdObj != null ? (UUID) customerIdObj : null, id);
-            }).collect(Collectors.toList());
+            var data = toDeviceIdInfos(rows);
             return new PageData<>(data, totalPages, totalElements, hasNext);
         });
     }
+
+    @Override
+    public List<DeviceIdInfo> findDeviceIdInfosWithoutPartitionKey(UUID idOffset, int limit) {
+        return toDeviceIdInfos(jdbcTemplate.queryForList(WITHOUT_PARTITION_KEY_QUERY, Map.of("idOffset", idOffset, "limit", limit)));
+    }
+
+    @Override
+    public List<DeviceIdInfo> findDeviceIdInfosByPartitionKey(long partitionKey, UUID idOffset, int limit) {
+        long startTs = System.currentTimeMillis();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(BY_PARTITION_KEY_QUERY, Map.of(
+                "partitionKey", partitionKey,
+                "idOffset", idOffset,
+                "limit", limit));
+        log.debug("Query by partition key took {} ms", System.currentTimeMillis() - startTs);
+        return toDeviceIdInfos(rows);
+    }
+
+    @Override
+    public void updatePartitionKeys(Map<UUID, Long> partitionKeys) {
+        SqlParameterSource[] batch = partitionKeys.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("id", entry.getKey())
+                        .addValue("partitionKey", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPDATE_PARTITION_KEY_QUERY, batch);
+    }
+
+    @Override
+    public int resetPartitionKeysNotInRange(long minPartitionKey, long maxPartitionKey) {
+        return jdbcTemplate.update(RESET_PARTITION_KEYS_QUERY, Map.of(
+                "minPartitionKey", minPartitionKey,
+                "maxPartitionKey", maxPartitionKey));
+    }
+
+    private List<DeviceIdInfo> toDeviceIdInfos(List<Map<String, Object>> rows) {
+        return rows.stream().map(row -> {
+            UUID id = (UUID) row.get("id");
+            var tenantIdObj = row.get("tenantId");
+            var customerIdObj = row.get("customerId");
+            return new DeviceIdInfo(tenantIdObj != null ? (UUID) tenantIdObj : TenantId.SYS_TENANT_ID.getId(), customerIdObj != null ? (UUID) customerIdObj : null, id);
+        }).collect(Collectors.toList());
+    }
 }
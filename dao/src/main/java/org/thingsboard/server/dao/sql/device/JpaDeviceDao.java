@@ -39,11 +39,13 @@ import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.device.DeviceDao;
+import org.thingsboard.server.dao.device.DevicePartitionKeyResolver;
 import org.thingsboard.server.dao.model.sql.DeviceEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
 import org.thingsboard.server.dao.util.SqlDao;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -66,6 +68,9 @@ public class JpaDeviceDao extends JpaAbstractDao<DeviceEntity, Device> implement
     @Autowired
     private DeviceProfileRepository deviceProfileRepository;
 
+    @Autowired(required = false)
+    private DevicePartitionKeyResolver partitionKeyResolver;
+
     @Override
     protected Class<DeviceEntity> getEntityClass() {
         return DeviceEntity.class;
@@ -76,6 +81,15 @@ public class JpaDeviceDao extends JpaAbstractDao<DeviceEntity, Device> implement
         return deviceRepository;
     }
 
+    @Override
+    protected DeviceEntity doSave(DeviceEntity entity, boolean isNew) {
+        if (partitionKeyResolver != null) {
+            // the column is not updatable, so the key is only written when the device is inserted
+            entity.setPartitionKey(partitionKeyResolver.resolvePartitionKey(entity.getUuid()));
+        }
+        return super.doSave(entity, isNew);
+    }
+
     @Override
     public DeviceInfo findDeviceInfoById(TenantId tenantId, UUID deviceId) {
         return DaoUtil.getData(deviceRepository.findDeviceInfoById(deviceId));
@@ -271,6 +285,27 @@ public class JpaDeviceDao extends JpaAbstractDao<DeviceEntity, Device> implement
         return nativeDeviceRepository.findDeviceIdInfos(DaoUtil.toPageable(pageLink));
     }
 
+    @Override
+    public List<DeviceIdInfo> findDeviceIdInfosWithoutPartitionKey(UUID idOffset, int limit) {
+        return nativeDeviceRepository.findDeviceIdInfosWithoutPartitionKey(idOffset, limit);
+    }
+
+    @Override
+    public List<DeviceIdInfo> findDeviceIdInfosByPartitionKey(long partitionKey, UUID idOffset, int limit) {
+        log.debug("Try to find device id infos by partition key [{}]", partitionKey);
+        return nativeDeviceRepository.findDeviceIdInfosByPartitionKey(partitionKey, idOffset, limit);
+    }
+
+    @Override
+    public void updatePartitionKeys(Map<UUID, Long> partitionKeys) {
+        nativeDeviceRepository.updatePartitionKeys(partitionKeys);
+    }
+
+    @Override
+    public int resetPartitionKeysNotInRange(long minPartitionKey, long maxPartitionKey) {
+        return nativeDeviceRepository.resetPartitionKeysNotInRange(minPartitionKey, maxPartitionKey);
+    }
+
     @Override
     public Device findByTenantIdAndExternalId(UUID tenantId, UUID externalId) {
         return DaoUtil.getData(deviceRepository.findByTenantIdAndExternalId(tenantId, externalId));
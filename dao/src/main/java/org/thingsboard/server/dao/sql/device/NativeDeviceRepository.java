@@ -19,8 +19,20 @@ import org.springframework.data.domain.Pageable;
 import org.thingsboard.server.common.data.DeviceIdInfo;
 import org.thingsboard.server.common.data.page.PageData;
 
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 public interface NativeDeviceRepository {
 
     PageData<DeviceIdInfo> findDeviceIdInfos(Pageable pageable);
 
+    List<DeviceIdInfo> findDeviceIdInfosWithoutPartitionKey(UUID idOffset, int limit);
+
+    List<DeviceIdInfo> findDeviceIdInfosByPartitionKey(long partitionKey, UUID idOffset, int limit);
+
+    void updatePartitionKeys(Map<UUID, Long> partitionKeys);
+
+    int resetPartitionKeysNotInRange(long minPartitionKey, long maxPartitionKey);
+
 }
@@ -324,11 +324,14 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final TransactionTemplate transactionTemplate;
     private final DefaultQueryLogComponent queryLog;
+    private final EntityDataQueryCache queryCache;
 
-    public DefaultEntityQueryRepository(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, DefaultQueryLogComponent queryLog) {
+    public DefaultEntityQueryRepository(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                        DefaultQueryLogComponent queryLog, EntityDataQueryCache queryCache) {
         this.jdbcTemplate = jdbcTemplate;
         this.transactionTemplate = transactionTemplate;
         this.queryLog = queryLog;
+        this.queryCache = queryCache;
     }
 
     @Override
@@ -410,7 +413,7 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
 
     @Override
     public PageData<EntityData> findEntityDataByQuery(TenantId tenantId, CustomerId customerId, EntityDataQuery query) {
-        return findEntityDataByQuery(tenantId, customerId, query, false);
+        return queryCache.get(tenantId, customerId, query, () -> findEntityDataByQuery(tenantId, customerId, query, false));
     }
 
     public PageData<EntityData> findEntityDataByQuery(TenantId tenantId, CustomerId customerId, EntityDataQuery query, boolean ignorePermissionCheck) {
@@ -914,6 +917,10 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
         return nameColumn;
     }
 
+    public static boolean isSupportedEntityType(EntityType entityType) {
+        return entityTableMap.containsKey(entityType);
+    }
+
     public static EntityType resolveEntityType(EntityFilter entityFilter) {
         switch (entityFilter.getType()) {
             case SINGLE_ENTITY:
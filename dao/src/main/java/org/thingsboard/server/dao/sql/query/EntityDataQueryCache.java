@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.edge.EdgeEvent;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.dao.eventsourcing.DeleteEntityEvent;
+import org.thingsboard.server.dao.eventsourcing.RelationActionEvent;
+import org.thingsboard.server.dao.eventsourcing.RelationsActionEvent;
+import org.thingsboard.server.dao.eventsourcing.SaveEntityEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived node-local cache of entity data query results.
+ * Identical queries executed by the same tenant/customer within the TTL share a single DB execution.
+ * Cached results are dropped for the whole tenant on entity or relation changes;
+ * latest attribute/telemetry values in the result may be stale for up to the TTL.
+ */
+@Component
+@Slf4j
+public class EntityDataQueryCache {
+
+    @Value("${sql.entity_data_query_cache.enabled:false}")
+    private boolean enabled;
+    @Value("${sql.entity_data_query_cache.ttl_ms:1000}")
+    private long ttlMs;
+    @Value("${sql.entity_data_query_cache.max_size:10000}")
+    private long maxSize;
+
+    private final ConcurrentMap<TenantId, AtomicLong> tenantVersions = new ConcurrentHashMap<>();
+    private Cache<EntityDataQueryCacheKey, PageData<EntityData>> cache;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            cache = Caffeine.newBuilder()
+                    .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                    .maximumSize(maxSize)
+                    .build();
+        }
+    }
+
+    public PageData<EntityData> get(TenantId tenantId, CustomerId customerId, EntityDataQuery query, Supplier<PageData<EntityData>> loader) {
+        if (cache == null || tenantId == null) {
+            return loader.get();
+        }
+        // the version is captured before the query is executed, so a result computed concurrently with a change
+        // is stored under the outdated version and never returned afterwards
+        EntityDataQueryCacheKey key = new EntityDataQueryCacheKey(tenantId, customerId, getVersion(tenantId).get(), JacksonUtil.toString(query));
+        return copyOf(cache.get(key, k -> loader.get()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(SaveEntityEvent<?> event) {
+        if (!(event.getEntity() instanceof EdgeEvent) && isSupported(event.getEntityId())) {
+            invalidate(event.getTenantId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(DeleteEntityEvent<?> event) {
+        if (isSupported(event.getEntityId())) {
+            invalidate(event.getTenantId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(RelationActionEvent event) {
+        invalidate(event.getTenantId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(RelationsActionEvent event) {
+        invalidate(event.getTenantId());
+    }
+
+    void invalidate(TenantId tenantId) {
+        if (cache != null && tenantId != null) {
+            if (tenantId.isSysTenantId()) {
+                tenantVersions.values().forEach(AtomicLong::incrementAndGet);
+            } else {
+                getVersion(tenantId).incrementAndGet();
+            }
+        }
+    }
+
+    private AtomicLong getVersion(TenantId tenantId) {
+        return tenantVersions.computeIfAbsent(tenantId, id -> new AtomicLong());
+    }
+
+    private static boolean isSupported(EntityId entityId) {
+        return entityId == null || DefaultEntityQueryRepository.isSupportedEntityType(entityId.getEntityType());
+    }
+
+    /*
+     * Callers are free to modify the returned entity data (e.g. subscriptions update the latest values),
+     * so each call gets its own copy of the cached maps.
+     * */
+    private static PageData<EntityData> copyOf(PageData<EntityData> pageData) {
+        return pageData.mapData(EntityData::copy);
+    }
+
+}
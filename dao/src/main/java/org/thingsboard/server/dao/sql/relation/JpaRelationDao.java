@@ -38,8 +38,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Created by Valerii Sosliuk on 5/29/2017.
@@ -150,8 +151,7 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
 
     @Override
     public void saveRelations(TenantId tenantId, Collection<EntityRelation> relations) {
-        List<RelationEntity> entities = relations.stream().map(RelationEntity::new).collect(Collectors.toList());
-        relationInsertRepository.saveOrUpdate(entities);
+        relationInsertRepository.saveOrUpdate(toUniqueEntities(relations));
     }
 
     @Override
@@ -165,6 +165,25 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
         return deleteRelationIfExists(key);
     }
 
+    @Override
+    public int deleteRelations(TenantId tenantId, Collection<EntityRelation> relations) {
+        try {
+            return relationInsertRepository.delete(toUniqueEntities(relations));
+        } catch (ConcurrencyFailureException e) {
+            log.debug("Concurrency exception while deleting relations [{}]", relations, e);
+            return 0;
+        }
+    }
+
+    // single-statement upsert fails if it affects the same row twice, so duplicates are collapsed and the last one wins
+    private List<RelationEntity> toUniqueEntities(Collection<EntityRelation> relations) {
+        Map<RelationCompositeKey, RelationEntity> entities = new LinkedHashMap<>(relations.size());
+        for (EntityRelation relation : relations) {
+            entities.put(new RelationCompositeKey(relation), new RelationEntity(relation));
+        }
+        return new ArrayList<>(entities.values());
+    }
+
     @Override
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation) {
         RelationCompositeKey key = new RelationCompositeKey(relation);
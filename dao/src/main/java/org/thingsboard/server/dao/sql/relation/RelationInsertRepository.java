@@ -25,4 +25,6 @@ public interface RelationInsertRepository {
 
     void saveOrUpdate(List<RelationEntity> entities);
 
+    int delete(List<RelationEntity> entities);
+
 }
\ No newline at end of file
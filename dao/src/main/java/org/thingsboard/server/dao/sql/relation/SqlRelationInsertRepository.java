@@ -16,7 +16,6 @@
 package org.thingsboard.server.dao.sql.relation;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,8 +25,6 @@ import org.thingsboard.server.dao.model.sql.RelationEntity;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.List;
 
 @Repository
@@ -38,9 +35,12 @@ public class SqlRelationInsertRepository implements RelationInsertRepository {
             " VALUES (:fromId, :fromType, :toId, :toType, :relationTypeGroup, :relationType, :additionalInfo) " +
             "ON CONFLICT (from_id, from_type, relation_type_group, relation_type, to_id, to_type) DO UPDATE SET additional_info = :additionalInfo returning *";
 
-    private static final String INSERT_ON_CONFLICT_DO_UPDATE_JDBC = "INSERT INTO relation (from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info)" +
-            " VALUES (?, ?, ?, ?, ?, ?, ?) " +
-            "ON CONFLICT (from_id, from_type, relation_type_group, relation_type, to_id, to_type) DO UPDATE SET additional_info = ?";
+    private static final String BATCH_INSERT_PREFIX = "INSERT INTO relation (from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info) VALUES ";
+    private static final String INSERT_VALUES_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?)";
+    private static final String BATCH_INSERT_SUFFIX = " ON CONFLICT (from_id, from_type, relation_type_group, relation_type, to_id, to_type) DO UPDATE SET additional_info = EXCLUDED.additional_info";
+
+    private static final String BATCH_DELETE_PREFIX = "DELETE FROM relation WHERE (from_id, from_type, relation_type_group, relation_type, to_id, to_type) IN (";
+    private static final String DELETE_KEY_PLACEHOLDER = "(?, ?, ?, ?, ?, ?)";
 
 
     @PersistenceContext
@@ -72,33 +72,54 @@ public class SqlRelationInsertRepository implements RelationInsertRepository {
 
     @Override
     public void saveOrUpdate(List<RelationEntity> entities) {
-        jdbcTemplate.batchUpdate(INSERT_ON_CONFLICT_DO_UPDATE_JDBC, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                RelationEntity relation = entities.get(i);
-                ps.setObject(1, relation.getFromId());
-                ps.setString(2, relation.getFromType());
-                ps.setObject(3, relation.getToId());
-                ps.setString(4, relation.getToType());
-
-                ps.setString(5, relation.getRelationTypeGroup());
-                ps.setString(6, relation.getRelationType());
-
-                if (relation.getAdditionalInfo() == null) {
-                    ps.setString(7, null);
-                    ps.setString(8, null);
-                } else {
-                    String json = JacksonUtil.toString(relation.getAdditionalInfo());
-                    ps.setString(7, json);
-                    ps.setString(8, json);
-                }
+        if (entities.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder(BATCH_INSERT_PREFIX);
+        appendPlaceholders(sql, entities.size(), INSERT_VALUES_PLACEHOLDER);
+        sql.append(BATCH_INSERT_SUFFIX);
+        jdbcTemplate.update(sql.toString(), ps -> {
+            int idx = 1;
+            for (RelationEntity relation : entities) {
+                ps.setObject(idx++, relation.getFromId());
+                ps.setString(idx++, relation.getFromType());
+                ps.setObject(idx++, relation.getToId());
+                ps.setString(idx++, relation.getToType());
+                ps.setString(idx++, relation.getRelationTypeGroup());
+                ps.setString(idx++, relation.getRelationType());
+                ps.setString(idx++, relation.getAdditionalInfo() == null ? null : JacksonUtil.toString(relation.getAdditionalInfo()));
             }
+        });
+    }
 
-            @Override
-            public int getBatchSize() {
-                return entities.size();
+    @Override
+    public int delete(List<RelationEntity> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder(BATCH_DELETE_PREFIX);
+        appendPlaceholders(sql, entities.size(), DELETE_KEY_PLACEHOLDER);
+        sql.append(")");
+        return jdbcTemplate.update(sql.toString(), ps -> {
+            int idx = 1;
+            for (RelationEntity relation : entities) {
+                ps.setObject(idx++, relation.getFromId());
+                ps.setString(idx++, relation.getFromType());
+                ps.setString(idx++, relation.getRelationTypeGroup());
+                ps.setString(idx++, relation.getRelationType());
+                ps.setObject(idx++, relation.getToId());
+                ps.setString(idx++, relation.getToType());
             }
         });
     }
 
+    private static void appendPlaceholders(StringBuilder sql, int count, String placeholder) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(placeholder);
+        }
+    }
+
 }
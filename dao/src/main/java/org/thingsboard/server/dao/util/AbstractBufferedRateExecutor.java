@@ -15,39 +15,49 @@
  */
 package org.thingsboard.server.dao.util;
 
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
 import com.datastax.oss.driver.api.core.ProtocolVersion;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
 import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.servererrors.OverloadedException;
+import com.datastax.oss.driver.api.core.servererrors.QueryConsistencyException;
 import com.datastax.oss.driver.api.core.type.DataType;
 import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
 import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import jakarta.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.cache.limits.RateLimitService;
+import org.thingsboard.server.cache.limits.TenantProfileProvider;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.TenantProfile;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.limit.LimitedApi;
+import org.thingsboard.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
 import org.thingsboard.server.common.stats.DefaultCounter;
 import org.thingsboard.server.common.stats.StatsCounter;
 import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.common.stats.StatsType;
 import org.thingsboard.server.dao.entity.EntityService;
+import org.thingsboard.server.dao.eventsourcing.DeleteEntityEvent;
+import org.thingsboard.server.dao.eventsourcing.SaveEntityEvent;
 import org.thingsboard.server.dao.nosql.CassandraStatementTask;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -61,14 +71,20 @@ import java.util.regex.Matcher;
 public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extends ListenableFuture<V>, V> implements BufferedRateExecutor<T, F> {
 
     public static final String CONCURRENCY_LEVEL = "currBuffer";
+    public static final String CONCURRENCY_LIMIT = "concurrencyLimit";
+
+    private static final int ADAPTIVE_LIMIT_MIN_WINDOW_SAMPLES = 10;
+    private static final int ADAPTIVE_LIMIT_BASELINE_RESET_WINDOWS = 100;
+    private static final long TENANT_WEIGHT_TTL_MINUTES = 1;
 
     private final long maxWaitTime;
     private final long pollMs;
-    private final BlockingQueue<AsyncTaskContext<T, V>> queue;
+    private final TenantFairTaskQueue<T, V> queue;
     private final ExecutorService dispatcherExecutor;
     private final ExecutorService callbackExecutor;
     private final ScheduledExecutorService timeoutExecutor;
-    private final int concurrencyLimit;
+    private final AtomicInteger concurrencyLimit;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
     private final int printQueriesFreq;
 
     private final AtomicInteger printQueriesIdx = new AtomicInteger(0);
@@ -78,28 +94,46 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
 
     private final EntityService entityService;
     private final RateLimitService rateLimitService;
+    private final TenantProfileProvider tenantProfileProvider;
+    private final boolean fairSchedulingEnabled;
+    // expires to pick up the profile changes made on other nodes, the local changes are applied on the save events
+    private final Cache<TenantId, Integer> tenantWeights = Caffeine.newBuilder()
+            .expireAfterWrite(TENANT_WEIGHT_TTL_MINUTES, TimeUnit.MINUTES)
+            .build();
 
     private final boolean printTenantNames;
     private final Map<TenantId, String> tenantNamesCache = new HashMap<>();
 
     public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads,
                                         int callbackThreads, long pollMs, int printQueriesFreq, StatsFactory statsFactory,
-                                        EntityService entityService, RateLimitService rateLimitService, boolean printTenantNames) {
+                                        EntityService entityService, RateLimitService rateLimitService, TenantProfileProvider tenantProfileProvider,
+                                        boolean printTenantNames, boolean fairSchedulingEnabled,
+                                        boolean adaptiveLimitEnabled, int adaptiveMinLimit, long adaptiveWindowMs,
+                                        double adaptiveBackoffRatio, double adaptiveLatencyTolerance) {
         this.maxWaitTime = maxWaitTime;
         this.pollMs = pollMs;
-        this.concurrencyLimit = concurrencyLimit;
         this.printQueriesFreq = printQueriesFreq;
-        this.queue = new LinkedBlockingDeque<>(queueLimit);
+        this.queue = new TenantFairTaskQueue<>(queueLimit, fairSchedulingEnabled);
         this.dispatcherExecutor = Executors.newFixedThreadPool(dispatcherThreads, ThingsBoardThreadFactory.forName("nosql-" + getBufferName() + "-dispatcher"));
         this.callbackExecutor = ThingsBoardExecutors.newWorkStealingPool(callbackThreads, "nosql-" + getBufferName() + "-callback");
         this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("nosql-" + getBufferName() + "-timeout"));
-        this.stats = new BufferedRateExecutorStats(statsFactory);
+        this.stats = new BufferedRateExecutorStats(statsFactory, getBufferName());
         String concurrencyLevelKey = StatsType.RATE_EXECUTOR.getName() + "." + CONCURRENCY_LEVEL + getBufferName(); //metric name may change with buffer name suffix
         this.concurrencyLevel = statsFactory.createGauge(concurrencyLevelKey, new AtomicInteger(0));
+        String concurrencyLimitKey = StatsType.RATE_EXECUTOR.getName() + "." + CONCURRENCY_LIMIT + getBufferName();
+        this.concurrencyLimit = statsFactory.createGauge(concurrencyLimitKey, new AtomicInteger(concurrencyLimit));
+        if (adaptiveLimitEnabled) {
+            this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(getBufferName(), this.concurrencyLimit, adaptiveMinLimit, concurrencyLimit,
+                    adaptiveBackoffRatio, adaptiveLatencyTolerance, adaptiveWindowMs, ADAPTIVE_LIMIT_MIN_WINDOW_SAMPLES, ADAPTIVE_LIMIT_BASELINE_RESET_WINDOWS);
+        } else {
+            this.concurrencyLimiter = null;
+        }
 
         this.entityService = entityService;
         this.rateLimitService = rateLimitService;
+        this.tenantProfileProvider = tenantProfileProvider;
         this.printTenantNames = printTenantNames;
+        this.fairSchedulingEnabled = fairSchedulingEnabled;
 
         for (int i = 0; i < dispatcherThreads; i++) {
             dispatcherExecutor.submit(this::dispatch);
@@ -126,8 +160,16 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
 
         if (!perTenantLimitReached) {
             try {
+                TenantId queueTenantId = tenantId != null ? tenantId : TenantId.SYS_TENANT_ID;
                 stats.getTotalAdded().increment();
-                queue.add(new AsyncTaskContext<>(UUID.randomUUID(), task, settableFuture, System.currentTimeMillis()));
+                // incremented before the task is added, so that a dispatcher taking it right away does not decrement the size first
+                stats.incrementTenantQueueSize(queueTenantId);
+                try {
+                    queue.add(queueTenantId, getTenantWeight(queueTenantId), new AsyncTaskContext<>(UUID.randomUUID(), task, settableFuture, System.currentTimeMillis()));
+                } catch (IllegalStateException e) {
+                    stats.decrementTenantQueueSize(queueTenantId);
+                    throw e;
+                }
             } catch (IllegalStateException e) {
                 stats.getTotalRejected().increment();
                 settableFuture.setException(e);
@@ -162,9 +204,12 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             int curLvl = concurrencyLevel.get();
             AsyncTaskContext<T, V> taskCtx = null;
             try {
-                if (curLvl <= concurrencyLimit) {
+                if (curLvl <= concurrencyLimit.get()) {
                     taskCtx = queue.take();
                     final AsyncTaskContext<T, V> finalTaskCtx = taskCtx;
+                    TenantId queueTenantId = taskCtx.getTask().getTenantId() != null ? taskCtx.getTask().getTenantId() : TenantId.SYS_TENANT_ID;
+                    stats.decrementTenantQueueSize(queueTenantId);
+                    stats.recordTenantWaitTime(queueTenantId, System.currentTimeMillis() - taskCtx.getCreateTime());
                     if (printQueriesFreq > 0) {
                         if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
                             printQueriesIdx.set(0);
@@ -177,6 +222,7 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
                     long timeout = finalTaskCtx.getCreateTime() + maxWaitTime - System.currentTimeMillis();
                     if (timeout > 0) {
                         stats.getTotalLaunched().increment();
+                        long launchTime = System.nanoTime();
                         ListenableFuture<V> result = execute(finalTaskCtx);
                         result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
                         Futures.addCallback(result, new FutureCallback<V>() {
@@ -184,7 +230,10 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
                             public void onSuccess(@Nullable V result) {
                                 logTask("Releasing", finalTaskCtx);
                                 stats.getTotalReleased().increment();
-                                concurrencyLevel.decrementAndGet();
+                                int inFlight = concurrencyLevel.getAndDecrement();
+                                if (concurrencyLimiter != null) {
+                                    concurrencyLimiter.onSuccess(System.nanoTime() - launchTime, inFlight);
+                                }
                                 finalTaskCtx.getFuture().set(result);
                             }
 
@@ -196,7 +245,16 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
                                     logTask("Failed", finalTaskCtx);
                                 }
                                 stats.getTotalFailed().increment();
-                                concurrencyLevel.decrementAndGet();
+                                int inFlight = concurrencyLevel.getAndDecrement();
+                                if (concurrencyLimiter != null) {
+                                    if (t instanceof TimeoutException) {
+                                        // the deadline includes the time the task waited in the queue, so the timeout is not a drop:
+                                        // only the time since the dispatch is sampled as the latency
+                                        concurrencyLimiter.onSuccess(System.nanoTime() - launchTime, inFlight);
+                                    } else if (isOverloadFailure(t)) {
+                                        concurrencyLimiter.onDrop(inFlight);
+                                    }
+                                }
                                 finalTaskCtx.getFuture().setException(t);
                                 log.debug("[{}] Failed to execute task: {}", finalTaskCtx.getId(), finalTaskCtx.getTask(), t);
                             }
@@ -225,6 +283,39 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
         log.info("[{}] Buffered rate executor thread stopped", getBufferName());
     }
 
+    /*
+     * Failures reported by the driver for the request itself: the request timeout of the driver is measured from the moment
+     * the request is sent, so it does not include the time the task waited in the queue
+     * */
+    private static boolean isOverloadFailure(Throwable t) {
+        return t instanceof DriverTimeoutException
+                || t instanceof QueryConsistencyException
+                || t instanceof OverloadedException;
+    }
+
+    private int getTenantWeight(TenantId tenantId) {
+        if (!fairSchedulingEnabled || tenantId.isSysTenantId()) {
+            return 1;
+        }
+        Integer weight = tenantWeights.getIfPresent(tenantId);
+        if (weight != null) {
+            return weight;
+        }
+        try {
+            TenantProfile tenantProfile = tenantProfileProvider.get(tenantId);
+            weight = tenantProfile == null ? 1 : tenantProfile.getProfileConfiguration()
+                    .map(DefaultTenantProfileConfiguration::getCassandraQueryWeight)
+                    .filter(w -> w > 0)
+                    .orElse(1);
+        } catch (Exception e) {
+            // not cached, so that the weight is fetched again on the next task
+            log.debug("[{}][{}] Failed to get tenant query weight", getBufferName(), tenantId, e);
+            return 1;
+        }
+        tenantWeights.put(tenantId, weight);
+        return weight;
+    }
+
     private void logTask(String action, AsyncTaskContext<T, V> taskCtx) {
         if (log.isTraceEnabled()) {
             if (taskCtx.getTask() instanceof CassandraStatementTask) {
@@ -277,6 +368,24 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
         return queue.size();
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(SaveEntityEvent<?> event) {
+        if (event.getEntity() instanceof TenantProfile) {
+            tenantWeights.invalidateAll();
+        } else if (event.getEntityId() != null && EntityType.TENANT.equals(event.getEntityId().getEntityType())) {
+            // the tenant may be assigned another profile
+            tenantWeights.invalidate(event.getTenantId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(DeleteEntityEvent<?> event) {
+        if (EntityType.TENANT.equals(event.getEntityId().getEntityType())) {
+            stats.removeTenant(event.getTenantId());
+            tenantWeights.invalidate(event.getTenantId());
+        }
+    }
+
     public void printStats() {
         int queueSize = getQueueSize();
         int rateLimitedTenantsCount = (int) stats.getRateLimitedTenants().values().stream()
@@ -291,11 +400,13 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             StringBuilder statsBuilder = new StringBuilder();
 
             statsBuilder.append("queueSize").append(" = [").append(queueSize).append("] ");
+            statsBuilder.append("queuedTenants").append(" = [").append(queue.getActiveTenantsCount()).append("] ");
             stats.getStatsCounters().forEach(counter -> {
                 statsBuilder.append(counter.getName()).append(" = [").append(counter.get()).append("] ");
             });
             statsBuilder.append("totalRateLimitedTenants").append(" = [").append(rateLimitedTenantsCount).append("] ");
             statsBuilder.append(CONCURRENCY_LEVEL).append(" = [").append(concurrencyLevel.get()).append("] ");
+            statsBuilder.append(CONCURRENCY_LIMIT).append(" = [").append(concurrencyLimit.get()).append("] ");
 
             stats.getStatsCounters().forEach(StatsCounter::clear);
             log.info("[{}] Permits {}", getBufferName(), statsBuilder);
@@ -323,5 +434,7 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
                         log.info("[{}][{}] Rate limited requests: {}", getBufferName(), tenantId, rateLimitedRequests);
                     }
                 });
+
+        stats.removeIdleTenants();
     }
 }
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows the observed query latency (AIMD with a latency gradient).
+ * Latency samples are aggregated in windows. At the end of each window the limit is:
+ * - decreased multiplicatively if there were timeouts or the average latency exceeded the no-load latency by the tolerance factor;
+ * - increased additively if the limit was actually used (in-flight queries reached half of the limit) and the latency is fine;
+ * - kept as is otherwise.
+ * The no-load latency is the minimal window latency, re-measured every {@code baselineResetWindows} windows
+ * to follow the topology changes of the cluster.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final int baselineResetWindows;
+
+    private final AtomicInteger limit;
+
+    private final LongAdder windowLatencySum = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final AtomicBoolean windowDropped = new AtomicBoolean();
+    private final AtomicLong windowEnd;
+    private final ReentrantLock windowLock = new ReentrantLock();
+
+    private long noLoadLatencyNanos = Long.MAX_VALUE;
+    private int windowsSinceBaselineReset;
+
+    public AdaptiveConcurrencyLimiter(String name, AtomicInteger limit, int minLimit, int maxLimit, double backoffRatio,
+                                      double latencyTolerance, long windowMs, int minWindowSamples, int baselineResetWindows) {
+        this.name = name;
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.minWindowSamples = minWindowSamples;
+        this.baselineResetWindows = baselineResetWindows;
+        this.limit = limit;
+        this.limit.set(this.maxLimit);
+        this.windowEnd = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public void onSuccess(long latencyNanos, int inFlight) {
+        windowLatencySum.add(latencyNanos);
+        windowSamples.increment();
+        windowMaxInFlight.accumulateAndGet(inFlight, Math::max);
+        maybeCloseWindow();
+    }
+
+    public void onDrop(int inFlight) {
+        windowDropped.set(true);
+        windowMaxInFlight.accumulateAndGet(inFlight, Math::max);
+        maybeCloseWindow();
+    }
+
+    private void maybeCloseWindow() {
+        long now = System.nanoTime();
+        if (now < windowEnd.get() || !windowLock.tryLock()) {
+            return;
+        }
+        try {
+            if (now < windowEnd.get()) {
+                return;
+            }
+            boolean dropped = windowDropped.getAndSet(false);
+            long samples = windowSamples.sumThenReset();
+            long latencySum = windowLatencySum.sumThenReset();
+            if (!dropped && samples < minWindowSamples) {
+                // too few samples to make a decision, keep collecting them in the same window
+                windowSamples.add(samples);
+                windowLatencySum.add(latencySum);
+                return;
+            }
+            int maxInFlight = windowMaxInFlight.getAndSet(0);
+            windowEnd.set(now + windowNanos);
+            update(dropped, samples > 0 ? latencySum / samples : 0, maxInFlight);
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    private void update(boolean dropped, long avgLatencyNanos, int maxInFlight) {
+        if (avgLatencyNanos > 0) {
+            if (++windowsSinceBaselineReset >= baselineResetWindows) {
+                windowsSinceBaselineReset = 0;
+                noLoadLatencyNanos = avgLatencyNanos;
+            } else {
+                noLoadLatencyNanos = Math.min(noLoadLatencyNanos, avgLatencyNanos);
+            }
+        }
+        int currentLimit = limit.get();
+        int newLimit = currentLimit;
+        if (dropped || (avgLatencyNanos > 0 && avgLatencyNanos > noLoadLatencyNanos * latencyTolerance)) {
+            newLimit = Math.max(minLimit, (int) (currentLimit * backoffRatio));
+        } else if (maxInFlight * 2 >= currentLimit) {
+            newLimit = Math.min(maxLimit, currentLimit + Math.max(1, (int) Math.sqrt(currentLimit)));
+        }
+        if (newLimit != currentLimit) {
+            limit.set(newLimit);
+            log.debug("[{}] Concurrency limit changed from {} to {} (dropped: {}, avg latency: {} us, no-load latency: {} us, max in-flight: {})",
+                    name, currentLimit, newLimit, dropped, TimeUnit.NANOSECONDS.toMicros(avgLatencyNanos),
+                    TimeUnit.NANOSECONDS.toMicros(noLoadLatencyNanos), maxInFlight);
+        }
+    }
+
+}
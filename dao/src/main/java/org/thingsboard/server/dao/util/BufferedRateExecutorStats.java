@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.util;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -27,11 +28,16 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Getter
 public class BufferedRateExecutorStats {
     private static final String TENANT_ID_TAG = "tenantId";
+    private static final String BUFFER_NAME_TAG = "bufferName";
+    private static final String TENANT_QUEUE_SIZE = StatsType.RATE_EXECUTOR.getName() + ".tenantQueueSize";
+    private static final String TENANT_WAIT_TIME = StatsType.RATE_EXECUTOR.getName() + ".tenantWaitTime";
 
 
     private static final String TOTAL_ADDED = "totalAdded";
@@ -43,8 +49,11 @@ public class BufferedRateExecutorStats {
     private static final String TOTAL_RATE_LIMITED = "totalRateLimited";
 
     private final StatsFactory statsFactory;
+    private final String bufferName;
 
     private final ConcurrentMap<TenantId, DefaultCounter> rateLimitedTenants = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TenantId, AtomicInteger> tenantQueueSizes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TenantId, Timer> tenantWaitTimers = new ConcurrentHashMap<>();
 
     private final List<StatsCounter> statsCounters = new ArrayList<>();
 
@@ -56,8 +65,9 @@ public class BufferedRateExecutorStats {
     private final StatsCounter totalRejected;
     private final StatsCounter totalRateLimited;
 
-    public BufferedRateExecutorStats(StatsFactory statsFactory) {
+    public BufferedRateExecutorStats(StatsFactory statsFactory, String bufferName) {
         this.statsFactory = statsFactory;
+        this.bufferName = bufferName;
 
         String key = StatsType.RATE_EXECUTOR.getName();
 
@@ -87,4 +97,57 @@ public class BufferedRateExecutorStats {
         )
                 .increment();
     }
+
+    public void incrementTenantQueueSize(TenantId tenantId) {
+        tenantQueueSizes.compute(tenantId, (tId, queueSize) -> {
+            if (queueSize == null) {
+                queueSize = statsFactory.createGauge(TENANT_QUEUE_SIZE, new AtomicInteger(0), TENANT_ID_TAG, tId.toString(), BUFFER_NAME_TAG, bufferName);
+            }
+            queueSize.incrementAndGet();
+            return queueSize;
+        });
+    }
+
+    public void decrementTenantQueueSize(TenantId tenantId) {
+        tenantQueueSizes.computeIfPresent(tenantId, (tId, queueSize) -> {
+            queueSize.decrementAndGet();
+            return queueSize;
+        });
+    }
+
+    public void recordTenantWaitTime(TenantId tenantId, long waitTimeMs) {
+        tenantWaitTimers.computeIfAbsent(tenantId, tId ->
+                statsFactory.createTimer(TENANT_WAIT_TIME, TENANT_ID_TAG, tId.toString(), BUFFER_NAME_TAG, bufferName)
+        ).record(waitTimeMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the per-tenant metrics of the tenants without queued tasks, so that they are not kept for the tenants
+     * that stopped sending queries. The metrics are registered again on the next query of the tenant.
+     */
+    public void removeIdleTenants() {
+        tenantQueueSizes.keySet().forEach(tenantId -> tenantQueueSizes.computeIfPresent(tenantId, (tId, queueSize) -> {
+            if (queueSize.get() > 0) {
+                return queueSize;
+            }
+            removeTenantMeters(tId);
+            return null;
+        }));
+    }
+
+    public void removeTenant(TenantId tenantId) {
+        tenantQueueSizes.computeIfPresent(tenantId, (tId, queueSize) -> {
+            removeTenantMeters(tId);
+            return null;
+        });
+    }
+
+    // called under the lock of the tenant queue size entry, so that the gauge is not registered concurrently
+    private void removeTenantMeters(TenantId tenantId) {
+        statsFactory.removeMeters(TENANT_QUEUE_SIZE, TENANT_ID_TAG, tenantId.toString(), BUFFER_NAME_TAG, bufferName);
+        tenantWaitTimers.computeIfPresent(tenantId, (tId, timer) -> {
+            statsFactory.removeMeters(TENANT_WAIT_TIME, TENANT_ID_TAG, tId.toString(), BUFFER_NAME_TAG, bufferName);
+            return null;
+        });
+    }
 }
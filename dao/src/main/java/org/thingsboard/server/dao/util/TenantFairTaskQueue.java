@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded blocking queue of tasks with a sub-queue per tenant.
+ * Tenants with pending tasks are served in deficit round robin order: each tenant may dispatch up to its weight
+ * of tasks per round, so one tenant replaying a large backlog can't starve the queries of other tenants.
+ * If fair scheduling is disabled, all tasks share a single sub-queue and the queue behaves as a plain FIFO.
+ */
+public class TenantFairTaskQueue<T extends AsyncTask, V> {
+
+    private final int capacity;
+    private final boolean fair;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<TenantId, TenantQueue<T, V>> tenantQueues = new HashMap<>();
+    private final Queue<TenantQueue<T, V>> activeQueues = new ArrayDeque<>();
+    private int size;
+
+    public TenantFairTaskQueue(int capacity, boolean fair) {
+        this.capacity = capacity;
+        this.fair = fair;
+    }
+
+    /**
+     * @throws IllegalStateException if the queue is full
+     */
+    public void add(TenantId tenantId, int weight, AsyncTaskContext<T, V> taskCtx) {
+        TenantId key = fair ? tenantId : TenantId.SYS_TENANT_ID;
+        lock.lock();
+        try {
+            if (size >= capacity) {
+                throw new IllegalStateException("Queue full");
+            }
+            TenantQueue<T, V> tenantQueue = tenantQueues.get(key);
+            if (tenantQueue == null) {
+                tenantQueue = new TenantQueue<>(key);
+                tenantQueues.put(key, tenantQueue);
+                activeQueues.add(tenantQueue);
+            }
+            tenantQueue.weight = Math.max(weight, 1);
+            tenantQueue.tasks.add(taskCtx);
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AsyncTaskContext<T, V> take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            TenantQueue<T, V> current = activeQueues.element();
+            if (current.deficit <= 0) {
+                current.deficit += current.weight;
+            }
+            AsyncTaskContext<T, V> taskCtx = current.tasks.poll();
+            current.deficit--;
+            size--;
+            if (current.tasks.isEmpty()) {
+                // idle tenants don't keep their deficit for the next round
+                activeQueues.remove();
+                tenantQueues.remove(current.tenantId);
+            } else if (current.deficit <= 0) {
+                activeQueues.add(activeQueues.remove());
+            }
+            return taskCtx;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveTenantsCount() {
+        lock.lock();
+        try {
+            return activeQueues.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class TenantQueue<T extends AsyncTask, V> {
+        private final TenantId tenantId;
+        private final Queue<AsyncTaskContext<T, V>> tasks = new ArrayDeque<>();
+        private int weight = 1;
+        private int deficit;
+
+        TenantQueue(TenantId tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+
+}
@@ -51,6 +51,8 @@ CREATE INDEX IF NOT EXISTS idx_device_type ON device(tenant_id, type);
 
 CREATE INDEX IF NOT EXISTS idx_device_device_profile_id ON device(tenant_id, device_profile_id);
 
+CREATE INDEX IF NOT EXISTS idx_device_partition_key ON device(partition_key, id);
+
 CREATE INDEX IF NOT EXISTS idx_asset_customer_id ON asset(tenant_id, customer_id);
 
 CREATE INDEX IF NOT EXISTS idx_asset_customer_id_and_type ON asset(tenant_id, customer_id, type);
@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.attributes;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.cache.TbTransactionalCache;
+import org.thingsboard.server.common.data.AttributeScope;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.cache.CacheExecutorService;
+import org.thingsboard.server.dao.sql.JpaExecutorService;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CachedAttributesServiceTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private final AttributeCacheKey cacheKey = new AttributeCacheKey(AttributeScope.SERVER_SCOPE, deviceId, "temperature");
+
+    @Mock
+    private AttributesDao attributesDao;
+    @Mock
+    private JpaExecutorService jpaExecutorService;
+    @Mock
+    private StatsFactory statsFactory;
+    @Mock
+    private CacheExecutorService cacheExecutorService;
+    @Mock
+    private TbTransactionalCache<AttributeCacheKey, AttributeKvEntry> cache;
+
+    private CachedAttributesService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CachedAttributesService(attributesDao, jpaExecutorService, statsFactory, cacheExecutorService, cache);
+        ReflectionTestUtils.setField(service, "cacheType", "caffeine");
+        ReflectionTestUtils.setField(service, "coalescingEnabled", true);
+        service.init();
+    }
+
+    @Test
+    void testOlderWriteCompletedLastDoesNotOverwriteCachedValue() {
+        AttributeKvEntry older = attribute(100L, "20");
+        AttributeKvEntry newer = attribute(200L, "21");
+        SettableFuture<String> olderWrite = SettableFuture.create();
+        SettableFuture<String> newerWrite = SettableFuture.create();
+        given(attributesDao.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, older)).willReturn(olderWrite);
+        given(attributesDao.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, newer)).willReturn(newerWrite);
+
+        service.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, older);
+        service.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, newer);
+        newerWrite.set("temperature");
+        olderWrite.set("temperature");
+
+        var inOrder = inOrder(cache);
+        inOrder.verify(cache).evictOrPut(cacheKey, newer);
+        inOrder.verify(cache).evict(cacheKey);
+        verify(cache, never()).evictOrPut(cacheKey, older);
+    }
+
+    @Test
+    void testNewerValueIsCachedWhenWritesCompleteInOrder() {
+        AttributeKvEntry older = attribute(100L, "20");
+        AttributeKvEntry newer = attribute(200L, "21");
+        SettableFuture<String> olderWrite = SettableFuture.create();
+        SettableFuture<String> newerWrite = SettableFuture.create();
+        given(attributesDao.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, older)).willReturn(olderWrite);
+        given(attributesDao.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, newer)).willReturn(newerWrite);
+
+        service.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, older);
+        service.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, newer);
+        olderWrite.set("temperature");
+        newerWrite.set("temperature");
+
+        var inOrder = inOrder(cache);
+        inOrder.verify(cache).evict(cacheKey);
+        inOrder.verify(cache).evictOrPut(cacheKey, newer);
+        verify(cache, never()).evictOrPut(cacheKey, older);
+    }
+
+    @Test
+    void testFailedWriteDoesNotUpdateCache() {
+        AttributeKvEntry attribute = attribute(100L, "20");
+        SettableFuture<String> write = SettableFuture.create();
+        given(attributesDao.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, attribute)).willReturn(write);
+
+        ListenableFuture<String> result = service.save(tenantId, deviceId, AttributeScope.SERVER_SCOPE, attribute);
+        write.setException(new RuntimeException("DB is down"));
+
+        assertThat(result).isDone();
+        verify(cache, never()).evictOrPut(any(), any());
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(service, "pendingCacheUpdates")).isEmpty();
+    }
+
+    private AttributeKvEntry attribute(long ts, String value) {
+        return new BaseAttributeKvEntry(new StringDataEntry("temperature", value), ts);
+    }
+
+}
@@ -156,6 +156,27 @@ public class RelationServiceTest extends AbstractServiceTest {
         Assert.assertTrue(relationService.checkRelation(SYSTEM_TENANT_ID, childId, subChildId, EntityRelation.MANAGES_TYPE, RelationTypeGroup.EDGE));
     }
 
+    @Test
+    public void testSaveAndDeleteRelationsInBatch() {
+        AssetId parentId = new AssetId(Uuids.timeBased());
+        List<EntityRelation> relations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            relations.add(new EntityRelation(parentId, new DeviceId(Uuids.timeBased()), EntityRelation.CONTAINS_TYPE));
+        }
+        // duplicate of the first relation must be collapsed by the single-statement upsert
+        relations.add(new EntityRelation(parentId, relations.get(0).getTo(), EntityRelation.CONTAINS_TYPE));
+
+        relationService.saveRelations(SYSTEM_TENANT_ID, relations);
+        Assert.assertEquals(10, relationService.findByFrom(SYSTEM_TENANT_ID, parentId, RelationTypeGroup.COMMON).size());
+
+        relationService.deleteRelations(SYSTEM_TENANT_ID, relations.subList(0, 5));
+        List<EntityRelation> remaining = relationService.findByFrom(SYSTEM_TENANT_ID, parentId, RelationTypeGroup.COMMON);
+        Assert.assertEquals(5, remaining.size());
+        for (EntityRelation relation : relations.subList(5, 10)) {
+            Assert.assertTrue(relationService.checkRelation(SYSTEM_TENANT_ID, parentId, relation.getTo(), EntityRelation.CONTAINS_TYPE, RelationTypeGroup.COMMON));
+        }
+    }
+
     @Test
     public void testFindFrom() throws ExecutionException, InterruptedException {
         AssetId parentA = new AssetId(Uuids.timeBased());
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.attributes;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JpaAttributeDaoTest {
+
+    private final UUID entityId = UUID.randomUUID();
+
+    @Test
+    void testCoalesceKeepsNewestValuePerKey() {
+        AttributeKvEntity temp1 = attribute(1, 1, 100L, "t1");
+        AttributeKvEntity hum1 = attribute(1, 2, 100L, "h1");
+        AttributeKvEntity temp2 = attribute(1, 1, 200L, "t2");
+        AttributeKvEntity hum0 = attribute(1, 2, 50L, "h0");
+        AttributeKvEntity otherScopeTemp = attribute(2, 1, 10L, "s1");
+
+        List<AttributeKvEntity> coalesced = JpaAttributeDao.coalesce(List.of(temp1, hum1, temp2, hum0, otherScopeTemp));
+
+        assertThat(coalesced).containsExactly(temp2, hum1, otherScopeTemp);
+    }
+
+    @Test
+    void testCoalesceKeepsLaterQueuedValueOnEqualTs() {
+        AttributeKvEntity first = attribute(1, 1, 100L, "first");
+        AttributeKvEntity second = attribute(1, 1, 100L, "second");
+
+        assertThat(JpaAttributeDao.coalesce(List.of(first, second))).containsExactly(second);
+    }
+
+    @Test
+    void testCoalesceReturnsSameListWithoutDuplicates() {
+        List<AttributeKvEntity> entities = List.of(attribute(1, 1, 100L, "t"), attribute(1, 2, 100L, "h"));
+
+        assertThat(JpaAttributeDao.coalesce(entities)).isSameAs(entities);
+    }
+
+    private AttributeKvEntity attribute(int scope, int key, long ts, String value) {
+        AttributeKvEntity entity = new AttributeKvEntity();
+        entity.setId(new AttributeKvCompositeKey(entityId, scope, key));
+        entity.setLastUpdateTs(ts);
+        entity.setStrValue(value);
+        return entity;
+    }
+
+}
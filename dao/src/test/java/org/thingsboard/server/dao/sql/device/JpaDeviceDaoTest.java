@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.DeviceIdInfo;
 import org.thingsboard.server.common.data.DeviceProfile;
 import org.thingsboard.server.common.data.DeviceProfileType;
 import org.thingsboard.server.common.data.DeviceTransportType;
@@ -38,13 +39,18 @@ import org.thingsboard.server.dao.device.DeviceDao;
 import org.thingsboard.server.dao.device.DeviceProfileDao;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -153,6 +159,61 @@ public class JpaDeviceDaoTest extends AbstractJpaDaoTest {
         assertEquals(20, devices.size());
     }
 
+    @Test
+    public void testFindDeviceIdInfosByPartitionKey() {
+        assertThat(findAllWithoutPartitionKey()).containsAll(deviceIds);
+
+        Map<UUID, Long> partitionKeys = new HashMap<>();
+        for (int i = 0; i < deviceIds.size(); i++) {
+            partitionKeys.put(deviceIds.get(i), 100L + i % 3);
+        }
+        deviceDao.updatePartitionKeys(partitionKeys);
+        assertThat(findAllWithoutPartitionKey()).doesNotContainAnyElementsOf(deviceIds);
+        assertThat(findAllByPartitionKey(101L)).containsExactlyInAnyOrderElementsOf(devicesWithPartitionKey(partitionKeys, 101L));
+
+        // the key is not overwritten when the device is updated
+        UUID updatedDeviceId = deviceIds.get(1);
+        Device device = deviceDao.findById(TenantId.fromUUID(tenantId1), updatedDeviceId);
+        device.setLabel("updated");
+        deviceDao.save(TenantId.fromUUID(tenantId1), device);
+        assertThat(findAllByPartitionKey(101L)).contains(updatedDeviceId);
+
+        assertThat(deviceDao.resetPartitionKeysNotInRange(100L, 101L)).isEqualTo(devicesWithPartitionKey(partitionKeys, 102L).size());
+        assertThat(findAllByPartitionKey(102L)).isEmpty();
+        assertThat(findAllWithoutPartitionKey()).containsExactlyInAnyOrderElementsOf(devicesWithPartitionKey(partitionKeys, 102L));
+        assertThat(findAllByPartitionKey(100L)).containsExactlyInAnyOrderElementsOf(devicesWithPartitionKey(partitionKeys, 100L));
+    }
+
+    private List<UUID> devicesWithPartitionKey(Map<UUID, Long> partitionKeys, long partitionKey) {
+        return partitionKeys.entrySet().stream()
+                .filter(entry -> entry.getValue() == partitionKey)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private List<UUID> findAllWithoutPartitionKey() {
+        return findAll(idOffset -> deviceDao.findDeviceIdInfosWithoutPartitionKey(idOffset, 7));
+    }
+
+    private List<UUID> findAllByPartitionKey(long partitionKey) {
+        return findAll(idOffset -> deviceDao.findDeviceIdInfosByPartitionKey(partitionKey, idOffset, 7));
+    }
+
+    private List<UUID> findAll(Function<UUID, List<DeviceIdInfo>> pageFunction) {
+        List<UUID> found = new ArrayList<>();
+        List<DeviceIdInfo> page;
+        UUID idOffset = new UUID(0, 0);
+        do {
+            page = pageFunction.apply(idOffset);
+            page.forEach(idInfo -> found.add(idInfo.getDeviceId().getId()));
+            if (!page.isEmpty()) {
+                idOffset = page.get(page.size() - 1).getDeviceId().getId();
+            }
+        } while (page.size() == 7);
+        assertThat(found).doesNotHaveDuplicates();
+        return found;
+    }
+
     private List<UUID> createDevices(UUID tenantId1, UUID tenantId2, UUID customerId1, UUID customerId2, int count) {
         List<UUID> savedDevicesUUID = new ArrayList<>();
         for (int i = 0; i < count / 2; i++) {
@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.query;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.ComparisonTsValue;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataPageLink;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.EntityTypeFilter;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.dao.eventsourcing.DeleteEntityEvent;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityDataQueryCacheTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private EntityDataQueryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new EntityDataQueryCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60000L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        cache.init();
+    }
+
+    @Test
+    void testIdenticalQueriesExecutedOnce() {
+        cache.get(tenantId, null, createQuery(10), this::execute);
+        cache.get(tenantId, null, createQuery(10), this::execute);
+        assertThat(executions.get()).isEqualTo(1);
+
+        cache.get(tenantId, null, createQuery(20), this::execute);
+        cache.get(TenantId.fromUUID(UUID.randomUUID()), null, createQuery(10), this::execute);
+        assertThat(executions.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testResultInvalidatedOnEntityChange() {
+        cache.get(tenantId, null, createQuery(10), this::execute);
+        cache.handleEvent(DeleteEntityEvent.builder().tenantId(tenantId).entityId(new DeviceId(UUID.randomUUID())).build());
+        cache.get(tenantId, null, createQuery(10), this::execute);
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testCachedResultIsNotShared() {
+        PageData<EntityData> first = cache.get(tenantId, null, createQuery(10), this::execute);
+        first.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES).put("temperature", new TsValue(1, "42"));
+
+        PageData<EntityData> second = cache.get(tenantId, null, createQuery(10), this::execute);
+        assertThat(second.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES)).isEmpty();
+    }
+
+    @Test
+    void testCachedTsAndAggDataSurviveClear() {
+        PageData<EntityData> first = cache.get(tenantId, null, createQuery(10), this::execute);
+        first.getData().get(0).clearTsAndAggData();
+
+        PageData<EntityData> second = cache.get(tenantId, null, createQuery(10), this::execute);
+        assertThat(second.getData().get(0).getTimeseries()).containsKey("temperature");
+        assertThat(second.getData().get(0).getAggLatest()).containsKey(0);
+    }
+
+    @Test
+    void testCacheDisabled() {
+        cache = new EntityDataQueryCache();
+        cache.init();
+        Supplier<PageData<EntityData>> loader = this::execute;
+        cache.get(tenantId, null, createQuery(10), loader);
+        cache.get(tenantId, null, createQuery(10), loader);
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    private PageData<EntityData> execute() {
+        executions.incrementAndGet();
+        Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+        latest.put(EntityKeyType.TIME_SERIES, new HashMap<>());
+        Map<String, TsValue[]> timeseries = new HashMap<>();
+        timeseries.put("temperature", new TsValue[]{new TsValue(1, "20")});
+        Map<Integer, ComparisonTsValue> aggLatest = new HashMap<>();
+        aggLatest.put(0, new ComparisonTsValue(new TsValue(1, "20"), new TsValue(0, "10")));
+        EntityData entityData = new EntityData(new DeviceId(UUID.randomUUID()), latest, timeseries, aggLatest);
+        return new PageData<>(List.of(entityData), 1, 1, false);
+    }
+
+    private static EntityDataQuery createQuery(int pageSize) {
+        EntityTypeFilter filter = new EntityTypeFilter();
+        filter.setEntityType(EntityType.DEVICE);
+        return new EntityDataQuery(filter, new EntityDataPageLink(pageSize, 0, null, null),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+}
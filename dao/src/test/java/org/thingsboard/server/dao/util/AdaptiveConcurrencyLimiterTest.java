@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testLimitDecreasedOnTimeout() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(10, 100);
+        limiter.onDrop(100);
+        assertThat(limiter.getLimit()).isEqualTo(90);
+    }
+
+    @Test
+    void testLimitDecreasedOnLatencyGrowth() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(10, 100);
+        limiter.onSuccess(MS, 100);
+        assertThat(limiter.getLimit()).isEqualTo(100);
+
+        limiter.onSuccess(5 * MS, 100);
+        assertThat(limiter.getLimit()).isEqualTo(90);
+    }
+
+    @Test
+    void testLimitIncreasedOnlyWhenUsed() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(10, 100);
+        limiter.onDrop(100);
+        assertThat(limiter.getLimit()).isEqualTo(90);
+
+        limiter.onSuccess(MS, 10);
+        assertThat(limiter.getLimit()).isEqualTo(90);
+
+        limiter.onSuccess(MS, 90);
+        assertThat(limiter.getLimit()).isEqualTo(99);
+
+        limiter.onSuccess(MS, 99);
+        assertThat(limiter.getLimit()).isEqualTo(100);
+    }
+
+    @Test
+    void testLimitNotDecreasedBelowMinimum() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(10, 11);
+        for (int i = 0; i < 10; i++) {
+            limiter.onDrop(10);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    private AdaptiveConcurrencyLimiter createLimiter(int minLimit, int maxLimit) {
+        return new AdaptiveConcurrencyLimiter("test", new AtomicInteger(), minLimit, maxLimit, 0.9, 2.0, 0, 1, 100);
+    }
+
+}
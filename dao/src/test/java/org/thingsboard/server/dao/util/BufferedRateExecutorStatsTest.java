@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.stats.DefaultStatsFactory;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BufferedRateExecutorStatsTest {
+
+    private final TenantId tenantA = TenantId.fromUUID(UUID.randomUUID());
+    private final TenantId tenantB = TenantId.fromUUID(UUID.randomUUID());
+
+    private MeterRegistry meterRegistry;
+    private BufferedRateExecutorStats stats;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        DefaultStatsFactory statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(statsFactory, "metricsEnabled", true);
+        stats = new BufferedRateExecutorStats(statsFactory, "read");
+    }
+
+    @Test
+    void testIdleTenantMetricsAreRemoved() {
+        stats.incrementTenantQueueSize(tenantA);
+        stats.incrementTenantQueueSize(tenantB);
+        stats.decrementTenantQueueSize(tenantA);
+        stats.recordTenantWaitTime(tenantA, 10);
+        stats.recordTenantWaitTime(tenantB, 10);
+
+        stats.removeIdleTenants();
+
+        assertThat(stats.getTenantQueueSizes()).containsOnlyKeys(tenantB);
+        assertThat(stats.getTenantWaitTimers()).containsOnlyKeys(tenantB);
+        assertThat(meterRegistry.find("rateExecutor.tenantQueueSize").tag("tenantId", tenantA.toString()).meters()).isEmpty();
+        assertThat(meterRegistry.find("rateExecutor.tenantWaitTime").tag("tenantId", tenantA.toString()).meters()).isEmpty();
+        assertThat(meterRegistry.find("rateExecutor.tenantQueueSize").tag("tenantId", tenantB.toString()).gauge().value()).isEqualTo(1);
+
+        stats.incrementTenantQueueSize(tenantA);
+
+        assertThat(meterRegistry.find("rateExecutor.tenantQueueSize").tag("tenantId", tenantA.toString()).gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void testDeletedTenantMetricsAreRemoved() {
+        stats.incrementTenantQueueSize(tenantA);
+        stats.recordTenantWaitTime(tenantA, 10);
+
+        stats.removeTenant(tenantA);
+
+        assertThat(stats.getTenantQueueSizes()).isEmpty();
+        assertThat(stats.getTenantWaitTimers()).isEmpty();
+        assertThat(meterRegistry.find("rateExecutor.tenantQueueSize").meters()).isEmpty();
+        assertThat(meterRegistry.find("rateExecutor.tenantWaitTime").meters()).isEmpty();
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TenantFairTaskQueueTest {
+
+    private final TenantId tenantA = TenantId.fromUUID(UUID.randomUUID());
+    private final TenantId tenantB = TenantId.fromUUID(UUID.randomUUID());
+
+    @Test
+    void testTenantWithBacklogDoesNotStarveOthers() throws InterruptedException {
+        TenantFairTaskQueue<AsyncTask, Void> queue = new TenantFairTaskQueue<>(100, true);
+        for (int i = 0; i < 10; i++) {
+            add(queue, tenantA, 1);
+        }
+        add(queue, tenantB, 1);
+        add(queue, tenantB, 1);
+
+        assertThat(takeTenants(queue, 4)).containsExactly(tenantA, tenantB, tenantA, tenantB);
+        assertThat(queue.size()).isEqualTo(8);
+        assertThat(queue.getActiveTenantsCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testWeightedRoundRobin() throws InterruptedException {
+        TenantFairTaskQueue<AsyncTask, Void> queue = new TenantFairTaskQueue<>(100, true);
+        for (int i = 0; i < 6; i++) {
+            add(queue, tenantA, 3);
+            add(queue, tenantB, 1);
+        }
+
+        assertThat(takeTenants(queue, 8)).containsExactly(tenantA, tenantA, tenantA, tenantB, tenantA, tenantA, tenantA, tenantB);
+    }
+
+    @Test
+    void testFifoWhenFairSchedulingDisabled() throws InterruptedException {
+        TenantFairTaskQueue<AsyncTask, Void> queue = new TenantFairTaskQueue<>(100, false);
+        add(queue, tenantA, 1);
+        add(queue, tenantA, 1);
+        add(queue, tenantB, 1);
+
+        assertThat(takeTenants(queue, 3)).containsExactly(tenantA, tenantA, tenantB);
+    }
+
+    @Test
+    void testQueueLimit() {
+        TenantFairTaskQueue<AsyncTask, Void> queue = new TenantFairTaskQueue<>(2, true);
+        add(queue, tenantA, 1);
+        add(queue, tenantB, 1);
+
+        assertThatThrownBy(() -> add(queue, tenantA, 1)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void add(TenantFairTaskQueue<AsyncTask, Void> queue, TenantId tenantId, int weight) {
+        AsyncTask task = () -> tenantId;
+        queue.add(tenantId, weight, new AsyncTaskContext<>(UUID.randomUUID(), task, null, System.currentTimeMillis()));
+    }
+
+    private List<TenantId> takeTenants(TenantFairTaskQueue<AsyncTask, Void> queue, int count) throws InterruptedException {
+        List<TenantId> tenants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tenants.add(queue.take().getTask().getTenantId());
+        }
+        return tenants;
+    }
+
+}
@@ -0,0 +1,179 @@
+///
+/// Copyright © 2016-2024 The Thingsboard Authors
+///
+/// Licensed under the Apache License, Version 2.0 (the "License");
+/// you may not use this file except in compliance with the License.
+/// You may obtain a copy of the License at
+///
+///     http://www.apache.org/licenses/LICENSE-2.0
+///
+/// Unless required by applicable law or agreed to in writing, software
+/// distributed under the License is distributed on an "AS IS" BASIS,
+/// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+/// See the License for the specific language governing permissions and
+/// limitations under the License.
+///
+
+const textDecoder = new TextDecoder();
+
+const BREAK = Symbol('break');
+
+class CborReader {
+
+  private readonly view: DataView;
+  private readonly bytes: Uint8Array;
+  private offset = 0;
+
+  constructor(buffer: ArrayBuffer) {
+    this.view = new DataView(buffer);
+    this.bytes = new Uint8Array(buffer);
+  }
+
+  read(): any {
+    const initial = this.view.getUint8(this.offset++);
+    const majorType = initial >> 5;
+    const info = initial & 0x1f;
+    if (majorType === 7) {
+      return this.readSimple(info);
+    }
+    const indefinite = info === 31;
+    const length = indefinite ? -1 : this.readLength(info);
+    switch (majorType) {
+      case 0:
+        return length;
+      case 1:
+        return -1 - length;
+      case 2:
+        return indefinite ? this.readChunks(2) : this.readBytes(length);
+      case 3:
+        return indefinite ? this.readChunks(3) : textDecoder.decode(this.readBytes(length));
+      case 4:
+        return this.readArray(length);
+      case 5:
+        return this.readMap(length);
+      default:
+        // tagged value, the tag itself is not used
+        return this.read();
+    }
+  }
+
+  private readLength(info: number): number {
+    let value: number;
+    if (info < 24) {
+      return info;
+    } else if (info === 24) {
+      value = this.view.getUint8(this.offset);
+      this.offset += 1;
+    } else if (info === 25) {
+      value = this.view.getUint16(this.offset);
+      this.offset += 2;
+    } else if (info === 26) {
+      value = this.view.getUint32(this.offset);
+      this.offset += 4;
+    } else if (info === 27) {
+      value = this.view.getUint32(this.offset) * 0x100000000 + this.view.getUint32(this.offset + 4);
+      this.offset += 8;
+    } else {
+      throw new Error(`Invalid CBOR additional info: ${info}`);
+    }
+    return value;
+  }
+
+  private readSimple(info: number): any {
+    let value: number;
+    switch (info) {
+      case 20:
+        return false;
+      case 21:
+        return true;
+      case 22:
+      case 23:
+        return null;
+      case 25:
+        value = this.readHalfFloat(this.view.getUint16(this.offset));
+        this.offset += 2;
+        return value;
+      case 26:
+        value = this.view.getFloat32(this.offset);
+        this.offset += 4;
+        return value;
+      case 27:
+        value = this.view.getFloat64(this.offset);
+        this.offset += 8;
+        return value;
+      case 31:
+        return BREAK;
+      default:
+        throw new Error(`Unsupported CBOR simple value: ${info}`);
+    }
+  }
+
+  private readHalfFloat(half: number): number {
+    const exponent = (half >> 10) & 0x1f;
+    const fraction = half & 0x3ff;
+    let value: number;
+    if (exponent === 0) {
+      value = fraction * Math.pow(2, -24);
+    } else if (exponent === 31) {
+      value = fraction === 0 ? Infinity : NaN;
+    } else {
+      value = (fraction + 1024) * Math.pow(2, exponent - 25);
+    }
+    return half & 0x8000 ? -value : value;
+  }
+
+  private readBytes(length: number): Uint8Array {
+    const value = this.bytes.subarray(this.offset, this.offset + length);
+    this.offset += length;
+    return value;
+  }
+
+  private readChunks(majorType: number): Uint8Array | string {
+    const chunks: Uint8Array[] = [];
+    let chunk: any;
+    while ((chunk = this.read()) !== BREAK) {
+      chunks.push(typeof chunk === 'string' ? new TextEncoder().encode(chunk) : chunk);
+    }
+    const result = new Uint8Array(chunks.reduce((size, c) => size + c.length, 0));
+    let offset = 0;
+    chunks.forEach(c => {
+      result.set(c, offset);
+      offset += c.length;
+    });
+    return majorType === 3 ? textDecoder.decode(result) : result;
+  }
+
+  private readArray(length: number): any[] {
+    const result = [];
+    if (length < 0) {
+      let item: any;
+      while ((item = this.read()) !== BREAK) {
+        result.push(item);
+      }
+    } else {
+      for (let i = 0; i < length; i++) {
+        result.push(this.read());
+      }
+    }
+    return result;
+  }
+
+  private readMap(length: number): {[key: string]: any} {
+    const result = {};
+    for (let i = 0; length < 0 || i < length; i++) {
+      const key = this.read();
+      if (key === BREAK) {
+        break;
+      }
+      result[key] = this.read();
+    }
+    return result;
+  }
+}
+
+/**
+ * Decodes the binary CBOR frame of the "tb-cbor" WS sub-protocol to the same object as the JSON frame is parsed to.
+ */
+export function decodeCbor(buffer: ArrayBuffer): any {
+  return new CborReader(buffer).read();
+}
@@ -14,6 +14,7 @@
 /// limitations under the License.
 ///
 
+export * from './cbor-decoder';
 export * from './notification-websocket.service';
 export * from './telemetry-websocket.service';
 export * from './websocket.service';
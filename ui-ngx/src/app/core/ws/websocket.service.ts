@@ -21,6 +21,7 @@ import { AuthService } from '@core/auth/auth.service';
 import { NgZone } from '@angular/core';
 import { selectIsAuthenticated } from '@core/auth/auth.selectors';
 import { webSocket, WebSocketSubject } from 'rxjs/webSocket';
+import { decodeCbor } from '@core/ws/cbor-decoder';
 import {
   AuthWsCmd,
   CmdUpdateMsg,
@@ -53,7 +54,7 @@ export abstract class WebsocketService<T extends WsSubscriber> implements WsServ
 
   wsUri: string;
 
-  dataStream: WebSocketSubject<CmdWrapper | CmdUpdateMsg | AuthWsCmd>;
+  dataStream: WebSocketSubject<CmdWrapper | CmdUpdateMsg | CmdUpdateMsg[] | AuthWsCmd>;
 
   errorName = 'WebSocket Error';
 
@@ -164,9 +165,13 @@ export abstract class WebsocketService<T extends WsSubscriber> implements WsServ
 
   private openSocket(token: string) {
     const uri = `${this.wsUri}`;
-    this.dataStream = webSocket<CmdUpdateMsg>(
+    this.dataStream = webSocket<CmdUpdateMsg | CmdUpdateMsg[]>(
       {
         url: uri,
+        // binary CBOR updates are used when enabled on the server, otherwise the server falls back to JSON
+        protocol: ['tb-cbor', 'tb-json'],
+        binaryType: 'arraybuffer',
+        deserializer: (e: MessageEvent) => typeof e.data === 'string' ? JSON.parse(e.data) : decodeCbor(e.data),
         openObserver: {
           next: () => {
             this.onOpen(token);
@@ -181,9 +186,14 @@ export abstract class WebsocketService<T extends WsSubscriber> implements WsServ
     );
 
     this.dataStream.subscribe({
-      next: (message: CmdUpdateMsg) => {
+      next: (message: CmdUpdateMsg | CmdUpdateMsg[]) => {
         this.ngZone.runOutsideAngular(() => {
-          this.onMessage(message);
+          // the server may send the queued updates in one frame when WS batching is enabled
+          if (Array.isArray(message)) {
+            message.forEach(msg => this.onMessage(msg));
+          } else {
+            this.onMessage(message);
+          }
         });
       },
       error: (error) => {
@@ -113,6 +113,7 @@ export class DefaultTenantProfileConfigurationComponent implements ControlValueA
       maxWsSubscriptionsPerPublicUser: [null, [Validators.min(0)]],
       wsUpdatesPerSessionRateLimit: [null, []],
       cassandraQueryTenantRateLimitsConfiguration: [null, []],
+      cassandraQueryWeight: [null, [Validators.min(0)]],
       edgeEventRateLimits: [null, []],
       edgeEventRateLimitsPerEdge: [null, []],
       edgeUplinkMessagesRateLimits: [null, []],
@@ -74,6 +74,7 @@ export interface DefaultTenantProfileConfiguration {
   wsUpdatesPerSessionRateLimit: string;
 
   cassandraQueryTenantRateLimitsConfiguration: string;
+  cassandraQueryWeight?: number;
 
   defaultStorageTtlDays: number;
   alarmsTtlDays: number;
@@ -127,6 +128,7 @@ export function createTenantProfileConfiguration(type: TenantProfileType): Tenan
           maxWsSubscriptionsPerPublicUser: 0,
           wsUpdatesPerSessionRateLimit: '',
           cassandraQueryTenantRateLimitsConfiguration: '',
+          cassandraQueryWeight: 1,
           defaultStorageTtlDays: 0,
           alarmsTtlDays: 0,
           rpcTtlDays: 0,